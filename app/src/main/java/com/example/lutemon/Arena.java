@@ -0,0 +1,127 @@
+package com.example.lutemon;
+
+/**
+ * Named battle area with its own pair of fighters and its own Battle.
+ * Fighters are kept in their own storage location while the arena holds them,
+ * and arenas only lock themselves, so fights in different arenas never wait on each other.
+ */
+public class Arena {
+    private final String name;
+    private final Storage storage;
+    private final Battle battle;
+    private int fighter1Id;
+    private int fighter2Id;
+    private boolean ready;
+    // Set while the result of a deferred fight waits for applyResult()
+    private volatile boolean resultPending;
+
+    Arena(String name, Storage storage, long seed) {
+        this.name = name;
+        this.storage = storage;
+        this.battle = new Battle(storage, seed);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the storage location holding this arena's fighters
+     */
+    public String getLocation() {
+        return Storage.ARENA_PREFIX + name;
+    }
+
+    /**
+     * Moves two Lutemons into the arena
+     * @return false if the arena is busy or a fighter is already in a battle
+     */
+    public synchronized boolean assignFighters(int fighter1Id, int fighter2Id) {
+        if (ready || resultPending || !storage.reserveFighters(getLocation(), fighter1Id, fighter2Id)) {
+            return false;
+        }
+        this.fighter1Id = fighter1Id;
+        this.fighter2Id = fighter2Id;
+        ready = true;
+        return true;
+    }
+
+    /**
+     * Checks if fighters are waiting for a fight
+     */
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Runs the whole fight on the calling thread, fighter1 attacks first.
+     * Both fighters return home when it ends, as with the regular battle area.
+     * @return the replay of the fight, or null if no fight could be started
+     */
+    public synchronized BattleReplay fight() {
+        battle.setDeferResult(false);
+        return resolve();
+    }
+
+    /**
+     * Runs the whole fight like fight(), but leaves the result to applyResult()
+     */
+    synchronized BattleReplay fightDeferred() {
+        battle.setDeferResult(true);
+        BattleReplay replay = resolve();
+        resultPending = replay != null;
+        return replay;
+    }
+
+    /**
+     * Applies the result of the last fightDeferred(). Doesn't lock the arena, so it
+     * can run under the storage lock, no fight starts here until the result is applied.
+     * @return false if there was no result waiting
+     */
+    boolean applyResult() {
+        if (!resultPending) {
+            return false;
+        }
+        try {
+            return battle.applyResult();
+        } finally {
+            resultPending = false;
+        }
+    }
+
+    private BattleReplay resolve() {
+        if (!ready) {
+            return null;
+        }
+        ready = false;
+        // A fighter taken out of the arena, e.g. by an import, can't fight here,
+        // the one left behind goes home
+        String location = getLocation();
+        if (!location.equals(storage.getLutemonLocation(fighter1Id))
+                || !location.equals(storage.getLutemonLocation(fighter2Id))
+                || !battle.startBattle(fighter1Id, fighter2Id)) {
+            sendHome(fighter1Id);
+            sendHome(fighter2Id);
+            return null;
+        }
+        while (battle.executeAttack()) {
+            // Resolve every turn without animation
+        }
+        return battle.getReplay();
+    }
+
+    private void sendHome(int id) {
+        synchronized (storage) {
+            if (getLocation().equals(storage.getLutemonLocation(id))) {
+                storage.moveLutemon(id, Storage.HOME);
+            }
+        }
+    }
+
+    /**
+     * Gets the battle of this arena, e.g. to read its log
+     */
+    public Battle getBattle() {
+        return battle;
+    }
+}
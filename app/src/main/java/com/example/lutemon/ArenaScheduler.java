@@ -0,0 +1,117 @@
+package com.example.lutemon;
+
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs fights of many arenas at the same time on a shared thread pool
+ */
+public class ArenaScheduler {
+    private static final String TAG = "ArenaScheduler";
+
+    private final Storage storage;
+    private final ExecutorService executor;
+    private final Map<String, Arena> arenas = new ConcurrentHashMap<>();
+    private final SplittableRandom seedSource;
+
+    public ArenaScheduler(Storage storage) {
+        this(storage, Runtime.getRuntime().availableProcessors(), new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates a scheduler whose arenas get reproducible seeds
+     */
+    public ArenaScheduler(Storage storage, int threads, long seed) {
+        this.storage = storage;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.seedSource = new SplittableRandom(seed);
+    }
+
+    /**
+     * Gets an arena by name, creating it on first use
+     */
+    public synchronized Arena getOrCreateArena(String name) {
+        Arena arena = arenas.get(name);
+        if (arena == null) {
+            arena = new Arena(name, storage, seedSource.nextLong());
+            arenas.put(name, arena);
+        }
+        return arena;
+    }
+
+    /**
+     * Gets an existing arena, or null if there is none with that name
+     */
+    public Arena getArena(String name) {
+        return arenas.get(name);
+    }
+
+    /**
+     * Fights in an arena in the background
+     */
+    public Future<BattleReplay> submit(Arena arena) {
+        return executor.submit(arena::fight);
+    }
+
+    /**
+     * Fights in every ready arena at once and waits for all of them. The fights
+     * only change their own fighters, the results are applied afterwards on the
+     * calling thread in one storage transaction, so the batch is saved once.
+     */
+    public List<BattleReplay> runReadyArenas() throws InterruptedException {
+        List<Arena> fought = new ArrayList<>();
+        List<Future<BattleReplay>> fights = new ArrayList<>();
+        for (Arena arena : arenas.values()) {
+            if (arena.isReady()) {
+                fought.add(arena);
+                fights.add(executor.submit(arena::fightDeferred));
+            }
+        }
+        List<BattleReplay> replays = new ArrayList<>();
+        List<Arena> finished = new ArrayList<>();
+        for (int i = 0; i < fights.size(); i++) {
+            try {
+                BattleReplay replay = fights.get(i).get();
+                if (replay != null) {
+                    replays.add(replay);
+                    finished.add(fought.get(i));
+                }
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Arena fight failed: " + e.getCause());
+            }
+        }
+
+        // Holding the lock keeps other threads' changes out of the transaction
+        synchronized (storage) {
+            storage.beginTransaction();
+            try {
+                for (Arena arena : finished) {
+                    try {
+                        arena.applyResult();
+                    } catch (RuntimeException e) {
+                        // Its own transaction was rolled back, the other results stay
+                        Log.e(TAG, "Error applying result of " + arena.getName() + ": " + e);
+                    }
+                }
+            } finally {
+                storage.commitTransaction();
+            }
+        }
+        return replays;
+    }
+
+    /**
+     * Stops the worker threads once running fights are done
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,8 +1,7 @@
 package com.example.lutemon;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Manages battle between two Lutemons
@@ -11,24 +10,49 @@ public class Battle {
     private final Storage storage;
     private Lutemon attacker;
     private Lutemon defender;
-    private List<String> battleLog;
+    private final BattleEventLog battleLog;
     private boolean isFirstTurn;
     private int initialFighter1Id;
     private int initialFighter2Id;
-    private final Random random;
-    private static final float CRITICAL_HIT_CHANCE = 0.25f;
-    private static final int CRITICAL_HIT_DAMAGE = 5;
+    private final SplittableRandom seedSource;
+    private final BattleReplay.Recorder replayRecorder;
+    private SplittableRandom random;
+    private long fightSeed;
+    // Finished fights wait for applyResult() instead of updating the storage
+    private boolean deferResult;
+    private boolean resultPending;
+    static final float CRITICAL_HIT_CHANCE = 0.25f;
+    static final int CRITICAL_HIT_DAMAGE = 5;
 
     public Battle(Storage storage) {
+        this(storage, new SplittableRandom());
+    }
+
+    /**
+     * Creates a battle whose fights are reproducible from the given seed
+     */
+    public Battle(Storage storage, long seed) {
+        this(storage, new SplittableRandom(seed));
+    }
+
+    private Battle(Storage storage, SplittableRandom seedSource) {
         this.storage = storage;
-        this.battleLog = new ArrayList<>();
-        this.random = new Random();
+        this.battleLog = new BattleEventLog();
+        this.seedSource = seedSource;
+        this.replayRecorder = new BattleReplay.Recorder();
     }
 
     /**
      * Initializes a battle between two Lutemons
      */
     public boolean startBattle(int fighter1Id, int fighter2Id) {
+        return startBattle(fighter1Id, fighter2Id, seedSource.nextLong());
+    }
+
+    /**
+     * Initializes a battle with an explicit fight seed, e.g. to reproduce a recorded fight
+     */
+    public boolean startBattle(int fighter1Id, int fighter2Id, long fightSeed) {
         Lutemon fighter1 = storage.getLutemon(fighter1Id);
         Lutemon fighter2 = storage.getLutemon(fighter2Id);
         
@@ -43,6 +67,31 @@ public class Battle {
         initialFighter2Id = fighter2Id;
         battleLog.clear();
         isFirstTurn = true;
+        this.fightSeed = fightSeed;
+        random = new SplittableRandom(fightSeed);
+        replayRecorder.start(fightSeed, fighter1, fighter2);
+        resultPending = false;
+        return true;
+    }
+
+    /**
+     * Leaves the result of finished fights to applyResult(), so fights resolved
+     * on other threads can be applied together on one
+     */
+    void setDeferResult(boolean deferResult) {
+        this.deferResult = deferResult;
+    }
+
+    /**
+     * Applies the result of a finished fight whose result was deferred
+     * @return false if there was no result waiting
+     */
+    boolean applyResult() {
+        if (!resultPending) {
+            return false;
+        }
+        resultPending = false;
+        recordResult();
         return true;
     }
 
@@ -56,30 +105,24 @@ public class Battle {
         }
 
         // Record attack
-        battleLog.add(String.format("%s attacks %s!", 
-            attacker.getName(), defender.getName()));
-        
-        // Calculate base damage
-        int baseDamage = Math.max(0, attacker.getTotalAttack() - defender.getDefense());
+        battleLog.record(BattleEventLog.ATTACK, attacker.getId(), defender.getId(), 0, 0);
         
         // Check for critical hit
-        boolean isCriticalHit = random.nextFloat() < CRITICAL_HIT_CHANCE;
-        int totalDamage = baseDamage;
+        boolean isCriticalHit = rollCriticalHit(random);
+        replayRecorder.recordTurn(isCriticalHit);
+        int totalDamage = calculateDamage(attacker.getTotalAttack(), defender.getDefense(),
+            isCriticalHit);
         
         if (isCriticalHit) {
-            totalDamage += CRITICAL_HIT_DAMAGE;
-            battleLog.add("Critical hit! +5 damage!");
+            battleLog.record(BattleEventLog.CRITICAL_HIT, CRITICAL_HIT_DAMAGE);
         }
 
         // Apply damage
         defender.setHealth(Math.max(0, defender.getHealth() - totalDamage));
         
         // Record result
-        battleLog.add(String.format("%s takes %d damage! (HP: %d/%d)",
-            defender.getName(), 
-            totalDamage,
-            defender.getHealth(), 
-            defender.getMaxHealth()));
+        battleLog.record(BattleEventLog.DAMAGE, defender.getId(), totalDamage,
+            defender.getHealth(), defender.getMaxHealth());
 
         // Check for defeat
         if (defender.getHealth() <= 0) {
@@ -96,49 +139,119 @@ public class Battle {
         return true;
     }
 
+    /**
+     * Decides if an attack is a critical hit, shared with the headless simulators
+     */
+    static boolean rollCriticalHit(SplittableRandom random) {
+        return random.nextDouble() < CRITICAL_HIT_CHANCE;
+    }
+
+    /**
+     * Calculates the damage of one attack, shared with the headless simulators
+     */
+    static int calculateDamage(int totalAttack, int defense, boolean isCriticalHit) {
+        int baseDamage = Math.max(0, totalAttack - defense);
+        return isCriticalHit ? baseDamage + CRITICAL_HIT_DAMAGE : baseDamage;
+    }
+
     /**
      * Handles the defeat of a Lutemon
      */
     private void handleDefeat() {
-        battleLog.add(String.format("%s has been defeated!", defender.getName()));
-        
-        // Award experience to winner through training
-        attacker.train();
-        attacker.train(); // Train twice for victory
-        battleLog.add(String.format("%s wins and gains experience!", attacker.getName()));
+        battleLog.record(BattleEventLog.DEFEATED, defender.getId());
+        battleLog.record(BattleEventLog.VICTORY, attacker.getId());
+        if (deferResult) {
+            resultPending = true;
+        } else {
+            recordResult();
+        }
+    }
 
+    /**
+     * Sends both fighters home, trains the winner, resets the loser and records the battle
+     */
+    private void recordResult() {
         // Record battle stats and IDs before potential reset
         int winnerId = attacker.getId();
         int loserId = defender.getId();
 
-        // Move winner home and heal
-        storage.moveLutemon(winnerId, Storage.HOME);
-        attacker.heal();
+        // Stage every change and write each file once at the end. Holding the storage
+        // lock keeps the result in one piece when arenas finish at the same time.
+        synchronized (storage) {
+            storage.beginTransaction();
+            try {
+                // The moves come first, so a rollback also undoes the changes after them
+                storage.moveLutemon(winnerId, Storage.HOME);
+                storage.moveLutemon(loserId, Storage.HOME);
 
-        // Reset defeated Lutemon to initial stats
-        defender.resetStats();
-        defender.heal();
-        storage.moveLutemon(loserId, Storage.HOME);
-        
-        // Record battle outcome after stats are finalized
-        storage.recordBattle(winnerId, loserId);
-        storage.getStats().getLutemonStats(loserId).recordStats(defender);
-        storage.getStats().getLutemonStats(winnerId).recordStats(attacker);
-        
-        battleLog.add(String.format("%s returns to home to recover!", defender.getName()));
+                // Award experience to winner through training, then heal
+                attacker.train();
+                attacker.train(); // Train twice for victory
+                attacker.heal();
+
+                // Reset defeated Lutemon to initial stats
+                defender.resetStats();
+                defender.heal();
 
-        // Save all changes
-        storage.saveLutemons();
-        storage.saveStats();
+                // Record battle outcome after stats are finalized
+                storage.recordBattle(winnerId, loserId);
+                storage.getStats().getLutemonStats(loserId).recordStats(defender);
+                storage.getStats().getLutemonStats(winnerId).recordStats(attacker);
+                // The moves and the result stage both saves, the heals are written with them
+            } catch (RuntimeException e) {
+                storage.rollbackTransaction();
+                throw e;
+            }
+            storage.commitTransaction();
+        }
+
+        battleLog.record(BattleEventLog.RETURNED_HOME, defender.getId());
     }
 
     /**
-     * Gets the battle log
+     * Gets the battle log as text, formatted on every call
      */
     public List<String> getBattleLog() {
+        return battleLog.formatAll(this::getFighterName);
+    }
+
+    /**
+     * Gets the structured battle log
+     */
+    public BattleEventLog getEventLog() {
         return battleLog;
     }
 
+    /**
+     * Formats one event of the battle log as text
+     */
+    public String formatEvent(int index) {
+        return battleLog.format(index, this::getFighterName);
+    }
+
+    /**
+     * Gets the name of one of the current fighters by ID
+     */
+    private String getFighterName(int id) {
+        if (attacker != null && attacker.getId() == id) return attacker.getName();
+        if (defender != null && defender.getId() == id) return defender.getName();
+        return "#" + id;
+    }
+
+    /**
+     * Gets the seed of the current fight
+     */
+    public long getFightSeed() {
+        return fightSeed;
+    }
+
+    /**
+     * Gets a replay of the fight so far, complete once executeAttack() returns false
+     */
+    public BattleReplay getReplay() {
+        return replayRecorder.build();
+    }
+
     /**
      * Gets the current attacker
      */
@@ -0,0 +1,121 @@
+package com.example.lutemon;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Single clock driving battle animations on the main thread.
+ * One Handler and one Runnable are reused for every tick, so a fight posts at most
+ * one callback at a time, which can be paused, sped up or cancelled.
+ */
+public class BattleClock {
+    public static final int[] TIME_SCALES = {1, 4, 16};
+
+    /**
+     * Work done on every tick
+     */
+    public interface Step {
+        /**
+         * Runs one step of the battle
+         * @return delay until the next step in milliseconds at 1x speed, or -1 to stop
+         */
+        long onTick();
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable tick = this::tick;
+    private Step step;
+    private int timeScale = 1;
+    private boolean paused;
+    // Uptime the pending tick is due at, or its remaining 1x delay while paused
+    private long dueAt;
+    private long pausedDelay;
+
+    /**
+     * Starts running steps, replacing anything already scheduled
+     * @param initialDelay delay before the first step in milliseconds at 1x speed
+     */
+    public void start(Step step, long initialDelay) {
+        cancel();
+        this.step = step;
+        schedule(initialDelay);
+    }
+
+    /**
+     * Stops the clock and drops the pending step
+     */
+    public void cancel() {
+        handler.removeCallbacks(tick);
+        step = null;
+        paused = false;
+    }
+
+    public void pause() {
+        if (step == null || paused) return;
+        handler.removeCallbacks(tick);
+        pausedDelay = Math.max(0, dueAt - SystemClock.uptimeMillis()) * timeScale;
+        paused = true;
+    }
+
+    public void resume() {
+        if (step == null || !paused) return;
+        paused = false;
+        schedule(pausedDelay);
+    }
+
+    /**
+     * Changes the speed, the pending delay is shortened or stretched to match
+     */
+    public void setTimeScale(int timeScale) {
+        if (timeScale < 1) {
+            throw new IllegalArgumentException("Time scale must be at least 1");
+        }
+        if (step != null && !paused) {
+            handler.removeCallbacks(tick);
+            long remaining = Math.max(0, dueAt - SystemClock.uptimeMillis()) * this.timeScale;
+            this.timeScale = timeScale;
+            schedule(remaining);
+        } else {
+            this.timeScale = timeScale;
+        }
+    }
+
+    /**
+     * Moves to the next entry of TIME_SCALES, wrapping back to 1x
+     * @return the new time scale
+     */
+    public int cycleTimeScale() {
+        int next = TIME_SCALES[0];
+        for (int i = 0; i < TIME_SCALES.length - 1; i++) {
+            if (TIME_SCALES[i] == timeScale) {
+                next = TIME_SCALES[i + 1];
+            }
+        }
+        setTimeScale(next);
+        return next;
+    }
+
+    public int getTimeScale() { return timeScale; }
+    public boolean isRunning() { return step != null; }
+    public boolean isPaused() { return paused; }
+
+    private void schedule(long delay) {
+        long scaled = delay / timeScale;
+        dueAt = SystemClock.uptimeMillis() + scaled;
+        handler.postAtTime(tick, dueAt);
+    }
+
+    private void tick() {
+        Step current = step;
+        if (current == null || paused) return;
+        long delay = current.onTick();
+        // The step may have cancelled or restarted the clock itself
+        if (step != current || paused) return;
+        if (delay < 0) {
+            step = null;
+        } else {
+            schedule(delay);
+        }
+    }
+}
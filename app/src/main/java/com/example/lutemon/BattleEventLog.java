@@ -0,0 +1,115 @@
+package com.example.lutemon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Compact battle log that stores events as type codes with int payloads.
+ * Recording an event only writes a few ints into a ring buffer; text is formatted
+ * when the log is actually displayed or exported.
+ */
+public class BattleEventLog {
+    public static final int ATTACK = 1;         // attackerId, defenderId
+    public static final int CRITICAL_HIT = 2;   // bonus damage
+    public static final int DAMAGE = 3;         // defenderId, damage, health, maxHealth
+    public static final int DEFEATED = 4;       // lutemonId
+    public static final int VICTORY = 5;        // lutemonId
+    public static final int RETURNED_HOME = 6;  // lutemonId
+
+    private static final int RECORD_SIZE = 5;
+    private static final int DEFAULT_CAPACITY = 512;
+
+    private final IntRingBuffer buffer;
+
+    public BattleEventLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a log holding up to the given number of most recent events
+     */
+    public BattleEventLog(int capacity) {
+        buffer = new IntRingBuffer(capacity * RECORD_SIZE);
+    }
+
+    /**
+     * Records an event, unused payload values should be 0
+     */
+    public void record(int type, int a, int b, int c, int d) {
+        buffer.add(type);
+        buffer.add(a);
+        buffer.add(b);
+        buffer.add(c);
+        buffer.add(d);
+    }
+
+    public void record(int type, int a) {
+        record(type, a, 0, 0, 0);
+    }
+
+    /**
+     * Gets the number of events held
+     */
+    public int size() {
+        return buffer.size() / RECORD_SIZE;
+    }
+
+    public boolean isEmpty() {
+        return buffer.size() == 0;
+    }
+
+    public void clear() {
+        buffer.clear();
+    }
+
+    /**
+     * Gets the type code of an event, 0 being the oldest event held
+     */
+    public int getType(int index) {
+        return buffer.get(index * RECORD_SIZE);
+    }
+
+    /**
+     * Gets a payload value (0-3) of an event
+     */
+    public int getValue(int index, int value) {
+        return buffer.get(index * RECORD_SIZE + 1 + value);
+    }
+
+    /**
+     * Formats one event as text
+     * @param names resolves Lutemon IDs to display names
+     */
+    public String format(int index, IntFunction<String> names) {
+        int a = getValue(index, 0);
+        switch (getType(index)) {
+            case ATTACK:
+                return String.format("%s attacks %s!", names.apply(a), names.apply(getValue(index, 1)));
+            case CRITICAL_HIT:
+                return String.format("Critical hit! +%d damage!", a);
+            case DAMAGE:
+                return String.format("%s takes %d damage! (HP: %d/%d)", names.apply(a),
+                    getValue(index, 1), getValue(index, 2), getValue(index, 3));
+            case DEFEATED:
+                return String.format("%s has been defeated!", names.apply(a));
+            case VICTORY:
+                return String.format("%s wins and gains experience!", names.apply(a));
+            case RETURNED_HOME:
+                return String.format("%s returns to home to recover!", names.apply(a));
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Formats every event held, oldest first
+     */
+    public List<String> formatAll(IntFunction<String> names) {
+        List<String> lines = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            lines.add(format(i, names));
+        }
+        return lines;
+    }
+}
@@ -12,28 +12,44 @@ import android.widget.TextView;
 import android.widget.Button;
 import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Fragment for managing battles between Lutemons
  */
 public class BattleFragment extends Fragment {
     private static final String TAG = "LutemonBattle";
+    // Delays at 1x speed
+    private static final long ATTACK_DELAY = 1000;
+    private static final long TURN_DELAY = 1500;
+    private static final long RESULT_DELAY = 3000;
+
     private Storage storage;
     private Battle battle;
+    private BattleOutcomeCalculator outcomeCalculator;
     private LinearLayout battleLogContainer;
     private View battleLogScroll;
     private TextView statusMessage;
+    private TextView predictedOdds;
     private Button startBattleButton;
+    private Button instantBattleButton;
+    private View battleControls;
+    private Button pauseButton;
+    private Button speedButton;
+    private final BattleClock clock = new BattleClock();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService instantExecutor;
+    private boolean battleFinished;
     private BattleArenaView battleArena;
     private List<Lutemon> battleLutemons;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                            Bundle savedInstanceState) {
-        // Get storage instance from MainActivity and create battle
-        storage = ((MainActivity) requireActivity()).getStorage();
-        battle = new Battle(storage);
+        outcomeCalculator = new BattleOutcomeCalculator();
 
         // Inflate the layout for this fragment
         View view = inflater.inflate(R.layout.fragment_battle, container, false);
@@ -42,39 +58,91 @@ public class BattleFragment extends Fragment {
         battleLogContainer = view.findViewById(R.id.battle_log_container);
         battleLogScroll = view.findViewById(R.id.battle_log_scroll);
         statusMessage = view.findViewById(R.id.status_message);
+        predictedOdds = view.findViewById(R.id.predicted_odds);
         startBattleButton = view.findViewById(R.id.button_start_battle);
+        instantBattleButton = view.findViewById(R.id.button_instant_battle);
+        battleControls = view.findViewById(R.id.battle_controls);
+        pauseButton = view.findViewById(R.id.button_pause);
+        speedButton = view.findViewById(R.id.button_speed);
         battleArena = view.findViewById(R.id.battle_arena);
 
-        // Setup battle button
-        startBattleButton.setOnClickListener(v -> startBattle());
+        // Setup battle buttons
+        startBattleButton.setOnClickListener(v -> startBattle(false));
+        instantBattleButton.setOnClickListener(v -> startBattle(true));
+        pauseButton.setOnClickListener(v -> togglePause());
+        speedButton.setOnClickListener(v -> {
+            speedButton.setText(getString(R.string.battle_speed_format, clock.cycleTimeScale()));
+        });
+        speedButton.setText(getString(R.string.battle_speed_format, clock.getTimeScale()));
 
-        // Initial update
+        // Waits for fighters until the storage is loaded
         updateBattleArea();
+        ((MainActivity) requireActivity()).whenStorageReady(this::showFighters);
         return view;
     }
 
+    /**
+     * Creates the battle once the storage is loaded and shows its fighters
+     */
+    private void showFighters(Storage loaded) {
+        // The view was destroyed while loading, or this view already has them
+        if (statusMessage == null || storage != null) return;
+        storage = loaded;
+        battle = new Battle(storage);
+        updateBattleArea();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
-        updateBattleArea();
-        clearBattleLog();
+        // Leave a running battle alone when coming back to the screen
+        if (!clock.isRunning() && instantExecutor == null) {
+            updateBattleArea();
+            clearBattleLog();
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        // Drop pending ticks so nothing touches the destroyed views. An abandoned
+        // fight leaves both fighters healed in the battle area.
+        if (clock.isRunning() && !battleFinished) {
+            for (Lutemon lutemon : battleLutemons) {
+                lutemon.heal();
+                storage.lutemonChanged(lutemon.getId());
+            }
+        }
+        clock.cancel();
+        if (instantExecutor != null) {
+            instantExecutor.shutdownNow();
+            instantExecutor = null;
+        }
+        storage = null;
+        statusMessage = null;
+        super.onDestroyView();
     }
 
     /**
      * Updates the battle area display based on available fighters
      */
     private void updateBattleArea() {
-        battleLutemons = storage.getLutemonsByLocation(Storage.BATTLE);
+        battleLutemons = storage != null
+            ? storage.getLutemonsByLocation(Storage.BATTLE) : Collections.<Lutemon>emptyList();
 
         if (battleLutemons.size() < 2) {
             // Not enough fighters
             statusMessage.setText(R.string.waiting_for_fighters);
             startBattleButton.setVisibility(View.GONE);
+            instantBattleButton.setVisibility(View.GONE);
+            battleControls.setVisibility(View.GONE);
             battleArena.setVisibility(View.INVISIBLE);
+            predictedOdds.setVisibility(View.GONE);
         } else {
             // Show fighters
             statusMessage.setText(R.string.ready_to_battle);
             startBattleButton.setVisibility(View.VISIBLE);
+            instantBattleButton.setVisibility(View.VISIBLE);
+            battleControls.setVisibility(View.GONE);
             battleArena.setVisibility(View.VISIBLE);
             
             // Set fighters in battle arena
@@ -82,9 +150,22 @@ public class BattleFragment extends Fragment {
             Lutemon fighter2 = battleLutemons.get(1);
             battleArena.setFighters(fighter1, fighter2);
             updateHealthBars();
+            updatePredictedOdds(fighter1, fighter2);
         }
     }
 
+    /**
+     * Shows the exact win chances of the fighters, fighter1 attacks first
+     */
+    private void updatePredictedOdds(Lutemon fighter1, Lutemon fighter2) {
+        BattleOutcomeCalculator.Outcome outcome = outcomeCalculator.calculate(fighter1, fighter2);
+        predictedOdds.setText(getString(R.string.predicted_odds_format,
+            fighter1.getName(), outcome.getFighter1WinProbability() * 100,
+            fighter2.getName(), outcome.getFighter2WinProbability() * 100,
+            outcome.getExpectedTurns()));
+        predictedOdds.setVisibility(View.VISIBLE);
+    }
+
     /**
      * Updates health bars in the battle arena
      */
@@ -101,8 +182,9 @@ public class BattleFragment extends Fragment {
 
     /**
      * Starts a battle between the available fighters
+     * @param instant resolve the whole fight in the background and only show the result
      */
-    private void startBattle() {
+    private void startBattle(boolean instant) {
         if (battleLutemons.size() < 2) {
             return; // Should never happen as button is hidden
         }
@@ -118,52 +200,111 @@ public class BattleFragment extends Fragment {
             return;
         }
 
-        // Hide battle button during battle
+        // Hide battle buttons during battle
         startBattleButton.setVisibility(View.GONE);
+        instantBattleButton.setVisibility(View.GONE);
         statusMessage.setText(R.string.battle_in_progress);
+        battleFinished = false;
 
         Log.i(TAG, String.format("Starting battle between %s and %s", 
             lutemon1.getName(), lutemon2.getName()));
 
-        // Start battle turns with animation
-        executeBattleTurns();
+        if (instant) {
+            resolveInstantly();
+        } else {
+            // Start battle turns with animation
+            pauseButton.setText(R.string.pause_battle);
+            battleControls.setVisibility(View.VISIBLE);
+            clock.start(this::executeBattleTurn, ATTACK_DELAY);
+        }
     }
 
     /**
-     * Executes battle turns with animations and UI updates
+     * Executes one battle turn with animations and UI updates, called by the battle clock
+     * @return delay until the next turn, or -1 when the battle is over
      */
-    private void executeBattleTurns() {
-        // Get current fighters
-        Lutemon attacker = battle.getAttacker();
+    private long executeBattleTurn() {
+        if (battleFinished) {
+            // Result has been shown long enough
+            updateBattleArea(); // This will reset the views
+            return -1;
+        }
+
+        // Show attack animation
         Lutemon defender = battle.getDefender();
+        battleArena.showDamageEffect(defender == battleLutemons.get(1));
 
-        // Execute the attack after delay
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            // Show attack animation
-            battleArena.showDamageEffect(defender == battleLutemons.get(1));
-            
-            // Execute attack
-            if (battle.executeAttack()) {
-                // Update health bars
-                updateHealthBars();
-                
-                // Show latest battle log entries
-                displayBattleLog();
-                
-                // Schedule next attack with delay
-                new Handler(Looper.getMainLooper()).postDelayed(
-                    this::executeBattleTurns, 1500); // 1.5s between attacks
-            } else {
-                // Battle is over
-                displayBattleLog();
-                // Show winner
-                battleArena.showWinner(battle.getAttacker().getName());
-                // Add extra delay before showing results
-                new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                    updateBattleArea(); // This will reset the views
-                }, 3000); // 3s delay to read final result and see winner
+        // Execute attack
+        boolean continues = battle.executeAttack();
+        updateHealthBars();
+        displayBattleLog();
+        if (continues) {
+            return TURN_DELAY + ATTACK_DELAY;
+        }
+
+        // Battle is over, show the winner before resetting the views
+        battleFinished = true;
+        battleControls.setVisibility(View.GONE);
+        battleArena.showWinner(battle.getAttacker().getName());
+        return RESULT_DELAY;
+    }
+
+    /**
+     * Resolves the whole fight on a background thread and animates only the summary.
+     * Leaving the screen interrupts the fight, which then leaves both fighters
+     * healed in the battle area like an abandoned animated one.
+     */
+    private void resolveInstantly() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        instantExecutor = executor;
+        List<Lutemon> fighters = battleLutemons;
+        // The fields are cleared when the view is destroyed
+        Storage storage = this.storage;
+        Battle battle = this.battle;
+        executor.execute(() -> {
+            boolean continues = true;
+            while (continues && !Thread.currentThread().isInterrupted()) {
+                continues = battle.executeAttack();
+            }
+            if (continues) {
+                for (Lutemon lutemon : fighters) {
+                    lutemon.heal();
+                    storage.lutemonChanged(lutemon.getId());
+                }
+                return;
             }
-        }, 1000); // 1s pre-attack delay
+            mainHandler.post(() -> {
+                // Ignore the result if the view was destroyed and recreated
+                if (instantExecutor != executor) return;
+                instantExecutor = null;
+                showSummary();
+            });
+        });
+        executor.shutdown();
+    }
+
+    /**
+     * Shows the final state of an instantly resolved battle
+     */
+    private void showSummary() {
+        battleFinished = true;
+        updateHealthBars();
+        displayBattleLog();
+        battleArena.showWinner(battle.getAttacker().getName());
+        clock.start(this::executeBattleTurn, RESULT_DELAY);
+    }
+
+    /**
+     * Pauses or resumes the battle clock
+     */
+    private void togglePause() {
+        if (clock.isPaused()) {
+            clock.resume();
+            pauseButton.setText(R.string.pause_battle);
+        } else {
+            clock.pause();
+            pauseButton.setText(R.string.resume_battle);
+        }
     }
 
     /**
@@ -171,17 +312,17 @@ public class BattleFragment extends Fragment {
      */
     private void displayBattleLog() {
         battleLogContainer.removeAllViews();
-        List<String> logs = battle.getBattleLog();
+        BattleEventLog log = battle.getEventLog();
         
-        // Display logs in normal order (oldest first)
-        for (int i = 0; i < logs.size(); i++) {
+        // Display logs in normal order (oldest first), text is only formatted here
+        for (int i = 0; i < log.size(); i++) {
             TextView logText = new TextView(requireContext());
-            logText.setText(logs.get(i));
+            logText.setText(battle.formatEvent(i));
             logText.setTextSize(14);
             logText.setPadding(8, 4, 8, 4);
 
             // Highlight the newest log
-            if (i == logs.size() - 1) {
+            if (i == log.size() - 1) {
                 logText.setBackgroundColor(0x33FF5722); // Semi-transparent orange
                 logText.setTextSize(16);
                 logText.setPadding(16, 8, 16, 8);
@@ -0,0 +1,84 @@
+package com.example.lutemon;
+
+/**
+ * Bulk battle kernel working on primitive stat columns, one entry per matchup.
+ * Every matchup keeps its random state in a long column and uses the same
+ * SplittableRandom algorithm as {@link Battle}, so a matchup resolved here ends exactly
+ * like a Battle started with the same fight seed. Fighters start at full health.
+ */
+public final class BattleKernel {
+    // SplittableRandom constants, see java.util.SplittableRandom
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    // nextDouble() < chance is the same as the top 53 random bits being below this
+    private static final long CRITICAL_THRESHOLD =
+        (long) Math.ceil(Battle.CRITICAL_HIT_CHANCE * 0x1.0p53);
+
+    private BattleKernel() {
+    }
+
+    /**
+     * Resolves every matchup, fighter 1 attacks first
+     * @param seeds fight seed per matchup, as passed to Battle.startBattle()
+     * @param turns receives the number of attacks per matchup, odd means fighter 1 won
+     */
+    public static void resolve(int[] attack1, int[] experience1, int[] defense1, int[] maxHealth1,
+                               int[] attack2, int[] experience2, int[] defense2, int[] maxHealth2,
+                               long[] seeds, int[] turns) {
+        int count = seeds.length;
+        int[] damage1 = new int[count];
+        int[] damage2 = new int[count];
+        int[] health1 = new int[count];
+        int[] health2 = new int[count];
+        long[] state = new long[count];
+
+        // Straight column passes the JIT can vectorize
+        for (int i = 0; i < count; i++) {
+            damage1[i] = Math.max(0, attack1[i] + experience1[i] - defense2[i]);
+            damage2[i] = Math.max(0, attack2[i] + experience2[i] - defense1[i]);
+        }
+        System.arraycopy(maxHealth1, 0, health1, 0, count);
+        System.arraycopy(maxHealth2, 0, health2, 0, count);
+        System.arraycopy(seeds, 0, state, 0, count);
+
+        // Matchups still fighting, finished ones are swapped out of the active range
+        int[] active = new int[count];
+        for (int i = 0; i < count; i++) active[i] = i;
+        int remaining = count;
+
+        for (int turn = 1; remaining > 0; turn++) {
+            boolean fighter1Attacks = (turn & 1) == 1;
+            int[] damage = fighter1Attacks ? damage1 : damage2;
+            int[] health = fighter1Attacks ? health2 : health1;
+
+            for (int k = 0; k < remaining; ) {
+                int m = active[k];
+                long z = state[m] += GOLDEN_GAMMA;
+                z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                z ^= z >>> 31;
+                // 1 when the 53 bit sample is below the threshold, without a branch
+                int critical = (int) (((z >>> 11) - CRITICAL_THRESHOLD) >>> 63);
+                int left = health[m] - damage[m] - critical * Battle.CRITICAL_HIT_DAMAGE;
+                health[m] = left;
+
+                if (left <= 0) {
+                    turns[m] = turn;
+                    active[k] = active[--remaining];
+                } else {
+                    k++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the matchups fighter 1 won
+     */
+    public static int countFighter1Wins(int[] turns) {
+        int wins = 0;
+        for (int t : turns) {
+            wins += t & 1;
+        }
+        return wins;
+    }
+}
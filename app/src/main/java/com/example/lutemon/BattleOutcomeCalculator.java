@@ -0,0 +1,251 @@
+package com.example.lutemon;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes exact battle outcomes without running random fights.
+ * A fight is a Markov chain over (fighter 1 HP, fighter 2 HP, whose turn), so win
+ * probability and expected length are solved by dynamic programming over HP states
+ * and the turn distribution by propagating probability mass turn by turn.
+ */
+public class BattleOutcomeCalculator {
+    private static final int CACHE_SIZE = 256;
+    // Stop propagating once this little probability mass is still undecided
+    private static final double TAIL_EPSILON = 1e-12;
+    private static final int MAX_TURNS = 10000;
+
+    private final Map<Matchup, Outcome> cache = new LinkedHashMap<Matchup, Outcome>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Matchup, Outcome> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Gets the outcome of a battle where fighter1 attacks first, using current health
+     */
+    public Outcome calculate(Lutemon fighter1, Lutemon fighter2) {
+        return calculate(fighter1.getTotalAttack(), fighter1.getDefense(), fighter1.getHealth(),
+            fighter2.getTotalAttack(), fighter2.getDefense(), fighter2.getHealth());
+    }
+
+    /**
+     * Gets the outcome for primitive stats, answered from the cache when possible
+     */
+    public Outcome calculate(int attack1, int defense1, int health1,
+                             int attack2, int defense2, int health2) {
+        Matchup key = new Matchup(attack1, defense1, Math.max(0, health1),
+            attack2, defense2, Math.max(0, health2));
+        synchronized (cache) {
+            Outcome cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Outcome outcome = solve(key);
+        synchronized (cache) {
+            cache.put(key, outcome);
+        }
+        return outcome;
+    }
+
+    private static Outcome solve(Matchup m) {
+        double crit = Battle.CRITICAL_HIT_CHANCE;
+        double normal = 1 - crit;
+        int base1 = Battle.calculateDamage(m.attack1, m.defense2, false);
+        int critical1 = Battle.calculateDamage(m.attack1, m.defense2, true);
+        int base2 = Battle.calculateDamage(m.attack2, m.defense1, false);
+        int critical2 = Battle.calculateDamage(m.attack2, m.defense1, true);
+
+        int width = m.health2 + 1;
+        int states = (m.health1 + 1) * width;
+        // Index 1 arrays: fighter 1 to move, index 2 arrays: fighter 2 to move
+        double[] win1 = new double[states];
+        double[] win2 = new double[states];
+        double[] turns1 = new double[states];
+        double[] turns2 = new double[states];
+
+        for (int x = 0; x <= m.health1; x++) {
+            for (int y = 0; y <= m.health2; y++) {
+                int index = x * width + y;
+
+                // Fighter 1 attacks: terminal when fighter 2 drops to 0
+                double winA = 0;
+                double turnsA = 1;
+                int yCrit = y - critical1;
+                int yBase = y - base1;
+                if (yCrit <= 0) {
+                    winA += crit;
+                } else {
+                    winA += crit * win2[x * width + yCrit];
+                    turnsA += crit * turns2[x * width + yCrit];
+                }
+                if (yBase <= 0) {
+                    winA += normal;
+                } else if (base1 > 0) {
+                    winA += normal * win2[x * width + yBase];
+                    turnsA += normal * turns2[x * width + yBase];
+                }
+
+                // Fighter 2 attacks: terminal when fighter 1 drops to 0
+                double winB = 0;
+                double turnsB = 1;
+                int xCrit = x - critical2;
+                int xBase = x - base2;
+                if (xCrit > 0) {
+                    winB += crit * win1[xCrit * width + y];
+                    turnsB += crit * turns1[xCrit * width + y];
+                }
+                if (xBase > 0 && base2 > 0) {
+                    winB += normal * win1[xBase * width + y];
+                    turnsB += normal * turns1[xBase * width + y];
+                }
+
+                // A zero damage hit on a living defender leaves the state unchanged,
+                // so both equations refer to each other and are solved together
+                double loop1 = base1 == 0 && y > 0 ? normal : 0;
+                double loop2 = base2 == 0 && x > 0 ? normal : 0;
+                double divisor = 1 - loop1 * loop2;
+                win1[index] = (winA + loop1 * winB) / divisor;
+                win2[index] = winB + loop2 * win1[index];
+                turns1[index] = (turnsA + loop1 * turnsB) / divisor;
+                turns2[index] = turnsB + loop2 * turns1[index];
+            }
+        }
+
+        int start = m.health1 * width + m.health2;
+        return new Outcome(win1[start], turns1[start],
+            turnDistribution(m, width, states, base1, critical1, base2, critical2));
+    }
+
+    /**
+     * Propagates probability mass forward to get the chance of each fight length
+     */
+    private static double[] turnDistribution(Matchup m, int width, int states,
+                                             int base1, int critical1, int base2, int critical2) {
+        double crit = Battle.CRITICAL_HIT_CHANCE;
+        double normal = 1 - crit;
+        double[] current = new double[states];
+        double[] next = new double[states];
+        double[] distribution = new double[64];
+        current[m.health1 * width + m.health2] = 1;
+        double remaining = 1;
+        int turn = 0;
+
+        while (remaining > TAIL_EPSILON && turn < MAX_TURNS) {
+            turn++;
+            boolean fighter1Moves = (turn & 1) == 1;
+            double ended = 0;
+            Arrays.fill(next, 0);
+
+            for (int index = 0; index < states; index++) {
+                double mass = current[index];
+                if (mass == 0) continue;
+                int x = index / width;
+                int y = index - x * width;
+                if (fighter1Moves) {
+                    ended += spread(next, mass * crit, y - critical1, x * width + y - critical1);
+                    ended += spread(next, mass * normal, y - base1, x * width + y - base1);
+                } else {
+                    ended += spread(next, mass * crit, x - critical2, index - critical2 * width);
+                    ended += spread(next, mass * normal, x - base2, index - base2 * width);
+                }
+            }
+
+            if (turn >= distribution.length) {
+                distribution = Arrays.copyOf(distribution, distribution.length * 2);
+            }
+            distribution[turn] = ended;
+            remaining -= ended;
+
+            double[] swap = current;
+            current = next;
+            next = swap;
+        }
+        return Arrays.copyOf(distribution, turn + 1);
+    }
+
+    /**
+     * Moves mass to the target state, or returns it as ended when the defender falls
+     */
+    private static double spread(double[] next, double mass, int defenderHealth, int target) {
+        if (defenderHealth <= 0) {
+            return mass;
+        }
+        next[target] += mass;
+        return 0;
+    }
+
+    /**
+     * Cache key holding every stat that affects the outcome
+     */
+    private static final class Matchup {
+        final int attack1, defense1, health1;
+        final int attack2, defense2, health2;
+
+        Matchup(int attack1, int defense1, int health1, int attack2, int defense2, int health2) {
+            this.attack1 = attack1;
+            this.defense1 = defense1;
+            this.health1 = health1;
+            this.attack2 = attack2;
+            this.defense2 = defense2;
+            this.health2 = health2;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Matchup)) return false;
+            Matchup other = (Matchup) o;
+            return attack1 == other.attack1 && defense1 == other.defense1
+                && health1 == other.health1 && attack2 == other.attack2
+                && defense2 == other.defense2 && health2 == other.health2;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = attack1;
+            hash = 31 * hash + defense1;
+            hash = 31 * hash + health1;
+            hash = 31 * hash + attack2;
+            hash = 31 * hash + defense2;
+            return 31 * hash + health2;
+        }
+    }
+
+    /**
+     * Exact outcome of a battle where fighter 1 attacks first
+     */
+    public static class Outcome {
+        private final double fighter1WinProbability;
+        private final double expectedTurns;
+        private final double[] turnProbabilities;
+
+        Outcome(double fighter1WinProbability, double expectedTurns, double[] turnProbabilities) {
+            this.fighter1WinProbability = fighter1WinProbability;
+            this.expectedTurns = expectedTurns;
+            this.turnProbabilities = turnProbabilities;
+        }
+
+        public double getFighter1WinProbability() { return fighter1WinProbability; }
+        public double getFighter2WinProbability() { return 1 - fighter1WinProbability; }
+        public double getExpectedTurns() { return expectedTurns; }
+
+        /**
+         * Gets the longest fight length with a tracked probability
+         */
+        public int getMaxTurns() {
+            return turnProbabilities.length - 1;
+        }
+
+        /**
+         * Gets the probability that the fight ends after exactly this many attacks
+         */
+        public double getTurnProbability(int turns) {
+            if (turns < 0 || turns >= turnProbabilities.length) return 0;
+            return turnProbabilities[turns];
+        }
+    }
+}
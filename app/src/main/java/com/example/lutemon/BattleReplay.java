@@ -0,0 +1,215 @@
+package com.example.lutemon;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Compact record of one battle that can be replayed and verified without any UI.
+ * Stores the fight seed, both fighters' starting stats and one critical hit bit per turn.
+ */
+public class BattleReplay {
+    private static final int MAGIC = 0x4C545250; // "LTRP"
+    private static final int VERSION = 1;
+
+    private final long seed;
+    private final int[] fighter1;   // id, totalAttack, defense, health, maxHealth
+    private final int[] fighter2;
+    private final int turns;
+    private final byte[] criticalHits;
+
+    BattleReplay(long seed, int[] fighter1, int[] fighter2, int turns, byte[] criticalHits) {
+        this.seed = seed;
+        this.fighter1 = fighter1;
+        this.fighter2 = fighter2;
+        this.turns = turns;
+        this.criticalHits = criticalHits;
+    }
+
+    public long getSeed() { return seed; }
+    public int getTurnCount() { return turns; }
+    public int getFighter1Id() { return fighter1[0]; }
+    public int getFighter2Id() { return fighter2[0]; }
+
+    /**
+     * Gets the winner, fighter 1 attacks on odd turns so wins odd length fights
+     */
+    public int getWinnerId() {
+        return (turns & 1) == 1 ? fighter1[0] : fighter2[0];
+    }
+
+    /**
+     * Checks if the attack on the given turn (starting from 1) was a critical hit
+     */
+    public boolean isCriticalHit(int turn) {
+        if (turn < 1 || turn > turns) return false;
+        int bit = turn - 1;
+        return (criticalHits[bit >> 3] & (1 << (bit & 7))) != 0;
+    }
+
+    /**
+     * Checks that the recorded critical hits come from the seed and that the
+     * recorded stats end the fight exactly on the last turn
+     */
+    public boolean verify() {
+        SplittableRandom random = new SplittableRandom(seed);
+        int health1 = fighter1[3];
+        int health2 = fighter2[3];
+        for (int turn = 1; turn <= turns; turn++) {
+            boolean isCriticalHit = Battle.rollCriticalHit(random);
+            if (isCriticalHit != isCriticalHit(turn)) {
+                return false;
+            }
+            boolean fighter1Attacks = (turn & 1) == 1;
+            if (fighter1Attacks) {
+                health2 -= Battle.calculateDamage(fighter1[1], fighter2[2], isCriticalHit);
+            } else {
+                health1 -= Battle.calculateDamage(fighter2[1], fighter1[2], isCriticalHit);
+            }
+            boolean defeated = fighter1Attacks ? health2 <= 0 : health1 <= 0;
+            if (defeated != (turn == turns)) {
+                return false;
+            }
+        }
+        return turns > 0;
+    }
+
+    /**
+     * Replays the fight into an event log, producing the same events as the original battle
+     */
+    public void replayInto(BattleEventLog log) {
+        int[] attacker = fighter1;
+        int[] defender = fighter2;
+        int attackerHealth = fighter1[3];
+        int defenderHealth = fighter2[3];
+        log.clear();
+
+        for (int turn = 1; turn <= turns; turn++) {
+            log.record(BattleEventLog.ATTACK, attacker[0], defender[0], 0, 0);
+            boolean isCriticalHit = isCriticalHit(turn);
+            int damage = Battle.calculateDamage(attacker[1], defender[2], isCriticalHit);
+            if (isCriticalHit) {
+                log.record(BattleEventLog.CRITICAL_HIT, Battle.CRITICAL_HIT_DAMAGE);
+            }
+            defenderHealth = Math.max(0, defenderHealth - damage);
+            log.record(BattleEventLog.DAMAGE, defender[0], damage, defenderHealth, defender[4]);
+
+            if (turn < turns) {
+                int[] swap = attacker;
+                attacker = defender;
+                defender = swap;
+                int swapHealth = attackerHealth;
+                attackerHealth = defenderHealth;
+                defenderHealth = swapHealth;
+            }
+        }
+
+        if (turns > 0) {
+            log.record(BattleEventLog.DEFEATED, defender[0]);
+            log.record(BattleEventLog.VICTORY, attacker[0]);
+            log.record(BattleEventLog.RETURNED_HOME, defender[0]);
+        }
+    }
+
+    /**
+     * Writes the replay in its binary format
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        BinaryCodec.Writer out = new BinaryCodec.Writer(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(seed);
+        // Zigzag varints, small values of either sign take one byte
+        for (int value : fighter1) out.writeSignedVarInt(value);
+        for (int value : fighter2) out.writeSignedVarInt(value);
+        out.writeSignedVarInt(turns);
+        out.write(criticalHits, 0, (turns + 7) >> 3);
+        out.flush();
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeTo(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a replay written by writeTo()
+     */
+    public static BattleReplay readFrom(InputStream stream) throws IOException {
+        BinaryCodec.Reader in = new BinaryCodec.Reader(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a battle replay");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        long seed = in.readLong();
+        int[] fighter1 = new int[5];
+        int[] fighter2 = new int[5];
+        for (int i = 0; i < fighter1.length; i++) fighter1[i] = in.readSignedVarInt();
+        for (int i = 0; i < fighter2.length; i++) fighter2[i] = in.readSignedVarInt();
+        int turns = in.readSignedVarInt();
+        if (turns < 0) {
+            throw new IOException("Invalid turn count " + turns);
+        }
+        byte[] criticalHits = new byte[(turns + 7) >> 3];
+        in.readFully(criticalHits);
+        return new BattleReplay(seed, fighter1, fighter2, turns, criticalHits);
+    }
+
+    public static BattleReplay fromByteArray(byte[] data) throws IOException {
+        return readFrom(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Collects a replay while a battle runs, reusing its bit buffer between battles
+     */
+    static class Recorder {
+        private long seed;
+        private final int[] fighter1 = new int[5];
+        private final int[] fighter2 = new int[5];
+        private byte[] criticalHits = new byte[16];
+        private int turns;
+
+        void start(long seed, Lutemon first, Lutemon second) {
+            this.seed = seed;
+            copyStats(first, fighter1);
+            copyStats(second, fighter2);
+            Arrays.fill(criticalHits, (byte) 0);
+            turns = 0;
+        }
+
+        void recordTurn(boolean isCriticalHit) {
+            if ((turns >> 3) >= criticalHits.length) {
+                criticalHits = Arrays.copyOf(criticalHits, criticalHits.length * 2);
+            }
+            if (isCriticalHit) {
+                criticalHits[turns >> 3] |= (byte) (1 << (turns & 7));
+            }
+            turns++;
+        }
+
+        BattleReplay build() {
+            return new BattleReplay(seed, fighter1.clone(), fighter2.clone(), turns,
+                Arrays.copyOf(criticalHits, (turns + 7) >> 3));
+        }
+
+        private static void copyStats(Lutemon lutemon, int[] stats) {
+            stats[0] = lutemon.getId();
+            stats[1] = lutemon.getTotalAttack();
+            stats[2] = lutemon.getDefense();
+            stats[3] = lutemon.getHealth();
+            stats[4] = lutemon.getMaxHealth();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.lutemon;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs large numbers of headless battles in parallel for balance tuning.
+ * Uses the same attack, critical hit and defeat rules as {@link Battle}, but works
+ * on copied stats only, so no Lutemon is changed and nothing is saved.
+ */
+public class BattleSimulator {
+    // Fights per task; every task gets its own seed so results don't depend on scheduling
+    static final int FIGHTS_PER_TASK = 4096;
+    public static final int MAX_TRACKED_TURNS = 128;
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+
+    private final ForkJoinPool pool;
+
+    public BattleSimulator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public BattleSimulator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Simulates a number of fights where fighter1 attacks first
+     * @param seed base seed, the same seed always gives the same result
+     */
+    public Result simulate(Lutemon fighter1, Lutemon fighter2, int fights, long seed) {
+        if (fights < 0) {
+            throw new IllegalArgumentException("Fight count must not be negative");
+        }
+
+        // Copy stats from the published snapshots so the live Lutemons are never touched
+        LutemonSnapshot first = fighter1.getSnapshot();
+        LutemonSnapshot second = fighter2.getSnapshot();
+        int[] stats = {
+            first.getTotalAttack(), first.getDefense(), first.getHealth(),
+            second.getTotalAttack(), second.getDefense(), second.getHealth()
+        };
+
+        long start = System.nanoTime();
+        int tasks = (fights + FIGHTS_PER_TASK - 1) / FIGHTS_PER_TASK;
+        Result result = tasks == 0 ? new Result()
+            : pool.invoke(new SimulationTask(stats, fights, seed, 0, tasks));
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Gets the seed used for a task, mixed so neighbouring tasks get unrelated streams
+     */
+    static long taskSeed(long seed, int taskIndex) {
+        return seed + (taskIndex + 1) * SEED_STRIDE;
+    }
+
+    /**
+     * Runs one fight on primitive stats and returns the number of attacks made.
+     * Fighter 1 attacks on odd turns, so an odd result means fighter 1 won.
+     */
+    static int simulateFight(int attack1, int defense1, int health1,
+                             int attack2, int defense2, int health2, SplittableRandom random) {
+        int turns = 0;
+        while (true) {
+            turns++;
+            health2 -= Battle.calculateDamage(attack1, defense2, Battle.rollCriticalHit(random));
+            if (health2 <= 0) {
+                return turns;
+            }
+
+            turns++;
+            health1 -= Battle.calculateDamage(attack2, defense1, Battle.rollCriticalHit(random));
+            if (health1 <= 0) {
+                return turns;
+            }
+        }
+    }
+
+    /**
+     * Splits the task range in half until a single task is left
+     */
+    private static class SimulationTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] stats;
+        private final int fights;
+        private final long seed;
+        private final int fromTask;
+        private final int toTask;
+
+        SimulationTask(int[] stats, int fights, long seed, int fromTask, int toTask) {
+            this.stats = stats;
+            this.fights = fights;
+            this.seed = seed;
+            this.fromTask = fromTask;
+            this.toTask = toTask;
+        }
+
+        @Override
+        protected Result compute() {
+            if (toTask - fromTask > 1) {
+                int middle = (fromTask + toTask) >>> 1;
+                SimulationTask left = new SimulationTask(stats, fights, seed, fromTask, middle);
+                SimulationTask right = new SimulationTask(stats, fights, seed, middle, toTask);
+                left.fork();
+                Result result = right.compute();
+                result.merge(left.join());
+                return result;
+            }
+
+            Result result = new Result();
+            SplittableRandom random = new SplittableRandom(taskSeed(seed, fromTask));
+            int first = fromTask * FIGHTS_PER_TASK;
+            int last = Math.min(fights, first + FIGHTS_PER_TASK);
+            for (int i = first; i < last; i++) {
+                int turns = simulateFight(stats[0], stats[1], stats[2],
+                    stats[3], stats[4], stats[5], random);
+                result.record(turns);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Aggregated outcome of a simulation run
+     */
+    public static class Result {
+        private long fights;
+        private long fighter1Wins;
+        private long totalTurns;
+        private final long[] turnCounts = new long[MAX_TRACKED_TURNS + 1];
+        private long elapsedNanos;
+
+        void record(int turns) {
+            fights++;
+            fighter1Wins += turns & 1;
+            totalTurns += turns;
+            turnCounts[Math.min(turns, MAX_TRACKED_TURNS)]++;
+        }
+
+        void merge(Result other) {
+            fights += other.fights;
+            fighter1Wins += other.fighter1Wins;
+            totalTurns += other.totalTurns;
+            for (int i = 0; i < turnCounts.length; i++) {
+                turnCounts[i] += other.turnCounts[i];
+            }
+        }
+
+        public long getFights() { return fights; }
+        public long getFighter1Wins() { return fighter1Wins; }
+        public long getFighter2Wins() { return fights - fighter1Wins; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        /**
+         * Gets how many fights lasted the given number of turns.
+         * The last bucket counts every fight of MAX_TRACKED_TURNS turns or longer.
+         */
+        public long getTurnCount(int turns) {
+            if (turns < 0 || turns > MAX_TRACKED_TURNS) return 0;
+            return turnCounts[turns];
+        }
+
+        public double getFighter1WinRate() {
+            return fights == 0 ? 0 : (double) fighter1Wins / fights;
+        }
+
+        public double getMeanTurns() {
+            return fights == 0 ? 0 : (double) totalTurns / fights;
+        }
+
+        public double getFightsPerSecond() {
+            return elapsedNanos == 0 ? 0 : fights * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d fights, fighter 1 won %.1f%%, %.2f turns on average, %.0f fights/s",
+                fights, getFighter1WinRate() * 100, getMeanTurns(), getFightsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.lutemon;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary format of the saved Lutemons and stats. A file starts with a magic
+ * number and the format version, numbers are varints and the file ends with
+ * a CRC32 of everything before it. Files are read whole and checked before
+ * decoding, so a torn or damaged file is rejected instead of loaded half way.
+ */
+final class BinaryCodec {
+    private static final int LUTEMONS_MAGIC = 0x4C55544D; // "LUTM"
+    private static final int STATS_MAGIC = 0x4C535453; // "LSTS"
+    private static final int STATS_SEGMENT_MAGIC = 0x53534547; // "SSEG"
+    static final int LUTEMONS_MANIFEST_MAGIC = 0x4C4D414E; // "LMAN"
+    static final int STATS_MANIFEST_MAGIC = 0x534D414E; // "SMAN"
+    // Version 2 saves each Lutemon's order in its location
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 5;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * DataOutputStream with varints. Unsigned ones are for counts and IDs,
+     * signed ones are zigzag encoded so small negative values stay short.
+     */
+    static class Writer extends DataOutputStream {
+        // Encodes a varint before writing it in one call
+        private final byte[] scratch = new byte[10];
+
+        Writer(OutputStream out) {
+            super(out);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            int length = 0;
+            while ((value & ~0x7F) != 0) {
+                scratch[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            scratch[length++] = (byte) value;
+            write(scratch, 0, length);
+        }
+
+        void writeSignedVarInt(int value) throws IOException {
+            writeVarInt((value << 1) ^ (value >> 31));
+        }
+
+        void writeVarLong(long value) throws IOException {
+            int length = 0;
+            while ((value & ~0x7FL) != 0) {
+                scratch[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            scratch[length++] = (byte) value;
+            write(scratch, 0, length);
+        }
+    }
+
+    /**
+     * DataInputStream that reads what Writer wrote
+     */
+    static class Reader extends DataInputStream {
+        // Format version of the file, set by open()
+        int version = VERSION;
+
+        Reader(InputStream in) {
+            super(in);
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readSignedVarInt() throws IOException {
+            int value = readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        /**
+         * Reads a count, a damaged one may decode as negative
+         */
+        int readCount() throws IOException {
+            int count = readVarInt();
+            if (count < 0) {
+                throw new IOException("Invalid count " + count);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * A decoded file with the metadata saved next to it
+     */
+    static final class Loaded<T> {
+        final T value;
+        final int idHighWaterMark;
+        final long generation;
+
+        Loaded(T value, int idHighWaterMark, long generation) {
+            this.value = value;
+            this.idHighWaterMark = idHighWaterMark;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Lists the segment files of the Lutemons or the stats and what was saved
+     * next to them. Replacing it is what makes a save take effect.
+     */
+    static final class Manifest {
+        long generation;
+        int idHighWaterMark = -1;
+        int totalBattles;
+        int totalTrainings;
+        int totalTournaments;
+        // Generation of the file that holds each segment, by segment index
+        final TreeMap<Integer, Long> segments = new TreeMap<>();
+
+        Manifest copy() {
+            Manifest copy = new Manifest();
+            copy.generation = generation;
+            copy.idHighWaterMark = idHighWaterMark;
+            copy.totalBattles = totalBattles;
+            copy.totalTrainings = totalTrainings;
+            copy.totalTournaments = totalTournaments;
+            copy.segments.putAll(segments);
+            return copy;
+        }
+    }
+
+    /**
+     * Writes a manifest, the magic number tells Lutemon and stats manifests apart
+     */
+    static void writeManifest(OutputStream out, int magic, Manifest manifest) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+        Writer writer = new Writer(new BufferedOutputStream(checked, BUFFER_SIZE));
+        writer.writeInt(magic);
+        writer.writeVarInt(VERSION);
+        writer.writeVarLong(manifest.generation);
+        writer.writeSignedVarInt(manifest.idHighWaterMark);
+        writer.writeVarInt(manifest.totalBattles);
+        writer.writeVarInt(manifest.totalTrainings);
+        writer.writeVarInt(manifest.totalTournaments);
+        writer.writeVarInt(manifest.segments.size());
+        for (Map.Entry<Integer, Long> entry : manifest.segments.entrySet()) {
+            writer.writeVarInt(entry.getKey());
+            writer.writeVarLong(entry.getValue());
+        }
+        writeChecksum(writer, checked);
+    }
+
+    /**
+     * Reads a manifest written by writeManifest()
+     * @throws IOException if the file is damaged, of another kind or from a newer version
+     */
+    static Manifest readManifest(InputStream in, int magic) throws IOException {
+        Reader reader = open(in, magic);
+        Manifest manifest = new Manifest();
+        manifest.generation = reader.readVarLong();
+        manifest.idHighWaterMark = reader.readSignedVarInt();
+        manifest.totalBattles = reader.readVarInt();
+        manifest.totalTrainings = reader.readVarInt();
+        manifest.totalTournaments = reader.readVarInt();
+        int count = reader.readCount();
+        for (int i = 0; i < count; i++) {
+            manifest.segments.put(reader.readCount(), reader.readVarLong());
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the stats of the Lutemons in one segment
+     */
+    static void writeStatsSegment(OutputStream out, List<LutemonStats> entries) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+        Writer writer = new Writer(new BufferedOutputStream(checked, BUFFER_SIZE));
+        writer.writeInt(STATS_SEGMENT_MAGIC);
+        writer.writeVarInt(VERSION);
+        writer.writeVarInt(entries.size());
+        for (LutemonStats entry : entries) {
+            entry.writeTo(writer);
+        }
+        writeChecksum(writer, checked);
+    }
+
+    /**
+     * Reads stats written by writeStatsSegment()
+     * @throws IOException if the file is damaged or from a newer version
+     */
+    static List<LutemonStats> readStatsSegment(InputStream in) throws IOException {
+        Reader reader = open(in, STATS_SEGMENT_MAGIC);
+        int count = reader.readCount();
+        List<LutemonStats> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(LutemonStats.readFrom(reader));
+        }
+        return entries;
+    }
+
+    /**
+     * Writes every location and Lutemon with its order in the location. Each
+     * species color is written once and referred to by its index after that.
+     */
+    static void writeLutemons(OutputStream out, Map<String, List<Lutemon>> locationMap,
+                              int idHighWaterMark, long generation) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+        Writer writer = new Writer(new BufferedOutputStream(checked, BUFFER_SIZE));
+        writer.writeInt(LUTEMONS_MAGIC);
+        writer.writeVarInt(VERSION);
+        writer.writeSignedVarInt(idHighWaterMark);
+        writer.writeVarLong(generation);
+        Map<String, Integer> colors = new HashMap<>();
+        writer.writeVarInt(locationMap.size());
+        for (Map.Entry<String, List<Lutemon>> entry : locationMap.entrySet()) {
+            writer.writeUTF(entry.getKey());
+            writer.writeVarInt(entry.getValue().size());
+            for (Lutemon lutemon : entry.getValue()) {
+                LutemonSnapshot state = lutemon.getSnapshot();
+                writer.writeVarInt(state.getId());
+                writer.writeUTF(state.getName());
+                Integer color = colors.get(state.getColor());
+                if (color == null) {
+                    // A new color is written right after its index
+                    writer.writeVarInt(colors.size());
+                    writer.writeUTF(state.getColor());
+                    colors.put(state.getColor(), colors.size());
+                } else {
+                    writer.writeVarInt(color);
+                }
+                writer.writeSignedVarInt(state.getAttack());
+                writer.writeSignedVarInt(state.getDefense());
+                writer.writeSignedVarInt(state.getExperience());
+                writer.writeSignedVarInt(state.getMaxHealth());
+                writer.writeSignedVarInt(state.getHealth());
+                writer.writeInt(state.getShapeSignature());
+                // Shifted so an unknown order of -1 takes one byte
+                writer.writeVarLong(lutemon.getStorageOrder() + 1);
+            }
+        }
+        writeChecksum(writer, checked);
+    }
+
+    /**
+     * Reads Lutemons written by writeLutemons()
+     * @throws IOException if the file is damaged or from a newer version
+     */
+    static Loaded<Map<String, List<Lutemon>>> readLutemons(InputStream in) throws IOException {
+        Reader reader = open(in, LUTEMONS_MAGIC);
+        int idHighWaterMark = reader.readSignedVarInt();
+        long generation = reader.readVarLong();
+        SpeciesRegistry registry = SpeciesRegistry.getDefault();
+        List<String> colors = new ArrayList<>();
+        List<Integer> species = new ArrayList<>();
+        int locationCount = reader.readCount();
+        Map<String, List<Lutemon>> locationMap = new LinkedHashMap<>();
+        for (int i = 0; i < locationCount; i++) {
+            String location = reader.readUTF();
+            int count = reader.readCount();
+            List<Lutemon> lutemons = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                int id = reader.readVarInt();
+                String name = reader.readUTF();
+                int color = reader.readCount();
+                if (color == colors.size()) {
+                    colors.add(reader.readUTF());
+                    species.add(registry.ordinalOf(colors.get(color)));
+                } else if (color > colors.size()) {
+                    throw new IOException("Invalid color index " + color);
+                }
+                Lutemon lutemon = new LutemonSnapshot(id, name, colors.get(color), species.get(color),
+                    reader.readSignedVarInt(), reader.readSignedVarInt(), reader.readSignedVarInt(),
+                    reader.readSignedVarInt(), reader.readSignedVarInt(), reader.readInt()).toLutemon();
+                if (reader.version >= 2) {
+                    lutemon.setStorageOrder(reader.readVarLong() - 1);
+                }
+                lutemons.add(lutemon);
+            }
+            locationMap.put(location, lutemons);
+        }
+        return new Loaded<>(locationMap, idHighWaterMark, generation);
+    }
+
+    /**
+     * Writes the totals and every Lutemon's stats with their histories
+     */
+    static void writeStats(OutputStream out, GlobalStats stats, long generation) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+        Writer writer = new Writer(new BufferedOutputStream(checked, BUFFER_SIZE));
+        writer.writeInt(STATS_MAGIC);
+        writer.writeVarInt(VERSION);
+        writer.writeVarLong(generation);
+        stats.writeTo(writer);
+        writeChecksum(writer, checked);
+    }
+
+    /**
+     * Reads stats written by writeStats()
+     * @throws IOException if the file is damaged or from a newer version
+     */
+    static Loaded<GlobalStats> readStats(InputStream in) throws IOException {
+        Reader reader = open(in, STATS_MAGIC);
+        long generation = reader.readVarLong();
+        GlobalStats stats = GlobalStats.readFrom(reader);
+        return new Loaded<>(stats, -1, generation);
+    }
+
+    /**
+     * Reads a whole file, checks its header and checksum and returns a reader
+     * positioned after the header
+     */
+    private static Reader open(InputStream in, int magic) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        byte[] data = bytes.toByteArray();
+        if (data.length < HEADER_SIZE + 4) {
+            throw new IOException("File is too short");
+        }
+        Reader reader = new Reader(new ByteArrayInputStream(data, 0, data.length - 4));
+        if (reader.readInt() != magic) {
+            throw new IOException("Unknown file type");
+        }
+        // Checked first, a newer version may end differently
+        int version = reader.readVarInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+        reader.version = version;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        int end = data.length - 4;
+        int expected = (data[end] & 0xFF) << 24 | (data[end + 1] & 0xFF) << 16
+            | (data[end + 2] & 0xFF) << 8 | (data[end + 3] & 0xFF);
+        if ((int) crc.getValue() != expected) {
+            throw new IOException("Checksum mismatch");
+        }
+        return reader;
+    }
+
+    private static void writeChecksum(Writer writer, CheckedOutputStream checked) throws IOException {
+        // Everything before the checksum has to reach the CRC first
+        writer.flush();
+        writer.writeInt((int) checked.getChecksum().getValue());
+        writer.flush();
+    }
+}
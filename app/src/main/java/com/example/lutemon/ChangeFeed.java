@@ -0,0 +1,134 @@
+package com.example.lutemon;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Delivers Storage changes to listeners, each on its own executor.
+ * Changes are collected until Storage publishes them, and a listener that hasn't
+ * run yet gets later changes merged into its pending batch, so a busy thread
+ * receives one batch with one change per Lutemon instead of a backlog.
+ */
+public class ChangeFeed {
+
+    /**
+     * Receives batches of changes on the executor it was added with
+     */
+    public interface Listener {
+        void onChanges(List<StorageChange> changes);
+    }
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Changes recorded since the last publish, guarded by Storage
+    private final List<StorageChange> recorded = new ArrayList<>();
+
+    /**
+     * A listener, its executor and the batch it hasn't received yet
+     */
+    private static class Subscriber implements Runnable {
+        final Listener listener;
+        final Executor executor;
+        private final Map<Integer, StorageChange> pending = new LinkedHashMap<>();
+        private boolean scheduled;
+
+        Subscriber(Listener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        void offer(List<StorageChange> changes) {
+            boolean schedule;
+            synchronized (this) {
+                for (StorageChange change : changes) {
+                    StorageChange earlier = pending.remove(change.getLutemonId());
+                    StorageChange merged = earlier == null ? change : StorageChange.merge(earlier, change);
+                    if (merged != null) {
+                        pending.put(change.getLutemonId(), merged);
+                    }
+                }
+                schedule = !scheduled && !pending.isEmpty();
+                scheduled |= schedule;
+            }
+            if (schedule) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<StorageChange> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+                scheduled = false;
+            }
+            if (!batch.isEmpty()) {
+                listener.onChanges(batch);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that receives changes on the given executor.
+     * With a direct executor it runs while Storage is locked and must be quick.
+     */
+    public void addListener(Listener listener, Executor executor) {
+        subscribers.add(new Subscriber(listener, executor));
+    }
+
+    /**
+     * Removes a listener, a batch already handed to its executor may still arrive
+     */
+    public void removeListener(Listener listener) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.listener == listener) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    public boolean hasListeners() {
+        return !subscribers.isEmpty();
+    }
+
+    /**
+     * Records a change to publish later, skipped when nobody listens
+     */
+    void record(StorageChange.Type type, int lutemonId, String oldLocation, String newLocation) {
+        if (!subscribers.isEmpty()) {
+            recorded.add(new StorageChange(type, lutemonId, oldLocation, newLocation));
+        }
+    }
+
+    /**
+     * Gets the number of changes recorded since the last publish
+     */
+    int getRecordedCount() {
+        return recorded.size();
+    }
+
+    /**
+     * Drops the changes recorded after the first count, e.g. of a rolled back transaction
+     */
+    void discard(int count) {
+        recorded.subList(count, recorded.size()).clear();
+    }
+
+    /**
+     * Hands the recorded changes to every listener
+     */
+    void publish() {
+        if (recorded.isEmpty()) {
+            return;
+        }
+        List<StorageChange> changes = new ArrayList<>(recorded);
+        recorded.clear();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(changes);
+        }
+    }
+}
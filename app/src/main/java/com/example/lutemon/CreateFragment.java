@@ -7,6 +7,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.Toast;
 import androidx.fragment.app.Fragment;
@@ -19,27 +20,57 @@ public class CreateFragment extends Fragment {
     private Storage storage;
     private EditText nameInput;
     private RadioGroup colorGroup;
+    private Button createButton;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                            Bundle savedInstanceState) {
-        // Get storage instance from MainActivity
-        storage = ((MainActivity) requireActivity()).getStorage();
-
         // Inflate the layout for this fragment
         View view = inflater.inflate(R.layout.fragment_create, container, false);
 
         // Initialize views
         nameInput = view.findViewById(R.id.name_input);
         colorGroup = view.findViewById(R.id.color_group);
-        Button createButton = view.findViewById(R.id.create_button);
+        createButton = view.findViewById(R.id.create_button);
+        addSpeciesOptions();
 
-        // Setup create button
+        // Setup create button, enabled once the storage is loaded
         createButton.setOnClickListener(v -> createLutemon());
+        createButton.setEnabled(false);
+        ((MainActivity) requireActivity()).whenStorageReady(this::enableCreate);
 
         return view;
     }
 
+    private void enableCreate(Storage loaded) {
+        // The view was destroyed while loading
+        if (createButton == null) return;
+        storage = loaded;
+        createButton.setEnabled(true);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        createButton = null;
+        storage = null;
+    }
+
+    /**
+     * Adds one radio button per species in the registry, tagged with its ordinal
+     */
+    private void addSpeciesOptions() {
+        SpeciesRegistry registry = SpeciesRegistry.getDefault();
+        for (int species = 0; species < registry.getSpeciesCount(); species++) {
+            RadioButton option = new RadioButton(requireContext());
+            option.setId(View.generateViewId());
+            option.setText(registry.getDisplayName(species));
+            option.setTag(species);
+            colorGroup.addView(option, new RadioGroup.LayoutParams(
+                RadioGroup.LayoutParams.MATCH_PARENT, RadioGroup.LayoutParams.WRAP_CONTENT));
+        }
+    }
+
     /**
      * Creates a new Lutemon with the input values
      */
@@ -55,23 +86,14 @@ public class CreateFragment extends Fragment {
         }
 
         // Get selected color
-        String color;
         int selectedId = colorGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.radio_white) {
-            color = "white";
-        } else if (selectedId == R.id.radio_green) {
-            color = "green";
-        } else if (selectedId == R.id.radio_pink) {
-            color = "pink";
-        } else if (selectedId == R.id.radio_orange) {
-            color = "orange";
-        } else if (selectedId == R.id.radio_black) {
-            color = "black";
-        } else {
+        View selected = selectedId == View.NO_ID ? null : colorGroup.findViewById(selectedId);
+        if (selected == null) {
             Log.w(TAG, "Creation failed: No color selected");
             Toast.makeText(getContext(), getString(R.string.error_color_required), Toast.LENGTH_SHORT).show();
             return;
         }
+        String color = SpeciesRegistry.getDefault().getName((Integer) selected.getTag());
 
         // Create and add Lutemon
         Lutemon newLutemon = new Lutemon(name, color);
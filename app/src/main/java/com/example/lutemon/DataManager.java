@@ -5,9 +5,14 @@ import android.os.Environment;
 import android.util.Log;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.json.JSONObject;
 import org.json.JSONArray;
 
@@ -16,10 +21,39 @@ import org.json.JSONArray;
  */
 public class DataManager {
     private static final String TAG = "DataManager";
-    private static final String LUTEMONS_FILE = "lutemons.dat";
-    private static final String STATS_FILE = "stats.dat";
+    // Manifests listing the segment files that hold the Lutemons and the stats
+    private static final String LUTEMONS_MANIFEST = "lutemons.manifest";
+    private static final String STATS_MANIFEST = "stats.manifest";
+    private static final String LUTEMONS_PREFIX = "lutemons";
+    private static final String STATS_PREFIX = "stats";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    // Added to segments that couldn't be read, saves never touch them
+    private static final String DAMAGED_SUFFIX = ".damaged";
+    // Single binary files of older versions, read once and deleted after the first save
+    private static final String LUTEMONS_FILE = "lutemons.bin";
+    private static final String STATS_FILE = "stats.bin";
+    // Java serialized files of older versions, read once and deleted after the first save
+    private static final String LEGACY_LUTEMONS_FILE = "lutemons.dat";
+    private static final String LEGACY_STATS_FILE = "stats.dat";
     private static final String EXPORT_FILE = "lutemons.json";
+    private static final String JOURNAL_FILE = "lutemons.journal";
+    // Mapped records of MappedLutemonStore and their strings
+    private static final String RECORDS_FILE = "lutemons.records";
+    private static final String STRINGS_FILE = "lutemons.strings";
+    // Order of the Lutemons in a location, unknown orders first
+    private static final Comparator<Lutemon> STORAGE_ORDER =
+        Comparator.comparingLong(Lutemon::getStorageOrder);
     private final Context context;
+    // ID high-water mark read by the last loadLutemons(), -1 for older files
+    private int loadedIdHighWaterMark = -1;
+    // Generations read by the last loads, 0 for files saved before the journal
+    private long loadedLutemonsGeneration;
+    private long loadedStatsGeneration;
+    // Manifests of the saved files, null until a load or complete save finds them intact
+    private BinaryCodec.Manifest lutemonsManifest;
+    private BinaryCodec.Manifest statsManifest;
+    // Segments found damaged by the loads, by their names before they were set aside
+    private final List<String> damagedFiles = new CopyOnWriteArrayList<>();
 
     public DataManager(Context context) {
         this.context = context;
@@ -123,38 +157,137 @@ public class DataManager {
     }
 
     /**
-     * Saves Lutemons to internal storage
+     * Saves every Lutemon to internal storage with the ID high-water mark and
+     * the journal generation they belong to. Returns once the data is on disk.
      */
-    public boolean saveLutemons(Map<String, List<Lutemon>> locationMap) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                context.openFileOutput(LUTEMONS_FILE, Context.MODE_PRIVATE))) {
-            Map<String, ArrayList<Lutemon>> serializableMap = new HashMap<>();
-            for (Map.Entry<String, List<Lutemon>> entry : locationMap.entrySet()) {
-                serializableMap.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+    public boolean saveLutemons(Map<String, List<Lutemon>> locationMap, int idHighWaterMark,
+                                long generation) {
+        SegmentedSave save = new SegmentedSave(true);
+        save.idHighWaterMark = idHighWaterMark;
+        save.putAllLutemons(locationMap);
+        return saveLutemons(save, generation);
+    }
+
+    /**
+     * Writes the Lutemon segments of a save, then replaces the manifest with one
+     * of the given generation that lists them. Segments the save doesn't include
+     * are kept unless it is complete. Returns once the data is on disk.
+     */
+    boolean saveLutemons(SegmentedSave save, long generation) {
+        BinaryCodec.Manifest manifest = nextManifest(lutemonsManifest, save.complete, generation);
+        if (manifest == null) {
+            Log.e(TAG, "Lutemons need a complete save first");
+            return false;
+        }
+        manifest.idHighWaterMark = save.idHighWaterMark;
+        if (!writeSegments(LUTEMONS_PREFIX, save.lutemonSegments, manifest)
+                || !writeManifest(LUTEMONS_MANIFEST, BinaryCodec.LUTEMONS_MANIFEST_MAGIC, manifest)) {
+            Log.e(TAG, "Error saving Lutemons");
+            return false;
+        }
+        deleteReplacedSegments(LUTEMONS_PREFIX, lutemonsManifest, manifest, save.complete);
+        lutemonsManifest = manifest;
+        Log.i(TAG, "Lutemons saved successfully");
+        if (deleteFile(LUTEMONS_FILE) | deleteFile(LEGACY_LUTEMONS_FILE)) {
+            Log.i(TAG, "Lutemons migrated to segmented files");
+        }
+        return true;
+    }
+
+    /**
+     * Loads Lutemons from the segments listed in the manifest, or from the
+     * older single file formats if they haven't been saved since the update
+     */
+    public Map<String, List<Lutemon>> loadLutemons() {
+        loadedLutemonsGeneration = 0;
+        loadedIdHighWaterMark = -1;
+        lutemonsManifest = null;
+        BinaryCodec.Manifest manifest = readManifest(LUTEMONS_MANIFEST, BinaryCodec.LUTEMONS_MANIFEST_MAGIC);
+        if (manifest == null) {
+            return loadUnsegmentedLutemons();
+        }
+        Map<String, List<Lutemon>> locationMap = createNewLutemonMap();
+        boolean intact = true;
+        for (Map.Entry<Integer, Long> segment : manifest.segments.entrySet()) {
+            String name = segmentName(LUTEMONS_PREFIX, segment.getKey(), segment.getValue());
+            try (InputStream in = openFile(name)) {
+                for (Map.Entry<String, List<Lutemon>> entry : BinaryCodec.readLutemons(in).value.entrySet()) {
+                    locationMap.computeIfAbsent(entry.getKey(), location -> new ArrayList<>())
+                        .addAll(entry.getValue());
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading " + name + ": " + e.getMessage());
+                setAside(name);
+                intact = false;
             }
-            oos.writeObject(serializableMap);
-            Log.i(TAG, "Lutemons saved successfully");
-            return true;
+        }
+        // Segments hold Lutemons in ID order, their saved orders restore each location's order
+        for (List<Lutemon> lutemons : locationMap.values()) {
+            lutemons.sort(STORAGE_ORDER);
+        }
+        loadedIdHighWaterMark = manifest.idHighWaterMark;
+        loadedLutemonsGeneration = manifest.generation;
+        // Without a manifest the next save is a complete one of what could be read,
+        // the damaged segment stays set aside
+        lutemonsManifest = intact ? manifest : null;
+        Log.i(TAG, "Lutemons loaded successfully");
+        return locationMap;
+    }
+
+    /**
+     * Renames a damaged segment so no save overwrites or deletes it, it may
+     * still be recovered by hand
+     */
+    private void setAside(String name) {
+        damagedFiles.add(name);
+        if (renameFile(name, name + DAMAGED_SUFFIX)) {
+            Log.w(TAG, "Kept damaged " + name + " as " + name + DAMAGED_SUFFIX);
+        } else {
+            Log.e(TAG, "Error setting aside " + name + ", keeping it in place");
+        }
+    }
+
+    /**
+     * Gets the segments the loads found damaged and set aside, by their old names
+     */
+    public List<String> getDamagedFiles() {
+        return new ArrayList<>(damagedFiles);
+    }
+
+    /**
+     * Loads Lutemons saved in a single binary file by older versions
+     */
+    private Map<String, List<Lutemon>> loadUnsegmentedLutemons() {
+        try (InputStream in = openFile(LUTEMONS_FILE)) {
+            BinaryCodec.Loaded<Map<String, List<Lutemon>>> loaded = BinaryCodec.readLutemons(in);
+            loadedIdHighWaterMark = loaded.idHighWaterMark;
+            loadedLutemonsGeneration = loaded.generation;
+            Log.i(TAG, "Lutemons loaded from a single file");
+            return loaded.value;
+        } catch (FileNotFoundException e) {
+            return loadLegacyLutemons();
         } catch (IOException e) {
-            Log.e(TAG, "Error saving Lutemons: " + e.getMessage());
-            return false;
+            Log.e(TAG, "Error loading Lutemons: " + e.getMessage());
+            return loadLegacyLutemons();
         }
     }
 
     /**
-     * Loads Lutemons from internal storage
+     * Loads Lutemons saved with Java serialization by older versions
      */
     @SuppressWarnings("unchecked")
-    public Map<String, List<Lutemon>> loadLutemons() {
+    private Map<String, List<Lutemon>> loadLegacyLutemons() {
         try (ObjectInputStream ois = new ObjectInputStream(
-                context.openFileInput(LUTEMONS_FILE))) {
-            Map<String, ArrayList<Lutemon>> loadedMap = 
+                new BufferedInputStream(openFile(LEGACY_LUTEMONS_FILE)))) {
+            Map<String, ArrayList<Lutemon>> loadedMap =
                 (Map<String, ArrayList<Lutemon>>) ois.readObject();
             Map<String, List<Lutemon>> resultMap = new HashMap<>();
             for (Map.Entry<String, ArrayList<Lutemon>> entry : loadedMap.entrySet()) {
                 resultMap.put(entry.getKey(), new ArrayList<>(entry.getValue()));
             }
-            Log.i(TAG, "Lutemons loaded successfully");
+            loadedIdHighWaterMark = readIdHighWaterMark(ois);
+            loadedLutemonsGeneration = readGeneration(ois);
+            Log.i(TAG, "Lutemons loaded from the old format");
             return resultMap;
         } catch (FileNotFoundException e) {
             Log.i(TAG, "No saved Lutemons found, creating new data");
@@ -165,6 +298,50 @@ public class DataManager {
         }
     }
 
+    /**
+     * Reads the ID high-water mark after the Lutemons, files saved before it existed end early
+     */
+    static int readIdHighWaterMark(ObjectInputStream ois) throws IOException {
+        try {
+            return ois.readInt();
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the journal generation at the end of a file, files saved before it existed end early
+     */
+    static long readGeneration(ObjectInputStream ois) throws IOException {
+        try {
+            return ois.readLong();
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the ID high-water mark saved with the Lutemons
+     * @return the mark from the last loadLutemons(), or -1 if none was saved
+     */
+    public int getLoadedIdHighWaterMark() {
+        return loadedIdHighWaterMark;
+    }
+
+    /**
+     * Gets the journal generation of the Lutemons read by the last loadLutemons()
+     */
+    public long getLoadedLutemonsGeneration() {
+        return loadedLutemonsGeneration;
+    }
+
+    /**
+     * Gets the journal generation of the stats read by the last loadStats()
+     */
+    public long getLoadedStatsGeneration() {
+        return loadedStatsGeneration;
+    }
+
     /**
      * Creates an empty Lutemon location map
      */
@@ -177,28 +354,97 @@ public class DataManager {
     }
 
     /**
-     * Saves stats to internal storage
+     * Saves stats to internal storage with their journal generation, returns
+     * once the data is on disk
      */
-    public boolean saveStats(GlobalStats stats) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                context.openFileOutput(STATS_FILE, Context.MODE_PRIVATE))) {
-            oos.writeObject(stats);
-            Log.i(TAG, "Stats saved successfully");
-            return true;
-        } catch (IOException e) {
-            Log.e(TAG, "Error saving stats: " + e.getMessage());
+    public boolean saveStats(GlobalStats stats, long generation) {
+        SegmentedSave save = new SegmentedSave(true);
+        save.putAllStats(stats);
+        return saveStats(save, generation);
+    }
+
+    /**
+     * Writes the stats segments and totals of a save like saveLutemons(SegmentedSave, long)
+     */
+    boolean saveStats(SegmentedSave save, long generation) {
+        BinaryCodec.Manifest manifest = nextManifest(statsManifest, save.complete, generation);
+        if (manifest == null) {
+            Log.e(TAG, "Stats need a complete save first");
             return false;
         }
+        manifest.totalBattles = save.totalBattles;
+        manifest.totalTrainings = save.totalTrainings;
+        manifest.totalTournaments = save.totalTournaments;
+        if (!writeSegments(STATS_PREFIX, save.statsSegments, manifest)
+                || !writeManifest(STATS_MANIFEST, BinaryCodec.STATS_MANIFEST_MAGIC, manifest)) {
+            Log.e(TAG, "Error saving stats");
+            return false;
+        }
+        deleteReplacedSegments(STATS_PREFIX, statsManifest, manifest, save.complete);
+        statsManifest = manifest;
+        Log.i(TAG, "Stats saved successfully");
+        if (deleteFile(STATS_FILE) | deleteFile(LEGACY_STATS_FILE)) {
+            Log.i(TAG, "Stats migrated to segmented files");
+        }
+        return true;
     }
 
     /**
-     * Loads stats from internal storage
+     * Loads stats from the segments listed in the manifest, or from the older
+     * single file formats if they haven't been saved since the update
      */
     public GlobalStats loadStats() {
+        loadedStatsGeneration = 0;
+        statsManifest = null;
+        BinaryCodec.Manifest manifest = readManifest(STATS_MANIFEST, BinaryCodec.STATS_MANIFEST_MAGIC);
+        if (manifest == null) {
+            return loadUnsegmentedStats();
+        }
+        GlobalStats stats = new GlobalStats();
+        stats.restoreTotals(manifest.totalBattles, manifest.totalTrainings, manifest.totalTournaments);
+        boolean intact = true;
+        for (Map.Entry<Integer, Long> segment : manifest.segments.entrySet()) {
+            String name = segmentName(STATS_PREFIX, segment.getKey(), segment.getValue());
+            try (InputStream in = openFile(name)) {
+                stats.restoreLutemonStats(BinaryCodec.readStatsSegment(in));
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading " + name + ": " + e.getMessage());
+                setAside(name);
+                intact = false;
+            }
+        }
+        loadedStatsGeneration = manifest.generation;
+        statsManifest = intact ? manifest : null;
+        Log.i(TAG, "Stats loaded successfully");
+        return stats;
+    }
+
+    /**
+     * Loads stats saved in a single binary file by older versions
+     */
+    private GlobalStats loadUnsegmentedStats() {
+        try (InputStream in = openFile(STATS_FILE)) {
+            BinaryCodec.Loaded<GlobalStats> loaded = BinaryCodec.readStats(in);
+            loadedStatsGeneration = loaded.generation;
+            Log.i(TAG, "Stats loaded from a single file");
+            return loaded.value;
+        } catch (FileNotFoundException e) {
+            return loadLegacyStats();
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading stats: " + e.getMessage());
+            return loadLegacyStats();
+        }
+    }
+
+    /**
+     * Loads stats saved with Java serialization by older versions
+     */
+    private GlobalStats loadLegacyStats() {
         try (ObjectInputStream ois = new ObjectInputStream(
-                context.openFileInput(STATS_FILE))) {
+                new BufferedInputStream(openFile(LEGACY_STATS_FILE)))) {
             GlobalStats stats = (GlobalStats) ois.readObject();
-            Log.i(TAG, "Stats loaded successfully");
+            loadedStatsGeneration = readGeneration(ois);
+            Log.i(TAG, "Stats loaded from the old format");
             return stats;
         } catch (FileNotFoundException e) {
             Log.i(TAG, "No saved stats found, creating new data");
@@ -209,12 +455,264 @@ public class DataManager {
         }
     }
 
+    /**
+     * Checks if the last loads read segmented files whose manifests can take
+     * incremental saves
+     */
+    public boolean isSegmented() {
+        return lutemonsManifest != null && statsManifest != null;
+    }
+
+    /**
+     * Starts the manifest of a save from the current one, or from scratch for a complete save
+     * @return the new manifest, or null if an incremental save has nothing to build on
+     */
+    private static BinaryCodec.Manifest nextManifest(BinaryCodec.Manifest current, boolean complete,
+                                                     long generation) {
+        BinaryCodec.Manifest next;
+        if (complete) {
+            next = new BinaryCodec.Manifest();
+        } else if (current != null) {
+            next = current.copy();
+        } else {
+            return null;
+        }
+        next.generation = generation;
+        return next;
+    }
+
+    /**
+     * Writes the segments of a save as files of the manifest's generation and lists
+     * them in the manifest, empty segments are dropped from it
+     */
+    private boolean writeSegments(String prefix, IntObjectMap<byte[]> segments,
+                                  BinaryCodec.Manifest manifest) {
+        for (int segment : sortedKeys(segments)) {
+            byte[] data = segments.get(segment);
+            if (data.length == 0) {
+                manifest.segments.remove(segment);
+            } else if (writeFile(segmentName(prefix, segment, manifest.generation), data)) {
+                manifest.segments.put(segment, manifest.generation);
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] sortedKeys(IntObjectMap<?> map) {
+        int[] keys = new int[map.size()];
+        int[] count = {0};
+        map.forEach((key, value) -> keys[count[0]++] = key);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Deletes the segment files the previous manifest listed and the new one doesn't.
+     * A complete save also deletes files left behind by a crash before a manifest was written.
+     */
+    private void deleteReplacedSegments(String prefix, BinaryCodec.Manifest previous,
+                                        BinaryCodec.Manifest next, boolean complete) {
+        Set<String> kept = segmentNames(prefix, next);
+        // Damaged segments that couldn't be renamed are the only copy of their data
+        kept.addAll(damagedFiles);
+        if (complete) {
+            for (String name : listFiles()) {
+                if (isSegmentFile(prefix, name) && !kept.contains(name)) {
+                    deleteFile(name);
+                }
+            }
+        } else {
+            for (String name : segmentNames(prefix, previous)) {
+                if (!kept.contains(name)) {
+                    deleteFile(name);
+                }
+            }
+        }
+    }
+
+    private static Set<String> segmentNames(String prefix, BinaryCodec.Manifest manifest) {
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<Integer, Long> segment : manifest.segments.entrySet()) {
+            names.add(segmentName(prefix, segment.getKey(), segment.getValue()));
+        }
+        return names;
+    }
+
+    /**
+     * Names a segment file after its index and the generation that wrote it,
+     * so a save never overwrites a file the current manifest lists
+     */
+    static String segmentName(String prefix, int segment, long generation) {
+        return prefix + "." + segment + "." + generation + SEGMENT_SUFFIX;
+    }
+
+    private static boolean isSegmentFile(String prefix, String name) {
+        return name.startsWith(prefix + ".") && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private boolean writeManifest(String name, int magic, BinaryCodec.Manifest manifest) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            BinaryCodec.writeManifest(bytes, magic, manifest);
+        } catch (IOException e) {
+            // Only writes to memory
+            throw new IllegalStateException(e);
+        }
+        return writeFile(name, bytes.toByteArray());
+    }
+
+    /**
+     * Reads a manifest
+     * @return the manifest, or null if there is none or it is damaged
+     */
+    private BinaryCodec.Manifest readManifest(String name, int magic) {
+        try (InputStream in = openFile(name)) {
+            return BinaryCodec.readManifest(in, magic);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens a file in internal storage
+     */
+    InputStream openFile(String name) throws FileNotFoundException {
+        return context.openFileInput(name);
+    }
+
+    /**
+     * Replaces a file in internal storage in one step. The data goes to a temporary
+     * file that is synced and renamed over the old one, so a crash leaves either
+     * the old or the new file whole.
+     */
+    boolean writeFile(String name, byte[] data) {
+        String temp = name + ".tmp";
+        try (FileOutputStream fos = context.openFileOutput(temp, Context.MODE_PRIVATE)) {
+            fos.write(data);
+            fos.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing " + name + ": " + e.getMessage());
+            return false;
+        }
+        File dir = context.getFilesDir();
+        if (!new File(dir, temp).renameTo(new File(dir, name))) {
+            Log.e(TAG, "Error replacing " + name);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deletes a file in internal storage
+     * @return false if there was no such file
+     */
+    boolean deleteFile(String name) {
+        return context.deleteFile(name);
+    }
+
+    /**
+     * Renames a file in internal storage
+     * @return false if it couldn't be renamed
+     */
+    boolean renameFile(String from, String to) {
+        File dir = context.getFilesDir();
+        return new File(dir, from).renameTo(new File(dir, to));
+    }
+
+    /**
+     * Lists the files in internal storage
+     */
+    String[] listFiles() {
+        return context.fileList();
+    }
+
+    /**
+     * Reads the whole change journal
+     * @return the journal, or null if there is none
+     */
+    public byte[] readJournal() {
+        try (InputStream in = new BufferedInputStream(context.openFileInput(JOURNAL_FILE))) {
+            ByteArrayOutputStream journal = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                journal.write(buffer, 0, read);
+            }
+            return journal.toByteArray();
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading journal: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Appends records to the change journal, returns once they are on disk
+     */
+    public boolean appendJournal(byte[] records) {
+        return writeJournal(records, Context.MODE_APPEND);
+    }
+
+    /**
+     * Replaces the change journal with a new one, e.g. an empty one after a full save
+     */
+    public boolean replaceJournal(byte[] journal) {
+        return writeJournal(journal, Context.MODE_PRIVATE);
+    }
+
+    private boolean writeJournal(byte[] data, int mode) {
+        try (FileOutputStream fos = context.openFileOutput(JOURNAL_FILE, mode)) {
+            fos.write(data);
+            fos.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Opens the mapped Lutemon store, creating it if needed
+     * @return the store, or null if it can't be opened
+     */
+    public MappedLutemonStore openLutemonStore() {
+        try {
+            return MappedLutemonStore.open(new File(context.getFilesDir(), RECORDS_FILE),
+                new File(context.getFilesDir(), STRINGS_FILE));
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening mapped store: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Deletes all saved data
      */
     public void clearData() {
+        for (String name : listFiles()) {
+            if (isSegmentFile(LUTEMONS_PREFIX, name) || isSegmentFile(STATS_PREFIX, name)
+                    || name.endsWith(SEGMENT_SUFFIX + DAMAGED_SUFFIX)) {
+                deleteFile(name);
+            }
+        }
+        damagedFiles.clear();
+        lutemonsManifest = null;
+        statsManifest = null;
+        context.deleteFile(LUTEMONS_MANIFEST);
+        context.deleteFile(STATS_MANIFEST);
         context.deleteFile(LUTEMONS_FILE);
         context.deleteFile(STATS_FILE);
+        context.deleteFile(LEGACY_LUTEMONS_FILE);
+        context.deleteFile(LEGACY_STATS_FILE);
+        context.deleteFile(JOURNAL_FILE);
+        context.deleteFile(RECORDS_FILE);
+        context.deleteFile(STRINGS_FILE);
         Log.i(TAG, "All saved data cleared");
     }
 }
\ No newline at end of file
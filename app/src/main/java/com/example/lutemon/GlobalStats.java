@@ -1,83 +1,248 @@
 package com.example.lutemon;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * Manages global statistics and individual Lutemon stats
+ * Manages global statistics and individual Lutemon stats.
+ * Updates are synchronized so results from parallel arenas are never lost.
  */
 public class GlobalStats implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Saved fields as in older files, lutemonStats is only set there and written as null now
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("totalBattles", int.class),
+        new ObjectStreamField("totalTrainings", int.class),
+        new ObjectStreamField("totalTournaments", int.class),
+        new ObjectStreamField("lutemonStats", Map.class)
+    };
     
     private int totalBattles;
     private int totalTrainings;
-    private Map<Integer, LutemonStats> lutemonStats;
+    private int totalTournaments;
+    // Written after the fields with IntObjectMap's own compact format
+    private transient IntObjectMap<LutemonStats> lutemonStats;
+    // Lutemons whose stats changed since the last drainDirtyIds(), so a save
+    // only rewrites the segments that hold them
+    private transient Set<Integer> dirtyIds = new HashSet<>();
 
     public GlobalStats() {
         this.totalBattles = 0;
         this.totalTrainings = 0;
-        this.lutemonStats = new HashMap<>();
+        this.lutemonStats = new IntObjectMap<>();
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("totalBattles", totalBattles);
+        fields.put("totalTrainings", totalTrainings);
+        fields.put("totalTournaments", totalTournaments);
+        fields.put("lutemonStats", null);
+        out.writeFields();
+        out.writeObject(lutemonStats);
+    }
+
+    /**
+     * Reads both formats, older files keep the stats in a HashMap field
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        totalBattles = fields.get("totalBattles", 0);
+        totalTrainings = fields.get("totalTrainings", 0);
+        totalTournaments = fields.get("totalTournaments", 0);
+        dirtyIds = new HashSet<>();
+        Map<Integer, LutemonStats> legacyStats = (Map<Integer, LutemonStats>) fields.get("lutemonStats", null);
+        if (legacyStats != null) {
+            lutemonStats = new IntObjectMap<>(legacyStats.size());
+            for (Map.Entry<Integer, LutemonStats> entry : legacyStats.entrySet()) {
+                lutemonStats.put(entry.getKey(), entry.getValue());
+            }
+        } else {
+            lutemonStats = (IntObjectMap<LutemonStats>) in.readObject();
+        }
     }
 
     /**
      * Gets stats for a specific Lutemon
      */
-    public LutemonStats getLutemonStats(int lutemonId) {
+    public synchronized LutemonStats getLutemonStats(int lutemonId) {
         return lutemonStats.get(lutemonId);
     }
 
     /**
      * Adds stats for a Lutemon
      */
-    public void addLutemonStats(LutemonStats stats) {
+    public synchronized void addLutemonStats(LutemonStats stats) {
         lutemonStats.put(stats.getLutemonId(), stats);
+        dirtyIds.add(stats.getLutemonId());
     }
 
     /**
      * Records a battle between two Lutemons
      */
-    public void recordBattle(int winnerId, int loserId) {
+    public synchronized void recordBattle(int winnerId, int loserId) {
         totalBattles++;
         LutemonStats winnerStats = lutemonStats.get(winnerId);
         LutemonStats loserStats = lutemonStats.get(loserId);
         
         if (winnerStats != null) winnerStats.recordWin();
         if (loserStats != null) loserStats.recordLoss();
+        dirtyIds.add(winnerId);
+        dirtyIds.add(loserId);
     }
 
     /**
      * Records a training session for a Lutemon
      */
-    public void recordTraining(Lutemon lutemon) {
+    public synchronized void recordTraining(Lutemon lutemon) {
         totalTrainings++;
         LutemonStats stats = lutemonStats.get(lutemon.getId());
         if (stats != null) {
             stats.recordTraining();
             stats.recordStats(lutemon);
+            dirtyIds.add(lutemon.getId());
         }
     }
 
+    /**
+     * Records the ratings of a whole tournament at once
+     */
+    public synchronized void recordTournament(Tournament.Result result) {
+        totalTournaments++;
+        for (int i = 0; i < result.getPlayerCount(); i++) {
+            LutemonStats stats = lutemonStats.get(result.getId(i));
+            if (stats != null) {
+                stats.recordRating((int) Math.round(result.getRating(i)));
+                dirtyIds.add(result.getId(i));
+            }
+        }
+    }
+
+    /**
+     * Adds stats read from a saved file, they aren't marked changed
+     */
+    synchronized void restoreLutemonStats(List<LutemonStats> entries) {
+        for (LutemonStats entry : entries) {
+            lutemonStats.put(entry.getLutemonId(), entry);
+        }
+    }
+
+    /**
+     * Marks a Lutemon's stats changed, e.g. after changing its LutemonStats directly
+     */
+    public synchronized void markDirty(int lutemonId) {
+        dirtyIds.add(lutemonId);
+    }
+
+    /**
+     * Gets the Lutemons whose stats changed since the last call and forgets them
+     */
+    synchronized int[] drainDirtyIds() {
+        int[] ids = new int[dirtyIds.size()];
+        int i = 0;
+        for (int id : dirtyIds) {
+            ids[i++] = id;
+        }
+        dirtyIds.clear();
+        return ids;
+    }
+
     /**
      * Gets stats for color distribution
      */
-    public Map<String, Integer> getColorDistribution() {
+    public synchronized Map<String, Integer> getColorDistribution() {
         Map<String, Integer> distribution = new HashMap<>();
+        lutemonStats.forEach((id, stats) -> distribution.merge(stats.getColorType(), 1, Integer::sum));
+        return distribution;
+    }
+
+    /**
+     * Puts back earlier stats of a Lutemon, e.g. when rolling back
+     * @param stats the stats, or null to drop the Lutemon's
+     */
+    synchronized void replaceLutemonStats(int lutemonId, LutemonStats stats) {
+        if (stats == null) {
+            lutemonStats.remove(lutemonId);
+        } else {
+            lutemonStats.put(lutemonId, stats);
+        }
+    }
+
+    /**
+     * Restores the totals, e.g. from the journal
+     */
+    synchronized void restoreTotals(int totalBattles, int totalTrainings, int totalTournaments) {
+        this.totalBattles = totalBattles;
+        this.totalTrainings = totalTrainings;
+        this.totalTournaments = totalTournaments;
+    }
+
+    /**
+     * Writes the totals and every Lutemon's stats in the binary format of the stats file
+     */
+    synchronized void writeTo(BinaryCodec.Writer out) throws IOException {
+        out.writeVarInt(totalBattles);
+        out.writeVarInt(totalTrainings);
+        out.writeVarInt(totalTournaments);
+        out.writeVarInt(lutemonStats.size());
         for (LutemonStats stats : lutemonStats.values()) {
-            String color = stats.getColorType();
-            distribution.merge(color, 1, Integer::sum);
+            stats.writeTo(out);
         }
-        return distribution;
     }
 
     /**
-     * Gets all Lutemon stats
+     * Reads stats written by writeTo()
+     */
+    static GlobalStats readFrom(BinaryCodec.Reader in) throws IOException {
+        GlobalStats stats = new GlobalStats();
+        stats.totalBattles = in.readVarInt();
+        stats.totalTrainings = in.readVarInt();
+        stats.totalTournaments = in.readVarInt();
+        int count = in.readCount();
+        for (int i = 0; i < count; i++) {
+            LutemonStats lutemonStats = LutemonStats.readFrom(in);
+            stats.lutemonStats.put(lutemonStats.getLutemonId(), lutemonStats);
+        }
+        return stats;
+    }
+
+    /**
+     * Gets a copy of all Lutemon stats by Lutemon ID
+     */
+    public synchronized Map<Integer, LutemonStats> getAllLutemonStats() {
+        Map<Integer, LutemonStats> copy = new HashMap<>();
+        lutemonStats.forEach(copy::put);
+        return copy;
+    }
+
+    /**
+     * Gets the IDs of all Lutemons with stats
+     */
+    public synchronized int[] getLutemonIds() {
+        int[] ids = new int[lutemonStats.size()];
+        int[] count = {0};
+        lutemonStats.forEach((id, stats) -> ids[count[0]++] = id);
+        return ids;
+    }
+
+    /**
+     * Gets the number of Lutemons with stats
      */
-    public Map<Integer, LutemonStats> getAllLutemonStats() {
-        return lutemonStats;
+    public synchronized int getLutemonStatsCount() {
+        return lutemonStats.size();
     }
 
     // Getters
     public int getTotalBattles() { return totalBattles; }
     public int getTotalTrainings() { return totalTrainings; }
+    public int getTotalTournaments() { return totalTournaments; }
 }
\ No newline at end of file
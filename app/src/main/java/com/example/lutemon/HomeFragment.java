@@ -1,6 +1,9 @@
 package com.example.lutemon;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -14,56 +17,137 @@ import androidx.navigation.Navigation;
 import java.util.List;
 
 /**
- * Fragment displaying Lutemons at home and allowing them to be moved
+ * Fragment displaying Lutemons at home and allowing them to be moved.
+ * Rows are built once and then patched from the Storage change feed.
  */
 public class HomeFragment extends Fragment {
     private Storage storage;
     private LinearLayout lutemonContainer;
     private View emptyView;
+    // Row of every Lutemon shown, by ID
+    private final SparseArray<View> rows = new SparseArray<>();
+    private final ChangeFeed.Listener changeListener = this::applyChanges;
+    private final StorageLoader.Callback storageCallback = new StorageLoader.Callback() {
+        @Override
+        public void onPreview(StorageLoader.Preview preview) {
+            showPreview(preview);
+        }
+
+        @Override
+        public void onLoaded(Storage loaded) {
+            showLutemons(loaded);
+        }
+    };
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                            Bundle savedInstanceState) {
-        // Get storage instance from MainActivity
-        storage = ((MainActivity) requireActivity()).getStorage();
-
         // Inflate the layout for this fragment
         View view = inflater.inflate(R.layout.fragment_home, container, false);
         lutemonContainer = view.findViewById(R.id.lutemon_container);
         emptyView = view.findViewById(R.id.empty_view);
         
-        // Load and display Lutemons
-        updateLutemonList();
+        // Display the preview if one is offered, then the Lutemons once the storage is loaded
+        ((MainActivity) requireActivity()).whenStorageReady(storageCallback);
         
         return view;
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
+    /**
+     * Shows the Lutemons at home, then follows changes on the main thread
+     */
+    private void showLutemons(Storage loaded) {
+        // The view was destroyed while loading, or this view already has them
+        if (lutemonContainer == null || storage != null) return;
+        storage = loaded;
         updateLutemonList();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        storage.addChangeListener(changeListener, mainHandler::post);
+    }
+
+    /**
+     * Shows the first Lutemons at home from the mapped store while the storage loads.
+     * Their buttons are disabled, showLutemons() replaces the rows.
+     */
+    private void showPreview(StorageLoader.Preview preview) {
+        if (lutemonContainer == null || storage != null) return;
+        lutemonContainer.removeAllViews();
+        rows.clear();
+        for (LutemonSnapshot state : preview.getHome()) {
+            Lutemon lutemon = state.toLutemon();
+            addRow(lutemon);
+            View row = rows.get(lutemon.getId());
+            row.findViewById(R.id.button_train).setEnabled(false);
+            row.findViewById(R.id.button_battle).setEnabled(false);
+        }
+        updateEmptyView();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (storage != null) {
+            storage.removeChangeListener(changeListener);
+            storage = null;
+        }
+        lutemonContainer = null;
+        rows.clear();
     }
 
     /**
-     * Updates the list of Lutemons displayed
+     * Rebuilds the list of Lutemons displayed
      */
     private void updateLutemonList() {
         lutemonContainer.removeAllViews();
+        rows.clear();
         List<Lutemon> lutemons = storage.getLutemonsByLocation(Storage.HOME);
-        
-        // Show/hide empty view based on list size
-        if (lutemons.isEmpty()) {
+        for (Lutemon lutemon : lutemons) {
+            addRow(lutemon);
+        }
+        updateEmptyView();
+    }
+
+    /**
+     * Adds, removes or refreshes only the rows of Lutemons that changed
+     */
+    private void applyChanges(List<StorageChange> changes) {
+        if (getView() == null) return;
+        for (StorageChange change : changes) {
+            int id = change.getLutemonId();
+            View row = rows.get(id);
+            if (Storage.HOME.equals(change.getNewLocation())) {
+                Lutemon lutemon = storage.getLutemon(id);
+                if (lutemon == null) continue;
+                if (row == null) {
+                    addRow(lutemon);
+                } else {
+                    bindLutemonView(row, lutemon);
+                }
+            } else if (row != null) {
+                lutemonContainer.removeView(row);
+                rows.remove(id);
+            }
+        }
+        updateEmptyView();
+    }
+
+    private void addRow(Lutemon lutemon) {
+        View row = createLutemonView(lutemon);
+        rows.put(lutemon.getId(), row);
+        lutemonContainer.addView(row);
+    }
+
+    /**
+     * Shows the empty view when no Lutemon is home
+     */
+    private void updateEmptyView() {
+        if (rows.size() == 0) {
             emptyView.setVisibility(View.VISIBLE);
             lutemonContainer.setVisibility(View.GONE);
         } else {
             emptyView.setVisibility(View.GONE);
             lutemonContainer.setVisibility(View.VISIBLE);
         }
-        
-        for (Lutemon lutemon : lutemons) {
-            View lutemonView = createLutemonView(lutemon);
-            lutemonContainer.addView(lutemonView);
-        }
     }
 
     /**
@@ -73,24 +157,13 @@ public class HomeFragment extends Fragment {
         View view = LayoutInflater.from(getContext())
                 .inflate(R.layout.item_lutemon, lutemonContainer, false);
 
-        // Set Lutemon info
-        TextView nameText = view.findViewById(R.id.lutemon_name);
-        TextView statsText = view.findViewById(R.id.lutemon_stats);
         Button trainButton = view.findViewById(R.id.button_train);
         Button battleButton = view.findViewById(R.id.button_battle);
-        LutemonShapeView shapeView = view.findViewById(R.id.lutemon_shape);
-
-        nameText.setText(getString(R.string.lutemon_name_format, 
-            lutemon.getName(), lutemon.getColor()));
-        statsText.setText(String.format("Attack: %d, Defense: %d, Exp: %d, HP: %d/%d",
-                lutemon.getTotalAttack(), lutemon.getDefense(),
-                lutemon.getExperience(), lutemon.getHealth(), lutemon.getMaxHealth()));
-        shapeView.setLutemon(lutemon);
+        bindLutemonView(view, lutemon);
 
-        // Setup buttons
+        // Setup buttons, the change feed updates the rows afterwards
         trainButton.setOnClickListener(v -> {
             storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
-            updateLutemonList();
         });
 
         battleButton.setOnClickListener(v -> {
@@ -102,7 +175,26 @@ public class HomeFragment extends Fragment {
                     Toast.LENGTH_SHORT
                 ).show();
             }
-            updateLutemonList();
+        });
+
+        // Long press sends the Lutemon to battle against its closest match
+        battleButton.setOnLongClickListener(v -> {
+            int opponentId = storage.quickMatch(lutemon.getId());
+            if (opponentId < 0) {
+                Toast.makeText(
+                    requireContext(),
+                    getString(R.string.error_no_opponent),
+                    Toast.LENGTH_SHORT
+                ).show();
+            } else {
+                Toast.makeText(
+                    requireContext(),
+                    getString(R.string.quick_match_format, lutemon.getName(),
+                        storage.getLutemon(opponentId).getName()),
+                    Toast.LENGTH_SHORT
+                ).show();
+            }
+            return true;
         });
 
         // Navigate to stats detail on click
@@ -116,4 +208,20 @@ public class HomeFragment extends Fragment {
 
         return view;
     }
+
+    /**
+     * Sets the name, stats and shape shown in a row
+     */
+    private void bindLutemonView(View view, Lutemon lutemon) {
+        TextView nameText = view.findViewById(R.id.lutemon_name);
+        TextView statsText = view.findViewById(R.id.lutemon_stats);
+        LutemonShapeView shapeView = view.findViewById(R.id.lutemon_shape);
+
+        nameText.setText(getString(R.string.lutemon_name_format, 
+            lutemon.getName(), lutemon.getColor()));
+        statsText.setText(String.format("Attack: %d, Defense: %d, Exp: %d, HP: %d/%d",
+                lutemon.getTotalAttack(), lutemon.getDefense(),
+                lutemon.getExperience(), lutemon.getHealth(), lutemon.getMaxHealth()));
+        shapeView.setLutemon(lutemon);
+    }
 }
\ No newline at end of file
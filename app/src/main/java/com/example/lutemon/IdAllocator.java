@@ -0,0 +1,73 @@
+package com.example.lutemon;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread safe ID allocator. Every thread claims a block of IDs from a shared
+ * high-water mark and hands them out locally, so bulk creation on several threads
+ * doesn't contend on one atomic. IDs are unique but not always consecutive.
+ */
+public final class IdAllocator {
+    static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final int blockSize;
+    // Highest ID claimed by any block so far
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+    // Bumped by advanceTo() so blocks claimed before it are dropped
+    private volatile int epoch;
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    /**
+     * IDs claimed by one thread, next up to end (inclusive)
+     */
+    private static class Block {
+        int next = 1;
+        int end = 0;
+        int epoch = -1;
+    }
+
+    public IdAllocator() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    public IdAllocator(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Gets a new unique ID, starting from 1
+     */
+    public int next() {
+        Block block = blocks.get();
+        int currentEpoch = epoch;
+        if (block.epoch != currentEpoch || block.next > block.end) {
+            int start = highWaterMark.getAndAdd(blockSize);
+            if (start > Integer.MAX_VALUE - blockSize) {
+                throw new IllegalStateException("Lutemon IDs exhausted");
+            }
+            block.next = start + 1;
+            block.end = start + blockSize;
+            block.epoch = currentEpoch;
+        }
+        return block.next++;
+    }
+
+    /**
+     * Makes sure no ID up to maxId is handed out, e.g. after loading saved Lutemons.
+     * The mark only moves up, and blocks claimed earlier are dropped.
+     */
+    public void advanceTo(int maxId) {
+        highWaterMark.accumulateAndGet(maxId, Math::max);
+        epoch++;
+    }
+
+    /**
+     * Gets the highest ID that may have been handed out, to be saved with the Lutemons
+     */
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+}
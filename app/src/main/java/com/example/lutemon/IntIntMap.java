@@ -0,0 +1,214 @@
+package com.example.lutemon;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Map from int keys to int values with open addressing and linear probing,
+ * in two flat int arrays. get() returns a fixed missing value for absent keys
+ * instead of null. Not thread safe.
+ */
+public final class IntIntMap implements Serializable {
+    private static final long serialVersionUID = 1L;
+    // Marks a free slot; key 0 itself is kept outside the table
+    private static final int FREE = 0;
+
+    private final int missingValue;
+    private transient int[] keys;
+    private transient int[] values;
+    private transient int size;
+    private transient boolean hasZeroKey;
+    private transient int zeroValue;
+
+    /**
+     * Creates a map that returns -1 for absent keys
+     */
+    public IntIntMap() {
+        this(8, -1);
+    }
+
+    /**
+     * Creates a map that holds expectedSize mappings without growing
+     */
+    public IntIntMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(IntObjectMap.capacityFor(expectedSize));
+    }
+
+    /**
+     * Spreads the key bits so consecutive IDs don't form long probe runs
+     */
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the value returned by get() and remove() for absent keys
+     */
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE) {
+            return hasZeroKey;
+        }
+        return keys[indexOf(key)] == key;
+    }
+
+    /**
+     * Gets the value for a key, or the missing value if there is none
+     */
+    public int get(int key) {
+        if (key == FREE) {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        int slot = indexOf(key);
+        return keys[slot] == key ? values[slot] : missingValue;
+    }
+
+    /**
+     * Maps the key to the value
+     * @return the previous value, or the missing value if there was none
+     */
+    public int put(int key, int value) {
+        if (key == FREE) {
+            int previous = hasZeroKey ? zeroValue : missingValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int slot = indexOf(key);
+        if (keys[slot] == key) {
+            int previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            allocate(keys.length * 2);
+            slot = indexOf(key);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return missingValue;
+    }
+
+    /**
+     * Removes the mapping for a key
+     * @return the removed value, or the missing value if there was none
+     */
+    public int remove(int key) {
+        if (key == FREE) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        int slot = indexOf(key);
+        if (keys[slot] != key) {
+            return missingValue;
+        }
+        int previous = values[slot];
+        size--;
+        // Shift later entries of the probe run back, see IntObjectMap.remove()
+        int mask = keys.length - 1;
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (keys[next] != FREE) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[free] = FREE;
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        if (oldKeys == null) {
+            return;
+        }
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Writes the size and then each key and value, not the table itself
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        if (hasZeroKey) {
+            out.writeInt(FREE);
+            out.writeInt(zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                out.writeInt(keys[i]);
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid map size " + count);
+        }
+        allocate(IntObjectMap.capacityFor(count));
+        for (int i = 0; i < count; i++) {
+            int key = in.readInt();
+            put(key, in.readInt());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.lutemon;
+
+/**
+ * Fixed-size ring buffer of primitive ints.
+ * When full, adding overwrites the oldest value. The buffer is reused after clear(),
+ * so adding never allocates.
+ */
+public class IntRingBuffer {
+    private final int[] values;
+    private int start;
+    private int size;
+
+    public IntRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        values = new int[capacity];
+    }
+
+    /**
+     * Adds a value, dropping the oldest one if the buffer is full
+     */
+    public void add(int value) {
+        int end = start + size;
+        if (end >= values.length) end -= values.length;
+        values[end] = value;
+        if (size < values.length) {
+            size++;
+        } else {
+            start = start + 1 == values.length ? 0 : start + 1;
+        }
+    }
+
+    /**
+     * Gets a value by position, 0 being the oldest value still held
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        int position = start + index;
+        return values[position >= values.length ? position - values.length : position];
+    }
+
+    /**
+     * Removes all values without releasing the backing array
+     */
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return values.length; }
+}
@@ -0,0 +1,159 @@
+package com.example.lutemon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lutemons of one storage location in the order they arrived. Each one stays in
+ * its slot, removing one leaves a gap, so removals take O(1) without reordering
+ * the rest. Gaps are closed once they outnumber the Lutemons. Not thread safe.
+ */
+final class LocationList implements Iterable<Lutemon> {
+    private static final Lutemon[] EMPTY = new Lutemon[0];
+    // Fewer gaps than this are never worth a compaction
+    private static final int MIN_GAPS = 16;
+
+    private Lutemon[] slots = EMPTY;
+    // Slots in use including gaps, and the Lutemons in them
+    private int end;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of slots in use, gaps included
+     */
+    int slotCount() {
+        return end;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity > slots.length) {
+            slots = Arrays.copyOf(slots, capacity);
+        }
+    }
+
+    /**
+     * Adds a Lutemon after the last one
+     * @return its slot
+     */
+    int add(Lutemon lutemon) {
+        if (end == slots.length) {
+            ensureCapacity(Math.max(8, end + (end >> 1)));
+        }
+        slots[end] = lutemon;
+        size++;
+        return end++;
+    }
+
+    /**
+     * Gets the Lutemon in a slot, null for a gap
+     */
+    Lutemon get(int slot) {
+        return slot < end ? slots[slot] : null;
+    }
+
+    /**
+     * Removes the Lutemon in a slot, leaving a gap
+     * @return the removed Lutemon
+     */
+    Lutemon remove(int slot) {
+        Lutemon removed = slots[slot];
+        slots[slot] = null;
+        size--;
+        // Gaps at the end are dropped right away
+        while (end > 0 && slots[end - 1] == null) {
+            end--;
+        }
+        return removed;
+    }
+
+    /**
+     * Puts a Lutemon back into a gap or a slot after the last one
+     */
+    void restore(int slot, Lutemon lutemon) {
+        ensureCapacity(slot + 1);
+        slots[slot] = lutemon;
+        size++;
+        end = Math.max(end, slot + 1);
+    }
+
+    /**
+     * Checks if closing the gaps is due
+     */
+    boolean isSparse() {
+        int gaps = end - size;
+        return gaps >= MIN_GAPS && gaps > size;
+    }
+
+    /**
+     * Closes the gaps, keeping the order
+     * @param positions slot of every Lutemon by ID, updated for the moved ones
+     */
+    void compact(IntIntMap positions) {
+        int next = 0;
+        for (int slot = 0; slot < end; slot++) {
+            Lutemon lutemon = slots[slot];
+            if (lutemon != null) {
+                if (slot != next) {
+                    slots[next] = lutemon;
+                    positions.put(lutemon.getId(), next);
+                }
+                next++;
+            }
+        }
+        Arrays.fill(slots, next, end, null);
+        end = next;
+    }
+
+    /**
+     * Copies the Lutemons in order
+     */
+    List<Lutemon> toList() {
+        List<Lutemon> list = new ArrayList<>(size);
+        for (int slot = 0; slot < end; slot++) {
+            if (slots[slot] != null) {
+                list.add(slots[slot]);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public Iterator<Lutemon> iterator() {
+        return new Iterator<Lutemon>() {
+            private int slot = skipGaps(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < end;
+            }
+
+            @Override
+            public Lutemon next() {
+                if (slot >= end) {
+                    throw new NoSuchElementException();
+                }
+                Lutemon lutemon = slots[slot];
+                slot = skipGaps(slot + 1);
+                return lutemon;
+            }
+        };
+    }
+
+    private int skipGaps(int slot) {
+        while (slot < end && slots[slot] == null) {
+            slot++;
+        }
+        return slot;
+    }
+}
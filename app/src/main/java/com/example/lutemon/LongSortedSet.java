@@ -0,0 +1,263 @@
+package com.example.lutemon;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Sorted set of primitive longs, kept as a list of sorted runs of at most 512
+ * values. Adds and removes shift one run, lookups are two binary searches, and
+ * there is no boxing or entry object per value, about 8 to 32 bytes per value
+ * instead of about 60 in a TreeSet. Not thread safe.
+ */
+final class LongSortedSet {
+    private static final int MAX_RUN = 512;
+    private static final int MIN_CAPACITY = 8;
+    private static final long[] EMPTY = new long[0];
+
+    private long[][] runs = {EMPTY};
+    private int[] counts = new int[1];
+    private int runCount = 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a value
+     * @return false if it was already in the set
+     */
+    boolean add(long value) {
+        int run = runOf(value);
+        int index = Arrays.binarySearch(runs[run], 0, counts[run], value);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        if (counts[run] == MAX_RUN) {
+            split(run);
+            if (index > counts[run]) {
+                index -= counts[run];
+                run++;
+            }
+        }
+        long[] values = runs[run];
+        int count = counts[run];
+        if (count == values.length) {
+            values = Arrays.copyOf(values, Math.max(MIN_CAPACITY, Math.min(MAX_RUN, count * 2)));
+            runs[run] = values;
+        }
+        System.arraycopy(values, index, values, index + 1, count - index);
+        values[index] = value;
+        counts[run]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a value
+     * @return false if it wasn't in the set
+     */
+    boolean remove(long value) {
+        int run = runOf(value);
+        long[] values = runs[run];
+        int index = Arrays.binarySearch(values, 0, counts[run], value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, counts[run] - index - 1);
+        counts[run]--;
+        size--;
+        // Neighbours that fit in half a run are merged, so runs stay at least a quarter full
+        if (run + 1 < runCount && counts[run] + counts[run + 1] <= MAX_RUN / 2) {
+            merge(run);
+        } else if (run > 0 && counts[run - 1] + counts[run] <= MAX_RUN / 2) {
+            merge(run - 1);
+        } else if (counts[run] == 0 && runCount > 1) {
+            deleteRun(run);
+        }
+        return true;
+    }
+
+    boolean contains(long value) {
+        int run = runOf(value);
+        return Arrays.binarySearch(runs[run], 0, counts[run], value) >= 0;
+    }
+
+    void clear() {
+        runs = new long[][]{EMPTY};
+        counts = new int[1];
+        runCount = 1;
+        size = 0;
+    }
+
+    /**
+     * Walks the values between low and high in ascending or descending order.
+     * The iterator is only valid until the set changes.
+     */
+    PrimitiveIterator.OfLong range(long low, boolean lowInclusive, long high, boolean highInclusive,
+                                   boolean descending) {
+        return descending
+            ? new Descending(low, lowInclusive, high, highInclusive)
+            : new Ascending(low, lowInclusive, high, highInclusive);
+    }
+
+    /**
+     * Finds the last run whose first value is at or below the value, or the first run
+     */
+    private int runOf(long value) {
+        int low = 0;
+        int high = runCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (runs[mid][0] <= value) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the index of the first value in a run above the value, or at or above it
+     */
+    private int boundIn(int run, long value, boolean inclusive) {
+        long[] values = runs[run];
+        int low = 0;
+        int high = counts[run];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value || (!inclusive && values[mid] == value)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void split(int run) {
+        int half = counts[run] / 2;
+        long[] upper = new long[MAX_RUN];
+        System.arraycopy(runs[run], half, upper, 0, counts[run] - half);
+        insertRun(run + 1, upper, counts[run] - half);
+        counts[run] = half;
+    }
+
+    private void merge(int run) {
+        int count = counts[run];
+        int next = counts[run + 1];
+        long[] values = runs[run];
+        if (values.length < count + next) {
+            values = Arrays.copyOf(values, Math.min(MAX_RUN, Math.max(MIN_CAPACITY, (count + next) * 2)));
+            runs[run] = values;
+        }
+        System.arraycopy(runs[run + 1], 0, values, count, next);
+        counts[run] = count + next;
+        deleteRun(run + 1);
+    }
+
+    private void insertRun(int run, long[] values, int count) {
+        if (runCount == runs.length) {
+            runs = Arrays.copyOf(runs, runCount * 2);
+            counts = Arrays.copyOf(counts, runCount * 2);
+        }
+        System.arraycopy(runs, run, runs, run + 1, runCount - run);
+        System.arraycopy(counts, run, counts, run + 1, runCount - run);
+        runs[run] = values;
+        counts[run] = count;
+        runCount++;
+    }
+
+    private void deleteRun(int run) {
+        System.arraycopy(runs, run + 1, runs, run, runCount - run - 1);
+        System.arraycopy(counts, run + 1, counts, run, runCount - run - 1);
+        runCount--;
+        runs[runCount] = null;
+    }
+
+    private final class Ascending implements PrimitiveIterator.OfLong {
+        private final long high;
+        private final boolean highInclusive;
+        private int run;
+        private int index;
+
+        Ascending(long low, boolean lowInclusive, long high, boolean highInclusive) {
+            this.high = high;
+            this.highInclusive = highInclusive;
+            run = runOf(low);
+            index = boundIn(run, low, lowInclusive);
+            skipEmpty();
+        }
+
+        private void skipEmpty() {
+            while (run < runCount && index >= counts[run]) {
+                run++;
+                index = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (run >= runCount) return false;
+            long value = runs[run][index];
+            return value < high || (highInclusive && value == high);
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long value = runs[run][index++];
+            skipEmpty();
+            return value;
+        }
+    }
+
+    private final class Descending implements PrimitiveIterator.OfLong {
+        private final long low;
+        private final boolean lowInclusive;
+        private int run;
+        private int index;
+
+        Descending(long low, boolean lowInclusive, long high, boolean highInclusive) {
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            run = runOf(high);
+            // The last value at or below high, or below it
+            index = boundIn(run, high, !highInclusive) - 1;
+            skipEmpty();
+        }
+
+        private void skipEmpty() {
+            while (run >= 0 && index < 0) {
+                run--;
+                index = run >= 0 ? counts[run] - 1 : -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (run < 0) return false;
+            long value = runs[run][index];
+            return value > low || (lowInclusive && value == low);
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long value = runs[run][index--];
+            skipEmpty();
+            return value;
+        }
+    }
+}
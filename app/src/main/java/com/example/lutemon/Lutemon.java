@@ -1,11 +1,18 @@
 package com.example.lutemon;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.Random;
 
+/**
+ * A Lutemon and its mutable stats. Changes are synchronized and drop the cached
+ * immutable {@link LutemonSnapshot}, the next read builds a new one that readers
+ * can use without locks.
+ */
 public class Lutemon implements Serializable {
     private static final long serialVersionUID = 1L;
-    private static int idCounter = 0;
+    private static final IdAllocator ID_ALLOCATOR = new IdAllocator();
     private final int id;
     private final String name;
     private final String color;
@@ -14,76 +21,113 @@ public class Lutemon implements Serializable {
     private int experience;
     private int maxHealth;
     private int health;
+    // Shape packed by ShapeCache, derived from the ID unless a shape seed is given
+    private int shapeSignature;
+    // Only set in files saved before shape signatures, converted on load
     private int[] shapeIndices;
-
-    // Initial stat values by color
-    private static final int[] WHITE_STATS = {5, 4, 20};   // attack, defense, maxHealth
-    private static final int[] GREEN_STATS = {6, 3, 19};
-    private static final int[] PINK_STATS = {7, 2, 18};
-    private static final int[] ORANGE_STATS = {8, 1, 17};
-    private static final int[] BLACK_STATS = {9, 0, 16};
+    // Species ordinal in SpeciesRegistry, resolved from the color once
+    private transient int species;
+    // State as of the last change, null until someone reads it
+    private transient volatile LutemonSnapshot snapshot;
+    // Position key in its storage location, set by Storage and saved with it, -1 if unknown
+    private transient long storageOrder = -1;
 
     public Lutemon(String name, String color) {
-        this.id = ++idCounter;
+        this.id = ID_ALLOCATOR.next();
         this.name = name;
         this.color = color;
         this.experience = 0;
+        this.species = SpeciesRegistry.getDefault().ordinalOf(color);
         
-        // Set initial stats based on color
-        int[] stats = getInitialStats(color);
-        this.attack = stats[0];
-        this.defense = stats[1];
-        this.maxHealth = stats[2];
+        // Set initial stats based on species
+        resetStats();
         this.health = this.maxHealth;
         
-        generateShape();
+        this.shapeSignature = ShapeCache.signatureForSeed(id);
     }
 
-    private int[] getInitialStats(String color) {
-        switch (color.toLowerCase()) {
-            case "white": return WHITE_STATS;
-            case "green": return GREEN_STATS;
-            case "pink": return PINK_STATS;
-            case "orange": return ORANGE_STATS;
-            case "black": return BLACK_STATS;
-            default: return WHITE_STATS;
-        }
+    /**
+     * Creates a Lutemon whose shape comes from the given seed instead of its ID
+     */
+    public Lutemon(String name, String color, long shapeSeed) {
+        this(name, color);
+        this.shapeSignature = ShapeCache.signatureForSeed(shapeSeed);
     }
 
     /**
-     * Generates a random shape for the Lutemon
+     * Restores a Lutemon from a snapshot, keeping its ID
      */
-    private void generateShape() {
-        Random random = new Random();
-        int points = random.nextInt(3) + 3; // 3-5 points
-        shapeIndices = new int[points];
-        
-        // Generate random indices that will create the shape vertices
-        for (int i = 0; i < points; i++) {
-            shapeIndices[i] = random.nextInt(8); // 0-7 for shape variation
+    Lutemon(LutemonSnapshot state) {
+        this.id = state.getId();
+        this.name = state.getName();
+        this.color = state.getColor();
+        this.species = state.getSpecies();
+        this.attack = state.getAttack();
+        this.defense = state.getDefense();
+        this.experience = state.getExperience();
+        this.maxHealth = state.getMaxHealth();
+        this.health = state.getHealth();
+        this.shapeSignature = state.getShapeSignature();
+        this.snapshot = state;
+    }
+
+    /**
+     * Resolves the species again after loading, it isn't saved with the Lutemon
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        species = SpeciesRegistry.getDefault().ordinalOf(color);
+        storageOrder = -1;
+        if (shapeIndices != null) {
+            try {
+                shapeSignature = ShapeCache.signatureOf(shapeIndices);
+            } catch (IllegalArgumentException e) {
+                shapeSignature = ShapeCache.signatureForSeed(id);
+            }
+            shapeIndices = null;
         }
     }
 
     /**
-     * Gets training bonus based on color
+     * Writes the fields under the lock, so a background save never sees half a change
      */
-    private int getTrainingBonus() {
-        switch (color.toLowerCase()) {
-            case "white": return 2;
-            case "green": return 3;
-            case "pink": return 4;
-            case "orange": return 5;
-            case "black": return 6;
-            default: return 2;
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Drops the cached state, called under the lock at the end of every change.
+     * Nothing is allocated, so battle turns stay allocation free.
+     */
+    private void changed() {
+        snapshot = null;
+    }
+
+    /**
+     * Gets the current state, safe to read from any thread. Built once after
+     * each change and shared until the next one.
+     */
+    public LutemonSnapshot getSnapshot() {
+        LutemonSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = new LutemonSnapshot(id, name, color, species, attack, defense,
+                    experience, maxHealth, health, shapeSignature);
+            }
+            return snapshot;
         }
     }
 
     /**
      * Trains the Lutemon, increasing attack and experience
      */
-    public void train() {
-        attack += getTrainingBonus();
+    public synchronized void train() {
+        attack += SpeciesRegistry.getDefault().getTrainingBonus(species);
         experience++;
+        changed();
     }
 
     /**
@@ -91,33 +135,60 @@ public class Lutemon implements Serializable {
      * @return true if target survived, false if defeated
      */
     public boolean attack(Lutemon target) {
-        int damage = Math.max(0, getTotalAttack() - target.getDefense());
-        target.health = Math.max(0, target.health - damage);
-        return target.health > 0;
+        int totalAttack;
+        synchronized (this) {
+            totalAttack = attack + experience;
+        }
+        return target.takeDamage(totalAttack);
     }
 
     /**
-     * Resets Lutemon stats to their initial values based on color
+     * Lowers health by the attack minus defense, never below 0
+     * @return true if the Lutemon survived
      */
-    public void resetStats() {
-        int[] initialStats = getInitialStats(color);
-        this.attack = initialStats[0];
-        this.defense = initialStats[1];
-        this.maxHealth = initialStats[2];
+    private synchronized boolean takeDamage(int totalAttack) {
+        health = Math.max(0, health - Math.max(0, totalAttack - defense));
+        changed();
+        return health > 0;
+    }
+
+    /**
+     * Resets Lutemon stats to their initial values based on species
+     */
+    public synchronized void resetStats() {
+        SpeciesRegistry registry = SpeciesRegistry.getDefault();
+        this.attack = registry.getBaseAttack(species);
+        this.defense = registry.getBaseDefense(species);
+        this.maxHealth = registry.getBaseMaxHealth(species);
         this.experience = 0;
+        changed();
     }
 
     /**
      * Restores health to maximum
      */
-    public void heal() {
+    public synchronized void heal() {
         health = maxHealth;
+        changed();
+    }
+
+    /**
+     * Puts back the stats of an earlier snapshot, e.g. when rolling back
+     */
+    synchronized void restore(LutemonSnapshot state) {
+        this.attack = state.getAttack();
+        this.defense = state.getDefense();
+        this.experience = state.getExperience();
+        this.maxHealth = state.getMaxHealth();
+        this.health = state.getHealth();
+        this.snapshot = state;
     }
 
     // Getters
     public int getId() { return id; }
     public String getName() { return name; }
     public String getColor() { return color; }
+    public int getSpecies() { return species; }
     public int getAttack() { return attack; }
     public int getTotalAttack() { return attack + experience; }
     public int getDefense() { return defense; }
@@ -126,31 +197,57 @@ public class Lutemon implements Serializable {
     public int getHealth() { return health; }
 
     // Setters for import/export
-    public void setAttack(int attack) { this.attack = attack; }
-    public void setDefense(int defense) { this.defense = defense; }
-    public void setExperience(int experience) { this.experience = experience; }
-    public void setMaxHealth(int maxHealth) { this.maxHealth = maxHealth; }
-    public void setHealth(int health) { this.health = health; }
+    public synchronized void setAttack(int attack) { this.attack = attack; changed(); }
+    public synchronized void setDefense(int defense) { this.defense = defense; changed(); }
+    public synchronized void setExperience(int experience) { this.experience = experience; changed(); }
+    public synchronized void setMaxHealth(int maxHealth) { this.maxHealth = maxHealth; changed(); }
+    public synchronized void setHealth(int health) { this.health = health; changed(); }
+
+    /**
+     * Gets the key that orders the Lutemon within its storage location, -1 if it has none.
+     * Only read and set under the Storage lock.
+     */
+    long getStorageOrder() {
+        return storageOrder;
+    }
+
+    void setStorageOrder(long storageOrder) {
+        this.storageOrder = storageOrder;
+    }
+
+    /**
+     * Gets the packed shape, see ShapeCache
+     */
+    public int getShapeSignature() {
+        return shapeSignature;
+    }
 
     /**
      * Gets number of points in the Lutemon's shape
      */
     public int getShapePointCount() {
-        return shapeIndices.length;
+        return ShapeCache.getPointCount(shapeSignature);
     }
 
     /**
      * Gets relative radius for a point in the shape
      */
     public float getShapeRadius(int index) {
-        if (index < 0 || index >= shapeIndices.length) return 0.5f;
-        return (shapeIndices[index] + 4f) / 12f; // Convert 0-7 to ~0.33-0.92
+        if (index < 0 || index >= getShapePointCount()) return 0.5f;
+        return ShapeCache.getRadius(shapeSignature, index);
     }
 
     /**
-     * Updates the global ID counter
+     * Makes sure new Lutemons get IDs above maxId
      */
     public static void updateIdCounter(int maxId) {
-        idCounter = maxId;
+        ID_ALLOCATOR.advanceTo(maxId);
+    }
+
+    /**
+     * Gets the highest ID that may have been handed out, saved with the Lutemons
+     */
+    public static int getIdHighWaterMark() {
+        return ID_ALLOCATOR.getHighWaterMark();
     }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package com.example.lutemon;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Filters, order and page size for Storage.query(). Every filter is optional.
+ * Pages are continued with the cursor of the previous page, so results stay
+ * consistent while Lutemons are added or change in between.
+ */
+public class LutemonQuery {
+    public static final int DEFAULT_LIMIT = 50;
+
+    /**
+     * Stats that can be filtered on and sorted by
+     */
+    public enum SortKey {
+        ATTACK, DEFENSE, EXPERIENCE, WINS
+    }
+
+    static final int KEY_COUNT = SortKey.values().length;
+
+    private String color;
+    private String location;
+    private final int[] minValues = new int[KEY_COUNT];
+    private final int[] maxValues = new int[KEY_COUNT];
+    private SortKey sortKey = SortKey.ATTACK;
+    private boolean descending;
+    private int limit = DEFAULT_LIMIT;
+    private long cursor;
+    private boolean hasCursor;
+
+    public LutemonQuery() {
+        for (int i = 0; i < minValues.length; i++) {
+            minValues[i] = Integer.MIN_VALUE;
+            maxValues[i] = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Only matches Lutemons of a color, or any color if null
+     */
+    public LutemonQuery setColor(String color) {
+        this.color = color;
+        return this;
+    }
+
+    /**
+     * Only matches Lutemons in a location, or anywhere if null
+     */
+    public LutemonQuery setLocation(String location) {
+        this.location = location;
+        return this;
+    }
+
+    /**
+     * Only matches Lutemons with a stat between min and max (inclusive).
+     * ATTACK is the total attack including experience.
+     */
+    public LutemonQuery setRange(SortKey key, int min, int max) {
+        if (min > max) {
+            throw new IllegalArgumentException("Empty range " + min + ".." + max + " for " + key);
+        }
+        minValues[key.ordinal()] = min;
+        maxValues[key.ordinal()] = max;
+        return this;
+    }
+
+    /**
+     * Sets the order of the results, ties are ordered by ID
+     */
+    public LutemonQuery setOrder(SortKey sortKey, boolean descending) {
+        this.sortKey = sortKey;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of Lutemons per page
+     */
+    public LutemonQuery setLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Continues after the page that returned this cursor, see Page.getNextCursor()
+     */
+    public LutemonQuery setCursor(long cursor) {
+        this.cursor = cursor;
+        this.hasCursor = true;
+        return this;
+    }
+
+    public String getColor() { return color; }
+    public String getLocation() { return location; }
+    public int getMin(SortKey key) { return minValues[key.ordinal()]; }
+    public int getMax(SortKey key) { return maxValues[key.ordinal()]; }
+    public SortKey getSortKey() { return sortKey; }
+    public boolean isDescending() { return descending; }
+    public int getLimit() { return limit; }
+    public boolean hasCursor() { return hasCursor; }
+    public long getCursor() { return cursor; }
+
+    /**
+     * Checks the stat filters against current values, given in SortKey order
+     */
+    boolean matchesStats(int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] < minValues[i] || values[i] > maxValues[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One page of query results
+     */
+    public static class Page {
+        private final List<Lutemon> lutemons;
+        private final long nextCursor;
+        private final boolean hasMore;
+
+        Page(List<Lutemon> lutemons, long nextCursor, boolean hasMore) {
+            this.lutemons = Collections.unmodifiableList(lutemons);
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+
+        public List<Lutemon> getLutemons() {
+            return lutemons;
+        }
+
+        /**
+         * Checks if more Lutemons match after this page
+         */
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        /**
+         * Gets the cursor for the next page, only meaningful if hasMore() is true
+         */
+        public long getNextCursor() {
+            return nextCursor;
+        }
+    }
+}
@@ -50,7 +50,7 @@ public class LutemonShapeView extends View {
     public void setLutemon(Lutemon lutemon) {
         this.lutemon = lutemon;
         if (lutemon != null) {
-            paint.setColor(getLutemonColor(lutemon.getColor()));
+            paint.setColor(getLutemonColor(lutemon));
             updatePath();
             invalidate();
         }
@@ -61,36 +61,18 @@ public class LutemonShapeView extends View {
 
         path.reset();
         float radius = size / 2;
-        int points = lutemon.getShapePointCount();
-
-        // First point
-        float angle = 0;
-        float pointRadius = radius * lutemon.getShapeRadius(0);
-        float startX = centerX + pointRadius * (float) Math.cos(angle);
-        float startY = centerY + pointRadius * (float) Math.sin(angle);
-        path.moveTo(startX, startY);
-
-        // Remaining points
-        for (int i = 1; i < points; i++) {
-            angle = (float) (2 * Math.PI * i / points);
-            pointRadius = radius * lutemon.getShapeRadius(i);
-            float x = centerX + pointRadius * (float) Math.cos(angle);
-            float y = centerY + pointRadius * (float) Math.sin(angle);
-            path.lineTo(x, y);
+        // Scale and move the cached unit shape, no trig per layout
+        float[] vertices = ShapeCache.getUnitVertices(lutemon.getShapeSignature());
+        path.moveTo(centerX + radius * vertices[0], centerY + radius * vertices[1]);
+        for (int i = 2; i < vertices.length; i += 2) {
+            path.lineTo(centerX + radius * vertices[i], centerY + radius * vertices[i + 1]);
         }
 
         path.close();
     }
 
-    private int getLutemonColor(String color) {
-        switch (color.toLowerCase()) {
-            case "white": return getContext().getColor(R.color.lutemon_white);
-            case "green": return getContext().getColor(R.color.lutemon_green);
-            case "pink": return getContext().getColor(R.color.lutemon_pink);
-            case "orange": return getContext().getColor(R.color.lutemon_orange);
-            case "black": return getContext().getColor(R.color.lutemon_black);
-            default: return getContext().getColor(R.color.lutemon_white);
-        }
+    private int getLutemonColor(Lutemon lutemon) {
+        return SpeciesRegistry.getDefault().getPaletteColor(lutemon.getSpecies());
     }
 
     @Override
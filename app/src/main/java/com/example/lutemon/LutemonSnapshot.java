@@ -0,0 +1,51 @@
+package com.example.lutemon;
+
+/**
+ * Immutable copy of a Lutemon's state at one point in time.
+ * Built by the Lutemon on the first read after a change and safe to share between threads.
+ */
+public final class LutemonSnapshot {
+    private final int id;
+    private final String name;
+    private final String color;
+    private final int species;
+    private final int attack;
+    private final int defense;
+    private final int experience;
+    private final int maxHealth;
+    private final int health;
+    private final int shapeSignature;
+
+    LutemonSnapshot(int id, String name, String color, int species, int attack, int defense,
+                    int experience, int maxHealth, int health, int shapeSignature) {
+        this.id = id;
+        this.name = name;
+        this.color = color;
+        this.species = species;
+        this.attack = attack;
+        this.defense = defense;
+        this.experience = experience;
+        this.maxHealth = maxHealth;
+        this.health = health;
+        this.shapeSignature = shapeSignature;
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public String getColor() { return color; }
+    public int getSpecies() { return species; }
+    public int getAttack() { return attack; }
+    public int getTotalAttack() { return attack + experience; }
+    public int getDefense() { return defense; }
+    public int getExperience() { return experience; }
+    public int getMaxHealth() { return maxHealth; }
+    public int getHealth() { return health; }
+    public int getShapeSignature() { return shapeSignature; }
+
+    /**
+     * Creates a new mutable Lutemon with this state and the same ID
+     */
+    public Lutemon toLutemon() {
+        return new Lutemon(this);
+    }
+}
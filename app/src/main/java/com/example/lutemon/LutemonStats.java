@@ -1,5 +1,6 @@
 package com.example.lutemon;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -15,6 +16,7 @@ public class LutemonStats implements Serializable {
     private int battlesWon;
     private int battlesLost;
     private int trainingCount;
+    private int rating;
     
     // History of stats changes
     private List<StatPoint> attackHistory;
@@ -51,6 +53,13 @@ public class LutemonStats implements Serializable {
         trainingCount++;
     }
 
+    /**
+     * Records the rating from the latest tournament
+     */
+    public void recordRating(int rating) {
+        this.rating = rating;
+    }
+
     /**
      * Records current stats as a new history point if they've changed
      */
@@ -72,12 +81,77 @@ public class LutemonStats implements Serializable {
         }
     }
 
+    /**
+     * Makes a deep copy, the history points are immutable and shared
+     */
+    LutemonStats copy() {
+        LutemonStats copy = new LutemonStats(lutemonId, colorType);
+        copy.battlesWon = battlesWon;
+        copy.battlesLost = battlesLost;
+        copy.trainingCount = trainingCount;
+        copy.rating = rating;
+        copy.attackHistory.addAll(attackHistory);
+        copy.experienceHistory.addAll(experienceHistory);
+        return copy;
+    }
+
+    /**
+     * Writes the stats in the binary format of the stats file and the journal
+     */
+    void writeTo(BinaryCodec.Writer out) throws IOException {
+        out.writeVarInt(lutemonId);
+        out.writeUTF(colorType);
+        out.writeVarInt(battlesWon);
+        out.writeVarInt(battlesLost);
+        out.writeVarInt(trainingCount);
+        out.writeSignedVarInt(rating);
+        writeHistory(out, attackHistory);
+        writeHistory(out, experienceHistory);
+    }
+
+    /**
+     * Reads stats written by writeTo()
+     */
+    static LutemonStats readFrom(BinaryCodec.Reader in) throws IOException {
+        LutemonStats stats = new LutemonStats(in.readVarInt(), in.readUTF());
+        stats.battlesWon = in.readVarInt();
+        stats.battlesLost = in.readVarInt();
+        stats.trainingCount = in.readVarInt();
+        stats.rating = in.readSignedVarInt();
+        readHistory(in, stats.attackHistory);
+        readHistory(in, stats.experienceHistory);
+        return stats;
+    }
+
+    /**
+     * Writes a history as the first value and the differences to it, which
+     * are small because stats grow a little at a time
+     */
+    private static void writeHistory(BinaryCodec.Writer out, List<StatPoint> history) throws IOException {
+        out.writeVarInt(history.size());
+        int previous = 0;
+        for (StatPoint point : history) {
+            out.writeSignedVarInt(point.value - previous);
+            previous = point.value;
+        }
+    }
+
+    private static void readHistory(BinaryCodec.Reader in, List<StatPoint> history) throws IOException {
+        int size = in.readCount();
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+            value += in.readSignedVarInt();
+            history.add(new StatPoint(value));
+        }
+    }
+
     // Getters
     public int getLutemonId() { return lutemonId; }
     public String getColorType() { return colorType; }
     public int getBattlesWon() { return battlesWon; }
     public int getBattlesLost() { return battlesLost; }
     public int getTrainingCount() { return trainingCount; }
+    public int getRating() { return rating; }
     public List<StatPoint> getAttackHistory() { return attackHistory; }
     public List<StatPoint> getExperienceHistory() { return experienceHistory; }
 
@@ -3,6 +3,8 @@ package com.example.lutemon;
 import android.Manifest;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -16,6 +18,7 @@ import androidx.navigation.NavController;
 import androidx.navigation.fragment.NavHostFragment;
 import androidx.navigation.ui.NavigationUI;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.List;
 
@@ -23,7 +26,11 @@ public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     private static final int PERMISSION_REQUEST_CODE = 123;
     
-    private Storage storage;
+    private StorageLoader storageLoader;
+    // Waiting for the storage, run on the main thread once it is loaded
+    private final List<StorageLoader.Callback> storageCallbacks = new ArrayList<>();
+    // Offered while the storage is loading, null once it is ready
+    private StorageLoader.Preview preview;
     private NavController navController;
     private DataManager dataManager;
     private boolean pendingExport = false;
@@ -32,11 +39,11 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
-
-        // Initialize storage and data manager
+        SpeciesRegistry.load(this);
+        // Load storage in the background while the views are set up
         dataManager = new DataManager(this);
-        storage = new Storage(this);
+        startLoading();
+        setContentView(R.layout.activity_main);
 
         // Set up navigation
         NavHostFragment navHostFragment = (NavHostFragment) getSupportFragmentManager()
@@ -54,6 +61,50 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Starts loading a new storage, queued callbacks get the preview and run once it is ready
+     */
+    private void startLoading() {
+        StorageLoader loader = new StorageLoader(this);
+        storageLoader = loader;
+        preview = null;
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        loader.start(mainHandler::post, new StorageLoader.Callback() {
+            @Override
+            public void onPreview(StorageLoader.Preview offered) {
+                // Replaced after clearing the data
+                if (loader != storageLoader) return;
+                preview = offered;
+                for (StorageLoader.Callback callback : new ArrayList<>(storageCallbacks)) {
+                    callback.onPreview(offered);
+                }
+            }
+
+            @Override
+            public void onFailed(Exception error) {
+                if (loader != storageLoader) return;
+                showToast(R.string.message_load_failed);
+            }
+
+            @Override
+            public void onDamaged(List<String> files) {
+                if (loader != storageLoader) return;
+                showToast(R.string.message_load_damaged);
+            }
+
+            @Override
+            public void onLoaded(Storage storage) {
+                if (loader != storageLoader) return;
+                preview = null;
+                List<StorageLoader.Callback> callbacks = new ArrayList<>(storageCallbacks);
+                storageCallbacks.clear();
+                for (StorageLoader.Callback callback : callbacks) {
+                    callback.onLoaded(storage);
+                }
+            }
+        });
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
@@ -130,11 +181,13 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void exportLutemons() {
-        if (dataManager.exportLutemons(storage.getAllLutemons())) {
-            showToast(R.string.message_exported);
-        } else {
-            showToast(R.string.message_error);
-        }
+        whenStorageReady(storage -> {
+            if (dataManager.exportLutemons(storage.getAllLutemons())) {
+                showToast(R.string.message_exported);
+            } else {
+                showToast(R.string.message_error);
+            }
+        });
     }
 
     private void importLutemons() {
@@ -144,10 +197,12 @@ public class MainActivity extends AppCompatActivity {
             .setPositiveButton(android.R.string.yes, (dialog, which) -> {
                 Map<String, List<Lutemon>> importedLutemons = dataManager.importLutemons();
                 if (importedLutemons != null) {
-                    storage.setAllLutemons(importedLutemons);
-                    storage.saveLutemons();
-                    navController.navigate(R.id.nav_home);
-                    showToast(R.string.message_imported);
+                    whenStorageReady(storage -> {
+                        storage.setAllLutemons(importedLutemons);
+                        storage.saveLutemons();
+                        navController.navigate(R.id.nav_home);
+                        showToast(R.string.message_imported);
+                    });
                 } else {
                     showToast(R.string.message_error);
                 }
@@ -161,10 +216,14 @@ public class MainActivity extends AppCompatActivity {
             .setTitle(R.string.action_clear)
             .setMessage(R.string.dialog_confirm_clear)
             .setPositiveButton(android.R.string.yes, (dialog, which) -> {
-                dataManager.clearData();
-                storage = new Storage(this);
-                navController.navigate(R.id.nav_home);
-                showToast(R.string.message_cleared);
+                whenStorageReady(storage -> {
+                    // Stop the old storage first, so a pending save can't bring the data back
+                    storage.close();
+                    dataManager.clearData();
+                    startLoading();
+                    navController.navigate(R.id.nav_home);
+                    showToast(R.string.message_cleared);
+                });
             })
             .setNegativeButton(android.R.string.no, null)
             .show();
@@ -185,15 +244,43 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
-        storage.saveLutemons();
-        storage.saveStats();
-        runOnUiThread(() -> showToast(R.string.message_saved));
+        // Nothing can have changed before the storage is loaded
+        Storage storage = storageLoader.getStorage();
+        if (storage == null) return;
+        // Write the changes on the I/O thread right away instead of after the delay,
+        // so the main thread never waits for the disk. Only what changed is written.
+        storage.requestFlush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Closed once loaded, which waits for the last writes
+        whenStorageReady(Storage::close);
     }
 
     /**
-     * Gets the storage instance
+     * Gets the storage instance, waiting for it if it is still loading. Blocks,
+     * so the main thread uses whenStorageReady() instead.
      */
     public Storage getStorage() {
-        return storage;
+        return storageLoader.await();
+    }
+
+    /**
+     * Runs the callback on the main thread once the storage is loaded, right away
+     * if it already is. Until then it gets the preview, if one was offered.
+     * Lets the screens show without blocking on the load.
+     */
+    public void whenStorageReady(StorageLoader.Callback callback) {
+        Storage storage = storageLoader.getStorage();
+        if (storage != null && storageCallbacks.isEmpty()) {
+            callback.onLoaded(storage);
+        } else {
+            storageCallbacks.add(callback);
+            if (preview != null) {
+                callback.onPreview(preview);
+            }
+        }
     }
 }
\ No newline at end of file
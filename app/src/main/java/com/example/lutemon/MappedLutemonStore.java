@@ -0,0 +1,407 @@
+package com.example.lutemon;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lutemons in a memory-mapped file of fixed-width records, sorted by ID, with
+ * names and locations in a side file of strings. Opening maps the files without
+ * reading them, lookups binary search the records, and a move or stat change
+ * writes only the bytes of one record. Colors are stored as species ordinals.
+ * The header keeps the generation and journal length of the saved files the
+ * records last matched, any write clears it. Methods are synchronized.
+ */
+public final class MappedLutemonStore implements Closeable {
+    private static final int MAGIC = 0x4C4D4150; // "LMAP"
+    private static final int VERSION = 2;
+    static final int MAX_LOCATIONS = 256;
+
+    // Header: magic, version, record count, live count, location count, location name
+    // offsets, then the generation and journal length of the matching saved files
+    private static final int COUNT_OFFSET = 8;
+    private static final int LIVE_OFFSET = 12;
+    private static final int LOCATION_COUNT_OFFSET = 16;
+    private static final int LOCATIONS_OFFSET = 20;
+    private static final int SAVED_GENERATION_OFFSET = LOCATIONS_OFFSET + MAX_LOCATIONS * 4;
+    private static final int SAVED_JOURNAL_OFFSET = SAVED_GENERATION_OFFSET + 8;
+    private static final int HEADER_SIZE = 4096;
+
+    // Record: id, species, location, attack, defense, experience, max health, health,
+    // shape signature, name offset, flags
+    static final int RECORD_SIZE = 40;
+    private static final int SPECIES = 4;
+    private static final int LOCATION = 6;
+    private static final int ATTACK = 8;
+    private static final int DEFENSE = 12;
+    private static final int EXPERIENCE = 16;
+    private static final int MAX_HEALTH = 20;
+    private static final int HEALTH = 24;
+    private static final int SHAPE = 28;
+    private static final int NAME = 32;
+    private static final int FLAGS = 36;
+    private static final short REMOVED = 1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final RandomAccessFile recordFile;
+    private final RandomAccessFile stringFile;
+    private MappedByteBuffer records;
+    private MappedByteBuffer strings;
+    private int capacity;
+    private long stringsEnd;
+    // Location names by slot, read from the header on open
+    private final List<String> locations = new ArrayList<>();
+
+    private MappedLutemonStore(RandomAccessFile recordFile, RandomAccessFile stringFile) {
+        this.recordFile = recordFile;
+        this.stringFile = stringFile;
+    }
+
+    /**
+     * Opens or creates a store. A file of another version is started over.
+     */
+    public static MappedLutemonStore open(File recordPath, File stringPath) throws IOException {
+        MappedLutemonStore store = new MappedLutemonStore(
+            new RandomAccessFile(recordPath, "rw"), new RandomAccessFile(stringPath, "rw"));
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        long length = recordFile.length();
+        if (length < HEADER_SIZE) {
+            reset();
+            return;
+        }
+        capacity = (int) ((length - HEADER_SIZE) / RECORD_SIZE);
+        records = recordFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        stringsEnd = stringFile.length();
+        if (records.getInt(0) != MAGIC || records.getInt(4) != VERSION
+                || getCount() > capacity || stringsEnd > Integer.MAX_VALUE) {
+            reset();
+            return;
+        }
+        mapStrings();
+        int locationCount = records.getInt(LOCATION_COUNT_OFFSET);
+        for (int slot = 0; slot < locationCount; slot++) {
+            locations.add(readString(records.getInt(LOCATIONS_OFFSET + slot * 4)));
+        }
+    }
+
+    /**
+     * Removes every record
+     */
+    public synchronized void reset() throws IOException {
+        stringFile.setLength(0);
+        stringsEnd = 0;
+        locations.clear();
+        capacity = INITIAL_CAPACITY;
+        recordFile.setLength(HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        records = recordFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, recordFile.length());
+        records.putInt(0, MAGIC);
+        records.putInt(4, VERSION);
+        records.putInt(COUNT_OFFSET, 0);
+        records.putInt(LIVE_OFFSET, 0);
+        records.putInt(LOCATION_COUNT_OFFSET, 0);
+        records.putLong(SAVED_GENERATION_OFFSET, -1);
+        records.putInt(SAVED_JOURNAL_OFFSET, -1);
+        strings = null;
+    }
+
+    /**
+     * Records that the Lutemons match the saved files of a generation and journal
+     * length, and writes everything to the disk
+     */
+    public synchronized void markSaved(long generation, int journalBytes) throws IOException {
+        records.putLong(SAVED_GENERATION_OFFSET, generation);
+        records.putInt(SAVED_JOURNAL_OFFSET, journalBytes);
+        force();
+    }
+
+    /**
+     * Checks if the Lutemons still match the saved files of a generation and
+     * journal length, then they can be used without loading the files
+     */
+    public synchronized boolean isSavedAt(long generation, int journalBytes) {
+        int savedJournal = records.getInt(SAVED_JOURNAL_OFFSET);
+        return savedJournal >= 0 && savedJournal == journalBytes
+            && records.getLong(SAVED_GENERATION_OFFSET) == generation;
+    }
+
+    /**
+     * Forgets the saved files before a write, until the next markSaved()
+     */
+    private void clearSaved() {
+        if (records.getInt(SAVED_JOURNAL_OFFSET) >= 0) {
+            records.putInt(SAVED_JOURNAL_OFFSET, -1);
+        }
+    }
+
+    /**
+     * Gets the number of records, including removed ones
+     */
+    public synchronized int getCount() {
+        return records.getInt(COUNT_OFFSET);
+    }
+
+    /**
+     * Gets the number of stored Lutemons
+     */
+    public synchronized int getLiveCount() {
+        return records.getInt(LIVE_OFFSET);
+    }
+
+    private static int position(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    /**
+     * Finds a Lutemon's record
+     * @return the record index, or -1 if it isn't stored
+     */
+    public synchronized int indexOf(int id) {
+        int low = 0;
+        int high = getCount() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = records.getInt(position(middle));
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return isRemoved(middle) ? -1 : middle;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized boolean isRemoved(int index) {
+        return records.getShort(position(index) + FLAGS) == REMOVED;
+    }
+
+    /**
+     * Reads a record as a snapshot, its name comes from the string file
+     */
+    public synchronized LutemonSnapshot read(int index) throws IOException {
+        int at = position(index);
+        int species = records.getShort(at + SPECIES);
+        return new LutemonSnapshot(records.getInt(at), readString(records.getInt(at + NAME)),
+            SpeciesRegistry.getDefault().getName(species), species,
+            records.getInt(at + ATTACK), records.getInt(at + DEFENSE), records.getInt(at + EXPERIENCE),
+            records.getInt(at + MAX_HEALTH), records.getInt(at + HEALTH), records.getInt(at + SHAPE));
+    }
+
+    /**
+     * Gets the location of a record
+     */
+    public synchronized String getLocation(int index) {
+        return locations.get(records.getShort(position(index) + LOCATION));
+    }
+
+    /**
+     * Reads a stored Lutemon by its ID
+     * @return its state, or null if it isn't stored
+     */
+    public synchronized LutemonSnapshot find(int id) throws IOException {
+        int index = indexOf(id);
+        return index < 0 ? null : read(index);
+    }
+
+    /**
+     * Reads the first Lutemons in a location in ID order, e.g. to show them
+     * before everything is loaded
+     */
+    public synchronized List<LutemonSnapshot> readLocation(String location, int limit) throws IOException {
+        List<LutemonSnapshot> result = new ArrayList<>();
+        int slot = locations.indexOf(location);
+        int count = getCount();
+        for (int index = 0; slot >= 0 && index < count && result.size() < limit; index++) {
+            int at = position(index);
+            if (records.getShort(at + LOCATION) == slot && !isRemoved(index)) {
+                result.add(read(index));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a Lutemon after the last record
+     * @return false if its ID isn't above every stored ID, records stay sorted by ID
+     */
+    public synchronized boolean append(LutemonSnapshot state, String location) throws IOException {
+        int count = getCount();
+        if (count > 0 && records.getInt(position(count - 1)) >= state.getId()) {
+            return false;
+        }
+        clearSaved();
+        int slot = locationSlot(location);
+        if (count == capacity) {
+            grow();
+        }
+        int at = position(count);
+        records.putInt(at, state.getId());
+        records.putShort(at + SPECIES, (short) state.getSpecies());
+        records.putShort(at + LOCATION, (short) slot);
+        writeStats(at, state);
+        records.putInt(at + NAME, appendString(state.getName()));
+        records.putShort(at + FLAGS, (short) 0);
+        // Counted last, so a record is only visible once it is complete
+        records.putInt(COUNT_OFFSET, count + 1);
+        records.putInt(LIVE_OFFSET, getLiveCount() + 1);
+        return true;
+    }
+
+    /**
+     * Writes a Lutemon's changed stats into its record
+     * @return false if it isn't stored
+     */
+    public synchronized boolean update(LutemonSnapshot state) {
+        int index = indexOf(state.getId());
+        if (index < 0) {
+            return false;
+        }
+        clearSaved();
+        writeStats(position(index), state);
+        return true;
+    }
+
+    private void writeStats(int at, LutemonSnapshot state) {
+        records.putInt(at + ATTACK, state.getAttack());
+        records.putInt(at + DEFENSE, state.getDefense());
+        records.putInt(at + EXPERIENCE, state.getExperience());
+        records.putInt(at + MAX_HEALTH, state.getMaxHealth());
+        records.putInt(at + HEALTH, state.getHealth());
+        records.putInt(at + SHAPE, state.getShapeSignature());
+    }
+
+    /**
+     * Changes a Lutemon's location in its record
+     * @return false if it isn't stored
+     */
+    public synchronized boolean move(int id, String location) throws IOException {
+        int index = indexOf(id);
+        if (index < 0) {
+            return false;
+        }
+        clearSaved();
+        records.putShort(position(index) + LOCATION, (short) locationSlot(location));
+        return true;
+    }
+
+    /**
+     * Marks a Lutemon's record as removed
+     * @return false if it isn't stored
+     */
+    public synchronized boolean remove(int id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return false;
+        }
+        clearSaved();
+        records.putShort(position(index) + FLAGS, REMOVED);
+        records.putInt(LIVE_OFFSET, getLiveCount() - 1);
+        return true;
+    }
+
+    /**
+     * Gets the slot of a location, adding it to the header if it is new
+     */
+    private int locationSlot(String location) throws IOException {
+        int slot = locations.indexOf(location);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (locations.size() == MAX_LOCATIONS) {
+            throw new IOException("Too many locations");
+        }
+        slot = locations.size();
+        records.putInt(LOCATIONS_OFFSET + slot * 4, appendString(location));
+        locations.add(location);
+        records.putInt(LOCATION_COUNT_OFFSET, locations.size());
+        return slot;
+    }
+
+    /**
+     * Doubles the record capacity and maps the larger file
+     */
+    private void grow() throws IOException {
+        capacity *= 2;
+        recordFile.setLength(HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        records = recordFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, recordFile.length());
+    }
+
+    /**
+     * Appends a length-prefixed UTF-8 string to the string file
+     * @return its offset
+     */
+    private int appendString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IOException("String too long");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(2 + bytes.length);
+        buffer.putShort((short) bytes.length).put(bytes).flip();
+        long offset = stringsEnd;
+        while (buffer.hasRemaining()) {
+            stringFile.getChannel().write(buffer, offset + buffer.position());
+        }
+        stringsEnd += 2 + bytes.length;
+        return (int) offset;
+    }
+
+    private String readString(int offset) throws IOException {
+        if (strings == null || offset + 2 > strings.capacity()) {
+            mapStrings();
+        }
+        int length = strings.getShort(offset);
+        if (offset + 2 + length > strings.capacity()) {
+            mapStrings();
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = strings.get(offset + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps the whole string file again after it grew
+     */
+    private void mapStrings() throws IOException {
+        strings = stringFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, stringsEnd);
+    }
+
+    /**
+     * Writes changed pages to the disk
+     */
+    public synchronized void force() throws IOException {
+        records.force();
+        stringFile.getChannel().force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (records != null) {
+                records.force();
+            }
+        } finally {
+            recordFile.close();
+            stringFile.close();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.lutemon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Ordered index of Lutemon IDs by an integer score, used to find fair opponents.
+ * Entries are packed as (score << 32 | id) in a sorted set, so nearest and range
+ * queries as well as updates take O(log n). Not thread safe, Storage guards it.
+ */
+public class MatchmakingIndex {
+    private final TreeSet<Long> entries = new TreeSet<>();
+    private final Map<Integer, Integer> scores = new HashMap<>();
+
+    /**
+     * Power score from combat stats. Attack and defense both change damage per hit
+     * by one point, so they weigh the same; a point of health is worth less.
+     */
+    public static int powerScore(Lutemon lutemon) {
+        return 4 * lutemon.getTotalAttack() + 4 * lutemon.getDefense() + lutemon.getMaxHealth();
+    }
+
+    private static long pack(int score, int id) {
+        return ((long) score << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static int unpackId(long entry) {
+        return (int) entry;
+    }
+
+    private static int unpackScore(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    /**
+     * Adds a Lutemon or moves it to its new score
+     */
+    public void update(int id, int score) {
+        Integer oldScore = scores.put(id, score);
+        if (oldScore != null) {
+            if (oldScore == score) return;
+            entries.remove(pack(oldScore, id));
+        }
+        entries.add(pack(score, id));
+    }
+
+    /**
+     * Removes a Lutemon from the index
+     * @return false if it wasn't indexed
+     */
+    public boolean remove(int id) {
+        Integer oldScore = scores.remove(id);
+        if (oldScore == null) return false;
+        entries.remove(pack(oldScore, id));
+        return true;
+    }
+
+    public boolean contains(int id) {
+        return scores.containsKey(id);
+    }
+
+    /**
+     * Gets the indexed score of a Lutemon
+     * @return the score, or null if it isn't indexed
+     */
+    public Integer getScore(int id) {
+        return scores.get(id);
+    }
+
+    public int size() {
+        return scores.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        scores.clear();
+    }
+
+    /**
+     * Finds the Lutemon with the score closest to the given one, ties go to the lower score
+     * @param excludeId ID that must not be returned, usually the Lutemon looking for a match
+     * @return the ID, or -1 if there is no other Lutemon
+     */
+    public int findNearest(int score, int excludeId) {
+        long target = pack(score, 0);
+        Long below = entries.lower(target);
+        Long above = entries.ceiling(target);
+        if (below != null && unpackId(below) == excludeId) below = entries.lower(below);
+        if (above != null && unpackId(above) == excludeId) above = entries.higher(above);
+
+        if (below == null && above == null) return -1;
+        if (below == null) return unpackId(above);
+        if (above == null) return unpackId(below);
+        long belowDistance = (long) score - unpackScore(below);
+        long aboveDistance = (long) unpackScore(above) - score;
+        return unpackId(aboveDistance < belowDistance ? above : below);
+    }
+
+    /**
+     * Finds the closest opponent for an indexed Lutemon
+     * @return the ID, or -1 if the Lutemon isn't indexed or has no opponent
+     */
+    public int findOpponent(int id) {
+        Integer score = scores.get(id);
+        return score == null ? -1 : findNearest(score, id);
+    }
+
+    /**
+     * Gets the IDs with a score between min and max (inclusive), lowest score first
+     * @param limit maximum number of IDs to return
+     */
+    public List<Integer> findInRange(int minScore, int maxScore, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        if (minScore > maxScore) return ids;
+        NavigableSet<Long> range = entries.subSet(
+            pack(minScore, 0), true, pack(maxScore, -1), true);
+        for (long entry : range) {
+            if (ids.size() >= limit) break;
+            ids.add(unpackId(entry));
+        }
+        return ids;
+    }
+}
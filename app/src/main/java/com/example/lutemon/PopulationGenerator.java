@@ -0,0 +1,132 @@
+package com.example.lutemon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * Builds synthetic rosters of Lutemons for load and scaling tests.
+ * The same seed and settings always give the same names, species, shapes and stats.
+ * Only IDs differ between runs, since they come from the shared allocator.
+ */
+public class PopulationGenerator {
+    // Geometric training counts have a long tail, cut it off here
+    private static final int MAX_TRAININGS = 1000;
+
+    private final long seed;
+    private final SpeciesRegistry registry;
+    private String namePrefix = "Lutemon";
+    private final double[] speciesWeights;
+    private double meanTrainings = 2.0;
+    private int statSpread = 1;
+
+    public PopulationGenerator(long seed) {
+        this.seed = seed;
+        this.registry = SpeciesRegistry.getDefault();
+        speciesWeights = new double[registry.getSpeciesCount()];
+        for (int i = 0; i < speciesWeights.length; i++) {
+            speciesWeights[i] = registry.getRarity(i);
+        }
+    }
+
+    /**
+     * Sets the name prefix, Lutemons are named prefix1, prefix2 and so on
+     */
+    public PopulationGenerator setNamePrefix(String namePrefix) {
+        this.namePrefix = namePrefix;
+        return this;
+    }
+
+    /**
+     * Sets the relative weight of a species in the color mix, the registry rarity by default
+     */
+    public PopulationGenerator setSpeciesWeight(String species, double weight) {
+        if (!registry.contains(species) || weight < 0) {
+            throw new IllegalArgumentException("Invalid weight " + weight + " for " + species);
+        }
+        speciesWeights[registry.ordinalOf(species)] = weight;
+        return this;
+    }
+
+    /**
+     * Sets the average number of training sessions, drawn from a geometric distribution
+     */
+    public PopulationGenerator setMeanTrainings(double meanTrainings) {
+        if (meanTrainings < 0) {
+            throw new IllegalArgumentException("Mean trainings must not be negative");
+        }
+        this.meanTrainings = meanTrainings;
+        return this;
+    }
+
+    /**
+     * Sets how far defense may differ from the species base, health varies twice as much
+     */
+    public PopulationGenerator setStatSpread(int statSpread) {
+        if (statSpread < 0) {
+            throw new IllegalArgumentException("Stat spread must not be negative");
+        }
+        this.statSpread = statSpread;
+        return this;
+    }
+
+    /**
+     * Creates Lutemons one at a time, so very large rosters don't have to fit in memory
+     */
+    public void generate(int count, Consumer<Lutemon> consumer) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative");
+        }
+        double[] cumulative = new double[speciesWeights.length];
+        double total = 0;
+        for (int i = 0; i < speciesWeights.length; i++) {
+            total += speciesWeights[i];
+            cumulative[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalStateException("At least one species must have a weight above 0");
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        // Chance of stopping after each session gives the requested mean
+        double stopChance = 1.0 / (meanTrainings + 1.0);
+        for (int i = 0; i < count; i++) {
+            int species = pickSpecies(cumulative, random.nextDouble() * total);
+            Lutemon lutemon = new Lutemon(namePrefix + (i + 1), registry.getName(species),
+                random.nextLong());
+
+            int trainings = 0;
+            while (trainings < MAX_TRAININGS && random.nextDouble() >= stopChance) {
+                trainings++;
+            }
+            for (int t = 0; t < trainings; t++) {
+                lutemon.train();
+            }
+            if (statSpread > 0) {
+                lutemon.setDefense(Math.max(0,
+                    lutemon.getDefense() + random.nextInt(-statSpread, statSpread + 1)));
+                lutemon.setMaxHealth(Math.max(1,
+                    lutemon.getMaxHealth() + random.nextInt(-2 * statSpread, 2 * statSpread + 1)));
+            }
+            lutemon.heal();
+            consumer.accept(lutemon);
+        }
+    }
+
+    /**
+     * Creates a roster as a list, e.g. for Storage.addAll()
+     */
+    public List<Lutemon> generate(int count) {
+        List<Lutemon> lutemons = new ArrayList<>(count);
+        generate(count, lutemons::add);
+        return lutemons;
+    }
+
+    private static int pickSpecies(double[] cumulative, double target) {
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (target < cumulative[i]) return i;
+        }
+        return cumulative.length - 1;
+    }
+}
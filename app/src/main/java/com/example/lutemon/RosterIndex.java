@@ -0,0 +1,177 @@
+package com.example.lutemon;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.stream.LongStream;
+
+/**
+ * Secondary indexes for roster queries. For every sortable stat there is one
+ * ordered set of all Lutemons, one per species and one per location, with entries
+ * packed as (value << 32 | id) like in MatchmakingIndex. The sets hold primitive
+ * longs in sorted runs, so a million Lutemons don't add tens of millions of boxed
+ * entries. A query walks one set from its range or cursor, so it costs O(log n)
+ * plus the entries it reads.
+ * Not thread safe, Storage guards it.
+ */
+public class RosterIndex {
+    private static final int KEYS = LutemonQuery.KEY_COUNT;
+
+    private final LongSortedSet[] all;
+    private final LongSortedSet[][] bySpecies;
+    // Sets of each location by key, added when a Lutemon first goes there
+    private final Map<String, LongSortedSet[]> byLocation = new HashMap<>();
+    // Indexed value of every key, the species and the location, to find the old entries on update
+    private final IntIntMap[] values;
+    private final IntIntMap speciesById = new IntIntMap();
+    private final IntObjectMap<String> locationById = new IntObjectMap<>();
+
+    public RosterIndex(int speciesCount) {
+        all = new LongSortedSet[KEYS];
+        bySpecies = new LongSortedSet[KEYS][speciesCount];
+        values = new IntIntMap[KEYS];
+        for (int k = 0; k < KEYS; k++) {
+            all[k] = new LongSortedSet();
+            for (int s = 0; s < speciesCount; s++) {
+                bySpecies[k][s] = new LongSortedSet();
+            }
+            values[k] = new IntIntMap();
+        }
+    }
+
+    static long pack(int value, int id) {
+        return ((long) value << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    static int unpackId(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Adds a Lutemon or moves it to its new values and location, values given in SortKey order
+     */
+    public void update(int id, int species, String location, int[] newValues) {
+        int oldSpecies = speciesById.put(id, species);
+        String oldLocation = locationById.put(id, location);
+        LongSortedSet[] oldLocationSets = oldLocation != null ? byLocation.get(oldLocation) : null;
+        LongSortedSet[] locationSets = locationSets(location);
+        boolean moved = !location.equals(oldLocation);
+        for (int k = 0; k < KEYS; k++) {
+            boolean indexed = values[k].containsKey(id);
+            int oldValue = values[k].put(id, newValues[k]);
+            if (indexed) {
+                if (oldValue == newValues[k] && oldSpecies == species && !moved) continue;
+                all[k].remove(pack(oldValue, id));
+                bySpecies[k][oldSpecies].remove(pack(oldValue, id));
+                oldLocationSets[k].remove(pack(oldValue, id));
+            }
+            all[k].add(pack(newValues[k], id));
+            bySpecies[k][species].add(pack(newValues[k], id));
+            locationSets[k].add(pack(newValues[k], id));
+        }
+    }
+
+    private LongSortedSet[] locationSets(String location) {
+        LongSortedSet[] sets = byLocation.get(location);
+        if (sets == null) {
+            sets = new LongSortedSet[KEYS];
+            for (int k = 0; k < KEYS; k++) {
+                sets[k] = new LongSortedSet();
+            }
+            byLocation.put(location, sets);
+        }
+        return sets;
+    }
+
+    /**
+     * Removes a Lutemon from every index
+     * @return false if it wasn't indexed
+     */
+    public boolean remove(int id) {
+        if (!speciesById.containsKey(id)) return false;
+        int species = speciesById.remove(id);
+        LongSortedSet[] locationSets = byLocation.get(locationById.remove(id));
+        for (int k = 0; k < KEYS; k++) {
+            long entry = pack(values[k].remove(id), id);
+            all[k].remove(entry);
+            bySpecies[k][species].remove(entry);
+            locationSets[k].remove(entry);
+        }
+        return true;
+    }
+
+    public boolean contains(int id) {
+        return speciesById.containsKey(id);
+    }
+
+    /**
+     * Gets the indexed species ordinal, or -1 if the Lutemon isn't indexed
+     */
+    public int getSpecies(int id) {
+        return speciesById.get(id);
+    }
+
+    /**
+     * Gets the indexed value of a stat
+     */
+    public int getValue(LutemonQuery.SortKey key, int id) {
+        return values[key.ordinal()].get(id);
+    }
+
+    public int size() {
+        return speciesById.size();
+    }
+
+    public void clear() {
+        for (int k = 0; k < KEYS; k++) {
+            all[k].clear();
+            for (LongSortedSet set : bySpecies[k]) {
+                set.clear();
+            }
+            values[k].clear();
+        }
+        byLocation.clear();
+        speciesById.clear();
+        locationById.clear();
+    }
+
+    /**
+     * Walks the entries of one stat between min and max, in query order. With both
+     * a species and a location it walks the smaller of their sets, so the caller
+     * still checks the other one.
+     * @param species species ordinal, or -1 for all species
+     * @param location location name, or null for all locations
+     * @param hasCursor if true, starts after the entry equal to cursor
+     */
+    public PrimitiveIterator.OfLong scan(LutemonQuery.SortKey key, int species, String location,
+                                         int min, int max, boolean descending, boolean hasCursor,
+                                         long cursor) {
+        LongSortedSet set = species < 0 ? all[key.ordinal()] : bySpecies[key.ordinal()][species];
+        if (location != null) {
+            LongSortedSet[] locationSets = byLocation.get(location);
+            if (locationSets == null) {
+                return LongStream.empty().iterator();
+            }
+            if (species < 0 || locationSets[key.ordinal()].size() < set.size()) {
+                set = locationSets[key.ordinal()];
+            }
+        }
+        long low = pack(min, 0);
+        long high = pack(max, -1);
+        boolean lowInclusive = true;
+        boolean highInclusive = true;
+        if (hasCursor) {
+            if (descending && cursor <= high) {
+                high = cursor;
+                highInclusive = false;
+            } else if (!descending && cursor >= low) {
+                low = cursor;
+                lowInclusive = false;
+            }
+        }
+        if (low > high || (low == high && !(lowInclusive && highInclusive))) {
+            return LongStream.empty().iterator();
+        }
+        return set.range(low, lowInclusive, high, highInclusive, descending);
+    }
+}
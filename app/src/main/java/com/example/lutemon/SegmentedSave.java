@@ -0,0 +1,138 @@
+package com.example.lutemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoded segments of the Lutemon and stats files for one save. A segment holds
+ * the Lutemons or the stats of a range of IDs, so a save after a few changes
+ * only writes the segments that hold them. A complete save replaces every
+ * segment, an incremental one keeps the segments it doesn't include.
+ */
+final class SegmentedSave {
+    // Each segment covers 1024 IDs
+    static final int SEGMENT_SHIFT = 10;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    // Marks a segment that no longer holds anything
+    private static final byte[] EMPTY = new byte[0];
+
+    final boolean complete;
+    // Encoded segment files by segment index, empty once a segment has nothing left
+    final IntObjectMap<byte[]> lutemonSegments = new IntObjectMap<>();
+    final IntObjectMap<byte[]> statsSegments = new IntObjectMap<>();
+    int idHighWaterMark = -1;
+    int totalBattles;
+    int totalTrainings;
+    int totalTournaments;
+
+    SegmentedSave(boolean complete) {
+        this.complete = complete;
+    }
+
+    static int segmentOf(int id) {
+        return id >>> SEGMENT_SHIFT;
+    }
+
+    static int firstId(int segment) {
+        return segment << SEGMENT_SHIFT;
+    }
+
+    /**
+     * Encodes the Lutemons of a segment by location
+     */
+    void putLutemons(int segment, Map<String, List<Lutemon>> locationMap) {
+        boolean empty = true;
+        for (List<Lutemon> lutemons : locationMap.values()) {
+            empty &= lutemons.isEmpty();
+        }
+        if (empty) {
+            lutemonSegments.put(segment, EMPTY);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            // The ID high-water mark and the generation are kept in the manifest
+            BinaryCodec.writeLutemons(bytes, locationMap, -1, 0);
+        } catch (IOException e) {
+            // Only writes to memory
+            throw new IllegalStateException(e);
+        }
+        lutemonSegments.put(segment, bytes.toByteArray());
+    }
+
+    /**
+     * Encodes the stats of a segment
+     */
+    void putStats(int segment, List<LutemonStats> entries) {
+        if (entries.isEmpty()) {
+            statsSegments.put(segment, EMPTY);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            BinaryCodec.writeStatsSegment(bytes, entries);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        statsSegments.put(segment, bytes.toByteArray());
+    }
+
+    void putTotals(GlobalStats stats) {
+        totalBattles = stats.getTotalBattles();
+        totalTrainings = stats.getTotalTrainings();
+        totalTournaments = stats.getTotalTournaments();
+    }
+
+    /**
+     * Encodes every Lutemon into its segment. Segments hold each location's
+     * Lutemons in ID order, like the ones Storage encodes after changes.
+     */
+    void putAllLutemons(Map<String, List<Lutemon>> locationMap) {
+        IntObjectMap<Map<String, List<Lutemon>>> segments = new IntObjectMap<>();
+        for (Map.Entry<String, List<Lutemon>> entry : locationMap.entrySet()) {
+            for (Lutemon lutemon : entry.getValue()) {
+                Map<String, List<Lutemon>> segment = segments.get(segmentOf(lutemon.getId()));
+                if (segment == null) {
+                    segment = new LinkedHashMap<>();
+                    segments.put(segmentOf(lutemon.getId()), segment);
+                }
+                segment.computeIfAbsent(entry.getKey(), location -> new ArrayList<>()).add(lutemon);
+            }
+        }
+        segments.forEach((index, segment) -> {
+            for (List<Lutemon> lutemons : segment.values()) {
+                lutemons.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+            }
+            putLutemons(index, segment);
+        });
+    }
+
+    /**
+     * Encodes the totals and every Lutemon's stats into its segment
+     */
+    void putAllStats(GlobalStats stats) {
+        putTotals(stats);
+        putAllStats(stats.getAllLutemonStats().values());
+    }
+
+    /**
+     * Encodes every given Lutemon's stats into its segment, the totals are put separately
+     */
+    void putAllStats(Collection<LutemonStats> entries) {
+        IntObjectMap<List<LutemonStats>> segments = new IntObjectMap<>();
+        for (LutemonStats entry : entries) {
+            List<LutemonStats> segment = segments.get(segmentOf(entry.getLutemonId()));
+            if (segment == null) {
+                segment = new ArrayList<>();
+                segments.put(segmentOf(entry.getLutemonId()), segment);
+            }
+            segment.add(entry);
+        }
+        segments.forEach(this::putStats);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.lutemon;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lutemon shapes packed into an int signature, and a shared cache of their unit vertices.
+ * A signature holds the point count (3-5) in bits 0-1 and a 3 bit radius index (0-7)
+ * per point above that, so a shape is rebuilt from 4 bytes instead of stored as an array.
+ */
+public final class ShapeCache {
+    public static final int MIN_POINTS = 3;
+    public static final int MAX_POINTS = 5;
+    private static final int RADIUS_LEVELS = 8;
+
+    // Unit vertices as x0, y0, x1, y1... keyed by signature, shared by every view
+    private static final ConcurrentHashMap<Integer, float[]> VERTICES = new ConcurrentHashMap<>();
+
+    private ShapeCache() {
+    }
+
+    /**
+     * Derives a shape from a seed, the same seed always gives the same shape
+     */
+    public static int signatureForSeed(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int points = random.nextInt(MAX_POINTS - MIN_POINTS + 1) + MIN_POINTS;
+        int[] radiusIndices = new int[points];
+        for (int i = 0; i < points; i++) {
+            radiusIndices[i] = random.nextInt(RADIUS_LEVELS);
+        }
+        return signatureOf(radiusIndices);
+    }
+
+    /**
+     * Packs radius indices (one per point) into a signature
+     */
+    public static int signatureOf(int[] radiusIndices) {
+        int points = radiusIndices.length;
+        if (points < MIN_POINTS || points > MAX_POINTS) {
+            throw new IllegalArgumentException("Shapes have 3 to 5 points, not " + points);
+        }
+        int signature = points - MIN_POINTS;
+        for (int i = 0; i < points; i++) {
+            int index = radiusIndices[i];
+            if (index < 0 || index >= RADIUS_LEVELS) {
+                throw new IllegalArgumentException("Radius index out of range: " + index);
+            }
+            signature |= index << (2 + 3 * i);
+        }
+        return signature;
+    }
+
+    public static int getPointCount(int signature) {
+        return (signature & 3) + MIN_POINTS;
+    }
+
+    /**
+     * Gets the relative radius of a point, between ~0.33 and ~0.92
+     */
+    public static float getRadius(int signature, int index) {
+        int radiusIndex = (signature >>> (2 + 3 * index)) & 7;
+        return (radiusIndex + 4f) / 12f;
+    }
+
+    /**
+     * Gets the vertices of a shape with radius 1 around the origin, first point at angle 0.
+     * The array is shared and must not be changed; views scale and translate it.
+     */
+    public static float[] getUnitVertices(int signature) {
+        float[] vertices = VERTICES.get(signature);
+        if (vertices == null) {
+            vertices = VERTICES.computeIfAbsent(signature, ShapeCache::computeVertices);
+        }
+        return vertices;
+    }
+
+    private static float[] computeVertices(int signature) {
+        int points = getPointCount(signature);
+        float[] vertices = new float[points * 2];
+        for (int i = 0; i < points; i++) {
+            double angle = 2 * Math.PI * i / points;
+            float radius = getRadius(signature, i);
+            vertices[2 * i] = radius * (float) Math.cos(angle);
+            vertices[2 * i + 1] = radius * (float) Math.sin(angle);
+        }
+        return vertices;
+    }
+
+    /**
+     * Gets the number of shapes whose vertices are cached
+     */
+    static int size() {
+        return VERTICES.size();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.lutemon;
+
+import android.content.Context;
+import android.content.res.Resources;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Species definitions loaded from the bundled res/raw/species.csv.
+ * Each species gets an ordinal in file order and every stat is kept in a flat
+ * array indexed by it, so lookups on hot paths do no string work.
+ * Display names and palette colors come from the color_<name> strings and
+ * lutemon_<name> colors when the app has them, so they can be translated.
+ */
+public final class SpeciesRegistry {
+    private static final String RESOURCE = "species.csv";
+    private static final int COLUMNS = 8;
+
+    private final String[] names;
+    private final String[] displayNames;
+    private final int[] baseAttack;
+    private final int[] baseDefense;
+    private final int[] baseMaxHealth;
+    private final int[] trainingBonus;
+    private final int[] paletteColor;
+    private final double[] rarity;
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    // Set by load() in the app
+    private static volatile SpeciesRegistry loaded;
+
+    private static class Holder {
+        static final SpeciesRegistry DEFAULT = loadFromClasspath();
+    }
+
+    /**
+     * Gets the registry of the bundled species. The app loads it with load(),
+     * unit tests without a Context read species.csv from the classpath.
+     */
+    public static SpeciesRegistry getDefault() {
+        SpeciesRegistry registry = loaded;
+        return registry != null ? registry : Holder.DEFAULT;
+    }
+
+    /**
+     * Loads the bundled species and their display resources, call before using
+     * any Lutemon. Later calls keep the first registry.
+     */
+    public static synchronized void load(Context context) {
+        if (loaded != null) return;
+        Resources resources = context.getResources();
+        try (Reader reader = new InputStreamReader(
+                resources.openRawResource(R.raw.species), StandardCharsets.UTF_8)) {
+            SpeciesRegistry registry = new SpeciesRegistry(reader);
+            registry.applyResources(resources, context.getPackageName());
+            loaded = registry;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + RESOURCE, e);
+        }
+    }
+
+    private static SpeciesRegistry loadFromClasspath() {
+        InputStream stream = SpeciesRegistry.class.getClassLoader().getResourceAsStream(RESOURCE);
+        if (stream == null) {
+            throw new IllegalStateException("Missing " + RESOURCE + ", call SpeciesRegistry.load() first");
+        }
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            return new SpeciesRegistry(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + RESOURCE, e);
+        }
+    }
+
+    /**
+     * Takes display names and palette colors from the app's resources keyed by
+     * species, the values in species.csv are kept for species without them
+     */
+    private void applyResources(Resources resources, String packageName) {
+        for (int i = 0; i < names.length; i++) {
+            int name = resources.getIdentifier("color_" + names[i], "string", packageName);
+            if (name != 0) {
+                displayNames[i] = resources.getString(name);
+            }
+            int color = resources.getIdentifier("lutemon_" + names[i], "color", packageName);
+            if (color != 0) {
+                paletteColor[i] = resources.getColor(color, null);
+            }
+        }
+    }
+
+    /**
+     * Parses species definitions, one comma separated line per species.
+     * Empty lines and lines starting with # are skipped.
+     */
+    SpeciesRegistry(Reader source) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split(",");
+            if (fields.length != COLUMNS) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected "
+                    + COLUMNS + " fields but found " + fields.length);
+            }
+            for (int i = 0; i < fields.length; i++) fields[i] = fields[i].trim();
+            rows.add(fields);
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("No species defined");
+        }
+
+        int count = rows.size();
+        names = new String[count];
+        displayNames = new String[count];
+        baseAttack = new int[count];
+        baseDefense = new int[count];
+        baseMaxHealth = new int[count];
+        trainingBonus = new int[count];
+        paletteColor = new int[count];
+        rarity = new double[count];
+
+        double totalRarity = 0;
+        for (int i = 0; i < count; i++) {
+            String[] fields = rows.get(i);
+            names[i] = fields[0].toLowerCase(Locale.ROOT);
+            displayNames[i] = fields[1];
+            baseAttack[i] = Integer.parseInt(fields[2]);
+            baseDefense[i] = Integer.parseInt(fields[3]);
+            baseMaxHealth[i] = Integer.parseInt(fields[4]);
+            trainingBonus[i] = Integer.parseInt(fields[5]);
+            paletteColor[i] = parseColor(fields[6]);
+            rarity[i] = Double.parseDouble(fields[7]);
+            if (rarity[i] < 0) {
+                throw new IllegalArgumentException("Negative rarity for " + names[i]);
+            }
+            totalRarity += rarity[i];
+            if (ordinals.put(names[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate species " + names[i]);
+            }
+        }
+        if (totalRarity <= 0) {
+            throw new IllegalArgumentException("At least one species must have a rarity above 0");
+        }
+    }
+
+    /**
+     * Parses #RRGGBB or #AARRGGBB into an ARGB color
+     */
+    private static int parseColor(String value) {
+        if (!value.startsWith("#") || (value.length() != 7 && value.length() != 9)) {
+            throw new IllegalArgumentException("Invalid color " + value);
+        }
+        int color = (int) Long.parseLong(value.substring(1), 16);
+        return value.length() == 7 ? 0xFF000000 | color : color;
+    }
+
+    /**
+     * Resolves a species name, ignoring case
+     * @return the ordinal, or 0 (the fallback species) if the name is unknown
+     */
+    public int ordinalOf(String name) {
+        if (name == null) return 0;
+        Integer ordinal = ordinals.get(name.toLowerCase(Locale.ROOT));
+        return ordinal == null ? 0 : ordinal;
+    }
+
+    public boolean contains(String name) {
+        return name != null && ordinals.containsKey(name.toLowerCase(Locale.ROOT));
+    }
+
+    public int getSpeciesCount() { return names.length; }
+    public String getName(int ordinal) { return names[ordinal]; }
+    public String getDisplayName(int ordinal) { return displayNames[ordinal]; }
+    public int getBaseAttack(int ordinal) { return baseAttack[ordinal]; }
+    public int getBaseDefense(int ordinal) { return baseDefense[ordinal]; }
+    public int getBaseMaxHealth(int ordinal) { return baseMaxHealth[ordinal]; }
+    public int getTrainingBonus(int ordinal) { return trainingBonus[ordinal]; }
+    public int getPaletteColor(int ordinal) { return paletteColor[ordinal]; }
+    public double getRarity(int ordinal) { return rarity[ordinal]; }
+}
@@ -30,23 +30,41 @@ public class StatsDetailFragment extends Fragment {
                            Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_stats_detail, container, false);
         
-        // Get arguments and storage
+        // Get arguments
         if (getArguments() != null) {
             lutemonId = getArguments().getInt("lutemonId", -1);
             source = getArguments().getString("source", "home");
         }
-        storage = ((MainActivity) requireActivity()).getStorage();
 
         // Check for valid lutemonId
         if (lutemonId == -1) {
             requireActivity().onBackPressed();
             return view;
         }
-        
+        return view;
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        // Fill in the stats as soon as the storage is loaded
+        if (lutemonId != -1) {
+            ((MainActivity) requireActivity()).whenStorageReady(this::showStats);
+        }
+    }
+
+    /**
+     * Shows the Lutemon and its battle stats
+     */
+    private void showStats(Storage loaded) {
+        View view = getView();
+        // The view was destroyed while loading
+        if (view == null) return;
+        storage = loaded;
         Lutemon lutemon = storage.getLutemon(lutemonId);
         if (lutemon == null) {
             requireActivity().onBackPressed();
-            return view;
+            return;
         }
 
         // Set up basic info
@@ -74,8 +92,6 @@ public class StatsDetailFragment extends Fragment {
             setupChart(view.findViewById(R.id.experience_chart), 
                 stats.getExperienceHistory(), "Experience", Color.GREEN);
         }
-
-        return view;
     }
 
     private void setupChart(LineChart chart, List<LutemonStats.StatPoint> history, 
@@ -2,31 +2,574 @@ package com.example.lutemon;
 
 import android.content.Context;
 import android.util.Log;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
- * Manages storage and movement of Lutemons between different locations
+ * Manages storage and movement of Lutemons between different locations.
+ * All methods are synchronized, so arenas can fight on background threads.
  */
 public class Storage {
     private static final String TAG = "LutemonStorage";
     public static final String HOME = "home";
     public static final String TRAINING = "training";
     public static final String BATTLE = "battle";
+    public static final String ARENA_PREFIX = "arena:";
     private static final int MAX_BATTLE_LUTEMONS = 2;
+    // Write delay of a storage that keeps its changes in memory and never writes
+    static final long NEVER_SAVE = Long.MIN_VALUE;
+    // How long flush() waits for the I/O thread
+    private static final long FLUSH_TIMEOUT_MILLIS = 2000;
+    // Stats copied per hold of the lock for a complete save
+    private static final int STATS_COPY_BATCH = 1024;
 
-    private final Map<String, List<Lutemon>> locationMap;
+    private final Map<String, LocationList> locationMap = new LinkedHashMap<>();
     private final DataManager dataManager;
     private final GlobalStats stats;
+    // False for a storage created with NEVER_SAVE
+    private final boolean persistent;
+    // Writes saves on a background thread, null to write them right away
+    private final WriteBehindSaver saver;
+    // Lutemons changed since the saver last appended to the journal, and whether
+    // their stats changed too. Only used with a saver.
+    private final Map<Integer, Boolean> journalPending;
+    // Segments of Lutemons changed since the saver last compacted, only used with a saver
+    private final Set<Integer> changedSegments;
+    // Generation of the last synchronous save, each one takes the next so its
+    // segment files never replace the ones the current manifest lists
+    private long generation;
+
+    // Every Lutemon by ID, with its location and its slot in that location's list
+    private final IntObjectMap<Lutemon> lutemonsById = new IntObjectMap<>();
+    private final IntObjectMap<String> locationById = new IntObjectMap<>();
+    private final IntIntMap positionById = new IntIntMap();
+    // Storage order of the next Lutemon added to a location, above every saved one
+    private long nextOrder;
+
+    // Lutemons outside battle locations, ordered by power score and tournament rating
+    private final MatchmakingIndex powerIndex = new MatchmakingIndex();
+    private final MatchmakingIndex ratingIndex = new MatchmakingIndex();
+
+    // Every Lutemon ordered by each sortable stat, for query()
+    private final RosterIndex rosterIndex =
+        new RosterIndex(SpeciesRegistry.getDefault().getSpeciesCount());
+
+    // Changes waiting for the end of the current call or transaction, and their listeners
+    private final ChangeFeed changeFeed = new ChangeFeed();
+
+    // Mapped copy of every Lutemon kept current in place, null if there is none
+    private MappedLutemonStore mirror;
+    private final ChangeFeed.Listener mirrorListener = this::mirrorChanges;
+    // Generation and journal length of the files this storage was loaded from, and
+    // its version then, a mapped store marked with them needs no rewrite
+    private long loadedGeneration = -1;
+    private int loadedJournalBytes = -1;
+    private long loadedVersion;
+
+    // Bumped by every change to the stored Lutemons, with the changes since the latest
+    // snapshot of everything and that snapshot
+    private volatile long modCount;
+    private final StorageSnapshot.Changes snapshotChanges = new StorageSnapshot.Changes();
+    private volatile StorageSnapshot snapshot;
+
+    // Nesting depth of open transactions and the files they still need to write
+    private int transactionDepth;
+    private boolean lutemonsDirty;
+    private boolean statsDirty;
+    // What each open transaction needs to roll back, the innermost last
+    private final List<Savepoint> savepoints = new ArrayList<>();
+
+    /**
+     * State before a transaction began, and before it first changed each Lutemon
+     */
+    private static final class Savepoint {
+        final IntObjectMap<Undo> undo = new IntObjectMap<>();
+        final int totalBattles;
+        final int totalTrainings;
+        final int totalTournaments;
+        final int changeMark;
+        final boolean lutemonsDirty;
+        final boolean statsDirty;
+
+        Savepoint(GlobalStats stats, int changeMark, boolean lutemonsDirty, boolean statsDirty) {
+            this.totalBattles = stats.getTotalBattles();
+            this.totalTrainings = stats.getTotalTrainings();
+            this.totalTournaments = stats.getTotalTournaments();
+            this.changeMark = changeMark;
+            this.lutemonsDirty = lutemonsDirty;
+            this.statsDirty = statsDirty;
+        }
+    }
+
+    /**
+     * A Lutemon's state, slot and stats before a transaction first changed it.
+     * The Lutemon is null if it wasn't stored then.
+     */
+    private static final class Undo {
+        final Lutemon lutemon;
+        final LutemonSnapshot state;
+        final String location;
+        final int slot;
+        final long order;
+        final LutemonStats stats;
+
+        Undo(Lutemon lutemon, String location, int slot, LutemonStats stats) {
+            this.lutemon = lutemon;
+            this.state = lutemon != null ? lutemon.getSnapshot() : null;
+            this.location = location;
+            this.slot = slot;
+            this.order = lutemon != null ? lutemon.getStorageOrder() : -1;
+            this.stats = stats != null ? stats.copy() : null;
+        }
+    }
 
     public Storage(Context context) {
-        dataManager = new DataManager(context);
-        locationMap = dataManager.loadLutemons();
-        stats = dataManager.loadStats();
-        updateIdCounter();
-        initializeStats();
+        this(new DataManager(context), WriteBehindSaver.DEFAULT_DELAY_MILLIS);
+        attachMirror(dataManager.openLutemonStore());
+    }
+
+    Storage(DataManager dataManager) {
+        this(dataManager, -1);
+    }
+
+    /**
+     * Creates a storage that saves on a background thread after the given delay,
+     * on the calling thread if the delay is negative, or never with NEVER_SAVE
+     */
+    Storage(DataManager dataManager, long writeDelayMillis) {
+        this(dataManager, writeDelayMillis, WriteBehindSaver.DEFAULT_JOURNAL_LIMIT_BYTES);
+    }
+
+    /**
+     * Creates a storage whose background saves compact the journal once it
+     * reaches the given size
+     */
+    Storage(DataManager dataManager, long writeDelayMillis, int journalLimitBytes) {
+        this(dataManager, writeDelayMillis, journalLimitBytes,
+            dataManager.loadLutemons(), dataManager.loadStats(), dataManager.readJournal(), false);
+    }
+
+    /**
+     * Creates a storage from files StorageLoader already read. With deferBackfill
+     * missing stats are only created by backfillStats().
+     */
+    Storage(DataManager dataManager, long writeDelayMillis, int journalLimitBytes,
+            Map<String, List<Lutemon>> loadedLutemons, GlobalStats loadedStats, byte[] journal,
+            boolean deferBackfill) {
+        this.dataManager = dataManager;
+        this.persistent = writeDelayMillis != NEVER_SAVE;
+        this.changedSegments = writeDelayMillis >= 0 ? new HashSet<>() : null;
+        // Locked so the I/O thread only sees a fully loaded storage
+        synchronized (this) {
+            stats = loadedStats;
+            // Saves made while loading are staged and written once at the end
+            beginTransaction();
+            long lutemonsGeneration = dataManager.getLoadedLutemonsGeneration();
+            long statsGeneration = dataManager.getLoadedStatsGeneration();
+            long latest = Math.max(lutemonsGeneration, statsGeneration);
+            long journalGeneration = StorageJournal.readGeneration(journal);
+            int journalBytes = -1;
+            if (journalGeneration >= 0) {
+                // A crash during compaction can leave a file newer than the journal
+                int valid = replayJournal(journal, loadedLutemons, journalGeneration >= lutemonsGeneration,
+                    journalGeneration >= statsGeneration);
+                // Only an intact journal that continues both files can be appended to
+                if (valid == journal.length && journalGeneration >= latest) {
+                    journalBytes = valid;
+                }
+                latest = Math.max(latest, journalGeneration);
+            }
+            generation = latest;
+            boolean reordered = rebuildIndexes(loadedLutemons);
+            restoreIdCounter();
+            if (!deferBackfill) {
+                initializeStats();
+            }
+            rebuildMatchmaking();
+            if (writeDelayMillis >= 0) {
+                saver = new WriteBehindSaver(this, dataManager, writeDelayMillis,
+                    latest, journalBytes, journalLimitBytes);
+                loadedGeneration = latest;
+                loadedJournalBytes = journalBytes;
+                journalPending = new LinkedHashMap<>();
+                changeFeed.addListener(this::journalChanges, Runnable::run);
+                // Stats created while loading aren't in the journal, older single
+                // files are split into segments and new orders saved by a complete save
+                if (statsDirty || reordered || !dataManager.isSegmented()) {
+                    saver.requestSnapshot();
+                }
+            } else {
+                saver = null;
+                journalPending = null;
+            }
+            if (reordered) {
+                markLutemonsDirty();
+            }
+            commitTransaction();
+            loadedVersion = modCount;
+        }
+    }
+
+    /**
+     * Applies the journal on top of the loaded files, skipping the records of a
+     * file that is newer than the journal
+     * @return the length of the intact part of the journal
+     */
+    private int replayJournal(byte[] journal, Map<String, List<Lutemon>> loadedLutemons,
+                              boolean lutemonsCurrent, boolean statsCurrent) {
+        // Latest location of each journaled Lutemon in record order, null once removed
+        Map<Integer, String> journaled = new LinkedHashMap<>();
+        IntObjectMap<LutemonSnapshot> states = new IntObjectMap<>();
+        Map<Integer, Long> orders = new HashMap<>();
+        int valid = StorageJournal.replay(journal, new StorageJournal.Handler() {
+            @Override
+            public void lutemon(LutemonSnapshot state, String location, long order) {
+                if (lutemonsCurrent) {
+                    journaled.remove(state.getId());
+                    journaled.put(state.getId(), location);
+                    states.put(state.getId(), state);
+                    orders.put(state.getId(), order);
+                }
+            }
+
+            @Override
+            public void removed(int id) {
+                if (lutemonsCurrent) {
+                    journaled.remove(id);
+                    journaled.put(id, null);
+                }
+            }
+
+            @Override
+            public void stats(int totalBattles, int totalTrainings, int totalTournaments,
+                              LutemonStats lutemonStats) {
+                if (statsCurrent) {
+                    stats.restoreTotals(totalBattles, totalTrainings, totalTournaments);
+                    stats.addLutemonStats(lutemonStats);
+                }
+            }
+
+            @Override
+            public void idHighWaterMark(int mark) {
+                Lutemon.updateIdCounter(mark);
+            }
+        });
+        if (!journaled.isEmpty()) {
+            for (List<Lutemon> lutemons : loadedLutemons.values()) {
+                lutemons.removeIf(lutemon -> journaled.containsKey(lutemon.getId()));
+            }
+            Set<String> replayedLocations = new HashSet<>();
+            for (Map.Entry<Integer, String> entry : journaled.entrySet()) {
+                // The files don't have the replayed changes until the next compaction
+                if (changedSegments != null) {
+                    changedSegments.add(SegmentedSave.segmentOf(entry.getKey()));
+                }
+                if (entry.getValue() != null) {
+                    Lutemon lutemon = states.get(entry.getKey()).toLutemon();
+                    lutemon.setStorageOrder(orders.get(entry.getKey()));
+                    loadedLutemons.computeIfAbsent(entry.getValue(), location -> new ArrayList<>())
+                        .add(lutemon);
+                    replayedLocations.add(entry.getValue());
+                }
+            }
+            // Back in their places, a moved Lutemon's newer order puts it last
+            for (String location : replayedLocations) {
+                loadedLutemons.get(location).sort(
+                    (a, b) -> Long.compare(a.getStorageOrder(), b.getStorageOrder()));
+            }
+            Log.i(TAG, "Replayed " + journaled.size() + " journaled Lutemons");
+        }
+        return valid;
+    }
+
+    /**
+     * Remembers changed Lutemons for the next journal append, runs while publishing
+     */
+    private void journalChanges(List<StorageChange> changes) {
+        for (StorageChange change : changes) {
+            boolean statsChanged = change.getType() != StorageChange.Type.MOVED;
+            journalPending.merge(change.getLutemonId(), statsChanged, Boolean::logicalOr);
+            changedSegments.add(SegmentedSave.segmentOf(change.getLutemonId()));
+            if (statsChanged) {
+                stats.markDirty(change.getLutemonId());
+            }
+        }
+    }
+
+    /**
+     * Keeps a mapped store in step with this storage if it still holds exactly the
+     * loaded Lutemons, which its mark of the saved files tells without reading it
+     * @return false if the store has to be rewritten by attachMirror()
+     */
+    public synchronized boolean attachSavedMirror(MappedLutemonStore store) {
+        if (store == null || mirror != null) return false;
+        if (modCount != loadedVersion || !store.isSavedAt(loadedGeneration, loadedJournalBytes)) {
+            return false;
+        }
+        mirror = store;
+        changeFeed.addListener(mirrorListener, Runnable::run);
+        return true;
+    }
+
+    /**
+     * Keeps a mapped store in step with this storage, rewriting it first from a
+     * snapshot outside the lock if it doesn't hold the loaded Lutemons
+     */
+    public void attachMirror(MappedLutemonStore store) {
+        if (store == null || attachSavedMirror(store)) return;
+        StorageSnapshot snapshot = getSnapshot();
+        while (true) {
+            Log.i(TAG, "Rebuilding mapped store");
+            try {
+                rebuildMirror(store, snapshot);
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing mapped store: " + e.getMessage());
+                try {
+                    store.close();
+                } catch (IOException closeError) {
+                    Log.e(TAG, "Error closing mapped store: " + closeError.getMessage());
+                }
+                return;
+            }
+            synchronized (this) {
+                if (mirror != null) return;
+                // Changes made during the rewrite need another one
+                if (snapshot.isCurrent(modCount)) {
+                    mirror = store;
+                    changeFeed.addListener(mirrorListener, Runnable::run);
+                    return;
+                }
+                snapshot = getSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Rewrites a mapped store with the Lutemons of a snapshot in ID order
+     */
+    private static void rebuildMirror(MappedLutemonStore store, StorageSnapshot snapshot) throws IOException {
+        List<LutemonSnapshot> lutemons = new ArrayList<>(snapshot.size());
+        Map<Integer, String> locations = new HashMap<>();
+        for (String location : snapshot.getLocations()) {
+            for (LutemonSnapshot lutemon : snapshot.getLutemonsByLocation(location)) {
+                lutemons.add(lutemon);
+                locations.put(lutemon.getId(), location);
+            }
+        }
+        lutemons.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        store.reset();
+        for (LutemonSnapshot lutemon : lutemons) {
+            store.append(lutemon, locations.get(lutemon.getId()));
+        }
+    }
+
+    /**
+     * Writes changed Lutemons into their records in the mapped store. A change it
+     * can't apply in place, like a Lutemon restored below the highest ID, detaches
+     * the store, which is then rewritten when it is attached on the next launch.
+     */
+    private void mirrorChanges(List<StorageChange> changes) {
+        if (mirror == null) return;
+        try {
+            for (StorageChange change : changes) {
+                int id = change.getLutemonId();
+                Lutemon lutemon = lutemonsById.get(id);
+                boolean applied = true;
+                switch (change.getType()) {
+                    case ADDED:
+                        // IDs only grow, except after restoring older Lutemons
+                        applied = mirror.append(lutemon.getSnapshot(), change.getNewLocation());
+                        break;
+                    case MOVED:
+                    case STATS_CHANGED:
+                        applied = mirror.move(id, change.getNewLocation()) && mirror.update(lutemon.getSnapshot());
+                        break;
+                    case REMOVED:
+                        mirror.remove(id);
+                        break;
+                }
+                if (!applied) {
+                    Log.i(TAG, "Mapped store fell behind, detaching it");
+                    mirror.reset();
+                    detachMirror();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // The saved files don't depend on the store, so it is just left behind
+            Log.e(TAG, "Error writing mapped store, detaching it: " + e.getMessage());
+            detachMirror();
+        }
+    }
+
+    /**
+     * Marks the mapped store as matching the saved files, runs on the I/O thread
+     * after a write left nothing to save
+     */
+    synchronized void markMirrorSaved(long generation, int journalBytes) {
+        if (mirror == null || inTransaction() || saver.isDirty()) return;
+        try {
+            mirror.markSaved(generation, journalBytes);
+        } catch (IOException e) {
+            Log.e(TAG, "Error marking mapped store: " + e.getMessage());
+        }
+    }
+
+    private void detachMirror() {
+        changeFeed.removeListener(mirrorListener);
+        closeMirror();
+    }
+
+    private void closeMirror() {
+        try {
+            mirror.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing mapped store: " + e.getMessage());
+        }
+        mirror = null;
+    }
+
+    /**
+     * Encodes the latest state of every Lutemon changed since the last call
+     * @return the journal records, or null while a transaction is open
+     */
+    synchronized byte[] drainJournal() {
+        if (inTransaction()) {
+            return null;
+        }
+        if (journalPending.isEmpty()) {
+            return new byte[0];
+        }
+        StorageJournal.Writer writer = new StorageJournal.Writer();
+        try {
+            for (Map.Entry<Integer, Boolean> entry : journalPending.entrySet()) {
+                int id = entry.getKey();
+                Lutemon lutemon = lutemonsById.get(id);
+                if (lutemon == null) {
+                    writer.putRemoved(id);
+                    continue;
+                }
+                writer.putLutemon(lutemon.getSnapshot(), locationById.get(id), lutemon.getStorageOrder());
+                LutemonStats lutemonStats = stats.getLutemonStats(id);
+                if (entry.getValue() && lutemonStats != null) {
+                    writer.putStats(stats, lutemonStats);
+                }
+            }
+            writer.putIdHighWaterMark(Lutemon.getIdHighWaterMark());
+        } catch (IOException e) {
+            // Only writes to memory
+            throw new IllegalStateException(e);
+        }
+        journalPending.clear();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Encodes the segments to compact the journal into. An incremental save only
+     * has the segments changed since the last one, a complete save has everything
+     * and is encoded from copies outside the lock.
+     * @return the save, or null while a transaction is open
+     */
+    SegmentedSave drainSegments(boolean complete) {
+        SegmentedSave save = new SegmentedSave(complete);
+        StorageSnapshot snapshot;
+        int[] allStatsIds;
+        synchronized (this) {
+            if (inTransaction()) {
+                return null;
+            }
+            // Pending changes are part of the save, later ones are journaled again
+            journalPending.clear();
+            save.idHighWaterMark = Lutemon.getIdHighWaterMark();
+            int[] statsIds = stats.drainDirtyIds();
+            if (!complete) {
+                putChangedSegments(save, statsIds);
+                changedSegments.clear();
+                return save;
+            }
+            changedSegments.clear();
+            snapshot = getSnapshot();
+            save.putTotals(stats);
+            allStatsIds = stats.getLutemonIds();
+        }
+        save.putAllLutemons(snapshot.toLocationMap());
+        save.putAllStats(copyStats(allStatsIds));
+        return save;
+    }
+
+    /**
+     * Copies the stats of the given Lutemons a batch at a time, so the lock is
+     * only held briefly. A copy may be newer than the rest of the save, its
+     * change is journaled again anyway.
+     */
+    private List<LutemonStats> copyStats(int[] ids) {
+        List<LutemonStats> copies = new ArrayList<>(ids.length);
+        for (int start = 0; start < ids.length; start += STATS_COPY_BATCH) {
+            synchronized (this) {
+                for (int i = start; i < Math.min(ids.length, start + STATS_COPY_BATCH); i++) {
+                    LutemonStats lutemonStats = stats.getLutemonStats(ids[i]);
+                    if (lutemonStats != null) {
+                        copies.add(lutemonStats.copy());
+                    }
+                }
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Encodes every segment that holds a changed Lutemon or changed stats
+     */
+    private void putChangedSegments(SegmentedSave save, int[] statsIds) {
+        for (int segment : changedSegments) {
+            Map<String, List<Lutemon>> segmentMap = new LinkedHashMap<>();
+            int first = SegmentedSave.firstId(segment);
+            for (int id = first; id < first + SegmentedSave.SEGMENT_SIZE; id++) {
+                Lutemon lutemon = lutemonsById.get(id);
+                if (lutemon != null) {
+                    segmentMap.computeIfAbsent(locationById.get(id), location -> new ArrayList<>()).add(lutemon);
+                }
+            }
+            save.putLutemons(segment, segmentMap);
+        }
+        Set<Integer> statsSegments = new HashSet<>();
+        for (int id : statsIds) {
+            statsSegments.add(SegmentedSave.segmentOf(id));
+        }
+        for (int segment : statsSegments) {
+            List<LutemonStats> entries = new ArrayList<>();
+            int first = SegmentedSave.firstId(segment);
+            for (int id = first; id < first + SegmentedSave.SEGMENT_SIZE; id++) {
+                LutemonStats lutemonStats = stats.getLutemonStats(id);
+                if (lutemonStats != null) {
+                    entries.add(lutemonStats);
+                }
+            }
+            save.putStats(segment, entries);
+        }
+        save.putTotals(stats);
+    }
+
+    /**
+     * Updates the Lutemon ID counter from the saved high-water mark, or by
+     * scanning the loaded data if the file doesn't have one
+     */
+    private void restoreIdCounter() {
+        int savedMark = dataManager.getLoadedIdHighWaterMark();
+        if (savedMark >= 0) {
+            Lutemon.updateIdCounter(savedMark);
+        } else {
+            updateIdCounter();
+        }
     }
 
     /**
@@ -34,7 +577,7 @@ public class Storage {
      */
     private void updateIdCounter() {
         int maxId = 0;
-        for (List<Lutemon> lutemons : locationMap.values()) {
+        for (LocationList lutemons : locationMap.values()) {
             for (Lutemon lutemon : lutemons) {
                 maxId = Math.max(maxId, lutemon.getId());
             }
@@ -42,37 +585,99 @@ public class Storage {
         Lutemon.updateIdCounter(maxId);
     }
 
+    /**
+     * Creates the stats missing for loaded Lutemons and saves them, for a storage
+     * created with deferBackfill
+     * @return true if any were missing
+     */
+    synchronized boolean backfillStats() {
+        return initializeStats();
+    }
+
     /**
      * Initializes stats for all existing Lutemons
+     * @return true if any were created
      */
-    private void initializeStats() {
-        for (List<Lutemon> lutemons : locationMap.values()) {
+    private boolean initializeStats() {
+        boolean created = false;
+        for (LocationList lutemons : locationMap.values()) {
             for (Lutemon lutemon : lutemons) {
                 if (stats.getLutemonStats(lutemon.getId()) == null) {
                     LutemonStats newStats = new LutemonStats(lutemon.getId(), lutemon.getColor());
                     stats.addLutemonStats(newStats);
                     newStats.recordStats(lutemon);
+                    created = true;
                 }
             }
         }
-        saveStats();
+        if (created) {
+            saveStats();
+        }
+        return created;
     }
 
     /**
      * Gets all Lutemons in all locations
      */
-    public Map<String, List<Lutemon>> getAllLutemons() {
-        return new HashMap<>(locationMap);
+    public synchronized Map<String, List<Lutemon>> getAllLutemons() {
+        Map<String, List<Lutemon>> copy = new HashMap<>();
+        for (Map.Entry<String, LocationList> entry : locationMap.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().toList());
+        }
+        return copy;
     }
 
     /**
      * Sets all Lutemons from imported data
      */
-    public void setAllLutemons(Map<String, List<Lutemon>> newLocationMap) {
-        locationMap.clear();
-        locationMap.putAll(newLocationMap);
+    public synchronized void setAllLutemons(Map<String, List<Lutemon>> newLocationMap) {
+        // Listeners see one batch, a Lutemon kept by ID shows up as moved or changed
+        recordAll(StorageChange.Type.REMOVED);
+        rebuildIndexes(newLocationMap);
         updateIdCounter();
         initializeStats();
+        rebuildMatchmaking();
+        recordAll(StorageChange.Type.ADDED);
+        saveLutemons();
+        publishChanges();
+    }
+
+    /**
+     * Records every stored Lutemon as added or removed
+     */
+    private void recordAll(StorageChange.Type type) {
+        if (!changeFeed.hasListeners()) return;
+        for (Map.Entry<String, LocationList> entry : locationMap.entrySet()) {
+            for (Lutemon lutemon : entry.getValue()) {
+                if (type == StorageChange.Type.ADDED) {
+                    changeFeed.record(type, lutemon.getId(), null, entry.getKey());
+                } else {
+                    changeFeed.record(type, lutemon.getId(), entry.getKey(), null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that receives batches of changes on the given executor,
+     * e.g. the main thread for views
+     */
+    public void addChangeListener(ChangeFeed.Listener listener, Executor executor) {
+        changeFeed.addListener(listener, executor);
+    }
+
+    public void removeChangeListener(ChangeFeed.Listener listener) {
+        changeFeed.removeListener(listener);
+    }
+
+    /**
+     * Hands recorded changes to the listeners, held back until the outermost
+     * transaction commits
+     */
+    private void publishChanges() {
+        if (transactionDepth == 0) {
+            changeFeed.publish();
+        }
     }
 
     /**
@@ -90,92 +695,475 @@ public class Storage {
     /**
      * Adds a new Lutemon to home location
      */
-    public int addLutemon(Lutemon lutemon) {
-        getLutemonsByLocation(HOME).add(lutemon);
+    public synchronized int addLutemon(Lutemon lutemon) {
+        stageUndo(lutemon.getId());
+        appendToLocation(lutemon, HOME);
         getOrCreateStats(lutemon).recordStats(lutemon);
-        saveLutemons();
+        indexLutemon(lutemon);
+        changeFeed.record(StorageChange.Type.ADDED, lutemon.getId(), null, HOME);
+        markLutemonsDirty();
+        publishChanges();
         return lutemon.getId();
     }
 
     /**
-     * Gets all Lutemons in a specific location
+     * Adds many new Lutemons to home location with a single save.
+     * Nothing is added if any Lutemon is invalid or its ID is already taken.
+     * @return false if validation failed
      */
-    public List<Lutemon> getLutemonsByLocation(String location) {
-        return locationMap.computeIfAbsent(location, k -> new ArrayList<>());
+    public synchronized boolean addAll(Collection<Lutemon> lutemons) {
+        SpeciesRegistry registry = SpeciesRegistry.getDefault();
+        Set<Integer> ids = new HashSet<>();
+        for (Lutemon lutemon : lutemons) {
+            if (lutemon == null || lutemon.getName() == null || lutemon.getName().isEmpty()
+                    || !registry.contains(lutemon.getColor()) || lutemon.getMaxHealth() <= 0) {
+                Log.e(TAG, "Bulk add rejected an invalid Lutemon");
+                return false;
+            }
+            if (lutemonsById.containsKey(lutemon.getId()) || !ids.add(lutemon.getId())) {
+                Log.e(TAG, "Bulk add rejected duplicate ID " + lutemon.getId());
+                return false;
+            }
+        }
+
+        LocationList home = locationList(HOME);
+        home.ensureCapacity(home.size() + lutemons.size());
+        // Only an enclosing transaction can roll the Lutemons back
+        boolean undoable = inTransaction();
+        beginTransaction();
+        try {
+            for (Lutemon lutemon : lutemons) {
+                if (undoable) {
+                    stageUndo(lutemon.getId());
+                }
+                appendToLocation(lutemon, HOME);
+                getOrCreateStats(lutemon).recordStats(lutemon);
+                indexLutemon(lutemon);
+                changeFeed.record(StorageChange.Type.ADDED, lutemon.getId(), null, HOME);
+            }
+            markLutemonsDirty();
+            markStatsDirty();
+        } finally {
+            commitTransaction();
+        }
+        return true;
     }
 
     /**
-     * Gets a Lutemon by its ID from any location
+     * Gets an immutable view of every location and Lutemon as of the last change
+     * made through this storage. Doesn't lock while the last view is still current,
+     * otherwise builds the next one from it, copying only what changed.
      */
-    public Lutemon getLutemon(int id) {
-        for (List<Lutemon> lutemons : locationMap.values()) {
-            for (Lutemon lutemon : lutemons) {
-                if (lutemon.getId() == id) {
-                    return lutemon;
-                }
+    public StorageSnapshot getSnapshot() {
+        StorageSnapshot current = snapshot;
+        if (current != null && current.isCurrent(modCount)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || !current.isCurrent(modCount)) {
+                current = StorageSnapshot.update(current, snapshotChanges, modCount, locationMap, lutemonsById);
+                snapshot = current;
             }
+            return current;
         }
-        return null;
+    }
+
+    /**
+     * Records a change of a stored Lutemon or of its slot for the next snapshot
+     */
+    private void snapshotChanged(int id, String location, int slot) {
+        snapshotChanges.lutemonChanged(id, location, slot);
+        modCount++;
+    }
+
+    /**
+     * Gets a copy of the Lutemons in a specific location
+     */
+    public synchronized List<Lutemon> getLutemonsByLocation(String location) {
+        return locationList(location).toList();
+    }
+
+    /**
+     * Gets the live list of a location, creating it if needed
+     */
+    private LocationList locationList(String location) {
+        return locationMap.computeIfAbsent(location, k -> new LocationList());
+    }
+
+    /**
+     * Checks if a location is the battle area or one of the arenas
+     */
+    public static boolean isBattleLocation(String location) {
+        return location.equals(BATTLE) || location.startsWith(ARENA_PREFIX);
+    }
+
+    /**
+     * Gets a Lutemon by its ID from any location
+     */
+    public synchronized Lutemon getLutemon(int id) {
+        return lutemonsById.get(id);
     }
 
     /**
      * Gets the location of a Lutemon
+     * @return the location, or null if the Lutemon isn't stored
+     */
+    public synchronized String getLutemonLocation(int id) {
+        return locationById.get(id);
+    }
+
+    /**
+     * Replaces every location with the given lists and rebuilds the ID indexes.
+     * Lutemons whose saved order doesn't follow the one before them, e.g. from
+     * older files, get new orders.
+     * @return true if any order changed
      */
-    private String getLutemonLocation(int id) {
-        for (Map.Entry<String, List<Lutemon>> entry : locationMap.entrySet()) {
+    private boolean rebuildIndexes(Map<String, List<Lutemon>> newLocationMap) {
+        locationMap.clear();
+        lutemonsById.clear();
+        locationById.clear();
+        positionById.clear();
+        rosterIndex.clear();
+        long maxOrder = -1;
+        boolean reordered = false;
+        for (Map.Entry<String, List<Lutemon>> entry : newLocationMap.entrySet()) {
+            LocationList lutemons = locationList(entry.getKey());
+            lutemons.ensureCapacity(entry.getValue().size());
+            long lastOrder = -1;
             for (Lutemon lutemon : entry.getValue()) {
-                if (lutemon.getId() == id) {
-                    return entry.getKey();
+                if (lutemonsById.put(lutemon.getId(), lutemon) != null) {
+                    Log.w(TAG, "Duplicate Lutemon ID " + lutemon.getId());
+                }
+                if (lutemon.getStorageOrder() <= lastOrder) {
+                    lutemon.setStorageOrder(lastOrder + 1);
+                    reordered = true;
                 }
+                lastOrder = lutemon.getStorageOrder();
+                maxOrder = Math.max(maxOrder, lastOrder);
+                locationById.put(lutemon.getId(), entry.getKey());
+                positionById.put(lutemon.getId(), lutemons.add(lutemon));
+                indexRoster(lutemon);
             }
         }
-        return null;
+        nextOrder = maxOrder + 1;
+        snapshotChanges.everythingChanged();
+        modCount++;
+        return reordered;
     }
 
     /**
-     * Moves a Lutemon to a new location
-     * @return false if move failed (e.g., battle area full)
+     * Adds a Lutemon to the end of a location and indexes it
      */
-    public boolean moveLutemon(int id, String newLocation) {
-        if (newLocation.equals(BATTLE) && 
-            getLutemonsByLocation(BATTLE).size() >= MAX_BATTLE_LUTEMONS) {
-            return false;
+    private void appendToLocation(Lutemon lutemon, String location) {
+        lutemon.setStorageOrder(nextOrder++);
+        int slot = locationList(location).add(lutemon);
+        positionById.put(lutemon.getId(), slot);
+        locationById.put(lutemon.getId(), location);
+        snapshotChanged(lutemon.getId(), location, slot);
+        lutemonsById.put(lutemon.getId(), lutemon);
+        indexRoster(lutemon);
+    }
+
+    /**
+     * Updates a Lutemon's entries in the query indexes
+     */
+    private void indexRoster(Lutemon lutemon) {
+        LutemonSnapshot state = lutemon.getSnapshot();
+        rosterIndex.update(lutemon.getId(), state.getSpecies(), locationById.get(lutemon.getId()),
+            rosterValues(state, new int[LutemonQuery.KEY_COUNT]));
+    }
+
+    /**
+     * Fills the current value of every query stat in SortKey order
+     */
+    private int[] rosterValues(LutemonSnapshot state, int[] values) {
+        LutemonStats lutemonStats = stats.getLutemonStats(state.getId());
+        values[LutemonQuery.SortKey.ATTACK.ordinal()] = state.getTotalAttack();
+        values[LutemonQuery.SortKey.DEFENSE.ordinal()] = state.getDefense();
+        values[LutemonQuery.SortKey.EXPERIENCE.ordinal()] = state.getExperience();
+        values[LutemonQuery.SortKey.WINS.ordinal()] =
+            lutemonStats != null ? lutemonStats.getBattlesWon() : 0;
+        return values;
+    }
+
+    /**
+     * Finds Lutemons matching the query, in its order, one page at a time.
+     * Walks the stat index of the sort order from the cursor, narrowed to one species
+     * or location if they are given, so it reads only a little more than the page
+     * in most cases.
+     */
+    public synchronized LutemonQuery.Page query(LutemonQuery query) {
+        List<Lutemon> results = new ArrayList<>();
+        int species = -1;
+        if (query.getColor() != null) {
+            SpeciesRegistry registry = SpeciesRegistry.getDefault();
+            if (!registry.contains(query.getColor())) {
+                return new LutemonQuery.Page(results, query.getCursor(), false);
+            }
+            species = registry.ordinalOf(query.getColor());
         }
 
-        Lutemon lutemon = null;
-        for (Map.Entry<String, List<Lutemon>> entry : locationMap.entrySet()) {
-            List<Lutemon> lutemons = entry.getValue();
-            for (int i = 0; i < lutemons.size(); i++) {
-                if (lutemons.get(i).getId() == id) {
-                    lutemon = lutemons.remove(i);
-                    break;
-                }
+        LutemonQuery.SortKey key = query.getSortKey();
+        PrimitiveIterator.OfLong entries = rosterIndex.scan(key, species, query.getLocation(),
+            query.getMin(key), query.getMax(key), query.isDescending(), query.hasCursor(), query.getCursor());
+        long nextCursor = query.getCursor();
+        boolean hasMore = false;
+        int[] values = new int[LutemonQuery.KEY_COUNT];
+        while (entries.hasNext()) {
+            long entry = entries.nextLong();
+            int id = RosterIndex.unpackId(entry);
+            // Only one of species and location narrowed the scan
+            if (species >= 0 && rosterIndex.getSpecies(id) != species) {
+                continue;
+            }
+            if (query.getLocation() != null && !query.getLocation().equals(locationById.get(id))) {
+                continue;
+            }
+            Lutemon lutemon = lutemonsById.get(id);
+            if (!query.matchesStats(rosterValues(lutemon.getSnapshot(), values))) {
+                continue;
             }
-            if (lutemon != null) break;
+            if (results.size() == query.getLimit()) {
+                hasMore = true;
+                break;
+            }
+            results.add(lutemon);
+            nextCursor = entry;
         }
+        return new LutemonQuery.Page(results, nextCursor, hasMore);
+    }
 
+    /**
+     * Removes a Lutemon from its location in O(1), leaving a gap so the others keep
+     * their order and slots
+     * @return the removed Lutemon, or null if it wasn't stored
+     */
+    private Lutemon removeFromLocation(int id) {
+        String location = locationById.remove(id);
+        if (location == null) {
+            return null;
+        }
+        lutemonsById.remove(id);
+        int slot = positionById.remove(id);
+        Lutemon removed = locationMap.get(location).remove(slot);
+        snapshotChanged(id, location, slot);
+        return removed;
+    }
+
+    /**
+     * Closes the gaps of locations where they outnumber the Lutemons. Slots stay
+     * put while a transaction is open, so it can put Lutemons back into them.
+     */
+    private void compactLocations() {
+        if (inTransaction()) return;
+        for (Map.Entry<String, LocationList> entry : locationMap.entrySet()) {
+            if (entry.getValue().isSparse()) {
+                entry.getValue().compact(positionById);
+                snapshotChanges.locationChanged(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Moves a Lutemon to a new location
+     * @return false if move failed (e.g., battle area full)
+     */
+    public synchronized boolean moveLutemon(int id, String newLocation) {
+        if (isBattleLocation(newLocation) &&
+            locationList(newLocation).size() >= MAX_BATTLE_LUTEMONS) {
+            return false;
+        }
+
+        String oldLocation = locationById.get(id);
+        stageUndo(id);
+        Lutemon lutemon = removeFromLocation(id);
         if (lutemon != null) {
-            getLutemonsByLocation(newLocation).add(lutemon);
-            saveLutemons();
+            appendToLocation(lutemon, newLocation);
+            compactLocations();
+            if (isBattleLocation(newLocation)) {
+                unindexLutemon(id);
+            } else {
+                indexLutemon(lutemon);
+            }
+            if (!oldLocation.equals(newLocation)) {
+                changeFeed.record(StorageChange.Type.MOVED, id, oldLocation, newLocation);
+            }
+            markLutemonsDirty();
+            publishChanges();
             return true;
         }
         return false;
     }
 
+    /**
+     * Removes a Lutemon for good, its stats are kept for the history
+     * @return false if it isn't stored or is in a battle
+     */
+    public synchronized boolean removeLutemon(int id) {
+        String location = locationById.get(id);
+        if (location == null || isBattleLocation(location)) {
+            return false;
+        }
+        stageUndo(id);
+        removeFromLocation(id);
+        compactLocations();
+        unindexLutemon(id);
+        rosterIndex.remove(id);
+        changeFeed.record(StorageChange.Type.REMOVED, id, location, null);
+        markLutemonsDirty();
+        publishChanges();
+        return true;
+    }
+
+    /**
+     * Moves two Lutemons into an empty battle location as one step
+     * @return false if the location is occupied or a fighter is already in a battle
+     */
+    public synchronized boolean reserveFighters(String location, int fighter1Id, int fighter2Id) {
+        String location1 = getLutemonLocation(fighter1Id);
+        String location2 = getLutemonLocation(fighter2Id);
+        if (fighter1Id == fighter2Id || location1 == null || location2 == null
+                || isBattleLocation(location1) || isBattleLocation(location2)
+                || !locationList(location).isEmpty()) {
+            return false;
+        }
+        beginTransaction();
+        try {
+            moveLutemon(fighter1Id, location);
+            moveLutemon(fighter2Id, location);
+        } finally {
+            commitTransaction();
+        }
+        return true;
+    }
+
     /**
      * Records a battle result
      */
-    public void recordBattle(int winnerId, int loserId) {
+    public synchronized void recordBattle(int winnerId, int loserId) {
+        stageUndo(winnerId);
+        stageUndo(loserId);
         stats.recordBattle(winnerId, loserId);
-        saveStats();
+        statsChanged(winnerId);
+        statsChanged(loserId);
+        markStatsDirty();
+        publishChanges();
     }
 
     /**
      * Records a training session
      */
-    public void recordTraining(Lutemon lutemon) {
+    public synchronized void recordTraining(Lutemon lutemon) {
+        stageUndo(lutemon.getId());
         stats.recordTraining(lutemon);
         getOrCreateStats(lutemon).recordStats(lutemon);
+        statsChanged(lutemon.getId());
+        markLutemonsDirty();
+        markStatsDirty();
+        publishChanges();
+    }
+
+    /**
+     * Records tournament ratings for every participant with a single save
+     */
+    public synchronized void recordTournament(Tournament.Result result) {
+        for (int i = 0; i < result.getPlayerCount(); i++) {
+            stageUndo(result.getId(i));
+            Lutemon lutemon = getLutemon(result.getId(i));
+            if (lutemon != null) {
+                getOrCreateStats(lutemon);
+            }
+        }
+        stats.recordTournament(result);
+        for (int i = 0; i < result.getPlayerCount(); i++) {
+            statsChanged(result.getId(i));
+        }
+        markStatsDirty();
+        publishChanges();
+    }
+
+    /**
+     * Rebuilds the matchmaking indexes from every Lutemon outside a battle
+     */
+    private void rebuildMatchmaking() {
+        powerIndex.clear();
+        ratingIndex.clear();
+        for (Map.Entry<String, LocationList> entry : locationMap.entrySet()) {
+            if (isBattleLocation(entry.getKey())) continue;
+            for (Lutemon lutemon : entry.getValue()) {
+                indexLutemon(lutemon);
+            }
+        }
+    }
+
+    /**
+     * Updates a Lutemon's power score, and its rating once it has played a tournament
+     */
+    private void indexLutemon(Lutemon lutemon) {
+        powerIndex.update(lutemon.getId(), MatchmakingIndex.powerScore(lutemon));
+        LutemonStats lutemonStats = stats.getLutemonStats(lutemon.getId());
+        if (lutemonStats != null && lutemonStats.getRating() > 0) {
+            ratingIndex.update(lutemon.getId(), lutemonStats.getRating());
+        }
+    }
+
+    /**
+     * Updates the query and matchmaking indexes of a stored Lutemon after its
+     * stats changed and tells the listeners
+     */
+    private void statsChanged(int id) {
+        Lutemon lutemon = lutemonsById.get(id);
+        if (lutemon != null) {
+            indexRoster(lutemon);
+            String location = locationById.get(id);
+            // Lutemons in a battle aren't offered as opponents
+            if (!isBattleLocation(location)) {
+                indexLutemon(lutemon);
+            }
+            snapshotChanged(id, location, positionById.get(id));
+            changeFeed.record(StorageChange.Type.STATS_CHANGED, id, location, location);
+        }
+    }
+
+    private void unindexLutemon(int id) {
+        powerIndex.remove(id);
+        ratingIndex.remove(id);
+    }
+
+    /**
+     * Finds the available Lutemon with the closest power score
+     * @return the opponent's ID, or -1 if there is none
+     */
+    public synchronized int findOpponent(int id) {
+        return powerIndex.findOpponent(id);
+    }
+
+    /**
+     * Finds the available Lutemon with the closest tournament rating
+     * @return the opponent's ID, or -1 if the Lutemon is unrated or there is none
+     */
+    public synchronized int findRatedOpponent(int id) {
+        return ratingIndex.findOpponent(id);
+    }
+
+    /**
+     * Gets the IDs of available Lutemons with a power score between min and max
+     */
+    public synchronized List<Integer> findByPower(int minScore, int maxScore, int limit) {
+        return powerIndex.findInRange(minScore, maxScore, limit);
+    }
+
+    /**
+     * Moves a Lutemon and its closest opponent to the battle area
+     * @return the opponent's ID, or -1 if no opponent was found or the area is occupied
+     */
+    public synchronized int quickMatch(int id) {
+        int opponentId = powerIndex.findOpponent(id);
+        if (opponentId < 0 || !reserveFighters(BATTLE, id, opponentId)) {
+            return -1;
+        }
+        return opponentId;
     }
 
     /**
@@ -186,10 +1174,156 @@ public class Storage {
     }
 
     /**
-     * Saves Lutemons to storage
+     * Starts a transaction. Saves inside it are only staged and each changed
+     * file is written once when the outermost transaction is committed.
+     */
+    public synchronized void beginTransaction() {
+        transactionDepth++;
+        savepoints.add(new Savepoint(stats, changeFeed.getRecordedCount(), lutemonsDirty, statsDirty));
+    }
+
+    /**
+     * Commits the current transaction, writing staged files if it is the outermost one
+     */
+    public synchronized void commitTransaction() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("No transaction in progress");
+        }
+        Savepoint savepoint = savepoints.remove(--transactionDepth);
+        if (transactionDepth > 0) {
+            // The enclosing transaction rolls back to the oldest state it hasn't saved yet
+            Savepoint outer = savepoints.get(transactionDepth - 1);
+            savepoint.undo.forEach((id, undo) -> {
+                if (!outer.undo.containsKey(id)) {
+                    outer.undo.put(id, undo);
+                }
+            });
+            return;
+        }
+        compactLocations();
+        if (lutemonsDirty) {
+            markLutemonsDirty();
+        }
+        if (statsDirty) {
+            markStatsDirty();
+        }
+        changeFeed.publish();
+    }
+
+    /**
+     * Rolls back the current transaction. Every Lutemon it changed through this
+     * storage gets back its state, slot and stats, the totals are restored, its
+     * changes are never published and the saves it staged are dropped. Lutemons
+     * changed directly are only restored if the transaction changed them through
+     * the storage first. An enclosing transaction keeps its own changes.
+     */
+    public synchronized void rollbackTransaction() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("No transaction in progress");
+        }
+        Savepoint savepoint = savepoints.remove(--transactionDepth);
+        // Every changed Lutemon leaves its slot before any goes back, so none is taken
+        savepoint.undo.forEach((id, undo) -> removeFromLocation(id));
+        savepoint.undo.forEach((id, undo) -> {
+            if (undo.lutemon != null) {
+                undo.lutemon.restore(undo.state);
+                undo.lutemon.setStorageOrder(undo.order);
+                locationList(undo.location).restore(undo.slot, undo.lutemon);
+                lutemonsById.put(id, undo.lutemon);
+                locationById.put(id, undo.location);
+                positionById.put(id, undo.slot);
+                snapshotChanged(id, undo.location, undo.slot);
+            }
+            stats.replaceLutemonStats(id, undo.stats);
+        });
+        stats.restoreTotals(savepoint.totalBattles, savepoint.totalTrainings, savepoint.totalTournaments);
+        savepoint.undo.forEach((id, undo) -> {
+            if (undo.lutemon == null) {
+                rosterIndex.remove(id);
+                unindexLutemon(id);
+                return;
+            }
+            indexRoster(undo.lutemon);
+            if (isBattleLocation(undo.location)) {
+                unindexLutemon(id);
+            } else {
+                indexLutemon(undo.lutemon);
+            }
+        });
+        changeFeed.discard(savepoint.changeMark);
+        lutemonsDirty = savepoint.lutemonsDirty;
+        statsDirty = savepoint.statsDirty;
+        compactLocations();
+    }
+
+    /**
+     * Remembers how a Lutemon was before the open transaction first changes it
+     */
+    private void stageUndo(int id) {
+        if (savepoints.isEmpty()) return;
+        IntObjectMap<Undo> undo = savepoints.get(savepoints.size() - 1).undo;
+        if (!undo.containsKey(id)) {
+            undo.put(id, new Undo(lutemonsById.get(id), locationById.get(id),
+                positionById.get(id), stats.getLutemonStats(id)));
+        }
+    }
+
+    /**
+     * Checks if a transaction is in progress
+     */
+    public synchronized boolean inTransaction() {
+        return transactionDepth > 0;
+    }
+
+    /**
+     * Saves a Lutemon after changing it directly, e.g. healing it outside a battle
+     */
+    public synchronized void lutemonChanged(int id) {
+        stageUndo(id);
+        statsChanged(id);
+        markLutemonsDirty();
+        publishChanges();
+    }
+
+    /**
+     * Saves every Lutemon, e.g. after changing many directly. Changes made through
+     * Storage are saved on their own, through the journal when saving in the background.
+     */
+    public synchronized void saveLutemons() {
+        // Direct changes only reach the snapshot saves are encoded from this way
+        snapshotChanges.everythingChanged();
+        modCount++;
+        if (saver != null) {
+            saver.requestSnapshot();
+        }
+        markLutemonsDirty();
+    }
+
+    /**
+     * Saves all stats, e.g. after changing them directly
      */
-    public void saveLutemons() {
-        if (dataManager.saveLutemons(locationMap)) {
+    public synchronized void saveStats() {
+        if (saver != null) {
+            saver.requestSnapshot();
+        }
+        markStatsDirty();
+    }
+
+    /**
+     * Saves Lutemons to storage, or stages the save inside a transaction
+     */
+    private void markLutemonsDirty() {
+        lutemonsDirty = true;
+        if (inTransaction() || !persistent) {
+            return;
+        }
+        if (saver != null) {
+            lutemonsDirty = false;
+            saver.markLutemonsDirty();
+            return;
+        }
+        if (dataManager.saveLutemons(getAllLutemons(), Lutemon.getIdHighWaterMark(), ++generation)) {
+            lutemonsDirty = false;
             Log.i(TAG, "Successfully saved Lutemons");
         } else {
             Log.e(TAG, "Failed to save Lutemons");
@@ -197,13 +1331,58 @@ public class Storage {
     }
 
     /**
-     * Saves stats to storage
+     * Saves stats to storage, or stages the save inside a transaction
      */
-    public void saveStats() {
-        if (dataManager.saveStats(stats)) {
+    private void markStatsDirty() {
+        statsDirty = true;
+        if (inTransaction() || !persistent) {
+            return;
+        }
+        if (saver != null) {
+            statsDirty = false;
+            saver.markStatsDirty();
+            return;
+        }
+        if (dataManager.saveStats(stats, ++generation)) {
+            statsDirty = false;
+            // Every entry was written, the change tracking is only needed by the saver
+            stats.drainDirtyIds();
             Log.i(TAG, "Successfully saved stats");
         } else {
             Log.e(TAG, "Failed to save stats");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes staged background saves now and waits for them. Must not be called
+     * while holding the storage lock, or on the main thread, see requestFlush().
+     * @return false if something couldn't be saved in time
+     */
+    public boolean flush() {
+        return saver == null || saver.flush(FLUSH_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Starts writing staged background saves now without waiting for them, call
+     * when the app is paused. close() waits for them.
+     */
+    public void requestFlush() {
+        if (saver != null) {
+            saver.requestFlush();
+        }
+    }
+
+    /**
+     * Flushes and stops background saving, later changes aren't saved
+     */
+    public void close() {
+        if (saver != null) {
+            saver.close(FLUSH_TIMEOUT_MILLIS);
+        }
+        synchronized (this) {
+            if (mirror != null) {
+                detachMirror();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.lutemon;
+
+/**
+ * One change to the Lutemons in Storage, delivered to change listeners in batches.
+ * Changes to the same Lutemon within a batch are merged into one, so a batch
+ * tells where each changed Lutemon was before it and where it is now.
+ */
+public final class StorageChange {
+
+    public enum Type {
+        // Stored for the first time, only newLocation is set
+        ADDED,
+        // Now in a different location, its stats may have changed too
+        MOVED,
+        // Same location, different stats
+        STATS_CHANGED,
+        // No longer stored, only oldLocation is set
+        REMOVED
+    }
+
+    private final Type type;
+    private final int lutemonId;
+    private final String oldLocation;
+    private final String newLocation;
+
+    StorageChange(Type type, int lutemonId, String oldLocation, String newLocation) {
+        this.type = type;
+        this.lutemonId = lutemonId;
+        this.oldLocation = oldLocation;
+        this.newLocation = newLocation;
+    }
+
+    public Type getType() { return type; }
+    public int getLutemonId() { return lutemonId; }
+
+    /**
+     * Gets the location before the change, null if the Lutemon was added
+     */
+    public String getOldLocation() { return oldLocation; }
+
+    /**
+     * Gets the location after the change, null if the Lutemon was removed
+     */
+    public String getNewLocation() { return newLocation; }
+
+    /**
+     * Merges two changes of the same Lutemon into one
+     * @return the combined change, or null if they cancel out
+     */
+    static StorageChange merge(StorageChange earlier, StorageChange later) {
+        String from = earlier.oldLocation;
+        String to = later.newLocation;
+        if (earlier.type == Type.ADDED) {
+            return later.type == Type.REMOVED ? null : new StorageChange(Type.ADDED, later.lutemonId, null, to);
+        }
+        if (later.type == Type.REMOVED) {
+            return new StorageChange(Type.REMOVED, later.lutemonId, from, null);
+        }
+        if (from != null && !from.equals(to)) {
+            return new StorageChange(Type.MOVED, later.lutemonId, from, to);
+        }
+        // Moved back where it started, or only stats changed
+        return new StorageChange(Type.STATS_CHANGED, later.lutemonId, to, to);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + lutemonId + " " + oldLocation + " -> " + newLocation;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.lutemon;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Format of the append-only journal that records changes between full saves.
+ * The file starts with a header holding the generation of the full save it
+ * continues; every record after it holds the latest state of one Lutemon or
+ * its stats, so replaying a record twice does no harm. Records are framed as
+ * length, type, payload and CRC32, and replay stops at the first torn record.
+ * Payloads use the varints of {@link BinaryCodec}.
+ */
+public final class StorageJournal {
+    private static final int MAGIC = 0x4C4A4E4C; // "LJNL"
+    static final int HEADER_SIZE = 12;
+
+    private static final byte LUTEMON = 1;
+    private static final byte REMOVED = 2;
+    private static final byte STATS = 3;
+    private static final byte ID_HIGH_WATER_MARK = 4;
+
+    /**
+     * Receives replayed records in the order they were written
+     */
+    interface Handler {
+        void lutemon(LutemonSnapshot state, String location, long order);
+        void removed(int id);
+        void stats(int totalBattles, int totalTrainings, int totalTournaments, LutemonStats stats);
+        void idHighWaterMark(int mark);
+    }
+
+    private StorageJournal() {
+    }
+
+    /**
+     * Creates the header of an empty journal
+     */
+    static byte[] header(long generation) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeLong(generation);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Gets the generation from a journal's header
+     * @return the generation, or -1 if there is no valid header
+     */
+    static long readGeneration(byte[] journal) {
+        if (journal == null || journal.length < HEADER_SIZE) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(journal))) {
+            return in.readInt() == MAGIC ? in.readLong() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Collects records to append to the journal in one write
+     */
+    static class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        private final BinaryCodec.Writer payload = new BinaryCodec.Writer(payloadBytes);
+        private final CRC32 crc = new CRC32();
+
+        void putLutemon(LutemonSnapshot state, String location, long order) throws IOException {
+            payload.writeVarInt(state.getId());
+            payload.writeUTF(location);
+            payload.writeUTF(state.getName());
+            payload.writeUTF(state.getColor());
+            payload.writeSignedVarInt(state.getAttack());
+            payload.writeSignedVarInt(state.getDefense());
+            payload.writeSignedVarInt(state.getExperience());
+            payload.writeSignedVarInt(state.getMaxHealth());
+            payload.writeSignedVarInt(state.getHealth());
+            payload.writeInt(state.getShapeSignature());
+            // Fixed width, so a record doesn't grow with the number of Lutemons
+            payload.writeLong(order);
+            finishRecord(LUTEMON);
+        }
+
+        void putRemoved(int id) throws IOException {
+            payload.writeVarInt(id);
+            finishRecord(REMOVED);
+        }
+
+        void putStats(GlobalStats totals, LutemonStats stats) throws IOException {
+            payload.writeVarInt(totals.getTotalBattles());
+            payload.writeVarInt(totals.getTotalTrainings());
+            payload.writeVarInt(totals.getTotalTournaments());
+            stats.writeTo(payload);
+            finishRecord(STATS);
+        }
+
+        void putIdHighWaterMark(int mark) throws IOException {
+            payload.writeSignedVarInt(mark);
+            finishRecord(ID_HIGH_WATER_MARK);
+        }
+
+        private void finishRecord(byte type) throws IOException {
+            payload.flush();
+            byte[] data = payloadBytes.toByteArray();
+            payloadBytes.reset();
+            crc.reset();
+            crc.update(type);
+            crc.update(data, 0, data.length);
+            out.writeInt(data.length);
+            out.writeByte(type);
+            out.write(data);
+            out.writeInt((int) crc.getValue());
+        }
+
+        int size() {
+            return out.size();
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Replays the records after the header
+     * @return the length of the intact part of the journal
+     */
+    static int replay(byte[] journal, Handler handler) {
+        int valid = HEADER_SIZE;
+        SpeciesRegistry registry = SpeciesRegistry.getDefault();
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(journal, HEADER_SIZE, journal.length - HEADER_SIZE))) {
+            while (valid + 9 <= journal.length) {
+                int length = in.readInt();
+                if (length < 0 || valid + 9 + length > journal.length) break;
+                byte type = in.readByte();
+                byte[] data = new byte[length];
+                in.readFully(data);
+                crc.reset();
+                crc.update(type);
+                crc.update(data, 0, length);
+                if (in.readInt() != (int) crc.getValue()) break;
+
+                BinaryCodec.Reader record = new BinaryCodec.Reader(new ByteArrayInputStream(data));
+                switch (type) {
+                    case LUTEMON: {
+                        int id = record.readVarInt();
+                        String location = record.readUTF();
+                        String name = record.readUTF();
+                        String color = record.readUTF();
+                        LutemonSnapshot state = new LutemonSnapshot(id, name, color, registry.ordinalOf(color),
+                            record.readSignedVarInt(), record.readSignedVarInt(), record.readSignedVarInt(),
+                            record.readSignedVarInt(), record.readSignedVarInt(), record.readInt());
+                        // Records written before orders were saved end here
+                        long order = record.available() > 0 ? record.readLong() : -1;
+                        handler.lutemon(state, location, order);
+                        break;
+                    }
+                    case REMOVED:
+                        handler.removed(record.readVarInt());
+                        break;
+                    case STATS:
+                        handler.stats(record.readVarInt(), record.readVarInt(), record.readVarInt(),
+                            LutemonStats.readFrom(record));
+                        break;
+                    case ID_HIGH_WATER_MARK:
+                        handler.idHighWaterMark(record.readSignedVarInt());
+                        break;
+                    default:
+                        // Written by a newer version, skip it
+                        break;
+                }
+                valid += 9 + length;
+            }
+        } catch (IOException e) {
+            // A torn or unreadable record ends the journal
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.lutemon;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Creates Storage off the main thread in stages. A mapped store that matches the
+ * saved files is offered as a preview before anything else is read. The Lutemon
+ * and stats files are read in parallel, the storage is handed over as soon as it
+ * is built, and work the first screen doesn't need, like creating missing stats
+ * and rewriting a mapped store that fell behind, runs after that. Every stage is
+ * timed and logged.
+ */
+public final class StorageLoader {
+    private static final String TAG = "StorageLoader";
+    // Lutemons at home in the preview
+    private static final int PREVIEW_LIMIT = 50;
+
+    /**
+     * Receives the storage on the executor it was requested with
+     */
+    public interface Callback {
+        void onLoaded(Storage storage);
+
+        /**
+         * Receives Lutemons read from the mapped store before the storage is loaded
+         */
+        default void onPreview(Preview preview) {
+        }
+
+        /**
+         * Called before onLoaded() when the files couldn't be loaded, the storage
+         * delivered after it starts out empty and doesn't save its changes
+         */
+        default void onFailed(Exception error) {
+        }
+
+        /**
+         * Called before onLoaded() with the saved segments that couldn't be read.
+         * They are set aside, the storage has the rest.
+         */
+        default void onDamaged(List<String> files) {
+        }
+    }
+
+    /**
+     * The first Lutemons at home and lookups by ID from the mapped store, to show
+     * the first screen while the files are loaded. Only offered when the store is
+     * marked with the generation and length of the journal on disk, so it holds
+     * what the storage will load.
+     */
+    public static final class Preview {
+        private final MappedLutemonStore store;
+        private final List<LutemonSnapshot> home;
+
+        Preview(MappedLutemonStore store, List<LutemonSnapshot> home) {
+            this.store = store;
+            this.home = Collections.unmodifiableList(home);
+        }
+
+        /**
+         * Gets the first Lutemons at home in ID order
+         */
+        public List<LutemonSnapshot> getHome() {
+            return home;
+        }
+
+        /**
+         * Reads a Lutemon by its ID
+         * @return its state, or null if it isn't stored or can't be read
+         */
+        public LutemonSnapshot getLutemon(int id) {
+            try {
+                return store.find(id);
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading mapped store: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    private final DataManager dataManager;
+    private final long writeDelayMillis;
+    private final boolean mirror;
+    // One thread runs the stages, the other reads the Lutemon file next to it
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final CountDownLatch built = new CountDownLatch(1);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    // Time each stage took in ms, in the order they ran
+    private final Map<String, Long> stageMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile Storage storage;
+
+    /**
+     * Loads the app's storage and attaches the mapped store once it is shown
+     */
+    public StorageLoader(Context context) {
+        this(new DataManager(context), WriteBehindSaver.DEFAULT_DELAY_MILLIS, true);
+    }
+
+    StorageLoader(DataManager dataManager, long writeDelayMillis, boolean mirror) {
+        this.dataManager = dataManager;
+        this.writeDelayMillis = writeDelayMillis;
+        this.mirror = mirror;
+    }
+
+    /**
+     * Starts loading, the callback runs on the given executor, e.g. the main thread
+     */
+    public void start(Executor callbackExecutor, Callback callback) {
+        executor.execute(() -> {
+            try {
+                load(callbackExecutor, callback);
+            } catch (RuntimeException e) {
+                if (storage == null) {
+                    loadEmpty(callbackExecutor, callback, e);
+                } else {
+                    // The storage is already handed over, only a deferred stage failed
+                    Log.e(TAG, "Error finishing load: " + e.getMessage());
+                }
+            } finally {
+                // Waiters get null if loading was interrupted
+                built.countDown();
+                finished.countDown();
+                executor.shutdown();
+            }
+        });
+    }
+
+    private void load(Executor callbackExecutor, Callback callback) {
+        long start = System.nanoTime();
+        Future<Map<String, List<Lutemon>>> lutemons =
+            executor.submit(() -> timed("load lutemons", dataManager::loadLutemons));
+        byte[] journal = timed("read journal", dataManager::readJournal);
+        MappedLutemonStore store = mirror ? timed("open mapped store", dataManager::openLutemonStore) : null;
+        try {
+            build(callbackExecutor, callback, start, journal, lutemons, store);
+        } catch (RuntimeException e) {
+            // The storage never got the store
+            if (store != null && storage == null) {
+                closeStore(store);
+            }
+            throw e;
+        }
+    }
+
+    private void build(Executor callbackExecutor, Callback callback, long start, byte[] journal,
+                       Future<Map<String, List<Lutemon>>> lutemons, MappedLutemonStore store) {
+        if (store != null && journal != null
+                && store.isSavedAt(StorageJournal.readGeneration(journal), journal.length)) {
+            Preview preview = timed("read preview",
+                () -> new Preview(store, store.readLocation(Storage.HOME, PREVIEW_LIMIT)));
+            callbackExecutor.execute(() -> callback.onPreview(preview));
+        }
+        GlobalStats stats = timed("load stats", dataManager::loadStats);
+        Map<String, List<Lutemon>> locationMap;
+        try {
+            locationMap = lutemons.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Loading interrupted");
+            if (store != null) {
+                closeStore(store);
+            }
+            return;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error loading Lutemons", e.getCause());
+        }
+        Storage loaded = timed("build storage", () -> new Storage(dataManager, writeDelayMillis,
+            WriteBehindSaver.DEFAULT_JOURNAL_LIMIT_BYTES, locationMap, stats, journal, true));
+        // Nothing has changed yet, so a store that matches the files is attached as is
+        boolean mirrored = store != null && loaded.attachSavedMirror(store);
+        storage = loaded;
+        built.countDown();
+        log("ready", System.nanoTime() - start);
+        List<String> damaged = dataManager.getDamagedFiles();
+        callbackExecutor.execute(() -> {
+            if (!damaged.isEmpty()) {
+                callback.onDamaged(damaged);
+            }
+            callback.onLoaded(storage);
+        });
+
+        // Not needed for the first screen
+        boolean backfilled = timed("backfill stats", storage::backfillStats);
+        if (backfilled) {
+            Log.i(TAG, "Created missing stats");
+        }
+        if (store != null && !mirrored) {
+            timed("rewrite mapped store", () -> {
+                storage.attachMirror(store);
+                return null;
+            });
+        }
+        log("total", System.nanoTime() - start);
+    }
+
+    private static void closeStore(MappedLutemonStore store) {
+        try {
+            store.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing mapped store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hands over an empty storage after a failed load, so the app stays usable. It
+     * never saves, so the files that failed to load are left as they are.
+     */
+    private void loadEmpty(Executor callbackExecutor, Callback callback, Exception error) {
+        Log.e(TAG, "Error loading storage, starting empty without saving: " + error.getMessage());
+        storage = new Storage(dataManager, Storage.NEVER_SAVE, WriteBehindSaver.DEFAULT_JOURNAL_LIMIT_BYTES,
+            new HashMap<>(), new GlobalStats(), null, false);
+        built.countDown();
+        callbackExecutor.execute(() -> {
+            callback.onFailed(error);
+            callback.onLoaded(storage);
+        });
+    }
+
+    private <T> T timed(String stage, Callable<T> task) {
+        long start = System.nanoTime();
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            stageMillis.put(stage, nanos / 1_000_000);
+            log(stage, nanos);
+        }
+    }
+
+    private static void log(String stage, long nanos) {
+        Log.i(TAG, "Startup " + stage + ": " + nanos / 1_000_000 + " ms");
+    }
+
+    /**
+     * Gets the storage, waiting for it if it isn't built yet
+     * @return the storage, empty if loading failed, or null if loading was interrupted
+     */
+    public Storage await() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                built.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return storage;
+    }
+
+    /**
+     * Gets the storage, or null if it isn't built yet
+     */
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Waits until the deferred stages are done too
+     */
+    void awaitFinished() throws InterruptedException {
+        finished.await();
+    }
+
+    /**
+     * Gets the time each stage took in ms
+     */
+    Map<String, Long> getStageMillis() {
+        synchronized (stageMillis) {
+            return new LinkedHashMap<>(stageMillis);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.lutemon;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of every location and Lutemon in a Storage at one point in time.
+ * Readers can hold it without locks, e.g. to save or analyze in the background
+ * while the UI keeps changing the live Lutemons. Each snapshot is built from the
+ * one before and shares what the Storage hasn't changed since: Lutemons by ID
+ * are kept in pages and each location in chunks of its slots, and only the
+ * pages and chunks with changes are copied.
+ */
+public final class StorageSnapshot {
+    // Pages and chunks hold 1024 IDs or slots each
+    private static final int SHIFT = 10;
+    private static final int SIZE = 1 << SHIFT;
+    private static final int MASK = SIZE - 1;
+    // More changes than this are cheaper to build from scratch than to track
+    private static final int MAX_CHANGES = 64 * 1024;
+
+    private final long version;
+    private final Map<String, Location> locations;
+    private final IntObjectMap<LutemonSnapshot[]> pages;
+    private final int size;
+
+    private StorageSnapshot(long version, Map<String, Location> locations,
+                            IntObjectMap<LutemonSnapshot[]> pages, int size) {
+        this.version = version;
+        this.locations = Collections.unmodifiableMap(locations);
+        this.pages = pages;
+        this.size = size;
+    }
+
+    /**
+     * Changes a Storage made since its last snapshot, recorded under its lock
+     */
+    static final class Changes {
+        private final Set<Integer> ids = new HashSet<>();
+        // Changed chunks by location, null for a location whose Lutemons all changed slots
+        private final Map<String, Set<Integer>> chunks = new HashMap<>();
+        private boolean everything = true;
+
+        /**
+         * Records a change of a Lutemon's state or of the slot it is in
+         */
+        void lutemonChanged(int id, String location, int slot) {
+            if (everything) return;
+            if (ids.size() >= MAX_CHANGES) {
+                everythingChanged();
+                return;
+            }
+            ids.add(id);
+            if (!chunks.containsKey(location)) {
+                chunks.put(location, new HashSet<>());
+            }
+            Set<Integer> changed = chunks.get(location);
+            if (changed != null) {
+                changed.add(slot >>> SHIFT);
+            }
+        }
+
+        /**
+         * Records that the Lutemons of a location moved to other slots
+         */
+        void locationChanged(String location) {
+            if (!everything) {
+                chunks.put(location, null);
+            }
+        }
+
+        /**
+         * Records that anything may have changed, the next snapshot is built from scratch
+         */
+        void everythingChanged() {
+            everything = true;
+            ids.clear();
+            chunks.clear();
+        }
+
+        private void clear() {
+            everything = false;
+            ids.clear();
+            chunks.clear();
+        }
+    }
+
+    /**
+     * Builds the next snapshot from the last one and the recorded changes, and
+     * clears them. The caller must hold the Storage lock.
+     * @param previous the last snapshot, or null to build one from scratch
+     */
+    static StorageSnapshot update(StorageSnapshot previous, Changes changes, long version,
+                                  Map<String, LocationList> locationMap, IntObjectMap<Lutemon> lutemonsById) {
+        if (previous == null || changes.everything) {
+            changes.clear();
+            IntObjectMap<LutemonSnapshot[]> pages = new IntObjectMap<>(lutemonsById.size() / SIZE + 1);
+            lutemonsById.forEach((id, lutemon) -> pageOf(pages, id)[id & MASK] = lutemon.getSnapshot());
+            Map<String, Location> locations = new HashMap<>();
+            for (Map.Entry<String, LocationList> entry : locationMap.entrySet()) {
+                locations.put(entry.getKey(), Location.update(null, null, entry.getValue(), pages));
+            }
+            return new StorageSnapshot(version, locations, pages, lutemonsById.size());
+        }
+
+        // Pages are copied once, then changed in place
+        IntObjectMap<LutemonSnapshot[]> pages = new IntObjectMap<>(previous.pages);
+        Set<Integer> copied = new HashSet<>();
+        int size = previous.size;
+        for (int id : changes.ids) {
+            LutemonSnapshot[] page = pages.get(id >>> SHIFT);
+            if (page != null && copied.add(id >>> SHIFT)) {
+                page = page.clone();
+                pages.put(id >>> SHIFT, page);
+            } else if (page == null) {
+                copied.add(id >>> SHIFT);
+                page = pageOf(pages, id);
+            }
+            Lutemon lutemon = lutemonsById.get(id);
+            LutemonSnapshot state = lutemon != null ? lutemon.getSnapshot() : null;
+            if (page[id & MASK] == null && state != null) {
+                size++;
+            } else if (page[id & MASK] != null && state == null) {
+                size--;
+            }
+            page[id & MASK] = state;
+        }
+
+        Map<String, Location> locations = new HashMap<>(previous.locations);
+        for (Map.Entry<String, Set<Integer>> entry : changes.chunks.entrySet()) {
+            LocationList live = locationMap.get(entry.getKey());
+            if (live == null) {
+                locations.remove(entry.getKey());
+            } else {
+                locations.put(entry.getKey(), Location.update(
+                    previous.locations.get(entry.getKey()), entry.getValue(), live, pages));
+            }
+        }
+        changes.clear();
+        return new StorageSnapshot(version, locations, pages, size);
+    }
+
+    /**
+     * Gets the page of an ID, adding an empty one if there is none
+     */
+    private static LutemonSnapshot[] pageOf(IntObjectMap<LutemonSnapshot[]> pages, int id) {
+        LutemonSnapshot[] page = pages.get(id >>> SHIFT);
+        if (page == null) {
+            page = new LutemonSnapshot[SIZE];
+            pages.put(id >>> SHIFT, page);
+        }
+        return page;
+    }
+
+    /**
+     * Lutemons of one location with their storage orders, in chunks of its slots
+     * without the gaps
+     */
+    private static final class Location extends AbstractList<LutemonSnapshot> {
+        private final LutemonSnapshot[][] chunks;
+        private final long[][] orders;
+        // Index of each chunk's first Lutemon, then the total
+        private final int[] starts;
+
+        private Location(LutemonSnapshot[][] chunks, long[][] orders) {
+            this.chunks = chunks;
+            this.orders = orders;
+            this.starts = new int[chunks.length + 1];
+            for (int i = 0; i < chunks.length; i++) {
+                starts[i + 1] = starts[i] + chunks[i].length;
+            }
+        }
+
+        /**
+         * Builds a location from the last one, copying the changed chunks from
+         * the live list and the pages
+         * @param changed the changed chunks, or null if every chunk changed
+         */
+        static Location update(Location previous, Set<Integer> changed, LocationList live,
+                               IntObjectMap<LutemonSnapshot[]> pages) {
+            int count = (live.slotCount() + MASK) >>> SHIFT;
+            LutemonSnapshot[][] chunks = new LutemonSnapshot[count][];
+            long[][] orders = new long[count][];
+            LutemonSnapshot[] entries = new LutemonSnapshot[SIZE];
+            long[] entryOrders = new long[SIZE];
+            for (int i = 0; i < count; i++) {
+                if (previous != null && changed != null && i < previous.chunks.length && !changed.contains(i)) {
+                    chunks[i] = previous.chunks[i];
+                    orders[i] = previous.orders[i];
+                    continue;
+                }
+                int length = 0;
+                int end = Math.min(live.slotCount(), (i + 1) << SHIFT);
+                for (int slot = i << SHIFT; slot < end; slot++) {
+                    Lutemon lutemon = live.get(slot);
+                    if (lutemon != null) {
+                        // The page has the state as of this snapshot, the live Lutemon may be newer
+                        entries[length] = pages.get(lutemon.getId() >>> SHIFT)[lutemon.getId() & MASK];
+                        entryOrders[length++] = lutemon.getStorageOrder();
+                    }
+                }
+                chunks[i] = Arrays.copyOf(entries, length);
+                orders[i] = Arrays.copyOf(entryOrders, length);
+            }
+            return new Location(chunks, orders);
+        }
+
+        @Override
+        public LutemonSnapshot get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            }
+            int chunk = chunkOf(index);
+            return chunks[chunk][index - starts[chunk]];
+        }
+
+        /**
+         * Finds the last chunk that starts at or before the index
+         */
+        private int chunkOf(int index) {
+            int low = 0;
+            int high = chunks.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (starts[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public int size() {
+            return starts[chunks.length];
+        }
+    }
+
+    /**
+     * Checks if the snapshot still matches the Storage's version
+     */
+    boolean isCurrent(long version) {
+        return this.version == version;
+    }
+
+    public Set<String> getLocations() {
+        return locations.keySet();
+    }
+
+    /**
+     * Gets the Lutemons in a location, an empty list for unknown locations
+     */
+    public List<LutemonSnapshot> getLutemonsByLocation(String location) {
+        List<LutemonSnapshot> list = locations.get(location);
+        return list == null ? Collections.<LutemonSnapshot>emptyList() : list;
+    }
+
+    /**
+     * Gets a Lutemon by its ID
+     * @return the Lutemon's state, or null if it wasn't stored
+     */
+    public LutemonSnapshot getLutemon(int id) {
+        LutemonSnapshot[] page = pages.get(id >>> SHIFT);
+        return page == null ? null : page[id & MASK];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates mutable copies of every Lutemon by location, e.g. to serialize them
+     */
+    public Map<String, List<Lutemon>> toLocationMap() {
+        Map<String, List<Lutemon>> map = new HashMap<>();
+        for (Map.Entry<String, Location> entry : locations.entrySet()) {
+            Location location = entry.getValue();
+            List<Lutemon> list = new ArrayList<>(location.size());
+            for (int i = 0; i < location.chunks.length; i++) {
+                for (int j = 0; j < location.chunks[i].length; j++) {
+                    Lutemon lutemon = location.chunks[i][j].toLutemon();
+                    lutemon.setStorageOrder(location.orders[i][j]);
+                    list.add(lutemon);
+                }
+            }
+            map.put(entry.getKey(), list);
+        }
+        return map;
+    }
+}
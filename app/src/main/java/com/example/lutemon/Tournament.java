@@ -0,0 +1,278 @@
+package com.example.lutemon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Round-robin tournament between every Lutemon in storage.
+ * Each pair fights from both starting positions on copied stats, pairs are spread
+ * over a fork-join pool, and the head-to-head results are turned into Elo ratings.
+ */
+public class Tournament {
+    // Win counts are shorts, so the 2 * rounds games of a pair must fit in one
+    public static final int MAX_ROUNDS = Short.MAX_VALUE / 2;
+    // The win matrix has n * n cells in one array, so it must fit in an int index
+    public static final int MAX_PLAYERS = 46340;
+    private static final int ROWS_PER_TASK = 8;
+    private static final int RATING_ITERATIONS = 50;
+    private static final double RATING_TOLERANCE = 1e-7;
+    private static final double BASE_RATING = 1500;
+
+    private final ForkJoinPool pool;
+
+    public Tournament() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public Tournament(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Runs the tournament over every Lutemon in every storage location
+     */
+    public Result run(Storage storage, int rounds, long seed) {
+        List<Lutemon> roster = new ArrayList<>();
+        for (List<Lutemon> lutemons : storage.getAllLutemons().values()) {
+            roster.addAll(lutemons);
+        }
+        return run(roster, rounds, seed);
+    }
+
+    /**
+     * Runs the tournament, every pair fights rounds times from each starting position
+     */
+    public Result run(List<Lutemon> lutemons, int rounds, long seed) {
+        if (rounds < 1 || rounds > MAX_ROUNDS) {
+            throw new IllegalArgumentException("Rounds must be between 1 and " + MAX_ROUNDS);
+        }
+        if (lutemons.size() > MAX_PLAYERS) {
+            throw new IllegalArgumentException("At most " + MAX_PLAYERS + " Lutemons can take part");
+        }
+
+        // Copy fighter state in ID order so live objects are never touched
+        List<Lutemon> roster = new ArrayList<>(lutemons);
+        roster.sort(Comparator.comparingInt(Lutemon::getId));
+        int n = roster.size();
+        int[] ids = new int[n];
+        String[] names = new String[n];
+        int[] attack = new int[n];
+        int[] defense = new int[n];
+        int[] health = new int[n];
+        for (int i = 0; i < n; i++) {
+            // Published snapshots stay consistent while the UI trains the live Lutemons
+            LutemonSnapshot lutemon = roster.get(i).getSnapshot();
+            ids[i] = lutemon.getId();
+            names[i] = lutemon.getName();
+            attack[i] = lutemon.getTotalAttack();
+            defense[i] = lutemon.getDefense();
+            health[i] = lutemon.getMaxHealth();
+        }
+
+        long start = System.nanoTime();
+        short[] wins = new short[n * n];
+        if (n > 1) {
+            pool.invoke(new PairingTask(attack, defense, health, wins, rounds, seed, 0, n));
+        }
+        double[] ratings = fitRatings(wins, n, 2 * rounds);
+        return new Result(ids, names, ratings, wins, 2 * rounds, System.nanoTime() - start);
+    }
+
+    /**
+     * Fits Elo ratings to the win matrix with the Bradley-Terry model.
+     * Every player also gets one win and one loss against a 1500 rated anchor,
+     * so unbeaten and winless players still get finite ratings.
+     */
+    private double[] fitRatings(short[] wins, int n, int gamesPerPair) {
+        double[] strength = new double[n];
+        Arrays.fill(strength, 1);
+        double[] next = new double[n];
+
+        for (int iteration = 0; iteration < RATING_ITERATIONS && n > 0; iteration++) {
+            pool.invoke(new RatingTask(wins, n, gamesPerPair, strength, next, 0, n));
+            double change = 0;
+            for (int i = 0; i < n; i++) {
+                change = Math.max(change, Math.abs(next[i] - strength[i]) / strength[i]);
+            }
+            double[] swap = strength;
+            strength = next;
+            next = swap;
+            if (change < RATING_TOLERANCE) break;
+        }
+
+        double[] ratings = new double[n];
+        for (int i = 0; i < n; i++) {
+            ratings[i] = BASE_RATING + 400 * Math.log10(strength[i]);
+        }
+        return ratings;
+    }
+
+    /**
+     * Plays every pair (i, j) with i in a row range and j above i, so each matrix
+     * cell is written by exactly one task
+     */
+    private static class PairingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] attack;
+        private final int[] defense;
+        private final int[] health;
+        private final short[] wins;
+        private final int rounds;
+        private final long seed;
+        private final int fromRow;
+        private final int toRow;
+
+        PairingTask(int[] attack, int[] defense, int[] health, short[] wins,
+                    int rounds, long seed, int fromRow, int toRow) {
+            this.attack = attack;
+            this.defense = defense;
+            this.health = health;
+            this.wins = wins;
+            this.rounds = rounds;
+            this.seed = seed;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow > ROWS_PER_TASK) {
+                int middle = (fromRow + toRow) >>> 1;
+                invokeAll(new PairingTask(attack, defense, health, wins, rounds, seed, fromRow, middle),
+                    new PairingTask(attack, defense, health, wins, rounds, seed, middle, toRow));
+                return;
+            }
+
+            int n = attack.length;
+            for (int i = fromRow; i < toRow; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    SplittableRandom random = new SplittableRandom(
+                        BattleSimulator.taskSeed(seed, i * n + j));
+                    int winsI = 0;
+                    for (int round = 0; round < rounds; round++) {
+                        // i attacks first: odd turn count means i won
+                        winsI += BattleSimulator.simulateFight(attack[i], defense[i], health[i],
+                            attack[j], defense[j], health[j], random) & 1;
+                        // j attacks first: even turn count means i won
+                        winsI += 1 - (BattleSimulator.simulateFight(attack[j], defense[j], health[j],
+                            attack[i], defense[i], health[i], random) & 1);
+                    }
+                    wins[i * n + j] = (short) winsI;
+                    wins[j * n + i] = (short) (2 * rounds - winsI);
+                }
+            }
+        }
+    }
+
+    /**
+     * One Bradley-Terry update step for a range of players
+     */
+    private static class RatingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final short[] wins;
+        private final int n;
+        private final int gamesPerPair;
+        private final double[] strength;
+        private final double[] next;
+        private final int from;
+        private final int to;
+
+        RatingTask(short[] wins, int n, int gamesPerPair, double[] strength, double[] next,
+                   int from, int to) {
+            this.wins = wins;
+            this.n = n;
+            this.gamesPerPair = gamesPerPair;
+            this.strength = strength;
+            this.next = next;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_TASK * 4) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RatingTask(wins, n, gamesPerPair, strength, next, from, middle),
+                    new RatingTask(wins, n, gamesPerPair, strength, next, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                double own = strength[i];
+                // Anchor games against a strength of 1
+                double totalWins = 1;
+                double denominator = 2 / (own + 1);
+                int row = i * n;
+                for (int j = 0; j < n; j++) {
+                    if (j == i) continue;
+                    totalWins += wins[row + j];
+                    denominator += gamesPerPair / (own + strength[j]);
+                }
+                next[i] = totalWins / denominator;
+            }
+        }
+    }
+
+    /**
+     * Ratings and head-to-head results of a tournament
+     */
+    public static class Result {
+        private final int[] ids;
+        private final String[] names;
+        private final double[] ratings;
+        private final short[] wins;
+        private final int gamesPerPair;
+        private final long elapsedNanos;
+
+        Result(int[] ids, String[] names, double[] ratings, short[] wins,
+               int gamesPerPair, long elapsedNanos) {
+            this.ids = ids;
+            this.names = names;
+            this.ratings = ratings;
+            this.wins = wins;
+            this.gamesPerPair = gamesPerPair;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getPlayerCount() { return ids.length; }
+        public int getGamesPerPair() { return gamesPerPair; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public int getId(int index) { return ids[index]; }
+        public String getName(int index) { return names[index]; }
+        public double getRating(int index) { return ratings[index]; }
+
+        /**
+         * Gets the index of a Lutemon in this result, or -1 if it did not take part
+         */
+        public int indexOf(int lutemonId) {
+            int index = Arrays.binarySearch(ids, lutemonId);
+            return index >= 0 ? index : -1;
+        }
+
+        /**
+         * Gets how many of their games the first player won against the second
+         */
+        public int getWins(int index, int opponentIndex) {
+            return wins[index * ids.length + opponentIndex];
+        }
+
+        /**
+         * Gets player indexes from highest to lowest rating
+         */
+        public int[] getRanking() {
+            Integer[] order = new Integer[ids.length];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Double.compare(ratings[b], ratings[a]));
+            int[] ranking = new int[order.length];
+            for (int i = 0; i < order.length; i++) ranking[i] = order[i];
+            return ranking;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.lutemon;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,56 +15,108 @@ import androidx.navigation.Navigation;
 import java.util.List;
 
 /**
- * Fragment for managing Lutemons in training
+ * Fragment for managing Lutemons in training.
+ * Rows are built once and then patched from the Storage change feed.
  */
 public class TrainingFragment extends Fragment {
     private Storage storage;
     private LinearLayout lutemonContainer;
     private View emptyView;
+    // Row of every Lutemon shown, by ID
+    private final SparseArray<View> rows = new SparseArray<>();
+    private final ChangeFeed.Listener changeListener = this::applyChanges;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                            Bundle savedInstanceState) {
-        // Get storage instance from MainActivity
-        storage = ((MainActivity) requireActivity()).getStorage();
-
         // Inflate the layout for this fragment
         View view = inflater.inflate(R.layout.fragment_training, container, false);
         lutemonContainer = view.findViewById(R.id.lutemon_container);
         emptyView = view.findViewById(R.id.empty_view);
         
-        // Load and display Lutemons
-        updateLutemonList();
+        // Display Lutemons as soon as the storage is loaded
+        ((MainActivity) requireActivity()).whenStorageReady(this::showLutemons);
         
         return view;
     }
 
-    @Override
-    public void onResume() {
-        super.onResume();
+    /**
+     * Shows the Lutemons in training, then follows changes on the main thread
+     */
+    private void showLutemons(Storage loaded) {
+        // The view was destroyed while loading, or this view already has them
+        if (lutemonContainer == null || storage != null) return;
+        storage = loaded;
         updateLutemonList();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        storage.addChangeListener(changeListener, mainHandler::post);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (storage != null) {
+            storage.removeChangeListener(changeListener);
+            storage = null;
+        }
+        lutemonContainer = null;
+        rows.clear();
     }
 
     /**
-     * Updates the list of Lutemons displayed
+     * Rebuilds the list of Lutemons displayed
      */
     private void updateLutemonList() {
         lutemonContainer.removeAllViews();
+        rows.clear();
         List<Lutemon> lutemons = storage.getLutemonsByLocation(Storage.TRAINING);
-        
-        // Show/hide empty view based on list size
-        if (lutemons.isEmpty()) {
+        for (Lutemon lutemon : lutemons) {
+            addRow(lutemon);
+        }
+        updateEmptyView();
+    }
+
+    /**
+     * Adds, removes or refreshes only the rows of Lutemons that changed
+     */
+    private void applyChanges(List<StorageChange> changes) {
+        if (getView() == null) return;
+        for (StorageChange change : changes) {
+            int id = change.getLutemonId();
+            View row = rows.get(id);
+            if (Storage.TRAINING.equals(change.getNewLocation())) {
+                Lutemon lutemon = storage.getLutemon(id);
+                if (lutemon == null) continue;
+                if (row == null) {
+                    addRow(lutemon);
+                } else {
+                    updateStats(lutemon, row.findViewById(R.id.lutemon_stats));
+                }
+            } else if (row != null) {
+                lutemonContainer.removeView(row);
+                rows.remove(id);
+            }
+        }
+        updateEmptyView();
+    }
+
+    private void addRow(Lutemon lutemon) {
+        View row = createLutemonView(lutemon);
+        rows.put(lutemon.getId(), row);
+        lutemonContainer.addView(row);
+    }
+
+    /**
+     * Shows the empty view when no Lutemon is training
+     */
+    private void updateEmptyView() {
+        if (rows.size() == 0) {
             emptyView.setVisibility(View.VISIBLE);
             lutemonContainer.setVisibility(View.GONE);
         } else {
             emptyView.setVisibility(View.GONE);
             lutemonContainer.setVisibility(View.VISIBLE);
         }
-
-        for (Lutemon lutemon : lutemons) {
-            View lutemonView = createLutemonView(lutemon);
-            lutemonContainer.addView(lutemonView);
-        }
     }
 
     /**
@@ -82,16 +137,14 @@ public class TrainingFragment extends Fragment {
         updateStats(lutemon, statsText);
         shapeView.setLutemon(lutemon);
 
+        // The change feed updates the rows afterwards
         trainButton.setOnClickListener(v -> {
             lutemon.train();
             storage.recordTraining(lutemon);
-            updateStats(lutemon, statsText);
-            storage.saveLutemons();
         });
 
         homeButton.setOnClickListener(v -> {
             storage.moveLutemon(lutemon.getId(), Storage.HOME);
-            updateLutemonList();
         });
 
         // Navigate to stats detail on click
@@ -0,0 +1,213 @@
+package com.example.lutemon;
+
+import android.util.Log;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Saves Storage on a background I/O thread. Callers only mark the Lutemons or the
+ * stats dirty; the first mark schedules a write after the coalescing delay and
+ * later marks ride along, so a burst of changes costs one write per file.
+ * A write appends the changed Lutemons to the journal, and compacts it into
+ * the segment files of the changed Lutemons when it grows past its limit, or
+ * into every segment when a full save is requested.
+ */
+public class WriteBehindSaver {
+    private static final String TAG = "WriteBehindSaver";
+    public static final long DEFAULT_DELAY_MILLIS = 500;
+    public static final int DEFAULT_JOURNAL_LIMIT_BYTES = 256 * 1024;
+
+    private final Storage storage;
+    private final DataManager dataManager;
+    private final long delayMillis;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean lutemonsDirty = new AtomicBoolean();
+    private final AtomicBoolean statsDirty = new AtomicBoolean();
+    // Set while a write is scheduled and hasn't started yet
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Set when the next write must save every segment instead of appending to the journal
+    private final AtomicBoolean snapshotRequested = new AtomicBoolean();
+    private final int journalLimitBytes;
+    // Generation of the saved files and the journal, and the journal's length.
+    // Only used on the I/O thread, a length of -1 means the journal can't be appended to.
+    private long generation;
+    private int journalBytes;
+
+    /**
+     * Creates a saver that continues the journal of the given generation and length,
+     * a length of -1 makes the first write a full save
+     */
+    public WriteBehindSaver(Storage storage, DataManager dataManager, long delayMillis,
+                            long generation, int journalBytes, int journalLimitBytes) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("Delay must not be negative");
+        }
+        this.storage = storage;
+        this.dataManager = dataManager;
+        this.delayMillis = delayMillis;
+        this.generation = generation;
+        this.journalBytes = journalBytes;
+        this.journalLimitBytes = journalLimitBytes;
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "lutemon-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void markLutemonsDirty() {
+        lutemonsDirty.set(true);
+        schedule();
+    }
+
+    public void markStatsDirty() {
+        statsDirty.set(true);
+        schedule();
+    }
+
+    /**
+     * Makes the next write save every segment, for changes the journal doesn't track
+     */
+    public void requestSnapshot() {
+        snapshotRequested.set(true);
+    }
+
+    /**
+     * Checks if changes are waiting to be written
+     */
+    public boolean isDirty() {
+        return lutemonsDirty.get() || statsDirty.get();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::write, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                Log.w(TAG, "Change after close not saved");
+            }
+        }
+    }
+
+    /**
+     * Writes whatever is dirty, runs on the I/O thread only
+     */
+    private void write() {
+        scheduled.set(false);
+        // Clear before copying, a change made during the write marks it dirty again
+        boolean lutemons = lutemonsDirty.getAndSet(false);
+        boolean stats = statsDirty.getAndSet(false);
+        if (!lutemons && !stats) {
+            return;
+        }
+        if (!snapshotRequested.get() && journalBytes >= 0 && journalBytes < journalLimitBytes) {
+            // Null while a transaction is open, its commit marks the files again
+            byte[] records = storage.drainJournal();
+            if (records == null) {
+                markAgain(lutemons, stats);
+                return;
+            }
+            if (records.length == 0 || dataManager.appendJournal(records)) {
+                journalBytes += records.length;
+                return;
+            }
+            // The drained changes are still in the changed segments that compacting saves
+            Log.e(TAG, "Failed to append to the journal, compacting");
+            journalBytes = -1;
+        }
+        compact(lutemons, stats);
+    }
+
+    /**
+     * Saves the changed segments, or every segment if a full save was requested,
+     * under manifests of a new generation and starts an empty journal for it.
+     * A crash in between leaves each manifest with the generation that it holds,
+     * so loading skips journal records that are older than the files.
+     */
+    private void compact(boolean lutemons, boolean stats) {
+        boolean complete = snapshotRequested.getAndSet(false);
+        SegmentedSave save = storage.drainSegments(complete);
+        if (save == null) {
+            if (complete) {
+                snapshotRequested.set(true);
+            }
+            markAgain(lutemons, stats);
+            return;
+        }
+        // Stale files and journals are never newer than the next generation
+        generation++;
+        if (dataManager.saveStats(save, generation)
+                && dataManager.saveLutemons(save, generation)
+                && dataManager.replaceJournal(StorageJournal.header(generation))) {
+            journalBytes = StorageJournal.HEADER_SIZE;
+        } else {
+            // The drained changes are only in memory now, a full save keeps them
+            journalBytes = -1;
+            snapshotRequested.set(true);
+            markAgain(lutemons, stats);
+            Log.e(TAG, "Failed to save, retrying on the next change or flush");
+        }
+    }
+
+    private void markAgain(boolean lutemons, boolean stats) {
+        if (lutemons) lutemonsDirty.set(true);
+        if (stats) statsDirty.set(true);
+    }
+
+    /**
+     * Starts writing pending changes now without waiting for them, e.g. when the
+     * app is paused on the main thread
+     */
+    public void requestFlush() {
+        try {
+            submitFlush();
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Flush after close ignored");
+        }
+    }
+
+    private Future<?> submitFlush() {
+        return executor.submit(() -> {
+            write();
+            // The saved files hold every change, so the mapped store can be trusted on the next launch
+            if (!isDirty() && journalBytes >= 0) {
+                storage.markMirrorSaved(generation, journalBytes);
+            }
+        });
+    }
+
+    /**
+     * Writes pending changes now and waits for the disk, e.g. before closing
+     * @return false if something is still unsaved after the timeout or a failed write
+     */
+    public boolean flush(long timeoutMillis) {
+        try {
+            Future<?> done = submitFlush();
+            done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            Log.e(TAG, "Flush didn't finish: " + e);
+            return false;
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Flush after close ignored");
+            return false;
+        }
+        return !isDirty();
+    }
+
+    /**
+     * Flushes and stops the I/O thread, later marks are ignored
+     */
+    public void close(long timeoutMillis) {
+        flush(timeoutMillis);
+        executor.shutdown();
+    }
+}
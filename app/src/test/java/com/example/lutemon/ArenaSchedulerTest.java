@@ -0,0 +1,102 @@
+package com.example.lutemon;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the Arena and ArenaScheduler classes
+ */
+public class ArenaSchedulerTest {
+    private static final int ARENAS = 24;
+
+    private InMemoryDataManager dataManager;
+    private Storage storage;
+    private ArenaScheduler scheduler;
+    private List<Integer> ids;
+
+    @Before
+    public void setUp() {
+        dataManager = new InMemoryDataManager();
+        storage = new Storage(dataManager);
+        scheduler = new ArenaScheduler(storage, 4, 17L);
+        ids = new ArrayList<>();
+        for (int i = 0; i < ARENAS * 2; i++) {
+            ids.add(storage.addLutemon(new Lutemon("Lutemon" + i, i % 2 == 0 ? "pink" : "green")));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testArenasFightConcurrently() throws Exception {
+        for (int i = 0; i < ARENAS; i++) {
+            Arena arena = scheduler.getOrCreateArena("arena" + i);
+            assertTrue(arena.assignFighters(ids.get(2 * i), ids.get(2 * i + 1)));
+            assertEquals(2, storage.getLutemonsByLocation(arena.getLocation()).size());
+        }
+        dataManager.resetCounters();
+
+        List<BattleReplay> replays = scheduler.runReadyArenas();
+
+        assertEquals(ARENAS, replays.size());
+        for (BattleReplay replay : replays) {
+            assertTrue(replay.verify());
+        }
+        assertEquals(ARENAS, storage.getStats().getTotalBattles());
+        for (int id : ids) {
+            LutemonStats stats = storage.getStats().getLutemonStats(id);
+            assertEquals(1, stats.getBattlesWon() + stats.getBattlesLost());
+        }
+        assertEquals(ARENAS * 2, storage.getLutemonsByLocation(Storage.HOME).size());
+        assertEquals(1, dataManager.getLutemonWrites());
+        assertEquals(1, dataManager.getStatsWrites());
+    }
+
+    @Test
+    public void testFightsDontHoldTheStorage() throws Exception {
+        Arena moved = scheduler.getOrCreateArena("moved");
+        Arena kept = scheduler.getOrCreateArena("kept");
+        assertTrue(moved.assignFighters(ids.get(0), ids.get(1)));
+        assertTrue(kept.assignFighters(ids.get(2), ids.get(3)));
+        // Taken out of its arena before the fights run
+        assertTrue(storage.moveLutemon(ids.get(0), Storage.TRAINING));
+
+        List<BattleReplay> replays = scheduler.runReadyArenas();
+
+        assertEquals(1, replays.size());
+        assertFalse(storage.inTransaction());
+        assertEquals(1, storage.getStats().getTotalBattles());
+        assertEquals(0, storage.getStats().getLutemonStats(ids.get(0)).getBattlesLost()
+            + storage.getStats().getLutemonStats(ids.get(0)).getBattlesWon());
+        assertEquals(Storage.TRAINING, storage.getLutemonLocation(ids.get(0)));
+        // The fighter left behind went home, and the arena takes new fighters
+        assertEquals(Storage.HOME, storage.getLutemonLocation(ids.get(1)));
+        assertTrue(storage.getLutemonsByLocation(moved.getLocation()).isEmpty());
+        assertTrue(moved.assignFighters(ids.get(4), ids.get(5)));
+        assertTrue(kept.assignFighters(ids.get(2), ids.get(3)));
+    }
+
+    @Test
+    public void testFighterCannotJoinTwoArenas() {
+        Arena first = scheduler.getOrCreateArena("first");
+        Arena second = scheduler.getOrCreateArena("second");
+
+        assertTrue(first.assignFighters(ids.get(0), ids.get(1)));
+        assertFalse(second.assignFighters(ids.get(1), ids.get(2)));
+        assertFalse(first.assignFighters(ids.get(2), ids.get(3)));
+        assertFalse(storage.moveLutemon(ids.get(2), first.getLocation()));
+    }
+
+    @Test
+    public void testSameArenaIsReturned() {
+        assertSame(scheduler.getOrCreateArena("main"), scheduler.getOrCreateArena("main"));
+        assertNull(scheduler.getArena("missing"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.lutemon;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the BattleEventLog and IntRingBuffer classes
+ */
+public class BattleEventLogTest {
+    private BattleEventLog log;
+
+    @Before
+    public void setUp() {
+        log = new BattleEventLog(3);
+    }
+
+    @Test
+    public void testRingBufferOverwritesOldest() {
+        IntRingBuffer buffer = new IntRingBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i);
+        }
+        assertEquals(3, buffer.size());
+        assertEquals(3, buffer.get(0));
+        assertEquals(5, buffer.get(2));
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        buffer.add(9);
+        assertEquals(9, buffer.get(0));
+    }
+
+    @Test
+    public void testEventsKeepPayloads() {
+        log.record(BattleEventLog.DAMAGE, 7, 12, 8, 20);
+
+        assertEquals(1, log.size());
+        assertEquals(BattleEventLog.DAMAGE, log.getType(0));
+        assertEquals(7, log.getValue(0, 0));
+        assertEquals(20, log.getValue(0, 3));
+    }
+
+    @Test
+    public void testOldestEventsAreDropped() {
+        for (int i = 1; i <= 5; i++) {
+            log.record(BattleEventLog.DEFEATED, i);
+        }
+        assertEquals(3, log.size());
+        assertEquals(3, log.getValue(0, 0));
+        assertEquals(5, log.getValue(2, 0));
+    }
+
+    @Test
+    public void testFormatting() {
+        log.record(BattleEventLog.ATTACK, 1, 2, 0, 0);
+        log.record(BattleEventLog.CRITICAL_HIT, 5);
+        log.record(BattleEventLog.DAMAGE, 2, 9, 11, 20);
+
+        List<String> lines = log.formatAll(id -> id == 1 ? "White1" : "Black1");
+        assertEquals("White1 attacks Black1!", lines.get(0));
+        assertEquals("Critical hit! +5 damage!", lines.get(1));
+        assertEquals("Black1 takes 9 damage! (HP: 11/20)", lines.get(2));
+    }
+}
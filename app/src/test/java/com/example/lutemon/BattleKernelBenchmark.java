@@ -0,0 +1,96 @@
+package com.example.lutemon;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the column based BattleKernel with fighting through Lutemon objects.
+ * Run with -Dlutemon.benchmarks=true
+ */
+public class BattleKernelBenchmark {
+    private static final int MATCHUPS = 100_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private Lutemon[] fighters1;
+    private Lutemon[] fighters2;
+    private int[][] columns;
+    private long[] seeds;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("lutemon.benchmarks"));
+        SplittableRandom random = new SplittableRandom(3L);
+        fighters1 = new Lutemon[MATCHUPS];
+        fighters2 = new Lutemon[MATCHUPS];
+        columns = new int[8][MATCHUPS];
+        seeds = new long[MATCHUPS];
+        for (int m = 0; m < MATCHUPS; m++) {
+            fighters1[m] = new Lutemon("Fighter1", "white");
+            fighters2[m] = new Lutemon("Fighter2", "black");
+            fighters1[m].setExperience(random.nextInt(0, 5));
+            fighters2[m].setExperience(random.nextInt(0, 5));
+            BattleKernelTest.fillColumns(columns, m, fighters1[m], fighters2[m]);
+            seeds[m] = random.nextLong();
+        }
+    }
+
+    /**
+     * Same rules as Battle.executeAttack(), swapping attacker and defender objects
+     */
+    private int fightObjects() {
+        int wins = 0;
+        for (int m = 0; m < MATCHUPS; m++) {
+            Lutemon attacker = fighters1[m];
+            Lutemon defender = fighters2[m];
+            attacker.heal();
+            defender.heal();
+            SplittableRandom random = new SplittableRandom(seeds[m]);
+            while (true) {
+                int damage = Battle.calculateDamage(attacker.getTotalAttack(), defender.getDefense(),
+                    Battle.rollCriticalHit(random));
+                defender.setHealth(Math.max(0, defender.getHealth() - damage));
+                if (defender.getHealth() <= 0) break;
+                Lutemon swap = attacker;
+                attacker = defender;
+                defender = swap;
+            }
+            if (attacker == fighters1[m]) wins++;
+        }
+        return wins;
+    }
+
+    private int fightColumns() {
+        int[] turns = BattleKernelTest.resolve(columns, seeds);
+        return BattleKernel.countFighter1Wins(turns);
+    }
+
+    @Test
+    public void benchmarkKernelAgainstObjects() {
+        int objectWins = 0;
+        int kernelWins = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            objectWins = fightObjects();
+            kernelWins = fightColumns();
+        }
+        assertEquals(objectWins, kernelWins);
+
+        long objectNanos = 0;
+        long kernelNanos = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            fightObjects();
+            objectNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            fightColumns();
+            kernelNanos += System.nanoTime() - start;
+        }
+
+        double fights = (double) MATCHUPS * MEASURED_ROUNDS;
+        System.out.println(String.format("Objects: %.1f ns/fight, kernel: %.1f ns/fight (%.2fx)",
+            objectNanos / fights, kernelNanos / fights, (double) objectNanos / kernelNanos));
+    }
+}
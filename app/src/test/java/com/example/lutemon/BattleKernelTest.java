@@ -0,0 +1,110 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the BattleKernel class
+ */
+public class BattleKernelTest {
+    private static final String[] COLORS = {"white", "green", "pink", "orange", "black"};
+
+    /**
+     * Builds a Lutemon with varied stats, including ones that can't hurt each other
+     */
+    private static Lutemon randomLutemon(SplittableRandom random, int index) {
+        Lutemon lutemon = new Lutemon("Lutemon" + index, COLORS[index % COLORS.length]);
+        lutemon.setAttack(random.nextInt(1, 12));
+        lutemon.setExperience(random.nextInt(0, 6));
+        lutemon.setDefense(random.nextInt(0, 10));
+        lutemon.setMaxHealth(random.nextInt(5, 40));
+        lutemon.heal();
+        return lutemon;
+    }
+
+    @Test
+    public void testMatchesBattleForSameSeed() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        SplittableRandom random = new SplittableRandom(5L);
+        int count = 40;
+        int[][] columns = new int[8][count];
+        long[] seeds = new long[count];
+        int[] expectedWinners = new int[count];
+        int[] fighter1Ids = new int[count];
+
+        for (int m = 0; m < count; m++) {
+            Lutemon first = randomLutemon(random, 2 * m);
+            Lutemon second = randomLutemon(random, 2 * m + 1);
+            fillColumns(columns, m, first, second);
+            seeds[m] = random.nextLong();
+
+            fighter1Ids[m] = storage.addLutemon(first);
+            int secondId = storage.addLutemon(second);
+            storage.moveLutemon(first.getId(), Storage.BATTLE);
+            storage.moveLutemon(secondId, Storage.BATTLE);
+            Battle battle = new Battle(storage);
+            assertTrue(battle.startBattle(first.getId(), secondId, seeds[m]));
+            while (battle.executeAttack()) {
+                // Fight until one Lutemon is defeated
+            }
+            expectedWinners[m] = battle.getReplay().getWinnerId();
+        }
+
+        int[] turns = resolve(columns, seeds);
+        for (int m = 0; m < count; m++) {
+            assertEquals("matchup " + m, expectedWinners[m] == fighter1Ids[m], (turns[m] & 1) == 1);
+        }
+    }
+
+    @Test
+    public void testMatchesSimulatorTurnCounts() {
+        SplittableRandom random = new SplittableRandom(11L);
+        int count = 5000;
+        int[][] columns = new int[8][count];
+        long[] seeds = new long[count];
+        int[] expected = new int[count];
+
+        for (int m = 0; m < count; m++) {
+            Lutemon first = randomLutemon(random, 2 * m);
+            Lutemon second = randomLutemon(random, 2 * m + 1);
+            fillColumns(columns, m, first, second);
+            seeds[m] = random.nextLong();
+            expected[m] = BattleSimulator.simulateFight(
+                first.getTotalAttack(), first.getDefense(), first.getMaxHealth(),
+                second.getTotalAttack(), second.getDefense(), second.getMaxHealth(),
+                new SplittableRandom(seeds[m]));
+        }
+
+        int[] turns = resolve(columns, seeds);
+        assertArrayEquals(expected, turns);
+        int wins = 0;
+        for (int t : expected) wins += t & 1;
+        assertEquals(wins, BattleKernel.countFighter1Wins(turns));
+    }
+
+    @Test
+    public void testEmptyInput() {
+        int[] none = new int[0];
+        BattleKernel.resolve(none, none, none, none, none, none, none, none, new long[0], none);
+        assertEquals(0, BattleKernel.countFighter1Wins(none));
+    }
+
+    static void fillColumns(int[][] columns, int m, Lutemon first, Lutemon second) {
+        columns[0][m] = first.getAttack();
+        columns[1][m] = first.getExperience();
+        columns[2][m] = first.getDefense();
+        columns[3][m] = first.getMaxHealth();
+        columns[4][m] = second.getAttack();
+        columns[5][m] = second.getExperience();
+        columns[6][m] = second.getDefense();
+        columns[7][m] = second.getMaxHealth();
+    }
+
+    static int[] resolve(int[][] columns, long[] seeds) {
+        int[] turns = new int[seeds.length];
+        BattleKernel.resolve(columns[0], columns[1], columns[2], columns[3],
+            columns[4], columns[5], columns[6], columns[7], seeds, turns);
+        return turns;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.lutemon;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the BattleOutcomeCalculator class
+ */
+public class BattleOutcomeCalculatorTest {
+    private BattleOutcomeCalculator calculator;
+    private Lutemon whiteLutemon;
+    private Lutemon blackLutemon;
+
+    @Before
+    public void setUp() {
+        calculator = new BattleOutcomeCalculator();
+        whiteLutemon = new Lutemon("White1", "white");
+        blackLutemon = new Lutemon("Black1", "black");
+    }
+
+    @Test
+    public void testMatchesSimulation() {
+        BattleOutcomeCalculator.Outcome outcome = calculator.calculate(whiteLutemon, blackLutemon);
+        BattleSimulator.Result result = new BattleSimulator()
+            .simulate(whiteLutemon, blackLutemon, 400000, 11L);
+
+        assertEquals(result.getFighter1WinRate(), outcome.getFighter1WinProbability(), 0.01);
+        assertEquals(result.getMeanTurns(), outcome.getExpectedTurns(), 0.05);
+        for (int turns = 1; turns <= 10; turns++) {
+            double simulated = (double) result.getTurnCount(turns) / result.getFights();
+            assertEquals(simulated, outcome.getTurnProbability(turns), 0.01);
+        }
+    }
+
+    @Test
+    public void testDistributionIsConsistent() {
+        BattleOutcomeCalculator.Outcome outcome = calculator.calculate(blackLutemon, whiteLutemon);
+
+        double total = 0;
+        double fighter1Wins = 0;
+        double expectedTurns = 0;
+        for (int turns = 0; turns <= outcome.getMaxTurns(); turns++) {
+            double probability = outcome.getTurnProbability(turns);
+            total += probability;
+            expectedTurns += turns * probability;
+            // Fighter 1 lands the final blow on odd turns
+            if ((turns & 1) == 1) fighter1Wins += probability;
+        }
+        assertEquals(1.0, total, 1e-9);
+        assertEquals(outcome.getFighter1WinProbability(), fighter1Wins, 1e-9);
+        assertEquals(outcome.getExpectedTurns(), expectedTurns, 1e-6);
+    }
+
+    @Test
+    public void testZeroDamageFightsEndThroughCriticalHits() {
+        // Neither side gets through the other's defense without a critical hit
+        BattleOutcomeCalculator.Outcome outcome = calculator.calculate(3, 10, 12, 3, 10, 12);
+
+        assertEquals(1.0, outcome.getFighter1WinProbability() + outcome.getFighter2WinProbability(), 1e-12);
+        assertTrue(outcome.getFighter1WinProbability() > 0.5); // First strike advantage
+        assertTrue(outcome.getExpectedTurns() > 10);
+    }
+
+    @Test
+    public void testCertainOutcome() {
+        BattleOutcomeCalculator.Outcome outcome = calculator.calculate(100, 0, 10, 1, 0, 20);
+        assertEquals(1.0, outcome.getFighter1WinProbability(), 1e-12);
+        assertEquals(1.0, outcome.getExpectedTurns(), 1e-12);
+        assertEquals(1.0, outcome.getTurnProbability(1), 1e-12);
+    }
+
+    @Test
+    public void testResultsAreCached() {
+        assertSame(calculator.calculate(whiteLutemon, blackLutemon),
+            calculator.calculate(whiteLutemon, blackLutemon));
+    }
+}
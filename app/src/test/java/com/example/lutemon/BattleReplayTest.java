@@ -0,0 +1,110 @@
+package com.example.lutemon;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for seeded battles and the BattleReplay class
+ */
+public class BattleReplayTest {
+    private Storage storage;
+    private int whiteId;
+    private int blackId;
+
+    @Before
+    public void setUp() {
+        storage = new Storage(new InMemoryDataManager());
+        whiteId = storage.addLutemon(new Lutemon("White1", "white"));
+        blackId = storage.addLutemon(new Lutemon("Black1", "black"));
+        storage.moveLutemon(whiteId, Storage.BATTLE);
+        storage.moveLutemon(blackId, Storage.BATTLE);
+    }
+
+    private Battle fight(long seed) {
+        Battle battle = new Battle(storage, seed);
+        assertTrue(battle.startBattle(whiteId, blackId));
+        while (battle.executeAttack()) {
+            // Fight until one Lutemon is defeated
+        }
+        return battle;
+    }
+
+    @Test
+    public void testSeededBattlesRepeat() {
+        Battle first = fight(99L);
+        storage.moveLutemon(whiteId, Storage.BATTLE);
+        storage.moveLutemon(blackId, Storage.BATTLE);
+        storage.getLutemon(whiteId).resetStats();
+        storage.getLutemon(blackId).resetStats();
+        Battle second = fight(99L);
+
+        assertEquals(first.getFightSeed(), second.getFightSeed());
+        assertEquals(first.getBattleLog(), second.getBattleLog());
+    }
+
+    @Test
+    public void testReplayRoundTrip() throws Exception {
+        Battle battle = fight(7L);
+        BattleReplay replay = battle.getReplay();
+        byte[] data = replay.toByteArray();
+        BattleReplay loaded = BattleReplay.fromByteArray(data);
+
+        assertTrue(data.length < 40 + replay.getTurnCount() / 8);
+        assertTrue(loaded.verify());
+        assertEquals(replay.getWinnerId(), loaded.getWinnerId());
+
+        BattleEventLog replayed = new BattleEventLog();
+        loaded.replayInto(replayed);
+        BattleEventLog original = battle.getEventLog();
+        assertEquals(original.size(), replayed.size());
+        for (int i = 0; i < original.size(); i++) {
+            assertEquals(original.getType(i), replayed.getType(i));
+            for (int value = 0; value < 4; value++) {
+                assertEquals(original.getValue(i, value), replayed.getValue(i, value));
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryFormatIsStable() throws Exception {
+        BattleReplay replay = new BattleReplay(1L, new int[]{1, 5, 4, 20, 20},
+            new int[]{2, -1, 0, 300, 300}, 3, new byte[]{0b101});
+        byte[] expected = {
+            0x4C, 0x54, 0x52, 0x50, 1,
+            0, 0, 0, 0, 0, 0, 0, 1,
+            // Zigzag varints, so -1 takes one byte and 300 takes two
+            2, 10, 8, 40, 40,
+            4, 1, 0, (byte) 0xD8, 4, (byte) 0xD8, 4,
+            6, 0b101
+        };
+        assertArrayEquals(expected, replay.toByteArray());
+        assertArrayEquals(expected, BattleReplay.fromByteArray(expected).toByteArray());
+    }
+
+    @Test
+    public void testTamperedReplayFailsVerification() throws Exception {
+        byte[] data = fight(3L).getReplay().toByteArray();
+        data[data.length - 1] ^= 1; // Flip the first critical hit of the last byte
+
+        assertFalse(BattleReplay.fromByteArray(data).verify());
+    }
+
+    @Test
+    public void testMatchesSimulatorForSameSeed() {
+        Lutemon white = storage.getLutemon(whiteId);
+        Lutemon black = storage.getLutemon(blackId);
+        int expectedTurns = BattleSimulator.simulateFight(
+            white.getTotalAttack(), white.getDefense(), white.getHealth(),
+            black.getTotalAttack(), black.getDefense(), black.getHealth(),
+            new SplittableRandom(1234L));
+
+        Battle battle = new Battle(storage);
+        battle.startBattle(whiteId, blackId, 1234L);
+        while (battle.executeAttack()) {
+            // Fight until one Lutemon is defeated
+        }
+        assertEquals(expectedTurns, battle.getReplay().getTurnCount());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.lutemon;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the BattleSimulator class
+ */
+public class BattleSimulatorTest {
+    private Lutemon whiteLutemon;
+    private Lutemon blackLutemon;
+
+    @Before
+    public void setUp() {
+        whiteLutemon = new Lutemon("White1", "white");
+        blackLutemon = new Lutemon("Black1", "black");
+    }
+
+    @Test
+    public void testResultsAreReproducible() {
+        int fights = BattleSimulator.FIGHTS_PER_TASK * 5 + 17;
+        BattleSimulator.Result single = new BattleSimulator(new ForkJoinPool(1))
+            .simulate(whiteLutemon, blackLutemon, fights, 42L);
+        BattleSimulator.Result parallel = new BattleSimulator(new ForkJoinPool(4))
+            .simulate(whiteLutemon, blackLutemon, fights, 42L);
+
+        assertEquals(fights, single.getFights());
+        assertEquals(single.getFighter1Wins(), parallel.getFighter1Wins());
+        for (int turns = 0; turns <= BattleSimulator.MAX_TRACKED_TURNS; turns++) {
+            assertEquals(single.getTurnCount(turns), parallel.getTurnCount(turns));
+        }
+    }
+
+    @Test
+    public void testCountsAddUp() {
+        BattleSimulator.Result result = new BattleSimulator()
+            .simulate(whiteLutemon, blackLutemon, 10000, 7L);
+
+        assertEquals(10000, result.getFighter1Wins() + result.getFighter2Wins());
+        long histogramTotal = 0;
+        for (int turns = 0; turns <= BattleSimulator.MAX_TRACKED_TURNS; turns++) {
+            histogramTotal += result.getTurnCount(turns);
+        }
+        assertEquals(10000, histogramTotal);
+        assertTrue(result.getMeanTurns() >= 1);
+    }
+
+    @Test
+    public void testOverwhelmingFighterWinsFirstTurn() {
+        for (int i = 0; i < 10; i++) {
+            blackLutemon.train();
+        }
+        blackLutemon.setExperience(100);
+
+        BattleSimulator.Result result = new BattleSimulator()
+            .simulate(blackLutemon, whiteLutemon, 1000, 1L);
+        assertEquals(1000, result.getFighter1Wins());
+        assertEquals(1000, result.getTurnCount(1));
+    }
+
+    @Test
+    public void testLiveLutemonsAreNotChanged() {
+        new BattleSimulator().simulate(whiteLutemon, blackLutemon, 1000, 3L);
+        assertEquals(whiteLutemon.getMaxHealth(), whiteLutemon.getHealth());
+        assertEquals(blackLutemon.getMaxHealth(), blackLutemon.getHealth());
+        assertEquals(0, whiteLutemon.getExperience());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.lutemon;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Compares save and load time and file size of Java serialization and the
+ * binary format at 10k and 1M Lutemons, each with stats and a short history.
+ * Run with -Dlutemon.benchmarks=true and a heap of a few GB for the 1M case
+ */
+public class BinaryCodecBenchmark {
+    private static final int[] SIZES = {10_000, 1_000_000};
+    private static final String[] COLORS = {"white", "green", "pink", "orange", "black"};
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("lutemon.benchmarks"));
+    }
+
+    @Test
+    public void benchmarkSaveAndLoad() throws Exception {
+        for (int size : SIZES) {
+            Map<String, ArrayList<Lutemon>> locationMap = new HashMap<>();
+            GlobalStats stats = new GlobalStats();
+            populate(size, locationMap, stats);
+            Map<String, List<Lutemon>> lutemons = new HashMap<>(locationMap);
+
+            // Warm up both paths once before timing
+            javaSerialize(locationMap, stats);
+            binaryEncode(lutemons, stats);
+
+            System.gc();
+            long start = System.nanoTime();
+            byte[][] javaFiles = javaSerialize(locationMap, stats);
+            long javaSave = System.nanoTime() - start;
+            System.gc();
+            start = System.nanoTime();
+            byte[][] binaryFiles = binaryEncode(lutemons, stats);
+            long binarySave = System.nanoTime() - start;
+
+            System.gc();
+            start = System.nanoTime();
+            int javaLoaded = javaDeserialize(javaFiles);
+            long javaLoad = System.nanoTime() - start;
+            System.gc();
+            start = System.nanoTime();
+            int binaryLoaded = binaryDecode(binaryFiles);
+            long binaryLoad = System.nanoTime() - start;
+
+            assertEquals(size, javaLoaded);
+            assertEquals(size, binaryLoaded);
+            report(size, "Java serialization", javaFiles, javaSave, javaLoad);
+            report(size, "binary", binaryFiles, binarySave, binaryLoad);
+        }
+    }
+
+    private static void populate(int size, Map<String, ArrayList<Lutemon>> locationMap, GlobalStats stats) {
+        SplittableRandom random = new SplittableRandom(22);
+        String[] locations = {Storage.HOME, Storage.TRAINING, Storage.BATTLE};
+        for (String location : locations) {
+            locationMap.put(location, new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            Lutemon lutemon = new Lutemon("Lutemon " + i, COLORS[random.nextInt(COLORS.length)]);
+            LutemonStats lutemonStats = new LutemonStats(lutemon.getId(), lutemon.getColor());
+            lutemonStats.recordStats(lutemon);
+            int trainings = random.nextInt(4);
+            for (int t = 0; t < trainings; t++) {
+                lutemon.train();
+                lutemonStats.recordTraining();
+                lutemonStats.recordStats(lutemon);
+            }
+            stats.addLutemonStats(lutemonStats);
+            locationMap.get(locations[random.nextInt(2)]).add(lutemon);
+        }
+    }
+
+    private static byte[][] javaSerialize(Map<String, ArrayList<Lutemon>> locationMap, GlobalStats stats)
+            throws IOException {
+        ByteArrayOutputStream lutemonBytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(lutemonBytes)) {
+            out.writeObject(locationMap);
+        }
+        ByteArrayOutputStream statsBytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(statsBytes)) {
+            out.writeObject(stats);
+        }
+        return new byte[][]{lutemonBytes.toByteArray(), statsBytes.toByteArray()};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int javaDeserialize(byte[][] files) throws Exception {
+        int count = 0;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(files[0]))) {
+            for (List<Lutemon> lutemons : ((Map<String, ArrayList<Lutemon>>) in.readObject()).values()) {
+                count += lutemons.size();
+            }
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(files[1]))) {
+            assertEquals(count, ((GlobalStats) in.readObject()).getLutemonStatsCount());
+        }
+        return count;
+    }
+
+    private static byte[][] binaryEncode(Map<String, List<Lutemon>> locationMap, GlobalStats stats)
+            throws IOException {
+        ByteArrayOutputStream lutemonBytes = new ByteArrayOutputStream();
+        BinaryCodec.writeLutemons(lutemonBytes, locationMap, Lutemon.getIdHighWaterMark(), 1);
+        ByteArrayOutputStream statsBytes = new ByteArrayOutputStream();
+        BinaryCodec.writeStats(statsBytes, stats, 1);
+        return new byte[][]{lutemonBytes.toByteArray(), statsBytes.toByteArray()};
+    }
+
+    private static int binaryDecode(byte[][] files) throws IOException {
+        int count = 0;
+        for (List<Lutemon> lutemons : BinaryCodec.readLutemons(new ByteArrayInputStream(files[0])).value.values()) {
+            count += lutemons.size();
+        }
+        assertEquals(count, BinaryCodec.readStats(new ByteArrayInputStream(files[1])).value.getLutemonStatsCount());
+        return count;
+    }
+
+    private static void report(int size, String format, byte[][] files, long saveNanos, long loadNanos) {
+        System.out.printf("%,d Lutemons, %s: %,d + %,d bytes, save %d ms, load %d ms%n",
+            size, format, files[0].length, files[1].length, saveNanos / 1_000_000, loadNanos / 1_000_000);
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the binary file format
+ */
+public class BinaryCodecTest {
+
+    private static byte[] encode(Map<String, List<Lutemon>> locationMap, int mark, long generation)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.writeLutemons(bytes, locationMap, mark, generation);
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testVarIntRoundTrip() throws IOException {
+        int[] values = {0, 1, -1, 63, -64, 127, 128, 300, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.Writer writer = new BinaryCodec.Writer(bytes);
+        for (int value : values) {
+            writer.writeVarInt(value);
+            writer.writeSignedVarInt(value);
+            writer.writeVarLong(value & 0xFFFFFFFFL);
+        }
+        writer.writeVarLong(Long.MAX_VALUE);
+
+        BinaryCodec.Reader reader = new BinaryCodec.Reader(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int value : values) {
+            assertEquals(value, reader.readVarInt());
+            assertEquals(value, reader.readSignedVarInt());
+            assertEquals(value & 0xFFFFFFFFL, reader.readVarLong());
+        }
+        assertEquals(Long.MAX_VALUE, reader.readVarLong());
+
+        // Small values stay short
+        bytes.reset();
+        writer.writeVarInt(127);
+        writer.writeSignedVarInt(-64);
+        assertEquals(2, bytes.size());
+    }
+
+    @Test
+    public void testLutemonsRoundTrip() throws IOException {
+        Lutemon trained = new Lutemon("P\u00f6rr\u00f6", "green");
+        trained.train();
+        trained.setHealth(3);
+        Lutemon seeded = new Lutemon("Seeded", "pink", 42L);
+        Lutemon fighter = new Lutemon("Fighter", "green");
+        Map<String, List<Lutemon>> locationMap = new LinkedHashMap<>();
+        locationMap.put(Storage.HOME, new ArrayList<>(Arrays.asList(trained, seeded)));
+        locationMap.put(Storage.TRAINING, new ArrayList<>());
+        locationMap.put(Storage.ARENA_PREFIX + 2, new ArrayList<>(Arrays.asList(fighter)));
+
+        BinaryCodec.Loaded<Map<String, List<Lutemon>>> loaded = BinaryCodec.readLutemons(
+            new ByteArrayInputStream(encode(locationMap, 1234, 7)));
+        assertEquals(1234, loaded.idHighWaterMark);
+        assertEquals(7, loaded.generation);
+        assertEquals(locationMap.keySet(), loaded.value.keySet());
+        for (Map.Entry<String, List<Lutemon>> entry : locationMap.entrySet()) {
+            List<Lutemon> decoded = loaded.value.get(entry.getKey());
+            assertEquals(entry.getValue().size(), decoded.size());
+            for (int i = 0; i < decoded.size(); i++) {
+                LutemonSnapshot expected = entry.getValue().get(i).getSnapshot();
+                LutemonSnapshot actual = decoded.get(i).getSnapshot();
+                assertEquals(expected.getId(), actual.getId());
+                assertEquals(expected.getName(), actual.getName());
+                assertEquals(expected.getColor(), actual.getColor());
+                assertEquals(expected.getSpecies(), actual.getSpecies());
+                assertEquals(expected.getAttack(), actual.getAttack());
+                assertEquals(expected.getDefense(), actual.getDefense());
+                assertEquals(expected.getExperience(), actual.getExperience());
+                assertEquals(expected.getMaxHealth(), actual.getMaxHealth());
+                assertEquals(expected.getHealth(), actual.getHealth());
+                assertEquals(expected.getShapeSignature(), actual.getShapeSignature());
+            }
+        }
+    }
+
+    @Test
+    public void testStatsRoundTrip() throws IOException {
+        GlobalStats stats = new GlobalStats();
+        Lutemon winner = new Lutemon("Winner", "black");
+        Lutemon loser = new Lutemon("Loser", "white");
+        stats.addLutemonStats(new LutemonStats(winner.getId(), winner.getColor()));
+        stats.addLutemonStats(new LutemonStats(loser.getId(), loser.getColor()));
+        for (int i = 0; i < 5; i++) {
+            winner.train();
+            stats.recordTraining(winner);
+            stats.getLutemonStats(winner.getId()).recordStats(winner);
+        }
+        stats.recordBattle(winner.getId(), loser.getId());
+        stats.getLutemonStats(loser.getId()).recordRating(-12);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.writeStats(bytes, stats, 3);
+        BinaryCodec.Loaded<GlobalStats> loaded =
+            BinaryCodec.readStats(new ByteArrayInputStream(bytes.toByteArray()));
+        GlobalStats decoded = loaded.value;
+        assertEquals(3, loaded.generation);
+        assertEquals(stats.getTotalBattles(), decoded.getTotalBattles());
+        assertEquals(stats.getTotalTrainings(), decoded.getTotalTrainings());
+        assertEquals(2, decoded.getLutemonStatsCount());
+
+        LutemonStats expected = stats.getLutemonStats(winner.getId());
+        LutemonStats actual = decoded.getLutemonStats(winner.getId());
+        assertEquals(expected.getColorType(), actual.getColorType());
+        assertEquals(1, actual.getBattlesWon());
+        assertEquals(5, actual.getTrainingCount());
+        assertEquals(expected.getAttackHistory().size(), actual.getAttackHistory().size());
+        for (int i = 0; i < expected.getExperienceHistory().size(); i++) {
+            assertEquals(expected.getExperienceHistory().get(i).getValue(),
+                actual.getExperienceHistory().get(i).getValue());
+        }
+        assertEquals(1, decoded.getLutemonStats(loser.getId()).getBattlesLost());
+        assertEquals(-12, decoded.getLutemonStats(loser.getId()).getRating());
+    }
+
+    @Test
+    public void testDamagedFileIsRejected() throws IOException {
+        Map<String, List<Lutemon>> locationMap = new LinkedHashMap<>();
+        locationMap.put(Storage.HOME, new ArrayList<>(Arrays.asList(new Lutemon("Damaged", "orange"))));
+        byte[] data = encode(locationMap, 1, 1);
+
+        byte[] flipped = data.clone();
+        flipped[flipped.length - 8] ^= 0x10;
+        try {
+            BinaryCodec.readLutemons(new ByteArrayInputStream(flipped));
+            fail("Damaged file loaded");
+        } catch (IOException expected) {
+            // Rejected
+        }
+        try {
+            BinaryCodec.readLutemons(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 3)));
+            fail("Truncated file loaded");
+        } catch (IOException expected) {
+            // Rejected
+        }
+    }
+
+    @Test
+    public void testNewerVersionIsRejected() throws IOException {
+        byte[] data = encode(new LinkedHashMap<>(), 0, 0);
+        // The version follows the four byte magic number
+        data[4] = (byte) (BinaryCodec.VERSION + 1);
+        try {
+            BinaryCodec.readLutemons(new ByteArrayInputStream(data));
+            fail("Newer version loaded");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("version"));
+        }
+    }
+
+    @Test
+    public void testOldFormatIsMigrated() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager);
+        Lutemon lutemon = new Lutemon("Migrated", "white");
+        storage.addLutemon(lutemon);
+        storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
+
+        // A file written by Java serialization before the update
+        dataManager.dropIdHighWaterMark();
+        Storage migrated = new Storage(dataManager);
+        assertEquals(lutemon.getName(), migrated.getLutemon(lutemon.getId()).getName());
+        migrated.saveLutemons();
+
+        Storage reloaded = new Storage(dataManager);
+        assertEquals(lutemon.getId(), reloaded.getLutemonsByLocation(Storage.TRAINING).get(0).getId());
+        assertTrue(dataManager.getLoadedIdHighWaterMark() >= lutemon.getId());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the IdAllocator class and saved ID high-water marks
+ */
+public class IdAllocatorTest {
+
+    @Test
+    public void testIdsAreUniqueAcrossThreads() throws Exception {
+        IdAllocator allocator = new IdAllocator(16);
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit((Callable<int[]>) () -> {
+                    int[] ids = new int[perThread];
+                    for (int i = 0; i < perThread; i++) ids[i] = allocator.next();
+                    return ids;
+                }));
+            }
+            Set<Integer> seen = new HashSet<>();
+            for (Future<int[]> future : futures) {
+                for (int id : future.get()) {
+                    assertTrue(id > 0 && id <= allocator.getHighWaterMark());
+                    assertTrue("duplicate " + id, seen.add(id));
+                }
+            }
+            assertEquals(threads * perThread, seen.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAdvanceDropsClaimedBlock() {
+        IdAllocator allocator = new IdAllocator(100);
+        assertEquals(1, allocator.next());
+        assertEquals(2, allocator.next());
+
+        allocator.advanceTo(50);
+        assertEquals(101, allocator.next());
+        allocator.advanceTo(10); // Never moves down
+        assertEquals(201, allocator.next());
+        assertEquals(202, allocator.next());
+    }
+
+    @Test
+    public void testStorageRestoresSavedMark() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager);
+        int lastId = storage.addLutemon(new Lutemon("Saved", "green"));
+        int mark = Lutemon.getIdHighWaterMark();
+
+        new Storage(dataManager);
+        assertEquals(mark, dataManager.getLoadedIdHighWaterMark());
+        assertTrue(new Lutemon("Next", "green").getId() > lastId);
+
+        // Files without a mark fall back to scanning the Lutemons
+        dataManager.dropIdHighWaterMark();
+        new Storage(dataManager);
+        assertEquals(-1, dataManager.getLoadedIdHighWaterMark());
+        assertTrue(new Lutemon("Later", "green").getId() > lastId);
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.lutemon;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DataManager that keeps its files in memory and counts writes,
+ * so Storage can be tested without an Android Context
+ */
+public class InMemoryDataManager extends DataManager {
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private ByteArrayOutputStream journal;
+    // Writes of a file with this name fail, like a crash before it was replaced
+    private volatile String failingFile;
+    private int lutemonWrites;
+    private int statsWrites;
+    private int journalAppends;
+    private long bytesWritten;
+    // Folder of the mapped store, there is none unless it is set
+    private File lutemonStoreDir;
+
+    public InMemoryDataManager() {
+        super(null);
+    }
+
+    public void setLutemonStoreDir(File dir) {
+        lutemonStoreDir = dir;
+    }
+
+    @Override
+    public MappedLutemonStore openLutemonStore() {
+        if (lutemonStoreDir == null) {
+            return null;
+        }
+        try {
+            return MappedLutemonStore.open(new File(lutemonStoreDir, "lutemons.records"),
+                new File(lutemonStoreDir, "lutemons.strings"));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    InputStream openFile(String name) throws FileNotFoundException {
+        byte[] data = files.get(name);
+        if (data == null) {
+            throw new FileNotFoundException(name);
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+    @Override
+    boolean writeFile(String name, byte[] data) {
+        if (name.equals(failingFile)) {
+            return false;
+        }
+        files.put(name, data.clone());
+        // A save is counted once, when its manifest takes effect
+        if (name.equals("lutemons.manifest")) {
+            lutemonWrites++;
+        } else if (name.equals("stats.manifest")) {
+            statsWrites++;
+        }
+        bytesWritten += data.length;
+        return true;
+    }
+
+    @Override
+    boolean deleteFile(String name) {
+        return files.remove(name) != null;
+    }
+
+    @Override
+    boolean renameFile(String from, String to) {
+        byte[] data = files.remove(from);
+        if (data == null) {
+            return false;
+        }
+        files.put(to, data);
+        return true;
+    }
+
+    @Override
+    String[] listFiles() {
+        return files.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Gets the names of the stored files in order
+     */
+    public TreeSet<String> getFileNames() {
+        return new TreeSet<>(files.keySet());
+    }
+
+    /**
+     * Makes writes of the named file fail, or none if the name is null
+     */
+    public void failWritesOf(String name) {
+        failingFile = name;
+    }
+
+    /**
+     * Replaces the saved Lutemons with a Java serialized file of an older version,
+     * from before the ID high-water mark was saved
+     */
+    public void dropIdHighWaterMark() {
+        Map<String, ArrayList<Lutemon>> serializableMap = new HashMap<>();
+        for (Map.Entry<String, List<Lutemon>> entry : loadLutemons().entrySet()) {
+            serializableMap.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        files.keySet().removeIf(name -> name.startsWith("lutemons."));
+        files.put("lutemons.dat", serialize(serializableMap));
+    }
+
+    @Override
+    public byte[] readJournal() {
+        return journal == null ? null : journal.toByteArray();
+    }
+
+    @Override
+    public boolean appendJournal(byte[] records) {
+        if (journal == null) {
+            journal = new ByteArrayOutputStream();
+        }
+        journal.write(records, 0, records.length);
+        journalAppends++;
+        bytesWritten += records.length;
+        return true;
+    }
+
+    @Override
+    public boolean replaceJournal(byte[] data) {
+        journal = new ByteArrayOutputStream();
+        journal.write(data, 0, data.length);
+        return true;
+    }
+
+    /**
+     * Cuts the journal to the given length, like a crash in the middle of an append
+     */
+    public void truncateJournal(int length) {
+        byte[] data = journal.toByteArray();
+        journal = new ByteArrayOutputStream();
+        journal.write(data, 0, length);
+    }
+
+    public void resetCounters() {
+        lutemonWrites = 0;
+        statsWrites = 0;
+        journalAppends = 0;
+        bytesWritten = 0;
+    }
+
+    public int getLutemonWrites() { return lutemonWrites; }
+    public int getStatsWrites() { return statsWrites; }
+    public int getJournalAppends() { return journalAppends; }
+    public long getBytesWritten() { return bytesWritten; }
+
+    private static byte[] serialize(Object object) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bytes);
+            oos.writeObject(object);
+            oos.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.lutemon;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Compares heap use and lookup time of HashMap and the primitive maps at 1M entries.
+ * Heap is measured as the used memory difference around building each map, after GC.
+ * Run with -Dlutemon.benchmarks=true
+ */
+public class IntMapMemoryBenchmark {
+    private static final int ENTRIES = 1_000_000;
+    private static final int LOOKUPS = 2_000_000;
+
+    // Shared value so only the map overhead is measured, not the values
+    private static final Object VALUE = new Object();
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("lutemon.benchmarks"));
+    }
+
+    @Test
+    public void benchmarkIntToObject() {
+        long before = usedMemory();
+        Map<Integer, Object> hashMap = new HashMap<>();
+        for (int id = 1; id <= ENTRIES; id++) {
+            hashMap.put(id, VALUE);
+        }
+        long hashMapBytes = usedMemory() - before;
+
+        before = usedMemory();
+        IntObjectMap<Object> intMap = new IntObjectMap<>();
+        for (int id = 1; id <= ENTRIES; id++) {
+            intMap.put(id, VALUE);
+        }
+        long intMapBytes = usedMemory() - before;
+
+        long hashMapNanos = timeLookups(id -> hashMap.get(id) != null);
+        long intMapNanos = timeLookups(id -> intMap.get(id) != null);
+        report("HashMap<Integer, Object>", hashMapBytes, hashMapNanos);
+        report("IntObjectMap<Object>", intMapBytes, intMapNanos);
+        assertEquals(hashMap.size(), intMap.size());
+    }
+
+    @Test
+    public void benchmarkIntToInt() {
+        long before = usedMemory();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        for (int id = 1; id <= ENTRIES; id++) {
+            // Positions above the small Integer cache, as in a large location list
+            hashMap.put(id, id + 1_000);
+        }
+        long hashMapBytes = usedMemory() - before;
+
+        before = usedMemory();
+        IntIntMap intMap = new IntIntMap();
+        for (int id = 1; id <= ENTRIES; id++) {
+            intMap.put(id, id + 1_000);
+        }
+        long intMapBytes = usedMemory() - before;
+
+        long hashMapNanos = timeLookups(id -> hashMap.get(id) > 0);
+        long intMapNanos = timeLookups(id -> intMap.get(id) > 0);
+        report("HashMap<Integer, Integer>", hashMapBytes, hashMapNanos);
+        report("IntIntMap", intMapBytes, intMapNanos);
+        assertEquals(hashMap.size(), intMap.size());
+    }
+
+    private interface Lookup {
+        boolean find(int id);
+    }
+
+    /**
+     * Times random lookups after a warmup round
+     */
+    private static long timeLookups(Lookup lookup) {
+        long elapsed = 0;
+        for (int round = 0; round < 2; round++) {
+            SplittableRandom random = new SplittableRandom(round);
+            int found = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (lookup.find(random.nextInt(ENTRIES) + 1)) found++;
+            }
+            elapsed = System.nanoTime() - start;
+            assertEquals(LOOKUPS, found);
+        }
+        return elapsed;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void report(String name, long bytes, long lookupNanos) {
+        System.out.println(String.format("%-26s %,d entries: %5.1f bytes/entry, get %.1f ns",
+            name, ENTRIES, (double) bytes / ENTRIES, (double) lookupNanos / LOOKUPS));
+    }
+}
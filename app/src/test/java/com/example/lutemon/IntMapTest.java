@@ -0,0 +1,133 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IntObjectMap and IntIntMap
+ */
+public class IntMapTest {
+
+    @Test
+    public void testObjectMapPutGetRemove() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(-5, "minus five"));
+        assertEquals("zero", map.put(0, "nothing"));
+        assertEquals(2, map.size());
+        assertEquals("nothing", map.get(0));
+        assertEquals("minus five", map.get(-5));
+        assertNull(map.get(7));
+        assertFalse(map.containsKey(7));
+
+        assertEquals("minus five", map.remove(-5));
+        assertNull(map.remove(-5));
+        assertEquals(1, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testObjectMapRejectsNullValues() {
+        new IntObjectMap<String>().put(1, null);
+    }
+
+    @Test
+    public void testMapsMatchHashMapUnderRandomChanges() {
+        IntObjectMap<Integer> objectMap = new IntObjectMap<>();
+        IntIntMap intMap = new IntIntMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(17L);
+        for (int i = 0; i < 200_000; i++) {
+            // Small key range so removals hit long probe runs
+            int key = random.nextInt(-500, 2_000);
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed, objectMap.remove(key));
+                assertEquals(removed == null ? -1 : removed, intMap.remove(key));
+            } else {
+                int value = random.nextInt(1_000_000);
+                Integer previous = expected.put(key, value);
+                assertEquals(previous, objectMap.put(key, value));
+                assertEquals(previous == null ? -1 : previous, intMap.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), objectMap.size());
+        assertEquals(expected.size(), intMap.size());
+        for (int key = -500; key < 2_000; key++) {
+            assertEquals(expected.get(key), objectMap.get(key));
+            assertEquals(expected.containsKey(key), intMap.containsKey(key));
+            assertEquals(expected.containsKey(key) ? expected.get(key) : -1, intMap.get(key));
+        }
+        Map<Integer, Integer> visited = new HashMap<>();
+        objectMap.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void testIntMapMissingValue() {
+        IntIntMap map = new IntIntMap(4, Integer.MIN_VALUE);
+        assertEquals(Integer.MIN_VALUE, map.get(3));
+        assertEquals(Integer.MIN_VALUE, map.put(3, 30));
+        assertEquals(30, map.get(3));
+        assertEquals(Integer.MIN_VALUE, map.remove(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerializationRoundTrip() throws Exception {
+        IntObjectMap<String> objectMap = new IntObjectMap<>();
+        IntIntMap intMap = new IntIntMap(0, -2);
+        for (int i = 0; i < 1_000; i++) {
+            objectMap.put(i * 31, "value" + i);
+            intMap.put(i * 31, i);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(objectMap);
+            out.writeObject(intMap);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            IntObjectMap<String> objectCopy = (IntObjectMap<String>) in.readObject();
+            IntIntMap intCopy = (IntIntMap) in.readObject();
+            assertEquals(1_000, objectCopy.size());
+            assertEquals(1_000, intCopy.size());
+            assertEquals(-2, intCopy.getMissingValue());
+            for (int i = 0; i < 1_000; i++) {
+                assertEquals("value" + i, objectCopy.get(i * 31));
+                assertEquals(i, intCopy.get(i * 31));
+            }
+            assertEquals(-2, intCopy.get(1));
+        }
+    }
+
+    @Test
+    public void testGlobalStatsRoundTrip() throws Exception {
+        GlobalStats stats = new GlobalStats();
+        stats.addLutemonStats(new LutemonStats(1, "white"));
+        stats.addLutemonStats(new LutemonStats(2, "black"));
+        stats.recordBattle(1, 2);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(stats);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            GlobalStats copy = (GlobalStats) in.readObject();
+            assertEquals(1, copy.getTotalBattles());
+            assertEquals(2, copy.getLutemonStatsCount());
+            assertEquals(1, copy.getLutemonStats(1).getBattlesWon());
+            assertEquals(1, copy.getLutemonStats(2).getBattlesLost());
+            assertEquals(2, copy.getAllLutemonStats().size());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for LongSortedSet, checked against a TreeSet
+ */
+public class LongSortedSetTest {
+
+    private static List<Long> toList(PrimitiveIterator.OfLong iterator) {
+        List<Long> values = new ArrayList<>();
+        while (iterator.hasNext()) values.add(iterator.nextLong());
+        return values;
+    }
+
+    private static List<Long> toList(Iterator<Long> iterator) {
+        List<Long> values = new ArrayList<>();
+        while (iterator.hasNext()) values.add(iterator.next());
+        return values;
+    }
+
+    @Test
+    public void testAddRemoveContains() {
+        LongSortedSet set = new LongSortedSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(5));
+        assertTrue(set.add(-3));
+        assertFalse(set.add(5));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(-3));
+        assertFalse(set.contains(4));
+        assertTrue(set.remove(5));
+        assertFalse(set.remove(5));
+        assertEquals(1, set.size());
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.range(Long.MIN_VALUE, true, Long.MAX_VALUE, true, false).hasNext());
+    }
+
+    @Test
+    public void testMatchesTreeSet() {
+        LongSortedSet set = new LongSortedSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        SplittableRandom random = new SplittableRandom(7);
+        // Enough values for many runs to split, then merge again as most are removed
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 20_000; i++) {
+                long value = random.nextLong(-50_000, 50_000);
+                assertEquals(expected.add(value), set.add(value));
+            }
+            for (int i = 0; i < 25_000; i++) {
+                long value = random.nextLong(-50_000, 50_000);
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+            assertEquals(expected.size(), set.size());
+
+            for (int query = 0; query < 200; query++) {
+                long low = random.nextLong(-60_000, 60_000);
+                long high = low + random.nextLong(0, 20_000);
+                boolean lowInclusive = random.nextBoolean();
+                boolean highInclusive = random.nextBoolean();
+                if (low == high && !(lowInclusive && highInclusive)) continue;
+                NavigableSet<Long> range = expected.subSet(low, lowInclusive, high, highInclusive);
+                assertEquals(toList(range.iterator()),
+                    toList(set.range(low, lowInclusive, high, highInclusive, false)));
+                assertEquals(toList(range.descendingIterator()),
+                    toList(set.range(low, lowInclusive, high, highInclusive, true)));
+            }
+        }
+        assertEquals(new ArrayList<>(expected),
+            toList(set.range(Long.MIN_VALUE, true, Long.MAX_VALUE, true, false)));
+    }
+}
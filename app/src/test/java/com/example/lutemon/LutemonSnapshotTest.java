@@ -0,0 +1,145 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the LutemonSnapshot and StorageSnapshot classes
+ */
+public class LutemonSnapshotTest {
+
+    @Test
+    public void testChangesPublishNewSnapshots() {
+        Lutemon lutemon = new Lutemon("Snap", "green");
+        LutemonSnapshot before = lutemon.getSnapshot();
+        lutemon.train();
+        lutemon.setHealth(3);
+        LutemonSnapshot after = lutemon.getSnapshot();
+
+        assertEquals(6, before.getAttack());
+        assertEquals(0, before.getExperience());
+        assertEquals(19, before.getHealth());
+        assertEquals(9, after.getAttack());
+        assertEquals(1, after.getExperience());
+        assertEquals(3, after.getHealth());
+
+        Lutemon restored = after.toLutemon();
+        assertEquals(lutemon.getId(), restored.getId());
+        assertEquals(lutemon.getTotalAttack(), restored.getTotalAttack());
+        assertEquals(lutemon.getShapePointCount(), restored.getShapePointCount());
+        assertSame(after, restored.getSnapshot());
+    }
+
+    @Test
+    public void testReadersNeverSeeHalfATraining() throws Exception {
+        Lutemon lutemon = new Lutemon("Busy", "black");
+        int bonus = SpeciesRegistry.getDefault().getTrainingBonus(lutemon.getSpecies());
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                LutemonSnapshot state = lutemon.getSnapshot();
+                if (state.getAttack() != 9 + bonus * state.getExperience()) {
+                    failure.set("attack " + state.getAttack() + " with experience " + state.getExperience());
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200_000; i++) {
+            lutemon.train();
+            if (i % 1000 == 0) lutemon.resetStats();
+        }
+        done.set(true);
+        reader.join();
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testStorageSnapshotIsReusedUntilSomethingChanges() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        int firstId = storage.addLutemon(new Lutemon("First", "white"));
+        int secondId = storage.addLutemon(new Lutemon("Second", "pink"));
+
+        StorageSnapshot snapshot = storage.getSnapshot();
+        assertSame(snapshot, storage.getSnapshot());
+        assertEquals(2, snapshot.getLutemonsByLocation(Storage.HOME).size());
+
+        storage.moveLutemon(firstId, Storage.TRAINING);
+        StorageSnapshot moved = storage.getSnapshot();
+        assertNotSame(snapshot, moved);
+        assertEquals(2, snapshot.getLutemonsByLocation(Storage.HOME).size());
+        assertEquals(1, moved.getLutemonsByLocation(Storage.TRAINING).size());
+
+        // Only changes made through the storage make a new snapshot
+        Lutemon second = storage.getLutemon(secondId);
+        second.train();
+        assertSame(moved, storage.getSnapshot());
+        storage.recordTraining(second);
+        StorageSnapshot trained = storage.getSnapshot();
+        assertNotSame(moved, trained);
+        assertEquals(0, moved.getLutemon(secondId).getExperience());
+        assertEquals(1, trained.getLutemon(secondId).getExperience());
+        assertTrue(trained.getLutemonsByLocation("nowhere").isEmpty());
+
+        Map<String, List<Lutemon>> copies = trained.toLocationMap();
+        Lutemon copy = copies.get(Storage.HOME).get(0);
+        assertNotSame(storage.getLutemon(secondId), copy);
+        assertEquals(secondId, copy.getId());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testStorageSnapshotCannotBeChanged() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        storage.addLutemon(new Lutemon("Fixed", "orange"));
+        storage.getSnapshot().getLutemonsByLocation(Storage.HOME).clear();
+    }
+
+    @Test
+    public void testStorageSnapshotCopiesOnlyWhatChanged() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        List<Lutemon> roster = new PopulationGenerator(14L).generate(5000);
+        assertTrue(storage.addAll(roster));
+        StorageSnapshot before = storage.getSnapshot();
+
+        Lutemon trained = roster.get(4000);
+        assertTrue(storage.moveLutemon(trained.getId(), Storage.TRAINING));
+        trained.train();
+        storage.recordTraining(trained);
+        assertTrue(storage.removeLutemon(roster.get(10).getId()));
+        StorageSnapshot after = storage.getSnapshot();
+
+        assertEquals(5000, before.size());
+        assertEquals(4999, after.size());
+        assertEquals(before.getLutemon(trained.getId()).getExperience() + 1,
+            after.getLutemon(trained.getId()).getExperience());
+        assertNull(after.getLutemon(roster.get(10).getId()));
+        // Untouched Lutemons are the same objects in both
+        assertSame(before.getLutemon(roster.get(2500).getId()), after.getLutemon(roster.get(2500).getId()));
+
+        List<Lutemon> home = storage.getLutemonsByLocation(Storage.HOME);
+        List<LutemonSnapshot> snapshotHome = after.getLutemonsByLocation(Storage.HOME);
+        assertEquals(home.size(), snapshotHome.size());
+        for (int i = 0; i < home.size(); i++) {
+            assertEquals(home.get(i).getId(), snapshotHome.get(i).getId());
+        }
+        assertEquals(trained.getId(), after.getLutemonsByLocation(Storage.TRAINING).get(0).getId());
+        assertEquals(5000, before.getLutemonsByLocation(Storage.HOME).size());
+    }
+
+    @Test
+    public void testBattleTurnsDontBuildSnapshots() {
+        Lutemon attacker = new Lutemon("Attacker", "black");
+        Lutemon defender = new Lutemon("Defender", "white");
+        LutemonSnapshot state = attacker.getSnapshot();
+        defender.getSnapshot();
+        attacker.attack(defender);
+        // The attacker didn't change, the defender builds its state only when read
+        assertSame(state, attacker.getSnapshot());
+        assertEquals(defender.getHealth(), defender.getSnapshot().getHealth());
+    }
+}
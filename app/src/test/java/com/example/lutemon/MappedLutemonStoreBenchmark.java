@@ -0,0 +1,66 @@
+package com.example.lutemon;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Measures opening a mapped store of 1M Lutemons, reading the first screen of
+ * a location and updating random records in place.
+ * Run with -Dlutemon.benchmarks=true
+ */
+public class MappedLutemonStoreBenchmark {
+    private static final int SIZE = 1_000_000;
+    private static final int UPDATES = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("lutemon.benchmarks"));
+    }
+
+    @Test
+    public void benchmarkOpenAndUpdate() throws Exception {
+        File records = new File(folder.getRoot(), "lutemons.records");
+        File strings = new File(folder.getRoot(), "lutemons.strings");
+        SplittableRandom random = new SplittableRandom(23);
+        int[] ids = new int[SIZE];
+        try (MappedLutemonStore store = MappedLutemonStore.open(records, strings)) {
+            for (int i = 0; i < SIZE; i++) {
+                Lutemon lutemon = new Lutemon("Lutemon " + i, "white");
+                ids[i] = lutemon.getId();
+                store.append(lutemon.getSnapshot(), random.nextBoolean() ? Storage.HOME : Storage.TRAINING);
+            }
+        }
+
+        long start = System.nanoTime();
+        try (MappedLutemonStore store = MappedLutemonStore.open(records, strings)) {
+            long open = System.nanoTime() - start;
+            start = System.nanoTime();
+            assertEquals(20, store.readLocation(Storage.HOME, 20).size());
+            long firstScreen = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < UPDATES; i++) {
+                int id = ids[random.nextInt(SIZE)];
+                LutemonSnapshot state = store.read(store.indexOf(id));
+                Lutemon lutemon = state.toLutemon();
+                lutemon.train();
+                store.update(lutemon.getSnapshot());
+                store.move(id, Storage.TRAINING);
+            }
+            long updates = System.nanoTime() - start;
+            System.out.printf("%,d Lutemons in %,d + %,d bytes: open %.2f ms, first screen %.2f ms, "
+                    + "%d microseconds per train and move%n",
+                SIZE, records.length(), strings.length(), open / 1e6, firstScreen / 1e6,
+                updates / 1000 / UPDATES);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.lutemon;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the memory-mapped Lutemon store
+ */
+public class MappedLutemonStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File records;
+    private File strings;
+    private MappedLutemonStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        records = new File(folder.getRoot(), "lutemons.records");
+        strings = new File(folder.getRoot(), "lutemons.strings");
+        store = MappedLutemonStore.open(records, strings);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    private static void assertSameState(LutemonSnapshot expected, LutemonSnapshot actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getColor(), actual.getColor());
+        assertEquals(expected.getAttack(), actual.getAttack());
+        assertEquals(expected.getDefense(), actual.getDefense());
+        assertEquals(expected.getExperience(), actual.getExperience());
+        assertEquals(expected.getMaxHealth(), actual.getMaxHealth());
+        assertEquals(expected.getHealth(), actual.getHealth());
+        assertEquals(expected.getShapeSignature(), actual.getShapeSignature());
+    }
+
+    @Test
+    public void testAppendAndRead() throws IOException {
+        Lutemon first = new Lutemon("P\u00f6rr\u00f6", "green");
+        Lutemon second = new Lutemon("Second", "pink", 42L);
+        assertTrue(store.append(first.getSnapshot(), Storage.HOME));
+        assertTrue(store.append(second.getSnapshot(), Storage.TRAINING));
+        // Records stay sorted by ID
+        assertFalse(store.append(first.getSnapshot(), Storage.HOME));
+
+        assertEquals(2, store.getLiveCount());
+        int index = store.indexOf(second.getId());
+        assertSameState(second.getSnapshot(), store.read(index));
+        assertEquals(Storage.TRAINING, store.getLocation(index));
+        assertSameState(first.getSnapshot(), store.read(store.indexOf(first.getId())));
+        assertEquals(-1, store.indexOf(second.getId() + 1));
+    }
+
+    @Test
+    public void testUpdateWritesOneRecord() throws IOException {
+        Lutemon[] lutemons = new Lutemon[3];
+        for (int i = 0; i < lutemons.length; i++) {
+            lutemons[i] = new Lutemon("Lutemon " + i, "white");
+            // The first one puts training in the header
+            store.append(lutemons[i].getSnapshot(), i == 0 ? Storage.TRAINING : Storage.HOME);
+        }
+        store.force();
+        byte[] before = Files.readAllBytes(records.toPath());
+
+        lutemons[1].train();
+        assertTrue(store.update(lutemons[1].getSnapshot()));
+        assertTrue(store.move(lutemons[1].getId(), Storage.TRAINING));
+        store.force();
+        byte[] after = Files.readAllBytes(records.toPath());
+
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < after.length; i++) {
+            if (before[i] != after[i]) {
+                first = first < 0 ? i : first;
+                last = i;
+            }
+        }
+        assertTrue(first >= 0);
+        assertTrue(last - first < MappedLutemonStore.RECORD_SIZE);
+        assertEquals(1, store.read(1).getExperience());
+    }
+
+    @Test
+    public void testReopenKeepsRecords() throws IOException {
+        Lutemon kept = new Lutemon("Kept", "black");
+        Lutemon removed = new Lutemon("Removed", "orange");
+        store.append(kept.getSnapshot(), Storage.ARENA_PREFIX + 1);
+        store.append(removed.getSnapshot(), Storage.HOME);
+        assertTrue(store.remove(removed.getId()));
+        assertFalse(store.remove(removed.getId()));
+        store.close();
+
+        store = MappedLutemonStore.open(records, strings);
+        assertEquals(2, store.getCount());
+        assertEquals(1, store.getLiveCount());
+        assertEquals(-1, store.indexOf(removed.getId()));
+        int index = store.indexOf(kept.getId());
+        assertSameState(kept.getSnapshot(), store.read(index));
+        assertEquals(Storage.ARENA_PREFIX + 1, store.getLocation(index));
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() throws IOException {
+        Lutemon[] lutemons = new Lutemon[5000];
+        for (int i = 0; i < lutemons.length; i++) {
+            lutemons[i] = new Lutemon("Lutemon " + i, i % 2 == 0 ? "white" : "green");
+            assertTrue(store.append(lutemons[i].getSnapshot(), i % 3 == 0 ? Storage.TRAINING : Storage.HOME));
+        }
+        store.close();
+
+        store = MappedLutemonStore.open(records, strings);
+        assertEquals(lutemons.length, store.getLiveCount());
+        assertSameState(lutemons[4321].getSnapshot(), store.read(store.indexOf(lutemons[4321].getId())));
+        List<LutemonSnapshot> training = store.readLocation(Storage.TRAINING, 10);
+        assertEquals(10, training.size());
+        assertEquals(lutemons[3].getId(), training.get(1).getId());
+    }
+
+    @Test
+    public void testDamagedFileIsReset() throws IOException {
+        store.append(new Lutemon("Lost", "white").getSnapshot(), Storage.HOME);
+        store.close();
+        byte[] data = Files.readAllBytes(records.toPath());
+        data[0] ^= 0x01;
+        Files.write(records.toPath(), data);
+
+        store = MappedLutemonStore.open(records, strings);
+        assertEquals(0, store.getCount());
+    }
+
+    @Test
+    public void testSavedMarkIsClearedByWrites() throws IOException {
+        Lutemon lutemon = new Lutemon("Marked", "green");
+        store.append(lutemon.getSnapshot(), Storage.HOME);
+        assertFalse(store.isSavedAt(-1, -1));
+        store.markSaved(7, 120);
+        store.close();
+
+        store = MappedLutemonStore.open(records, strings);
+        assertTrue(store.isSavedAt(7, 120));
+        assertFalse(store.isSavedAt(7, 121));
+        assertFalse(store.isSavedAt(8, 120));
+        assertEquals("Marked", store.find(lutemon.getId()).getName());
+        assertNull(store.find(lutemon.getId() + 1));
+        assertTrue(store.move(lutemon.getId(), Storage.TRAINING));
+        assertFalse(store.isSavedAt(7, 120));
+    }
+
+    @Test
+    public void testStorageKeepsMirrorCurrent() throws IOException {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager);
+        Lutemon before = new Lutemon("Before", "green");
+        storage.addLutemon(before);
+        // Attaching writes the Lutemons stored so far
+        storage.attachMirror(store);
+        assertEquals(1, store.getLiveCount());
+
+        Lutemon after = new Lutemon("After", "pink");
+        storage.addLutemon(after);
+        storage.moveLutemon(before.getId(), Storage.TRAINING);
+        before.train();
+        storage.recordTraining(before);
+        assertTrue(storage.removeLutemon(after.getId()));
+
+        assertEquals(1, store.getLiveCount());
+        int index = store.indexOf(before.getId());
+        assertEquals(Storage.TRAINING, store.getLocation(index));
+        assertEquals(1, store.read(index).getExperience());
+        assertEquals(-1, store.indexOf(after.getId()));
+        storage.close();
+
+        // A store that fell behind is rewritten when attached again
+        store = MappedLutemonStore.open(records, strings);
+        Storage reloaded = new Storage(dataManager);
+        Lutemon unmirrored = new Lutemon("Unmirrored", "black");
+        reloaded.addLutemon(unmirrored);
+        reloaded.attachMirror(store);
+        assertEquals(2, store.getLiveCount());
+        assertEquals(Storage.HOME, store.getLocation(store.indexOf(unmirrored.getId())));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.lutemon;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the MatchmakingIndex class and Storage matchmaking
+ */
+public class MatchmakingIndexTest {
+    private MatchmakingIndex index;
+
+    @Before
+    public void setUp() {
+        index = new MatchmakingIndex();
+    }
+
+    @Test
+    public void testNearestAndRange() {
+        index.update(1, 100);
+        index.update(2, 110);
+        index.update(3, 130);
+        index.update(4, -20);
+
+        assertEquals(2, index.findOpponent(1));
+        assertEquals(2, index.findOpponent(3));
+        assertEquals(1, index.findNearest(104, 0));
+        assertEquals(2, index.findNearest(106, 0));
+        assertEquals(4, index.findNearest(-100, 0));
+        assertEquals(Arrays.asList(1, 2), index.findInRange(100, 129, 10));
+        assertEquals(Arrays.asList(4), index.findInRange(-50, 99, 10));
+        assertEquals(Arrays.asList(1), index.findInRange(0, 200, 1));
+
+        index.update(2, 200);
+        assertEquals(3, index.findOpponent(2));
+        assertTrue(index.remove(3));
+        assertFalse(index.remove(3));
+        assertEquals(1, index.findOpponent(2));
+        assertEquals(-1, index.findOpponent(3));
+    }
+
+    @Test
+    public void testSingleEntryHasNoOpponent() {
+        index.update(1, 100);
+        assertEquals(-1, index.findOpponent(1));
+    }
+
+    @Test
+    public void testMatchesBruteForceOnLargeIndex() {
+        SplittableRandom random = new SplittableRandom(9L);
+        int count = 100_000;
+        int[] scores = new int[count + 1];
+        for (int id = 1; id <= count; id++) {
+            scores[id] = random.nextInt(0, 50_000);
+            index.update(id, scores[id]);
+        }
+
+        for (int query = 0; query < 200; query++) {
+            int id = random.nextInt(1, count + 1);
+            int best = Integer.MAX_VALUE;
+            for (int other = 1; other <= count; other++) {
+                if (other != id) best = Math.min(best, Math.abs(scores[other] - scores[id]));
+            }
+            int found = index.findOpponent(id);
+            assertEquals(best, Math.abs(scores[found] - scores[id]));
+        }
+    }
+
+    @Test
+    public void testStorageKeepsIndexUpToDate() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        int weak = storage.addLutemon(new Lutemon("Weak", "black"));
+        int middle = storage.addLutemon(new Lutemon("Middle", "green"));
+        int strong = storage.addLutemon(new Lutemon("Strong", "white"));
+        for (int i = 0; i < 20; i++) {
+            Lutemon lutemon = storage.getLutemon(strong);
+            lutemon.train();
+            storage.recordTraining(lutemon);
+        }
+
+        assertEquals(middle, storage.findOpponent(weak));
+        assertEquals(middle, storage.findOpponent(strong));
+
+        // Lutemons in battle are not offered as opponents
+        assertEquals(middle, storage.quickMatch(strong));
+        assertEquals(2, storage.getLutemonsByLocation(Storage.BATTLE).size());
+        assertEquals(-1, storage.findOpponent(weak));
+        assertEquals(-1, storage.quickMatch(weak));
+
+        storage.moveLutemon(middle, Storage.TRAINING);
+        assertEquals(middle, storage.findOpponent(weak));
+        assertEquals(1, storage.findByPower(0, MatchmakingIndex.powerScore(storage.getLutemon(weak)), 10).size());
+    }
+
+    @Test
+    public void testBattleResultUpdatesPowerScores() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        int first = storage.addLutemon(new Lutemon("First", "white"));
+        int second = storage.addLutemon(new Lutemon("Second", "black"));
+        int before = MatchmakingIndex.powerScore(storage.getLutemon(first));
+        Battle battle = new Battle(storage, 42);
+        assertTrue(storage.reserveFighters(Storage.BATTLE, first, second));
+        assertTrue(battle.startBattle(first, second));
+        while (battle.executeAttack()) {
+        }
+
+        // Both fighters are home again and found by the scores of their new stats
+        for (int id : new int[]{first, second}) {
+            int score = MatchmakingIndex.powerScore(storage.getLutemon(id));
+            assertTrue(storage.findByPower(score, score, 10).contains(id));
+        }
+        // The winner trained twice, so its score before the battle no longer finds it
+        int winner = battle.getAttacker().getId();
+        int winnerBefore = winner == first ? before
+            : MatchmakingIndex.powerScore(new Lutemon("Fresh", "black"));
+        assertTrue(MatchmakingIndex.powerScore(storage.getLutemon(winner)) > winnerBefore);
+        assertFalse(storage.findByPower(winnerBefore, winnerBefore, 10).contains(winner));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the PopulationGenerator class and Storage.addAll()
+ */
+public class PopulationGeneratorTest {
+
+    private static String describe(Lutemon lutemon) {
+        return lutemon.getName() + " " + lutemon.getColor() + " " + lutemon.getAttack() + " "
+            + lutemon.getExperience() + " " + lutemon.getDefense() + " " + lutemon.getMaxHealth()
+            + " " + lutemon.getShapeSignature();
+    }
+
+    @Test
+    public void testSameSeedGivesSameRoster() {
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        new PopulationGenerator(8L).setMeanTrainings(3).generate(500, l -> first.add(describe(l)));
+        new PopulationGenerator(8L).setMeanTrainings(3).generate(500, l -> second.add(describe(l)));
+        List<String> other = new ArrayList<>();
+        new PopulationGenerator(9L).setMeanTrainings(3).generate(500, l -> other.add(describe(l)));
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        assertTrue(first.get(0).startsWith("Lutemon1 "));
+    }
+
+    @Test
+    public void testColorMixAndStats() {
+        SpeciesRegistry registry = SpeciesRegistry.getDefault();
+        int[] counts = new int[registry.getSpeciesCount()];
+        long[] experience = new long[1];
+        int count = 20_000;
+        new PopulationGenerator(1L)
+            .setNamePrefix("Bot")
+            .setSpeciesWeight("white", 0)
+            .setSpeciesWeight("black", 3)
+            .setMeanTrainings(4)
+            .setStatSpread(2)
+            .generate(count, lutemon -> {
+                counts[lutemon.getSpecies()]++;
+                experience[0] += lutemon.getExperience();
+                assertTrue(lutemon.getDefense() >= 0);
+                assertEquals(lutemon.getMaxHealth(), lutemon.getHealth());
+            });
+
+        assertEquals(0, counts[registry.ordinalOf("white")]);
+        double blackShare = (double) counts[registry.ordinalOf("black")] / count;
+        assertEquals(3.0 / 6.0, blackShare, 0.02);
+        assertEquals(4.0, (double) experience[0] / count, 0.15);
+    }
+
+    @Test
+    public void testAddAllSavesOnce() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager);
+        dataManager.resetCounters();
+        List<Lutemon> roster = new PopulationGenerator(2L).generate(10_000);
+
+        assertTrue(storage.addAll(roster));
+        assertEquals(1, dataManager.getLutemonWrites());
+        assertEquals(1, dataManager.getStatsWrites());
+        assertEquals(10_000, storage.getLutemonsByLocation(Storage.HOME).size());
+        assertNotNull(storage.getStats().getLutemonStats(roster.get(9_999).getId()));
+        assertTrue(storage.findOpponent(roster.get(0).getId()) > 0);
+    }
+
+    @Test
+    public void testAddAllRejectsInvalidBatch() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager);
+        Lutemon existing = new Lutemon("Existing", "pink");
+        storage.addLutemon(existing);
+        dataManager.resetCounters();
+
+        assertFalse(storage.addAll(Arrays.asList(new Lutemon("New", "green"), existing)));
+        assertFalse(storage.addAll(Arrays.asList(new Lutemon("Odd", "purple"))));
+        assertFalse(storage.addAll(Arrays.asList(new Lutemon("", "green"))));
+        assertEquals(1, storage.getLutemonsByLocation(Storage.HOME).size());
+        assertEquals(0, dataManager.getLutemonWrites());
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.lutemon;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Measures the bytes and time of compacting after single trainings with 1M
+ * Lutemons, next to a complete save of everything.
+ * Run with -Dlutemon.benchmarks=true
+ */
+public class SegmentedSaveBenchmark {
+    private static final int SIZE = 1_000_000;
+    private static final int TRAININGS = 200;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("lutemon.benchmarks"));
+    }
+
+    /**
+     * Flushes until the save is done, a complete save takes longer than one flush waits
+     */
+    private static void flush(Storage storage) {
+        for (int i = 0; i < 30 && !storage.flush(); i++) {
+            // Retry
+        }
+        assertTrue(storage.flush());
+    }
+
+    @Test
+    public void benchmarkCompaction() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        // Every write compacts, the worst case for the journal
+        Storage storage = new Storage(dataManager, 60_000, 0);
+        List<Lutemon> lutemons = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            lutemons.add(new Lutemon("Lutemon " + i, "white"));
+        }
+        assertTrue(storage.addAll(lutemons));
+        flush(storage);
+
+        dataManager.resetCounters();
+        long start = System.nanoTime();
+        storage.saveLutemons();
+        flush(storage);
+        long complete = System.nanoTime() - start;
+        long completeBytes = dataManager.getBytesWritten();
+
+        SplittableRandom random = new SplittableRandom(25);
+        dataManager.resetCounters();
+        start = System.nanoTime();
+        for (int i = 0; i < TRAININGS; i++) {
+            Lutemon lutemon = lutemons.get(random.nextInt(SIZE));
+            lutemon.train();
+            storage.recordTraining(lutemon);
+            assertTrue(storage.flush());
+        }
+        long trainings = System.nanoTime() - start;
+        storage.close();
+
+        start = System.nanoTime();
+        Storage reloaded = new Storage(dataManager);
+        long load = System.nanoTime() - start;
+        assertEquals(SIZE, reloaded.getSnapshot().size());
+        System.out.printf("%,d Lutemons: complete save %,d bytes in %.1f ms, "
+                + "compacting one training %,d bytes in %.2f ms, load %.1f ms%n",
+            SIZE, completeBytes, complete / 1e6, dataManager.getBytesWritten() / TRAININGS,
+            trainings / 1e6 / TRAININGS, load / 1e6);
+    }
+}
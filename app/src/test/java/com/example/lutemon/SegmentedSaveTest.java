@@ -0,0 +1,297 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for saving Lutemons and stats in segments under a manifest
+ */
+public class SegmentedSaveTest {
+
+    private static List<Lutemon> roster(int size) {
+        List<Lutemon> lutemons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            lutemons.add(new Lutemon("Lutemon " + i, i % 2 == 0 ? "white" : "green"));
+        }
+        return lutemons;
+    }
+
+    private static int countFiles(InMemoryDataManager dataManager, String prefix) {
+        int count = 0;
+        for (String name : dataManager.getFileNames()) {
+            if (name.startsWith(prefix) && name.endsWith(".seg")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testCompactingOneTrainingWritesOneSegment() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        // Every write compacts, so nothing goes to the journal
+        Storage storage = new Storage(dataManager, 60_000, 0);
+        List<Lutemon> lutemons = roster(100_000);
+        assertTrue(storage.addAll(lutemons));
+        assertTrue(storage.flush());
+        long fullSave = dataManager.getBytesWritten();
+        dataManager.resetCounters();
+
+        Lutemon lutemon = lutemons.get(54_321);
+        storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
+        lutemon.train();
+        storage.recordTraining(lutemon);
+        assertTrue(storage.flush());
+        assertEquals(1, dataManager.getLutemonWrites());
+        assertEquals(1, dataManager.getStatsWrites());
+        assertEquals(0, dataManager.getJournalAppends());
+        // One segment of each file and the manifests, not every Lutemon
+        assertTrue(dataManager.getBytesWritten() < 128 * 1024);
+        assertTrue(dataManager.getBytesWritten() * 50 < fullSave);
+        storage.close();
+
+        Storage reloaded = new Storage(dataManager);
+        assertEquals(lutemons.size(), reloaded.getSnapshot().size());
+        assertEquals(1, reloaded.getLutemon(lutemon.getId()).getExperience());
+        assertEquals(lutemon.getId(), reloaded.getLutemonsByLocation(Storage.TRAINING).get(0).getId());
+        assertEquals(1, reloaded.getStats().getLutemonStats(lutemon.getId()).getTrainingCount());
+        assertEquals(1, reloaded.getStats().getTotalTrainings());
+    }
+
+    @Test
+    public void testRemovingLastLutemonOfSegmentDropsIt() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager, 60_000, 0);
+        Lutemon lutemon = new Lutemon("Alone", "black");
+        storage.addLutemon(lutemon);
+        assertTrue(storage.flush());
+        assertEquals(1, countFiles(dataManager, "lutemons."));
+
+        assertTrue(storage.removeLutemon(lutemon.getId()));
+        assertTrue(storage.flush());
+        assertEquals(0, countFiles(dataManager, "lutemons."));
+        // Stats are kept for the history
+        assertEquals(1, countFiles(dataManager, "stats."));
+        storage.close();
+
+        Storage reloaded = new Storage(dataManager);
+        assertNull(reloaded.getLutemon(lutemon.getId()));
+        assertNotNull(reloaded.getStats().getLutemonStats(lutemon.getId()));
+    }
+
+    @Test
+    public void testFailedManifestKeepsPreviousSave() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager, 60_000, 0);
+        Lutemon lutemon = new Lutemon("Kept", "pink");
+        storage.addLutemon(lutemon);
+        assertTrue(storage.flush());
+
+        // The new segment is written, but the manifest still lists the old one
+        dataManager.failWritesOf("lutemons.manifest");
+        storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
+        assertFalse(storage.flush());
+        assertEquals(2, countFiles(dataManager, "lutemons."));
+        assertTrue(new Storage(dataManager).getLutemonsByLocation(Storage.TRAINING).isEmpty());
+
+        // The retry saves everything and cleans up the unlisted segment
+        dataManager.failWritesOf(null);
+        assertTrue(storage.flush());
+        assertEquals(1, countFiles(dataManager, "lutemons."));
+        storage.close();
+        assertEquals(lutemon.getId(),
+            new Storage(dataManager).getLutemonsByLocation(Storage.TRAINING).get(0).getId());
+    }
+
+    @Test
+    public void testSingleFileIsMigratedToSegments() throws IOException {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        List<Lutemon> lutemons = roster(3000);
+        Map<String, List<Lutemon>> locationMap = new HashMap<>();
+        locationMap.put(Storage.HOME, new ArrayList<>(lutemons.subList(0, 2000)));
+        locationMap.put(Storage.TRAINING, new ArrayList<>(lutemons.subList(2000, 3000)));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.writeLutemons(bytes, locationMap, Lutemon.getIdHighWaterMark(), 0);
+        assertTrue(dataManager.writeFile("lutemons.bin", bytes.toByteArray()));
+
+        Storage storage = new Storage(dataManager, 60_000);
+        assertEquals(lutemons.size(), storage.getSnapshot().size());
+        // Created stats and the unsegmented file make the first save a complete one
+        assertTrue(storage.flush());
+        assertFalse(dataManager.getFileNames().contains("lutemons.bin"));
+        assertTrue(dataManager.isSegmented());
+        assertTrue(countFiles(dataManager, "lutemons.") >= 3);
+        storage.close();
+
+        Storage reloaded = new Storage(dataManager);
+        assertEquals(2000, reloaded.getLutemonsByLocation(Storage.HOME).size());
+        assertEquals(1000, reloaded.getLutemonsByLocation(Storage.TRAINING).size());
+        Lutemon last = lutemons.get(2999);
+        assertEquals(last.getName(), reloaded.getLutemon(last.getId()).getName());
+        assertNotNull(reloaded.getStats().getLutemonStats(last.getId()));
+    }
+
+    @Test
+    public void testDamagedSegmentIsSetAside() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager, 60_000, 0);
+        List<Lutemon> lutemons = roster(3000);
+        assertTrue(storage.addAll(lutemons));
+        assertTrue(storage.flush());
+        storage.close();
+        String damaged = dataManager.getFileNames().first();
+        assertTrue(damaged.startsWith("lutemons.") && damaged.endsWith(".seg"));
+        byte[] data = {1, 2, 3};
+        assertTrue(dataManager.writeFile(damaged, data));
+
+        Storage reloaded = new Storage(dataManager, 60_000, 0);
+        int readable = reloaded.getSnapshot().size();
+        assertTrue(readable > 0);
+        assertTrue(readable < lutemons.size());
+        // The failure is reported and the damaged file is kept under another name
+        assertEquals(Arrays.asList(damaged), dataManager.getDamagedFiles());
+        assertFalse(dataManager.getFileNames().contains(damaged));
+        assertTrue(dataManager.getFileNames().contains(damaged + ".damaged"));
+        assertFalse(dataManager.isSegmented());
+
+        // The complete save of what could be read leaves it alone
+        reloaded.moveLutemon(reloaded.getLutemonsByLocation(Storage.HOME).get(0).getId(), Storage.TRAINING);
+        assertTrue(reloaded.flush());
+        reloaded.close();
+        assertTrue(dataManager.isSegmented());
+        assertTrue(dataManager.getFileNames().contains(damaged + ".damaged"));
+        assertEquals(readable, new Storage(dataManager).getSnapshot().size());
+    }
+
+    @Test
+    public void testDamagedSegmentIsKeptIfItCantBeRenamed() {
+        InMemoryDataManager dataManager = new InMemoryDataManager() {
+            @Override
+            boolean renameFile(String from, String to) {
+                return false;
+            }
+        };
+        Storage storage = new Storage(dataManager, 60_000, 0);
+        assertTrue(storage.addAll(roster(3000)));
+        assertTrue(storage.flush());
+        storage.close();
+        String damaged = dataManager.getFileNames().first();
+        assertTrue(dataManager.writeFile(damaged, new byte[]{1, 2, 3}));
+
+        Storage reloaded = new Storage(dataManager, 60_000, 0);
+        reloaded.saveLutemons();
+        assertTrue(reloaded.flush());
+        reloaded.close();
+        assertTrue(dataManager.isSegmented());
+        assertTrue(dataManager.getFileNames().contains(damaged));
+    }
+
+    private static List<String> segmentFiles(InMemoryDataManager dataManager, String prefix) {
+        List<String> names = new ArrayList<>();
+        for (String name : dataManager.getFileNames()) {
+            if (name.startsWith(prefix) && name.endsWith(".seg")) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void testSynchronousSavesUseNewSegmentFiles() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager);
+        Lutemon lutemon = new Lutemon("Sync", "white");
+        storage.addLutemon(lutemon);
+        lutemon.train();
+        storage.recordTraining(lutemon);
+        List<String> lutemonFiles = segmentFiles(dataManager, "lutemons.");
+        List<String> statsFiles = segmentFiles(dataManager, "stats.");
+        assertEquals(1, lutemonFiles.size());
+        assertEquals(1, statsFiles.size());
+
+        // Each save has a newer generation, so it never rewrites the listed files
+        storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
+        List<String> saved = segmentFiles(dataManager, "lutemons.");
+        assertEquals(1, saved.size());
+        assertNotEquals(lutemonFiles, saved);
+        lutemon.train();
+        storage.recordTraining(lutemon);
+        assertNotEquals(statsFiles, segmentFiles(dataManager, "stats."));
+
+        Storage reloaded = new Storage(dataManager);
+        assertEquals(lutemon.getId(), reloaded.getLutemonsByLocation(Storage.TRAINING).get(0).getId());
+        assertEquals(2, reloaded.getStats().getLutemonStats(lutemon.getId()).getTrainingCount());
+    }
+
+    private static List<Integer> idsOf(List<Lutemon> lutemons) {
+        List<Integer> ids = new ArrayList<>(lutemons.size());
+        for (Lutemon lutemon : lutemons) {
+            ids.add(lutemon.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testLocationOrderSurvivesReload() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager, 60_000, 0);
+        List<Lutemon> lutemons = roster(5000);
+        assertTrue(storage.addAll(lutemons));
+        assertTrue(storage.flush());
+
+        // Moved in descending ID order, each save only writes the changed segments
+        for (int i = lutemons.size() - 1; i >= 0; i -= 700) {
+            storage.moveLutemon(lutemons.get(i).getId(), Storage.TRAINING);
+            assertTrue(storage.flush());
+        }
+        storage.moveLutemon(lutemons.get(1).getId(), Storage.TRAINING);
+        storage.moveLutemon(lutemons.get(4999).getId(), Storage.HOME);
+        List<Integer> home = idsOf(storage.getLutemonsByLocation(Storage.HOME));
+        List<Integer> training = idsOf(storage.getLutemonsByLocation(Storage.TRAINING));
+        assertTrue(storage.flush());
+        storage.close();
+
+        Storage reloaded = new Storage(dataManager, 60_000);
+        assertEquals(home, idsOf(reloaded.getLutemonsByLocation(Storage.HOME)));
+        assertEquals(training, idsOf(reloaded.getLutemonsByLocation(Storage.TRAINING)));
+        // Added after every reloaded one
+        Lutemon newcomer = new Lutemon("New", "white");
+        reloaded.addLutemon(newcomer);
+        reloaded.moveLutemon(lutemons.get(1).getId(), Storage.HOME);
+        home.add(newcomer.getId());
+        home.add(lutemons.get(1).getId());
+        assertEquals(home, idsOf(reloaded.getLutemonsByLocation(Storage.HOME)));
+        reloaded.close();
+    }
+
+    @Test
+    public void testJournaledMovesKeepLocationOrder() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        // Nothing is compacted, the moves are only in the journal
+        Storage storage = new Storage(dataManager, 60_000);
+        List<Lutemon> lutemons = roster(100);
+        assertTrue(storage.addAll(lutemons));
+        assertTrue(storage.flush());
+        storage.moveLutemon(lutemons.get(60).getId(), Storage.TRAINING);
+        storage.moveLutemon(lutemons.get(20).getId(), Storage.TRAINING);
+        lutemons.get(40).train();
+        storage.recordTraining(lutemons.get(40));
+        List<Integer> home = idsOf(storage.getLutemonsByLocation(Storage.HOME));
+        List<Integer> training = idsOf(storage.getLutemonsByLocation(Storage.TRAINING));
+        assertTrue(storage.flush());
+        assertTrue(dataManager.getJournalAppends() > 0);
+        storage.close();
+
+        Storage reloaded = new Storage(dataManager, 60_000);
+        assertEquals(home, idsOf(reloaded.getLutemonsByLocation(Storage.HOME)));
+        assertEquals(training, idsOf(reloaded.getLutemonsByLocation(Storage.TRAINING)));
+        reloaded.close();
+    }
+}
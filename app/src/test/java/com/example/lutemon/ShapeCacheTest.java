@@ -0,0 +1,78 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the ShapeCache class and seeded Lutemon shapes
+ */
+public class ShapeCacheTest {
+
+    @Test
+    public void testSignatureRoundTrip() {
+        int[] radiusIndices = {7, 0, 3, 5};
+        int signature = ShapeCache.signatureOf(radiusIndices);
+
+        assertEquals(4, ShapeCache.getPointCount(signature));
+        for (int i = 0; i < radiusIndices.length; i++) {
+            assertEquals((radiusIndices[i] + 4f) / 12f, ShapeCache.getRadius(signature, i), 0f);
+        }
+    }
+
+    @Test
+    public void testShapesComeFromSeed() {
+        assertEquals(ShapeCache.signatureForSeed(42L), ShapeCache.signatureForSeed(42L));
+        Lutemon first = new Lutemon("First", "white", 42L);
+        Lutemon second = new Lutemon("Second", "black", 42L);
+        assertEquals(first.getShapeSignature(), second.getShapeSignature());
+
+        Lutemon byId = new Lutemon("ById", "green");
+        assertEquals(ShapeCache.signatureForSeed(byId.getId()), byId.getShapeSignature());
+        int points = byId.getShapePointCount();
+        assertTrue(points >= ShapeCache.MIN_POINTS && points <= ShapeCache.MAX_POINTS);
+    }
+
+    @Test
+    public void testUnitVerticesAreShared() {
+        int signature = ShapeCache.signatureOf(new int[]{2, 4, 6});
+        float[] vertices = ShapeCache.getUnitVertices(signature);
+
+        assertSame(vertices, ShapeCache.getUnitVertices(signature));
+        assertEquals(6, vertices.length);
+        // First point lies at angle 0, the second a third of a turn further
+        assertEquals(6f / 12f, vertices[0], 1e-6f);
+        assertEquals(0f, vertices[1], 1e-6f);
+        assertEquals((float) (8f / 12f * Math.cos(2 * Math.PI / 3)), vertices[2], 1e-6f);
+        assertEquals((float) (8f / 12f * Math.sin(2 * Math.PI / 3)), vertices[3], 1e-6f);
+    }
+
+    @Test
+    public void testLegacyShapeIsConvertedOnLoad() throws Exception {
+        Lutemon lutemon = new Lutemon("Legacy", "pink");
+        Field legacy = Lutemon.class.getDeclaredField("shapeIndices");
+        legacy.setAccessible(true);
+        legacy.set(lutemon, new int[]{1, 2, 3, 4, 5});
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(lutemon);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Lutemon loaded = (Lutemon) in.readObject();
+            assertEquals(ShapeCache.signatureOf(new int[]{1, 2, 3, 4, 5}), loaded.getShapeSignature());
+            assertEquals(5, loaded.getShapePointCount());
+            assertNull(legacy.get(loaded));
+            assertEquals(loaded.getShapeSignature(), loaded.getSnapshot().getShapeSignature());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTooManyPoints() {
+        ShapeCache.signatureOf(new int[6]);
+    }
+}
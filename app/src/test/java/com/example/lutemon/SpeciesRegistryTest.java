@@ -0,0 +1,89 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the SpeciesRegistry class
+ */
+public class SpeciesRegistryTest {
+
+    @Test
+    public void testBundledSpeciesKeepOriginalStats() {
+        SpeciesRegistry registry = SpeciesRegistry.getDefault();
+        String[] colors = {"white", "green", "pink", "orange", "black"};
+        int[][] stats = {{5, 4, 20, 2}, {6, 3, 19, 3}, {7, 2, 18, 4}, {8, 1, 17, 5}, {9, 0, 16, 6}};
+
+        assertEquals(colors.length, registry.getSpeciesCount());
+        for (int i = 0; i < colors.length; i++) {
+            int species = registry.ordinalOf(colors[i]);
+            assertEquals(colors[i], registry.getName(species));
+            assertEquals(stats[i][0], registry.getBaseAttack(species));
+            assertEquals(stats[i][1], registry.getBaseDefense(species));
+            assertEquals(stats[i][2], registry.getBaseMaxHealth(species));
+            assertEquals(stats[i][3], registry.getTrainingBonus(species));
+        }
+        assertEquals(0xFF90A4AE, registry.getPaletteColor(registry.ordinalOf("BLACK")));
+        assertEquals(0, registry.ordinalOf("purple"));
+        assertFalse(registry.contains("purple"));
+    }
+
+    @Test
+    public void testLutemonUsesSpeciesTables() {
+        Lutemon lutemon = new Lutemon("Pinky", "Pink");
+        assertEquals(SpeciesRegistry.getDefault().ordinalOf("pink"), lutemon.getSpecies());
+        lutemon.train();
+        assertEquals(11, lutemon.getAttack());
+        lutemon.resetStats();
+        assertEquals(7, lutemon.getAttack());
+        assertEquals(18, lutemon.getMaxHealth());
+    }
+
+    @Test
+    public void testSpeciesIsResolvedAfterLoading() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new Lutemon("Orangey", "orange"));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Lutemon loaded = (Lutemon) in.readObject();
+            assertEquals(SpeciesRegistry.getDefault().ordinalOf("orange"), loaded.getSpecies());
+            loaded.train();
+            assertEquals(13, loaded.getAttack());
+        }
+    }
+
+    @Test
+    public void testParsesCustomSpecies() throws Exception {
+        SpeciesRegistry registry = new SpeciesRegistry(new StringReader(
+            "# comment\n\nplain, Plain, 1, 2, 3, 4, #102030, 1\n"
+            + "gold, Gold, 10, 10, 40, 8, #80FFD700, 0\n"
+            + "rare, Rare, 5, 5, 25, 3, #000000, 3\n"));
+
+        assertEquals(3, registry.getSpeciesCount());
+        int gold = registry.ordinalOf("Gold");
+        assertEquals("Gold", registry.getDisplayName(gold));
+        assertEquals(0x80FFD700, registry.getPaletteColor(gold));
+        assertEquals(0xFF102030, registry.getPaletteColor(0));
+
+        assertEquals(1.0, registry.getRarity(0), 0);
+        assertEquals(0.0, registry.getRarity(gold), 0);
+        assertEquals(3.0, registry.getRarity(registry.ordinalOf("rare")), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsMalformedLine() throws Exception {
+        new SpeciesRegistry(new StringReader("white,White,5,4,20\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsDuplicateSpecies() throws Exception {
+        new SpeciesRegistry(new StringReader(
+            "white,White,5,4,20,2,#FFFFFF,1\nWHITE,White,5,4,20,2,#FFFFFF,1\n"));
+    }
+}
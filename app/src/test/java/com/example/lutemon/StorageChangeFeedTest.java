@@ -0,0 +1,276 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the Storage change feed
+ */
+public class StorageChangeFeedTest {
+
+    /**
+     * Runs tasks only when asked, like a busy main thread
+     */
+    private static class QueuedExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) tasks.poll().run();
+        }
+    }
+
+    private static Map<Integer, StorageChange> byId(List<StorageChange> changes) {
+        Map<Integer, StorageChange> map = new HashMap<>();
+        for (StorageChange change : changes) {
+            assertNull("one change per Lutemon", map.put(change.getLutemonId(), change));
+        }
+        return map;
+    }
+
+    @Test
+    public void testEveryKindOfChangeIsDelivered() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        List<List<StorageChange>> batches = new ArrayList<>();
+        storage.addChangeListener(batches::add, Runnable::run);
+
+        Lutemon lutemon = new Lutemon("Feed", "green");
+        storage.addLutemon(lutemon);
+        storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
+        lutemon.train();
+        storage.recordTraining(lutemon);
+        assertTrue(storage.removeLutemon(lutemon.getId()));
+        assertFalse(storage.removeLutemon(lutemon.getId()));
+        assertNull(storage.getLutemon(lutemon.getId()));
+
+        assertEquals(4, batches.size());
+        StorageChange added = batches.get(0).get(0);
+        assertEquals(StorageChange.Type.ADDED, added.getType());
+        assertNull(added.getOldLocation());
+        assertEquals(Storage.HOME, added.getNewLocation());
+        StorageChange moved = batches.get(1).get(0);
+        assertEquals(StorageChange.Type.MOVED, moved.getType());
+        assertEquals(Storage.HOME, moved.getOldLocation());
+        assertEquals(Storage.TRAINING, moved.getNewLocation());
+        StorageChange trained = batches.get(2).get(0);
+        assertEquals(StorageChange.Type.STATS_CHANGED, trained.getType());
+        assertEquals(Storage.TRAINING, trained.getNewLocation());
+        StorageChange removed = batches.get(3).get(0);
+        assertEquals(StorageChange.Type.REMOVED, removed.getType());
+        assertEquals(Storage.TRAINING, removed.getOldLocation());
+        assertNull(removed.getNewLocation());
+    }
+
+    @Test
+    public void testTransactionIsOneBatch() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        Lutemon a = new Lutemon("A", "white");
+        Lutemon b = new Lutemon("B", "black");
+        storage.addLutemon(a);
+        storage.addLutemon(b);
+        List<List<StorageChange>> batches = new ArrayList<>();
+        storage.addChangeListener(batches::add, Runnable::run);
+
+        assertTrue(storage.reserveFighters(Storage.BATTLE, a.getId(), b.getId()));
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+
+        // A fight result: both return home and the result is recorded
+        storage.beginTransaction();
+        storage.moveLutemon(a.getId(), Storage.HOME);
+        storage.moveLutemon(b.getId(), Storage.HOME);
+        storage.recordBattle(a.getId(), b.getId());
+        assertEquals(1, batches.size());
+        storage.commitTransaction();
+
+        assertEquals(2, batches.size());
+        Map<Integer, StorageChange> changes = byId(batches.get(1));
+        assertEquals(2, changes.size());
+        assertEquals(StorageChange.Type.MOVED, changes.get(a.getId()).getType());
+        assertEquals(Storage.BATTLE, changes.get(a.getId()).getOldLocation());
+        assertEquals(Storage.HOME, changes.get(b.getId()).getNewLocation());
+    }
+
+    private static List<Integer> idsOf(List<Lutemon> lutemons) {
+        List<Integer> ids = new ArrayList<>();
+        for (Lutemon lutemon : lutemons) {
+            ids.add(lutemon.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testRollbackRestoresStateWithoutChanges() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager);
+        List<Lutemon> lutemons = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            lutemons.add(new Lutemon("L" + i, "white"));
+            storage.addLutemon(lutemons.get(i));
+        }
+        Lutemon a = lutemons.get(1);
+        Lutemon b = lutemons.get(3);
+        assertTrue(storage.reserveFighters(Storage.BATTLE, a.getId(), b.getId()));
+        List<Integer> home = idsOf(storage.getLutemonsByLocation(Storage.HOME));
+        int attack = a.getAttack();
+        int experience = b.getExperience();
+        StorageSnapshot before = storage.getSnapshot();
+        List<List<StorageChange>> batches = new ArrayList<>();
+        storage.addChangeListener(batches::add, Runnable::run);
+        dataManager.resetCounters();
+
+        storage.beginTransaction();
+        storage.moveLutemon(a.getId(), Storage.HOME);
+        storage.moveLutemon(b.getId(), Storage.HOME);
+        a.train();
+        b.resetStats();
+        storage.recordBattle(a.getId(), b.getId());
+        storage.getStats().getLutemonStats(a.getId()).recordStats(a);
+        Lutemon created = new Lutemon("Created", "black");
+        storage.addLutemon(created);
+        storage.removeLutemon(lutemons.get(0).getId());
+        storage.rollbackTransaction();
+
+        assertFalse(storage.inTransaction());
+        assertTrue(batches.isEmpty());
+        assertEquals(0, dataManager.getLutemonWrites());
+        assertEquals(0, dataManager.getStatsWrites());
+        assertEquals(home, idsOf(storage.getLutemonsByLocation(Storage.HOME)));
+        assertEquals(2, storage.getLutemonsByLocation(Storage.BATTLE).size());
+        assertEquals(attack, a.getAttack());
+        assertEquals(experience, b.getExperience());
+        assertNull(storage.getLutemon(created.getId()));
+        assertNull(storage.getStats().getLutemonStats(created.getId()));
+        assertEquals(0, storage.getStats().getTotalBattles());
+        assertEquals(0, storage.getStats().getLutemonStats(a.getId()).getBattlesWon());
+        assertEquals(0, storage.getStats().getLutemonStats(b.getId()).getBattlesLost());
+        StorageSnapshot after = storage.getSnapshot();
+        assertEquals(before.size(), after.size());
+        assertEquals(attack, after.getLutemon(a.getId()).getAttack());
+        assertEquals(a.getId(), after.getLutemonsByLocation(Storage.BATTLE).get(0).getId());
+
+        // Later changes are published and saved as usual
+        storage.moveLutemon(a.getId(), Storage.HOME);
+        assertEquals(1, batches.size());
+        assertEquals(1, dataManager.getLutemonWrites());
+    }
+
+    @Test
+    public void testNestedRollbackKeepsOuterChanges() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        Lutemon a = new Lutemon("A", "white");
+        Lutemon b = new Lutemon("B", "black");
+        storage.addLutemon(a);
+        storage.addLutemon(b);
+        List<List<StorageChange>> batches = new ArrayList<>();
+        storage.addChangeListener(batches::add, Runnable::run);
+
+        storage.beginTransaction();
+        storage.moveLutemon(a.getId(), Storage.TRAINING);
+        storage.beginTransaction();
+        storage.moveLutemon(a.getId(), Storage.BATTLE);
+        storage.moveLutemon(b.getId(), Storage.TRAINING);
+        storage.rollbackTransaction();
+        assertEquals(Arrays.asList(a.getId()), idsOf(storage.getLutemonsByLocation(Storage.TRAINING)));
+        assertEquals(Arrays.asList(b.getId()), idsOf(storage.getLutemonsByLocation(Storage.HOME)));
+        assertTrue(storage.getLutemonsByLocation(Storage.BATTLE).isEmpty());
+        storage.commitTransaction();
+
+        assertEquals(1, batches.size());
+        assertEquals(1, batches.get(0).size());
+        assertEquals(a.getId(), batches.get(0).get(0).getLutemonId());
+        assertEquals(Storage.TRAINING, batches.get(0).get(0).getNewLocation());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRollbackWithoutTransactionFails() {
+        new Storage(new InMemoryDataManager()).rollbackTransaction();
+    }
+
+    @Test
+    public void testSlowListenerGetsCoalescedBatch() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        Lutemon kept = new Lutemon("Kept", "pink");
+        Lutemon released = new Lutemon("Released", "orange");
+        storage.addLutemon(kept);
+        storage.addLutemon(released);
+
+        QueuedExecutor slow = new QueuedExecutor();
+        List<List<StorageChange>> slowBatches = new ArrayList<>();
+        List<List<StorageChange>> directBatches = new ArrayList<>();
+        storage.addChangeListener(slowBatches::add, slow);
+        storage.addChangeListener(directBatches::add, Runnable::run);
+
+        Lutemon created = new Lutemon("Created", "white");
+        storage.addLutemon(created);
+        storage.moveLutemon(created.getId(), Storage.TRAINING);
+        storage.moveLutemon(kept.getId(), Storage.TRAINING);
+        storage.moveLutemon(kept.getId(), Storage.HOME);
+        storage.moveLutemon(released.getId(), Storage.TRAINING);
+        storage.removeLutemon(released.getId());
+        Lutemon temporary = new Lutemon("Temporary", "black");
+        storage.addLutemon(temporary);
+        storage.removeLutemon(temporary.getId());
+
+        assertEquals(8, directBatches.size());
+        assertEquals(1, slow.tasks.size());
+        slow.runAll();
+        assertEquals(1, slowBatches.size());
+
+        Map<Integer, StorageChange> changes = byId(slowBatches.get(0));
+        assertEquals(3, changes.size());
+        StorageChange createdChange = changes.get(created.getId());
+        assertEquals(StorageChange.Type.ADDED, createdChange.getType());
+        assertEquals(Storage.TRAINING, createdChange.getNewLocation());
+        // Moved away and back counts as changed in place
+        assertEquals(StorageChange.Type.STATS_CHANGED, changes.get(kept.getId()).getType());
+        StorageChange removed = changes.get(released.getId());
+        assertEquals(StorageChange.Type.REMOVED, removed.getType());
+        assertEquals(Storage.HOME, removed.getOldLocation());
+        assertFalse(changes.containsKey(temporary.getId()));
+
+        // Nothing new, nothing delivered
+        slow.runAll();
+        assertEquals(1, slowBatches.size());
+    }
+
+    @Test
+    public void testImportAndRemovedListener() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        Lutemon stays = new Lutemon("Stays", "green");
+        Lutemon dropped = new Lutemon("Dropped", "green");
+        storage.addLutemon(stays);
+        storage.addLutemon(dropped);
+        List<List<StorageChange>> batches = new ArrayList<>();
+        ChangeFeed.Listener listener = batches::add;
+        storage.addChangeListener(listener, Runnable::run);
+
+        Lutemon imported = new Lutemon("Imported", "white");
+        Map<String, List<Lutemon>> map = new HashMap<>();
+        map.put(Storage.HOME, new ArrayList<>(Arrays.asList(imported)));
+        map.put(Storage.TRAINING, new ArrayList<>(Arrays.asList(stays)));
+        map.put(Storage.BATTLE, new ArrayList<>());
+        storage.setAllLutemons(map);
+
+        assertEquals(1, batches.size());
+        Map<Integer, StorageChange> changes = byId(batches.get(0));
+        assertEquals(StorageChange.Type.MOVED, changes.get(stays.getId()).getType());
+        assertEquals(StorageChange.Type.REMOVED, changes.get(dropped.getId()).getType());
+        assertEquals(StorageChange.Type.ADDED, changes.get(imported.getId()).getType());
+
+        storage.removeChangeListener(listener);
+        storage.moveLutemon(imported.getId(), Storage.TRAINING);
+        assertEquals(1, batches.size());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.lutemon;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Measures Storage lookups and moves at 1k, 100k and 1M Lutemons.
+ * Run with -Dlutemon.benchmarks=true
+ */
+public class StorageIndexBenchmark {
+    private static final int[] SIZES = {1_000, 100_000, 1_000_000};
+    private static final int OPERATIONS = 200_000;
+
+    /**
+     * Keeps nothing, so the benchmark measures the indexes rather than serialization
+     */
+    private static class DiscardingDataManager extends DataManager {
+        DiscardingDataManager() {
+            super(null);
+        }
+
+        @Override
+        public boolean saveLutemons(Map<String, List<Lutemon>> locationMap, int idHighWaterMark,
+                                    long generation) {
+            return true;
+        }
+
+        @Override
+        public boolean saveStats(GlobalStats stats, long generation) {
+            return true;
+        }
+
+        @Override
+        public Map<String, List<Lutemon>> loadLutemons() {
+            Map<String, List<Lutemon>> map = new HashMap<>();
+            map.put(Storage.HOME, new ArrayList<>());
+            map.put(Storage.TRAINING, new ArrayList<>());
+            map.put(Storage.BATTLE, new ArrayList<>());
+            return map;
+        }
+
+        @Override
+        public GlobalStats loadStats() {
+            return new GlobalStats();
+        }
+
+        @Override
+        public byte[] readJournal() {
+            return null;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("lutemon.benchmarks"));
+    }
+
+    @Test
+    public void benchmarkLookupsAndMoves() {
+        // Warm up the JIT on the smallest size first
+        run(SIZES[0], false);
+        for (int size : SIZES) {
+            run(size, true);
+        }
+    }
+
+    private void run(int size, boolean report) {
+        Storage storage = new Storage(new DiscardingDataManager());
+        int[] ids = new int[size];
+        List<Lutemon> roster = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            roster.add(new Lutemon("Lutemon" + i, "white"));
+            ids[i] = roster.get(i).getId();
+        }
+        assertTrue(storage.addAll(roster));
+
+        SplittableRandom random = new SplittableRandom(1L);
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            found += storage.getLutemon(ids[random.nextInt(size)]).getId();
+        }
+        long lookupNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            String location = (i & 1) == 0 ? Storage.TRAINING : Storage.HOME;
+            assertTrue(storage.moveLutemon(ids[random.nextInt(size)], location));
+        }
+        long moveNanos = System.nanoTime() - start;
+
+        assertTrue(found > 0);
+        if (report) {
+            System.out.println(String.format("%,9d Lutemons: getLutemon %.0f ns, moveLutemon %.0f ns",
+                size, (double) lookupNanos / OPERATIONS, (double) moveNanos / OPERATIONS));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the Storage ID and location indexes
+ */
+public class StorageIndexTest {
+    private static final String[] LOCATIONS = {Storage.HOME, Storage.TRAINING, Storage.BATTLE};
+
+    @Test
+    public void testIndexesFollowRandomMoves() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        List<Lutemon> roster = new PopulationGenerator(4L).generate(200);
+        assertTrue(storage.addAll(roster));
+        Map<Integer, String> expected = new HashMap<>();
+        for (Lutemon lutemon : roster) {
+            expected.put(lutemon.getId(), Storage.HOME);
+        }
+
+        SplittableRandom random = new SplittableRandom(6L);
+        for (int step = 0; step < 5000; step++) {
+            Lutemon lutemon = roster.get(random.nextInt(roster.size()));
+            String location = LOCATIONS[random.nextInt(LOCATIONS.length)];
+            if (storage.moveLutemon(lutemon.getId(), location)) {
+                expected.put(lutemon.getId(), location);
+            } else {
+                assertEquals(Storage.BATTLE, location);
+            }
+            assertSame(lutemon, storage.getLutemon(lutemon.getId()));
+        }
+
+        for (String location : LOCATIONS) {
+            Set<Integer> ids = new HashSet<>();
+            for (Lutemon lutemon : storage.getLutemonsByLocation(location)) {
+                assertTrue(ids.add(lutemon.getId()));
+                assertEquals(location, expected.get(lutemon.getId()));
+            }
+            int count = 0;
+            for (String value : expected.values()) {
+                if (value.equals(location)) count++;
+            }
+            assertEquals(count, ids.size());
+        }
+        assertNull(storage.getLutemon(-5));
+        assertFalse(storage.moveLutemon(-5, Storage.HOME));
+    }
+
+    @Test
+    public void testIndexesSurviveReloadAndImport() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager);
+        int id = storage.addLutemon(new Lutemon("Kept", "orange"));
+        storage.moveLutemon(id, Storage.TRAINING);
+
+        Storage reloaded = new Storage(dataManager);
+        assertEquals(id, reloaded.getLutemon(id).getId());
+        assertTrue(reloaded.moveLutemon(id, Storage.HOME));
+        assertEquals(1, reloaded.getLutemonsByLocation(Storage.HOME).size());
+
+        Map<String, List<Lutemon>> imported = new HashMap<>();
+        Lutemon newcomer = new Lutemon("Imported", "white");
+        imported.put(Storage.TRAINING, new ArrayList<>());
+        imported.get(Storage.TRAINING).add(newcomer);
+        reloaded.setAllLutemons(imported);
+        assertNull(reloaded.getLutemon(id));
+        assertSame(newcomer, reloaded.getLutemon(newcomer.getId()));
+        assertTrue(reloaded.moveLutemon(newcomer.getId(), Storage.HOME));
+    }
+
+    @Test
+    public void testMovesKeepLocationOrder() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        List<Lutemon> roster = new PopulationGenerator(8L).generate(300);
+        assertTrue(storage.addAll(roster));
+        List<Lutemon> expected = new ArrayList<>(roster);
+        SplittableRandom random = new SplittableRandom(9L);
+        // Enough removals to close the gaps several times
+        for (int step = 0; step < 250; step++) {
+            Lutemon lutemon = expected.remove(random.nextInt(expected.size()));
+            assertTrue(storage.moveLutemon(lutemon.getId(), Storage.TRAINING));
+            assertEquals(expected, storage.getLutemonsByLocation(Storage.HOME));
+        }
+        Lutemon back = storage.getLutemonsByLocation(Storage.TRAINING).get(3);
+        assertTrue(storage.moveLutemon(back.getId(), Storage.HOME));
+        expected.add(back);
+        assertEquals(expected, storage.getLutemonsByLocation(Storage.HOME));
+    }
+}
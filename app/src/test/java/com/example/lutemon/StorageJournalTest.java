@@ -0,0 +1,160 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for saving Storage changes through the journal
+ */
+public class StorageJournalTest {
+
+    /**
+     * Fails to start a new journal, like a crash at the end of a compaction
+     */
+    private static class FailingReplaceDataManager extends InMemoryDataManager {
+        boolean failReplace;
+
+        @Override
+        public boolean replaceJournal(byte[] data) {
+            return !failReplace && super.replaceJournal(data);
+        }
+    }
+
+    @Test
+    public void testReloadReplaysJournal() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager, 60_000);
+        Lutemon trained = new Lutemon("Trained", "green");
+        Lutemon released = new Lutemon("Released", "pink");
+        storage.addLutemon(trained);
+        storage.addLutemon(released);
+        assertTrue(storage.flush());
+        dataManager.resetCounters();
+
+        storage.moveLutemon(trained.getId(), Storage.TRAINING);
+        trained.train();
+        storage.recordTraining(trained);
+        assertTrue(storage.removeLutemon(released.getId()));
+        Lutemon created = new Lutemon("Created", "white");
+        storage.addLutemon(created);
+        assertTrue(storage.flush());
+        // Only the journal was written
+        assertEquals(0, dataManager.getLutemonWrites());
+        assertEquals(0, dataManager.getStatsWrites());
+        assertEquals(1, dataManager.getJournalAppends());
+        storage.close();
+
+        Storage reloaded = new Storage(dataManager);
+        assertNull(reloaded.getLutemon(released.getId()));
+        assertEquals(1, reloaded.getLutemon(trained.getId()).getExperience());
+        assertEquals(trained.getId(), reloaded.getLutemonsByLocation(Storage.TRAINING).get(0).getId());
+        assertEquals(created.getName(), reloaded.getLutemon(created.getId()).getName());
+        assertEquals(1, reloaded.getStats().getLutemonStats(trained.getId()).getTrainingCount());
+        assertEquals(1, reloaded.getStats().getTotalTrainings());
+        assertTrue(Lutemon.getIdHighWaterMark() >= created.getId());
+    }
+
+    @Test
+    public void testTornAppendIsDropped() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager, 60_000);
+        Lutemon lutemon = new Lutemon("Torn", "orange");
+        storage.addLutemon(lutemon);
+        assertTrue(storage.flush());
+        storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
+        assertTrue(storage.flush());
+        int intact = dataManager.readJournal().length;
+        storage.moveLutemon(lutemon.getId(), Storage.HOME);
+        storage.close();
+
+        // The app died halfway through the second append
+        dataManager.truncateJournal(intact + 5);
+        dataManager.resetCounters();
+        Storage reloaded = new Storage(dataManager, 60_000);
+        assertEquals(1, reloaded.getLutemonsByLocation(Storage.TRAINING).size());
+
+        // New records would be hidden behind the torn one, so the next save is a full one
+        reloaded.moveLutemon(lutemon.getId(), Storage.HOME);
+        assertTrue(reloaded.flush());
+        assertEquals(1, dataManager.getLutemonWrites());
+        reloaded.close();
+        assertEquals(1, new Storage(dataManager).getLutemonsByLocation(Storage.HOME).size());
+    }
+
+    @Test
+    public void testJournalOlderThanFilesIsSkipped() {
+        FailingReplaceDataManager dataManager = new FailingReplaceDataManager();
+        Storage storage = new Storage(dataManager, 60_000);
+        Lutemon lutemon = new Lutemon("Stale", "black");
+        storage.addLutemon(lutemon);
+        assertTrue(storage.flush());
+        storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
+        assertTrue(storage.flush());
+
+        // Full files with the Lutemon back home, but the old journal stays
+        dataManager.failReplace = true;
+        storage.moveLutemon(lutemon.getId(), Storage.HOME);
+        storage.saveLutemons();
+        assertFalse(storage.flush());
+        storage.close();
+
+        Storage reloaded = new Storage(dataManager);
+        assertEquals(1, reloaded.getLutemonsByLocation(Storage.HOME).size());
+        assertTrue(reloaded.getLutemonsByLocation(Storage.TRAINING).isEmpty());
+    }
+
+    @Test
+    public void testFullJournalIsCompacted() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager, 60_000, 200);
+        Lutemon lutemon = new Lutemon("Compact", "green");
+        storage.addLutemon(lutemon);
+        assertTrue(storage.flush());
+        dataManager.resetCounters();
+
+        while (dataManager.readJournal().length < 200) {
+            storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
+            storage.moveLutemon(lutemon.getId(), Storage.HOME);
+            lutemon.train();
+            storage.recordTraining(lutemon);
+            assertTrue(storage.flush());
+        }
+        assertEquals(0, dataManager.getLutemonWrites());
+
+        lutemon.train();
+        storage.recordTraining(lutemon);
+        assertTrue(storage.flush());
+        assertEquals(1, dataManager.getLutemonWrites());
+        assertEquals(StorageJournal.HEADER_SIZE, dataManager.readJournal().length);
+        storage.close();
+        assertEquals(lutemon.getExperience(),
+            new Storage(dataManager).getLutemon(lutemon.getId()).getExperience());
+    }
+
+    @Test
+    public void testAppendSizeDoesNotDependOnRosterSize() {
+        long[] bytesPerMove = new long[2];
+        int[] sizes = {100, 10_000};
+        for (int i = 0; i < sizes.length; i++) {
+            InMemoryDataManager dataManager = new InMemoryDataManager();
+            Storage storage = new Storage(dataManager, 60_000);
+            List<Lutemon> roster = new ArrayList<>();
+            for (int j = 0; j < sizes[i]; j++) {
+                roster.add(new Lutemon("L", "white"));
+            }
+            assertTrue(storage.addAll(roster));
+            assertTrue(storage.flush());
+            dataManager.resetCounters();
+
+            storage.moveLutemon(roster.get(sizes[i] / 2).getId(), Storage.TRAINING);
+            assertTrue(storage.flush());
+            assertEquals(0, dataManager.getLutemonWrites());
+            bytesPerMove[i] = dataManager.getBytesWritten();
+            storage.close();
+        }
+        assertTrue(bytesPerMove[0] > 0);
+        assertEquals(bytesPerMove[0], bytesPerMove[1]);
+    }
+}
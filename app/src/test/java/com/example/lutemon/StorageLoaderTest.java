@@ -0,0 +1,211 @@
+package com.example.lutemon;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for loading Storage in stages off the calling thread
+ */
+public class StorageLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Storage load(StorageLoader loader) throws InterruptedException {
+        AtomicReference<Storage> delivered = new AtomicReference<>();
+        CountDownLatch called = new CountDownLatch(1);
+        loader.start(Runnable::run, storage -> {
+            delivered.set(storage);
+            called.countDown();
+        });
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+        loader.awaitFinished();
+        assertSame(delivered.get(), loader.await());
+        return delivered.get();
+    }
+
+    @Test
+    public void testLoadsSavedStorage() throws InterruptedException {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage saved = new Storage(dataManager);
+        Lutemon home = new Lutemon("Home", "green");
+        Lutemon training = new Lutemon("Training", "pink");
+        saved.addLutemon(home);
+        saved.addLutemon(training);
+        saved.moveLutemon(training.getId(), Storage.TRAINING);
+        saved.saveStats();
+        dataManager.resetCounters();
+
+        Storage loaded = load(new StorageLoader(dataManager, -1, false));
+        assertEquals(home.getId(), loaded.getLutemonsByLocation(Storage.HOME).get(0).getId());
+        assertEquals(training.getId(), loaded.getLutemonsByLocation(Storage.TRAINING).get(0).getId());
+        assertNotNull(loaded.getStats().getLutemonStats(home.getId()));
+        // Nothing was missing, so nothing was saved again
+        assertEquals(0, dataManager.getStatsWrites());
+        assertEquals(0, dataManager.getLutemonWrites());
+    }
+
+    @Test
+    public void testMissingStatsAreBackfilledLater() throws InterruptedException {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage saved = new Storage(dataManager);
+        Lutemon lutemon = new Lutemon("Statless", "black");
+        saved.addLutemon(lutemon);
+        // Stats of an older version that didn't have this Lutemon
+        dataManager.saveStats(new GlobalStats(), 0);
+        dataManager.resetCounters();
+
+        Storage loaded = load(new StorageLoader(dataManager, -1, false));
+        assertNotNull(loaded.getStats().getLutemonStats(lutemon.getId()));
+        assertEquals(1, dataManager.getStatsWrites());
+        assertFalse(loaded.backfillStats());
+    }
+
+    @Test
+    public void testStagesAreTimed() throws InterruptedException {
+        StorageLoader loader = new StorageLoader(new InMemoryDataManager(), -1, false);
+        load(loader);
+        Map<String, Long> stages = loader.getStageMillis();
+        assertTrue(stages.containsKey("load lutemons"));
+        assertTrue(stages.containsKey("load stats"));
+        assertTrue(stages.containsKey("build storage"));
+        assertTrue(stages.containsKey("backfill stats"));
+        assertFalse(stages.containsKey("open mapped store"));
+    }
+
+    @Test
+    public void testFailedLoadFallsBackToEmptyStorage() throws InterruptedException {
+        AtomicBoolean damaged = new AtomicBoolean();
+        InMemoryDataManager dataManager = new InMemoryDataManager() {
+            @Override
+            public GlobalStats loadStats() {
+                if (damaged.get()) {
+                    throw new IllegalStateException("Damaged stats");
+                }
+                return super.loadStats();
+            }
+        };
+        Storage saved = new Storage(dataManager);
+        saved.addLutemon(new Lutemon("Saved", "white"));
+        damaged.set(true);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        AtomicReference<Storage> delivered = new AtomicReference<>();
+        CountDownLatch called = new CountDownLatch(1);
+        StorageLoader loader = new StorageLoader(dataManager, 60_000, false);
+        loader.start(Runnable::run, new StorageLoader.Callback() {
+            @Override
+            public void onLoaded(Storage storage) {
+                assertNotNull(failure.get());
+                delivered.set(storage);
+                called.countDown();
+            }
+
+            @Override
+            public void onFailed(Exception error) {
+                failure.set(error);
+            }
+        });
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+        loader.awaitFinished();
+        assertEquals("Damaged stats", failure.get().getMessage());
+        Storage storage = loader.await();
+        assertSame(delivered.get(), storage);
+        assertTrue(storage.getLutemonsByLocation(Storage.HOME).isEmpty());
+
+        // The empty storage works as usual, but never writes over the files that failed to load
+        dataManager.resetCounters();
+        Lutemon lutemon = new Lutemon("After", "green");
+        storage.addLutemon(lutemon);
+        assertTrue(storage.moveLutemon(lutemon.getId(), Storage.TRAINING));
+        assertNotNull(storage.getStats().getLutemonStats(lutemon.getId()));
+        storage.saveLutemons();
+        assertTrue(storage.flush());
+        storage.close();
+        assertEquals(0, dataManager.getLutemonWrites());
+        assertEquals(0, dataManager.getStatsWrites());
+        assertEquals(0, dataManager.getBytesWritten());
+    }
+
+    /**
+     * Loads with the mapped store, keeping the preview if one is offered
+     */
+    private static Storage loadMirrored(StorageLoader loader, AtomicReference<StorageLoader.Preview> preview)
+            throws InterruptedException {
+        CountDownLatch called = new CountDownLatch(1);
+        loader.start(Runnable::run, new StorageLoader.Callback() {
+            @Override
+            public void onLoaded(Storage storage) {
+                called.countDown();
+            }
+
+            @Override
+            public void onPreview(StorageLoader.Preview offered) {
+                assertNull(loader.getStorage());
+                preview.set(offered);
+            }
+        });
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+        loader.awaitFinished();
+        return loader.await();
+    }
+
+    private static List<Integer> idsOf(List<LutemonSnapshot> lutemons) {
+        List<Integer> ids = new ArrayList<>();
+        for (LutemonSnapshot lutemon : lutemons) ids.add(lutemon.getId());
+        return ids;
+    }
+
+    @Test
+    public void testSavedMappedStoreIsPreviewedAndAttached() throws Exception {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        dataManager.setLutemonStoreDir(folder.getRoot());
+        Storage saved = new Storage(dataManager, 60_000);
+        Lutemon first = new Lutemon("First", "green");
+        Lutemon second = new Lutemon("Second", "white");
+        Lutemon training = new Lutemon("Training", "pink");
+        saved.addLutemon(first);
+        saved.addLutemon(second);
+        saved.addLutemon(training);
+        saved.moveLutemon(training.getId(), Storage.TRAINING);
+        saved.attachMirror(dataManager.openLutemonStore());
+        assertTrue(saved.flush());
+        saved.close();
+
+        AtomicReference<StorageLoader.Preview> preview = new AtomicReference<>();
+        StorageLoader loader = new StorageLoader(dataManager, 60_000, true);
+        Storage loaded = loadMirrored(loader, preview);
+        assertEquals(Arrays.asList(first.getId(), second.getId()), idsOf(preview.get().getHome()));
+        assertEquals("Training", preview.get().getLutemon(training.getId()).getName());
+        assertNull(preview.get().getLutemon(training.getId() + 1));
+        // The store matched the files, so it was attached without a rewrite
+        assertFalse(loader.getStageMillis().containsKey("rewrite mapped store"));
+
+        // Changes are written into the store and marked saved again with the files
+        loaded.moveLutemon(first.getId(), Storage.TRAINING);
+        assertTrue(loaded.flush());
+        loaded.close();
+        preview.set(null);
+        loaded = loadMirrored(new StorageLoader(dataManager, 60_000, true), preview);
+        assertEquals(Arrays.asList(second.getId()), idsOf(preview.get().getHome()));
+
+        // A change that isn't saved yet makes the store untrusted until it is rewritten
+        loaded.moveLutemon(second.getId(), Storage.TRAINING);
+        preview.set(null);
+        loader = new StorageLoader(dataManager, 60_000, true);
+        Storage reloaded = loadMirrored(loader, preview);
+        assertNull(preview.get());
+        assertTrue(loader.getStageMillis().containsKey("rewrite mapped store"));
+        assertEquals(1, reloaded.getLutemonsByLocation(Storage.HOME).size());
+        reloaded.close();
+        loaded.close();
+    }
+}
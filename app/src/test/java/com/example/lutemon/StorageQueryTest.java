@@ -0,0 +1,191 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for Storage.query() and its indexes
+ */
+public class StorageQueryTest {
+
+    /**
+     * Gets the value of a stat the same way the query does
+     */
+    private static int valueOf(Storage storage, Lutemon lutemon, LutemonQuery.SortKey key) {
+        switch (key) {
+            case ATTACK: return lutemon.getTotalAttack();
+            case DEFENSE: return lutemon.getDefense();
+            case EXPERIENCE: return lutemon.getExperience();
+            default:
+                LutemonStats stats = storage.getStats().getLutemonStats(lutemon.getId());
+                return stats != null ? stats.getBattlesWon() : 0;
+        }
+    }
+
+    /**
+     * Full scan and sort, what the indexes must agree with
+     */
+    private static List<Integer> expectedIds(Storage storage, String color, String location,
+                                             LutemonQuery.SortKey key, int min, int max,
+                                             boolean descending) {
+        List<Lutemon> matches = new ArrayList<>();
+        for (Map.Entry<String, List<Lutemon>> entry : storage.getAllLutemons().entrySet()) {
+            for (Lutemon lutemon : entry.getValue()) {
+                int value = valueOf(storage, lutemon, key);
+                if ((color == null || color.equals(lutemon.getColor()))
+                        && (location == null || location.equals(entry.getKey()))
+                        && value >= min && value <= max) {
+                    matches.add(lutemon);
+                }
+            }
+        }
+        Comparator<Lutemon> order = Comparator.<Lutemon>comparingInt(l -> valueOf(storage, l, key))
+            .thenComparingInt(Lutemon::getId);
+        matches.sort(descending ? order.reversed() : order);
+        List<Integer> ids = new ArrayList<>();
+        for (Lutemon lutemon : matches) ids.add(lutemon.getId());
+        return ids;
+    }
+
+    /**
+     * Reads every page of a query
+     */
+    private static List<Integer> allPages(Storage storage, LutemonQuery query) {
+        List<Integer> ids = new ArrayList<>();
+        while (true) {
+            LutemonQuery.Page page = storage.query(query);
+            assertTrue(page.getLutemons().size() <= query.getLimit());
+            for (Lutemon lutemon : page.getLutemons()) ids.add(lutemon.getId());
+            if (!page.hasMore()) return ids;
+            assertEquals(query.getLimit(), page.getLutemons().size());
+            query.setCursor(page.getNextCursor());
+        }
+    }
+
+    @Test
+    public void testQueriesMatchFullScanAfterChanges() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        List<Lutemon> roster = new PopulationGenerator(21L).setMeanTrainings(4).generate(300);
+        assertTrue(storage.addAll(roster));
+
+        // Train, fight and move some so every index has to follow changes
+        SplittableRandom random = new SplittableRandom(8L);
+        for (int step = 0; step < 500; step++) {
+            Lutemon lutemon = roster.get(random.nextInt(roster.size()));
+            Lutemon other = roster.get(random.nextInt(roster.size()));
+            switch (random.nextInt(3)) {
+                case 0:
+                    lutemon.train();
+                    storage.recordTraining(lutemon);
+                    break;
+                case 1:
+                    if (lutemon != other) storage.recordBattle(lutemon.getId(), other.getId());
+                    break;
+                default:
+                    storage.moveLutemon(lutemon.getId(), random.nextBoolean() ? Storage.TRAINING : Storage.HOME);
+            }
+        }
+
+        String[] colors = {null, "white", "black", "pink"};
+        String[] locations = {null, Storage.HOME, Storage.TRAINING};
+        for (LutemonQuery.SortKey key : LutemonQuery.SortKey.values()) {
+            for (String color : colors) {
+                for (String location : locations) {
+                    for (boolean descending : new boolean[] {false, true}) {
+                        int min = random.nextBoolean() ? Integer.MIN_VALUE : random.nextInt(0, 8);
+                        int max = random.nextBoolean() ? Integer.MAX_VALUE : min + random.nextInt(0, 10);
+                        LutemonQuery query = new LutemonQuery()
+                            .setColor(color)
+                            .setLocation(location)
+                            .setRange(key, min, max)
+                            .setOrder(key, descending)
+                            .setLimit(1 + random.nextInt(40));
+                        assertEquals(key + " " + color + " " + location,
+                            expectedIds(storage, color, location, key, min, max, descending),
+                            allPages(storage, query));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTopByAttackAndFilters() {
+        Storage storage = new Storage(new InMemoryDataManager());
+        Lutemon weak = new Lutemon("Weak", "black");
+        Lutemon strong = new Lutemon("Strong", "black");
+        Lutemon other = new Lutemon("Other", "white");
+        storage.addLutemon(weak);
+        storage.addLutemon(strong);
+        storage.addLutemon(other);
+        for (int i = 0; i < 3; i++) {
+            strong.train();
+            storage.recordTraining(strong);
+        }
+
+        LutemonQuery.Page page = storage.query(new LutemonQuery()
+            .setColor("black")
+            .setOrder(LutemonQuery.SortKey.ATTACK, true)
+            .setLimit(1));
+        assertEquals(1, page.getLutemons().size());
+        assertSame(strong, page.getLutemons().get(0));
+        assertTrue(page.hasMore());
+
+        page = storage.query(new LutemonQuery()
+            .setColor("black")
+            .setOrder(LutemonQuery.SortKey.ATTACK, true)
+            .setLimit(1)
+            .setCursor(page.getNextCursor()));
+        assertSame(weak, page.getLutemons().get(0));
+        assertFalse(page.hasMore());
+
+        // Filters on a stat other than the order are checked while walking
+        page = storage.query(new LutemonQuery()
+            .setRange(LutemonQuery.SortKey.EXPERIENCE, 1, 10)
+            .setOrder(LutemonQuery.SortKey.DEFENSE, false));
+        assertEquals(1, page.getLutemons().size());
+        assertSame(strong, page.getLutemons().get(0));
+
+        assertTrue(storage.query(new LutemonQuery().setColor("purple")).getLutemons().isEmpty());
+        assertTrue(storage.query(new LutemonQuery().setLocation(Storage.TRAINING)).getLutemons().isEmpty());
+    }
+
+    private static List<Integer> scanIds(RosterIndex index, int species, String location) {
+        List<Integer> ids = new ArrayList<>();
+        PrimitiveIterator.OfLong entries = index.scan(LutemonQuery.SortKey.ATTACK, species, location,
+            Integer.MIN_VALUE, Integer.MAX_VALUE, false, false, 0);
+        while (entries.hasNext()) ids.add(RosterIndex.unpackId(entries.nextLong()));
+        return ids;
+    }
+
+    @Test
+    public void testLocationSetsFollowMovesAndRemovals() {
+        RosterIndex index = new RosterIndex(2);
+        int[] low = {1, 1, 1, 1};
+        int[] high = {9, 1, 1, 1};
+        index.update(1, 0, Storage.HOME, low);
+        index.update(2, 1, Storage.HOME, high);
+        index.update(3, 0, Storage.TRAINING, high);
+
+        // Only the Lutemons of the location are walked, not the whole roster
+        assertEquals(Arrays.asList(1, 2), scanIds(index, -1, Storage.HOME));
+        assertEquals(Arrays.asList(3), scanIds(index, -1, Storage.TRAINING));
+        assertTrue(scanIds(index, -1, Storage.BATTLE).isEmpty());
+
+        index.update(1, 0, Storage.TRAINING, high);
+        assertEquals(Arrays.asList(2), scanIds(index, -1, Storage.HOME));
+        assertEquals(Arrays.asList(1, 3), scanIds(index, -1, Storage.TRAINING));
+        // The smaller set is walked, the species is checked by the caller
+        assertEquals(Arrays.asList(2), scanIds(index, 0, Storage.HOME));
+
+        assertTrue(index.remove(3));
+        assertEquals(Arrays.asList(1), scanIds(index, -1, Storage.TRAINING));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.lutemon;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares bytes written per battle with and without a Storage transaction.
+ * Run the benchmark with -Dlutemon.benchmarks=true
+ */
+public class StorageTransactionBenchmark {
+    private static final int ROSTER_SIZE = 500;
+
+    private InMemoryDataManager dataManager;
+    private Storage storage;
+    private int fighter1Id;
+    private int fighter2Id;
+
+    @Before
+    public void setUp() {
+        dataManager = new InMemoryDataManager();
+        storage = new Storage(dataManager);
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            storage.addLutemon(new Lutemon("Lutemon" + i, i % 2 == 0 ? "white" : "black"));
+        }
+        fighter1Id = storage.addLutemon(new Lutemon("Fighter1", "white"));
+        fighter2Id = storage.addLutemon(new Lutemon("Fighter2", "black"));
+        storage.moveLutemon(fighter1Id, Storage.BATTLE);
+        storage.moveLutemon(fighter2Id, Storage.BATTLE);
+        dataManager.resetCounters();
+    }
+
+    @Test
+    public void testBattleWritesEachFileOnce() {
+        Battle battle = new Battle(storage);
+        assertTrue(battle.startBattle(fighter1Id, fighter2Id));
+        while (battle.executeAttack()) {
+            assertEquals(0, dataManager.getBytesWritten());
+        }
+
+        assertEquals(1, dataManager.getLutemonWrites());
+        assertEquals(1, dataManager.getStatsWrites());
+        assertFalse(storage.inTransaction());
+        assertEquals(Storage.HOME, homeOrNull(fighter1Id));
+        assertEquals(Storage.HOME, homeOrNull(fighter2Id));
+    }
+
+    @Test
+    public void testNestedTransactionsCommitOnce() {
+        storage.beginTransaction();
+        storage.beginTransaction();
+        storage.moveLutemon(fighter1Id, Storage.HOME);
+        storage.commitTransaction();
+        assertEquals(0, dataManager.getLutemonWrites());
+        storage.commitTransaction();
+        assertEquals(1, dataManager.getLutemonWrites());
+        assertEquals(0, dataManager.getStatsWrites());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCommitWithoutBegin() {
+        storage.commitTransaction();
+    }
+
+    @Test
+    public void benchmarkBytesPerBattle() {
+        Assume.assumeTrue(Boolean.getBoolean("lutemon.benchmarks"));
+        // The end-of-battle sequence as it ran before transactions
+        storage.moveLutemon(fighter1Id, Storage.HOME);
+        storage.moveLutemon(fighter2Id, Storage.HOME);
+        storage.recordBattle(fighter1Id, fighter2Id);
+        storage.saveLutemons();
+        storage.saveStats();
+        long unbatched = dataManager.getBytesWritten();
+
+        storage.moveLutemon(fighter1Id, Storage.BATTLE);
+        storage.moveLutemon(fighter2Id, Storage.BATTLE);
+        dataManager.resetCounters();
+        Battle battle = new Battle(storage);
+        battle.startBattle(fighter1Id, fighter2Id);
+        while (battle.executeAttack()) {
+            // Fight until one Lutemon is defeated
+        }
+        long transactional = dataManager.getBytesWritten();
+
+        System.out.printf("Bytes written per battle with %d Lutemons: %d without transaction, %d with%n",
+            ROSTER_SIZE + 2, unbatched, transactional);
+        assertTrue(transactional * 2 < unbatched);
+    }
+
+    private String homeOrNull(int id) {
+        return storage.getLutemonsByLocation(Storage.HOME).contains(storage.getLutemon(id))
+            ? Storage.HOME : null;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.lutemon;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the Tournament class
+ */
+public class TournamentTest {
+    private List<Lutemon> roster;
+    private Lutemon champion;
+
+    @Before
+    public void setUp() {
+        roster = new ArrayList<>();
+        String[] colors = {"white", "green", "pink", "orange", "black"};
+        for (int i = 0; i < 20; i++) {
+            roster.add(new Lutemon("Lutemon" + i, colors[i % colors.length]));
+        }
+        champion = new Lutemon("Champion", "black");
+        champion.setExperience(50);
+        roster.add(champion);
+    }
+
+    @Test
+    public void testHeadToHeadMatrix() {
+        Tournament.Result result = new Tournament().run(roster, 3, 5L);
+
+        assertEquals(roster.size(), result.getPlayerCount());
+        assertEquals(6, result.getGamesPerPair());
+        for (int i = 0; i < result.getPlayerCount(); i++) {
+            assertEquals(0, result.getWins(i, i));
+            for (int j = i + 1; j < result.getPlayerCount(); j++) {
+                assertEquals(6, result.getWins(i, j) + result.getWins(j, i));
+            }
+        }
+    }
+
+    @Test
+    public void testStrongestRankedFirst() {
+        Tournament.Result result = new Tournament().run(roster, 5, 9L);
+        int championIndex = result.indexOf(champion.getId());
+
+        assertEquals(championIndex, result.getRanking()[0]);
+        assertTrue(result.getRating(championIndex) > 1500);
+    }
+
+    @Test
+    public void testResultsAreReproducible() {
+        Tournament.Result single = new Tournament(new ForkJoinPool(1)).run(roster, 2, 21L);
+        Tournament.Result parallel = new Tournament(new ForkJoinPool(4)).run(roster, 2, 21L);
+
+        for (int i = 0; i < single.getPlayerCount(); i++) {
+            assertEquals(single.getRating(i), parallel.getRating(i), 1e-9);
+            for (int j = 0; j < single.getPlayerCount(); j++) {
+                assertEquals(single.getWins(i, j), parallel.getWins(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testLiveLutemonsAreNotChanged() {
+        new Tournament().run(roster, 2, 1L);
+        for (Lutemon lutemon : roster) {
+            assertEquals(lutemon.getMaxHealth(), lutemon.getHealth());
+        }
+        assertEquals(50, champion.getExperience());
+    }
+
+    @Test
+    public void testWinCountsFitAtMaxRounds() {
+        List<Lutemon> pair = roster.subList(0, 2);
+        Tournament.Result result = new Tournament().run(pair, Tournament.MAX_ROUNDS, 3L);
+
+        assertEquals(2 * Tournament.MAX_ROUNDS, result.getWins(0, 1) + result.getWins(1, 0));
+        assertTrue(result.getWins(0, 1) >= 0);
+        assertTrue(result.getWins(1, 0) >= 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyRoundsRejected() {
+        new Tournament().run(roster, Tournament.MAX_ROUNDS + 1, 1L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyPlayersRejected() {
+        // Rejected before the win matrix size overflows
+        new Tournament().run(Collections.nCopies(Tournament.MAX_PLAYERS + 1, champion), 1, 1L);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.lutemon;
+
+import org.junit.Test;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for background saving with WriteBehindSaver
+ */
+public class WriteBehindSaverTest {
+
+    /**
+     * Remembers which threads wrote
+     */
+    private static class ThreadRecordingDataManager extends InMemoryDataManager {
+        final Set<String> writerThreads = ConcurrentHashMap.newKeySet();
+        final CountDownLatch lutemonsSaved = new CountDownLatch(1);
+
+        @Override
+        boolean saveLutemons(SegmentedSave save, long generation) {
+            writerThreads.add(Thread.currentThread().getName());
+            lutemonsSaved.countDown();
+            return super.saveLutemons(save, generation);
+        }
+
+        @Override
+        boolean saveStats(SegmentedSave save, long generation) {
+            writerThreads.add(Thread.currentThread().getName());
+            return super.saveStats(save, generation);
+        }
+    }
+
+    @Test
+    public void testTrainingBurstCostsOneWrite() {
+        ThreadRecordingDataManager dataManager = new ThreadRecordingDataManager();
+        // Long delay, so only the flush writes
+        Storage storage = new Storage(dataManager, 60_000);
+        Lutemon lutemon = new Lutemon("Burst", "orange");
+        storage.addLutemon(lutemon);
+        storage.moveLutemon(lutemon.getId(), Storage.TRAINING);
+        assertTrue(storage.flush());
+        dataManager.resetCounters();
+        dataManager.writerThreads.clear();
+
+        // What 100 taps on the train button do
+        for (int i = 0; i < 100; i++) {
+            lutemon.train();
+            storage.recordTraining(lutemon);
+            storage.saveLutemons();
+            storage.saveStats();
+        }
+        assertEquals(0, dataManager.getLutemonWrites());
+        assertTrue(storage.flush());
+        assertEquals(1, dataManager.getLutemonWrites());
+        assertEquals(1, dataManager.getStatsWrites());
+        assertFalse(dataManager.writerThreads.contains(Thread.currentThread().getName()));
+        storage.close();
+
+        Storage reloaded = new Storage(dataManager);
+        assertEquals(100, reloaded.getLutemon(lutemon.getId()).getExperience());
+        assertEquals(100, reloaded.getStats().getLutemonStats(lutemon.getId()).getTrainingCount());
+    }
+
+    @Test
+    public void testDelayedWriteHappensWithoutFlush() throws InterruptedException {
+        ThreadRecordingDataManager dataManager = new ThreadRecordingDataManager();
+        Storage storage = new Storage(dataManager, 10);
+        Lutemon lutemon = new Lutemon("Later", "green");
+        storage.addLutemon(lutemon);
+
+        assertTrue(dataManager.lutemonsSaved.await(5, TimeUnit.SECONDS));
+        storage.close();
+        assertEquals(Collections.singleton("lutemon-io"), dataManager.writerThreads);
+        assertNotNull(new Storage(dataManager).getLutemon(lutemon.getId()));
+    }
+
+    @Test
+    public void testRequestedFlushWritesWithoutWaiting() throws InterruptedException {
+        ThreadRecordingDataManager dataManager = new ThreadRecordingDataManager();
+        // Long delay, so only the requested flush writes
+        Storage storage = new Storage(dataManager, 60_000);
+        storage.saveLutemons();
+
+        storage.requestFlush();
+        assertTrue(dataManager.lutemonsSaved.await(10, TimeUnit.SECONDS));
+        assertFalse(dataManager.writerThreads.contains(Thread.currentThread().getName()));
+        storage.close();
+    }
+
+    @Test
+    public void testOpenTransactionIsNotSaved() {
+        InMemoryDataManager dataManager = new InMemoryDataManager();
+        Storage storage = new Storage(dataManager, 60_000);
+        Lutemon a = new Lutemon("A", "white");
+        storage.addLutemon(a);
+        assertTrue(storage.flush());
+        dataManager.resetCounters();
+
+        storage.moveLutemon(a.getId(), Storage.TRAINING);
+        storage.beginTransaction();
+        storage.moveLutemon(a.getId(), Storage.HOME);
+        // The first move is pending, but the half done transaction must not be written
+        assertFalse(storage.flush());
+        assertEquals(0, dataManager.getLutemonWrites());
+        storage.commitTransaction();
+        assertTrue(storage.flush());
+        // The committed move is appended to the journal
+        assertEquals(0, dataManager.getLutemonWrites());
+        assertEquals(1, dataManager.getJournalAppends());
+        storage.close();
+        assertEquals(1, new Storage(dataManager).getLutemonsByLocation(Storage.HOME).size());
+    }
+}